@@ -0,0 +1,119 @@
+package com.smartshop.benchmark;
+
+import com.smartshop.util.CooccurrenceIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the related-products index from a synthetic order history: one million orders of 1 to 6 lines over
+ * 5000 products, a few of them far more popular than the rest. Compares a single pass with the chunked build
+ * the rebuild job runs (chunks counted in parallel, then merged), and measures top-k lookups on the result.
+ * The index footprint is printed once per trial.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=CooccurrenceIndex
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@State(Scope.Benchmark)
+public class CooccurrenceIndexBenchmark {
+
+    private static final int ORDERS = 1_000_000;
+    private static final int PRODUCTS = 5000;
+    private static final int MAX_LINES = 6;
+    private static final int CHUNK_SIZE = 10_000;
+    private static final int LOOKUPS = 1024;
+
+    @Param({"4"})
+    public int parallelism;
+
+    private long[][] orders;
+    private long[] lookupIds;
+    private CooccurrenceIndex index;
+    private ExecutorService workers;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        orders = new long[ORDERS][];
+        for (int i = 0; i < ORDERS; i++) {
+            long[] lines = new long[1 + random.nextInt(MAX_LINES)];
+            for (int j = 0; j < lines.length; j++) {
+                lines[j] = popularProduct(random);
+            }
+            orders[i] = lines;
+        }
+        lookupIds = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookupIds[i] = popularProduct(random);
+        }
+
+        index = buildSequential();
+        System.out.printf("%nIndex: %d orders, %d products, %d pairs, %d KB%n",
+                index.orderCount(), index.productCount(), index.pairCount(), index.footprintBytes() / 1024);
+
+        workers = Executors.newFixedThreadPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        workers.shutdown();
+    }
+
+    @Benchmark
+    public CooccurrenceIndex buildSequential() {
+        CooccurrenceIndex built = new CooccurrenceIndex();
+        for (long[] order : orders) {
+            built.addOrder(order);
+        }
+        return built;
+    }
+
+    @Benchmark
+    public CooccurrenceIndex buildChunked() throws Exception {
+        List<Future<CooccurrenceIndex>> chunks = new ArrayList<>();
+        for (int from = 0; from < ORDERS; from += CHUNK_SIZE) {
+            int start = from;
+            chunks.add(workers.submit(() -> {
+                CooccurrenceIndex chunk = new CooccurrenceIndex();
+                for (int i = start; i < Math.min(start + CHUNK_SIZE, ORDERS); i++) {
+                    chunk.addOrder(orders[i]);
+                }
+                return chunk;
+            }));
+        }
+        CooccurrenceIndex built = new CooccurrenceIndex();
+        for (Future<CooccurrenceIndex> chunk : chunks) {
+            built.merge(chunk.get());
+        }
+        return built;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @OperationsPerInvocation(LOOKUPS)
+    public void related(Blackhole blackhole) {
+        CooccurrenceIndex built = index;
+        for (long productId : lookupIds) {
+            blackhole.consume(built.related(productId, 10));
+        }
+    }
+
+    // Squaring a uniform draw skews it towards the low ids, like a catalog where a few products sell most
+    private static long popularProduct(Random random) {
+        double draw = random.nextDouble();
+        return 1 + (long) (draw * draw * PRODUCTS);
+    }
+}
@@ -0,0 +1,150 @@
+package com.smartshop.benchmark;
+
+import com.smartshop.config.LoyaltyRulesProperties;
+import com.smartshop.enums.CustomerTier;
+import com.smartshop.util.CompiledLoyaltyRules;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compiled loyalty rules with the BigDecimal if/switch chains they replaced,
+ * on the same mix of clients and order subtotals.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=LoyaltyRules
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoyaltyRulesBenchmark {
+
+    private static final int INPUTS = 1024;
+    private static final CustomerTier[] TIERS = CustomerTier.values();
+
+    private final BigDecimal[] spendings = new BigDecimal[INPUTS];
+    private final int[] orderCounts = new int[INPUTS];
+    private final CustomerTier[] tiers = new CustomerTier[INPUTS];
+    private final BigDecimal[] subtotals = new BigDecimal[INPUTS];
+
+    private CompiledLoyaltyRules compiledRules;
+
+    @Setup
+    public void setUp() {
+        compiledRules = CompiledLoyaltyRules.compile(new LoyaltyRulesProperties().getTiers());
+
+        // Amounts as they come out of the database: two decimals, spread across every threshold
+        Random random = new Random(42);
+        for (int i = 0; i < INPUTS; i++) {
+            spendings[i] = BigDecimal.valueOf(random.nextInt(2_000_000), 2);
+            orderCounts[i] = random.nextInt(25);
+            tiers[i] = TIERS[random.nextInt(TIERS.length)];
+            subtotals[i] = BigDecimal.valueOf(random.nextInt(200_000), 2);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void tierLegacy(Blackhole blackhole) {
+        for (int i = 0; i < INPUTS; i++) {
+            blackhole.consume(LegacyRules.calculateTier(spendings[i], orderCounts[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void tierCompiled(Blackhole blackhole) {
+        CompiledLoyaltyRules rules = compiledRules;
+        for (int i = 0; i < INPUTS; i++) {
+            blackhole.consume(rules.calculateTier(spendings[i], orderCounts[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void discountLegacy(Blackhole blackhole) {
+        for (int i = 0; i < INPUTS; i++) {
+            blackhole.consume(LegacyRules.calculateLoyaltyDiscount(tiers[i], subtotals[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void discountCompiled(Blackhole blackhole) {
+        CompiledLoyaltyRules rules = compiledRules;
+        for (int i = 0; i < INPUTS; i++) {
+            blackhole.consume(rules.calculateLoyaltyDiscount(tiers[i], subtotals[i]));
+        }
+    }
+
+    /**
+     * The evaluation LoyaltyTierRules and CustomerTierDiscount used to perform, kept as the baseline.
+     */
+    static final class LegacyRules {
+
+        private static final BigDecimal SILVER_SPENDING_THRESHOLD = new BigDecimal("1000");
+        private static final BigDecimal GOLD_SPENDING_THRESHOLD = new BigDecimal("5000");
+        private static final BigDecimal PLATINUM_SPENDING_THRESHOLD = new BigDecimal("15000");
+
+        private static final int SILVER_ORDERS_THRESHOLD = 3;
+        private static final int GOLD_ORDERS_THRESHOLD = 10;
+        private static final int PLATINUM_ORDERS_THRESHOLD = 20;
+
+        private static final BigDecimal SILVER_THRESHOLD = new BigDecimal("500");
+        private static final BigDecimal SILVER_DISCOUNT = new BigDecimal("0.05");
+        private static final BigDecimal GOLD_THRESHOLD = new BigDecimal("800");
+        private static final BigDecimal GOLD_DISCOUNT = new BigDecimal("0.10");
+        private static final BigDecimal PLATINUM_THRESHOLD = new BigDecimal("1200");
+        private static final BigDecimal PLATINUM_DISCOUNT = new BigDecimal("0.15");
+
+        static CustomerTier calculateTier(BigDecimal totalSpending, int confirmedOrdersCount) {
+            if (totalSpending == null) {
+                totalSpending = BigDecimal.ZERO;
+            }
+            if ((confirmedOrdersCount >= PLATINUM_ORDERS_THRESHOLD)
+                    || (totalSpending.compareTo(PLATINUM_SPENDING_THRESHOLD) >= 0)) {
+                return CustomerTier.PLATINUM;
+            }
+            if ((confirmedOrdersCount >= GOLD_ORDERS_THRESHOLD)
+                    || (totalSpending.compareTo(GOLD_SPENDING_THRESHOLD) >= 0)) {
+                return CustomerTier.GOLD;
+            }
+            if ((confirmedOrdersCount >= SILVER_ORDERS_THRESHOLD)
+                    || (totalSpending.compareTo(SILVER_SPENDING_THRESHOLD) >= 0)) {
+                return CustomerTier.SILVER;
+            }
+            return CustomerTier.BASIC;
+        }
+
+        static BigDecimal calculateLoyaltyDiscount(CustomerTier tier, BigDecimal subtotal) {
+            if (tier == null || subtotal == null) {
+                return BigDecimal.ZERO;
+            }
+            BigDecimal discount = BigDecimal.ZERO;
+            switch (tier) {
+                case BASIC:
+                    break;
+                case SILVER:
+                    if (subtotal.compareTo(SILVER_THRESHOLD) >= 0) {
+                        discount = SILVER_DISCOUNT;
+                    }
+                    break;
+                case GOLD:
+                    if (subtotal.compareTo(GOLD_THRESHOLD) >= 0) {
+                        discount = GOLD_DISCOUNT;
+                    }
+                    break;
+                case PLATINUM:
+                    if (subtotal.compareTo(PLATINUM_THRESHOLD) >= 0) {
+                        discount = PLATINUM_DISCOUNT;
+                    }
+                    break;
+            }
+            return discount;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.smartshop.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation to re-run a transactional service method when it loses a concurrent update
+ * (optimistic version conflict, lock timeout or deadlock).
+ * Only retried when the method starts its own transaction.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
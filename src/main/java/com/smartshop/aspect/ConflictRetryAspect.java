@@ -0,0 +1,90 @@
+package com.smartshop.aspect;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * AOP Aspect retrying @RetryOnConflict methods on concurrency failures.
+ * Runs outside the transaction advice, so every attempt gets a fresh transaction.
+ * Waits a random time up to an exponentially growing cap between attempts ("full jitter"),
+ * so threads that collided do not collide again on the same schedule.
+ */
+@Aspect
+@Component
+@Order(0) // Ahead of the transaction advice, which has the lowest precedence
+@Slf4j
+public class ConflictRetryAspect {
+
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    public ConflictRetryAspect(
+            MeterRegistry meterRegistry,
+            @Value("${smartshop.retry.max-attempts:5}") int maxAttempts,
+            @Value("${smartshop.retry.initial-backoff-ms:10}") long initialBackoffMs,
+            @Value("${smartshop.retry.max-backoff-ms:200}") long maxBackoffMs) {
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    @Around("@annotation(com.smartshop.annotation.RetryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        // Inside a caller's transaction a retry would reuse the rolled-back transaction; let the caller decide
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        String operation = joinPoint.getSignature().getDeclaringType().getSimpleName()
+                + "." + joinPoint.getSignature().getName();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Object result = joinPoint.proceed();
+                if (attempt > 1) {
+                    counter(operation, "recovered").increment();
+                }
+                return result;
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    counter(operation, "exhausted").increment();
+                    log.warn("{} still conflicting after {} attempts: {}", operation, attempt, e.getMessage());
+                    throw e;
+                }
+
+                counter(operation, "retried").increment();
+                long backoffMs = backoff(attempt);
+                log.debug("{} conflicted on attempt {}, retrying in {} ms: {}",
+                        operation, attempt, backoffMs, e.getMessage());
+                Thread.sleep(backoffMs);
+            }
+        }
+    }
+
+    private long backoff(int attempt) {
+        long cap = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    private Counter counter(String operation, String outcome) {
+        return Counter.builder("smartshop.retry")
+                .description("Service calls re-run after a concurrent update")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
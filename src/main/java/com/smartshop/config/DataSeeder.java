@@ -4,7 +4,9 @@ import com.smartshop.entity.Coupon;
 import com.smartshop.entity.User;
 import com.smartshop.enums.UserRole;
 import com.smartshop.repository.CouponRepository;
+import com.smartshop.repository.OrderRepository;
 import com.smartshop.repository.UserRepository;
+import com.smartshop.service.UserCounterRepairJob;
 import com.smartshop.util.PasswordEncoder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,12 +24,16 @@ public class DataSeeder implements CommandLineRunner {
 
     private final UserRepository userRepository;
     private final CouponRepository couponRepository;
+    private final OrderRepository orderRepository;
+    private final UserCounterRepairJob userCounterRepairJob;
     private final PasswordEncoder passwordEncoder;
 
     @Override
     public void run(String... args) {
         seedUsers();
         seedCoupons();
+        backfillPaymentCounts();
+        backfillUserCounters();
     }
 
     private void seedUsers() {
@@ -89,4 +95,19 @@ public class DataSeeder implements CommandLineRunner {
             log.info("Coupons already exist, skipping seed");
         }
     }
+
+    private void backfillPaymentCounts() {
+        int updated = orderRepository.backfillPaymentCounts();
+        if (updated > 0) {
+            log.info("Initialized payment counter of {} existing orders", updated);
+        }
+    }
+
+    private void backfillUserCounters() {
+        // Users created before the counters existed start at zero; the repair job computes their real values
+        int updated = userCounterRepairJob.repairAll();
+        if (updated > 0) {
+            log.info("Initialized spending and order counters of {} existing users", updated);
+        }
+    }
 }
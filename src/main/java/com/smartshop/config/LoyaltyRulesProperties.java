@@ -0,0 +1,29 @@
+package com.smartshop.config;
+
+import com.smartshop.dto.TierRule;
+import com.smartshop.enums.CustomerTier;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loyalty tier rules loaded at startup, e.g. smartshop.loyalty.rules.tiers[0].tier=SILVER.
+ * The defaults are the rules the shop launched with.
+ */
+@Component
+@ConfigurationProperties(prefix = "smartshop.loyalty.rules")
+@Data
+public class LoyaltyRulesProperties {
+
+    private List<TierRule> tiers = new ArrayList<>(List.of(
+            // À partir de 3 commandes OU 1,000 cumulés; 5% dès 500 DH
+            new TierRule(CustomerTier.SILVER, new BigDecimal("1000"), 3, new BigDecimal("500"), new BigDecimal("0.05")),
+            // À partir de 10 commandes OU 5,000 cumulés; 10% dès 800 DH
+            new TierRule(CustomerTier.GOLD, new BigDecimal("5000"), 10, new BigDecimal("800"), new BigDecimal("0.10")),
+            // À partir de 20 commandes OU 15,000 cumulés; 15% dès 1200 DH
+            new TierRule(CustomerTier.PLATINUM, new BigDecimal("15000"), 20, new BigDecimal("1200"), new BigDecimal("0.15"))));
+}
@@ -0,0 +1,45 @@
+package com.smartshop.config;
+
+import com.smartshop.enums.RankingWindow;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.convert.converter.ConverterFactory;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Binds request parameters to enums: constants are matched ignoring case (?format=csv, ?metric=revenue),
+ * and ranking windows by their label (?window=7d). Unknown values are rejected with a 400 naming the accepted ones.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addFormatters(FormatterRegistry registry) {
+        registry.addConverterFactory(new CaseInsensitiveEnumConverterFactory());
+        registry.addConverter(String.class, RankingWindow.class, RankingWindow::fromLabel);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final class CaseInsensitiveEnumConverterFactory implements ConverterFactory<String, Enum> {
+
+        @Override
+        public <T extends Enum> Converter<String, T> getConverter(Class<T> targetType) {
+            return source -> {
+                String name = source.trim();
+                if (name.isEmpty()) {
+                    return null;
+                }
+                try {
+                    return (T) Enum.valueOf(targetType, name.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown " + targetType.getSimpleName() + ": " + source
+                            + " (expected one of " + Arrays.toString(targetType.getEnumConstants()) + ")");
+                }
+            };
+        }
+    }
+}
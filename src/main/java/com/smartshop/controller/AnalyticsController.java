@@ -0,0 +1,76 @@
+package com.smartshop.controller;
+
+import com.smartshop.annotation.RequireRole;
+import com.smartshop.dto.SalesBucket;
+import com.smartshop.dto.TopProduct;
+import com.smartshop.enums.RankingMetric;
+import com.smartshop.enums.RankingWindow;
+import com.smartshop.enums.SalesDimension;
+import com.smartshop.enums.SalesGranularity;
+import com.smartshop.service.SalesRollupJob;
+import com.smartshop.service.SalesRollupService;
+import com.smartshop.service.TopProductsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/analytics")
+@RequiredArgsConstructor
+@Slf4j
+public class AnalyticsController {
+
+    private final SalesRollupService salesRollupService;
+    private final SalesRollupJob salesRollupJob;
+    private final TopProductsService topProductsService;
+
+    /**
+     * Sales per day, week (starting Monday) or month over [from, to], in total (default), per product,
+     * per category or per customer tier. Read from the precomputed daily rollups, not from the orders.
+     */
+    @GetMapping("/sales")
+    @RequireRole("ADMIN")
+    public ResponseEntity<List<SalesBucket>> getSales(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") SalesGranularity granularity,
+            @RequestParam(defaultValue = "total") SalesDimension groupBy,
+            @RequestParam(required = false) String key) {
+        return ResponseEntity.ok(salesRollupService.getSales(from, to, granularity, groupBy, key));
+    }
+
+    /**
+     * Regenerates the rollups of [from, to] from the orders and payments, by default over the whole history.
+     */
+    @PostMapping("/sales/rebuild")
+    @RequireRole("ADMIN")
+    public ResponseEntity<Map<String, Integer>> rebuildSales(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.info("Rebuilding sales rollups (from: {}, to: {})", from, to);
+        int rebuiltDays = salesRollupJob.rebuild(from, to);
+        return ResponseEntity.ok(Map.of("rebuiltDays", rebuiltDays));
+    }
+
+    /**
+     * Best-selling products of the last 24h, 7d or 30d by quantity (default) or revenue, from in-memory counters.
+     */
+    @GetMapping("/top-products")
+    @RequireRole("ADMIN")
+    public ResponseEntity<List<TopProduct>> getTopProducts(
+            @RequestParam(defaultValue = "24h") RankingWindow window,
+            @RequestParam(defaultValue = "quantity") RankingMetric metric,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(topProductsService.getTopProducts(window, metric, limit));
+    }
+}
@@ -3,9 +3,12 @@ package com.smartshop.controller;
 import com.smartshop.annotation.RequireAuth;
 import com.smartshop.annotation.RequireRole;
 import com.smartshop.dto.ClientStatistics;
+import com.smartshop.dto.TierRecalculationStatus;
 import com.smartshop.dto.UserDTO;
 import com.smartshop.exception.UnauthorizedException;
 import com.smartshop.service.ClientService;
+import com.smartshop.service.LoyaltyTierRecalculationJob;
+import com.smartshop.service.UserCounterRepairJob;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -15,6 +18,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/clients")
@@ -23,6 +27,8 @@ import java.util.List;
 public class ClientController {
 
     private final ClientService clientService;
+    private final UserCounterRepairJob userCounterRepairJob;
+    private final LoyaltyTierRecalculationJob loyaltyTierRecalculationJob;
 
     @PostMapping
     public ResponseEntity<UserDTO> createClient(@Valid @RequestBody UserDTO user) {
@@ -91,4 +97,34 @@ public class ClientController {
         ClientStatistics statistics = clientService.getClientStatistics(id);
         return ResponseEntity.ok(statistics);
     }
+
+    /**
+     * Rebuilds every user's spending and confirmed order counters from the payments and orders tables.
+     */
+    @PostMapping("/counters/repair")
+    @RequireRole("ADMIN")
+    public ResponseEntity<Map<String, Integer>> repairCounters() {
+        log.info("Repairing client counters");
+        int repaired = userCounterRepairJob.repairAll();
+        return ResponseEntity.ok(Map.of("repaired", repaired));
+    }
+
+    /**
+     * Starts re-tiering every client against the current tier rules; poll the GET endpoint for progress.
+     * A dry run only reports the upgrades it would make.
+     */
+    @PostMapping("/tiers/recalculation")
+    @RequireRole("ADMIN")
+    public ResponseEntity<TierRecalculationStatus> startTierRecalculation(
+            @RequestParam(defaultValue = "false") boolean dryRun) {
+        log.info("Starting loyalty tier recalculation (dry run: {})", dryRun);
+        TierRecalculationStatus status = loyaltyTierRecalculationJob.start(dryRun);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
+    }
+
+    @GetMapping("/tiers/recalculation")
+    @RequireRole("ADMIN")
+    public ResponseEntity<TierRecalculationStatus> getTierRecalculationStatus() {
+        return ResponseEntity.ok(loyaltyTierRecalculationJob.getStatus());
+    }
 }
@@ -0,0 +1,45 @@
+package com.smartshop.controller;
+
+import com.smartshop.annotation.RequireRole;
+import com.smartshop.dto.TierRule;
+import com.smartshop.service.LoyaltyRulesService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/loyalty/rules")
+@RequiredArgsConstructor
+@Slf4j
+public class LoyaltyRulesController {
+
+    private final LoyaltyRulesService loyaltyRulesService;
+
+    @GetMapping
+    @RequireRole("ADMIN")
+    public ResponseEntity<List<TierRule>> getRules() {
+        return ResponseEntity.ok(loyaltyRulesService.getRules().getRules());
+    }
+
+    /**
+     * Replaces the tier thresholds and discounts in effect, without a restart. Existing clients keep their
+     * tier until they pay again or a tier recalculation runs.
+     */
+    @PutMapping
+    @RequireRole("ADMIN")
+    public ResponseEntity<List<TierRule>> replaceRules(@Valid @RequestBody List<@Valid TierRule> rules) {
+        log.info("Replacing loyalty rules");
+        return ResponseEntity.ok(loyaltyRulesService.replaceRules(rules));
+    }
+
+    @PostMapping("/reset")
+    @RequireRole("ADMIN")
+    public ResponseEntity<List<TierRule>> resetRules() {
+        log.info("Resetting loyalty rules to the configured ones");
+        return ResponseEntity.ok(loyaltyRulesService.resetRules());
+    }
+}
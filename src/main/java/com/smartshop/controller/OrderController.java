@@ -1,19 +1,40 @@
 package com.smartshop.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.smartshop.annotation.RequireAuth;
 import com.smartshop.annotation.RequireRole;
+import com.smartshop.dto.CursorPage;
+import com.smartshop.dto.OrderBatchResult;
 import com.smartshop.dto.OrderDTO;
+import com.smartshop.dto.OrderSearchCriteria;
+import com.smartshop.enums.ExportFormat;
+import com.smartshop.enums.OrderStatus;
 import com.smartshop.enums.UserRole;
 import com.smartshop.exception.UnauthorizedException;
+import com.smartshop.service.OrderBatchService;
+import com.smartshop.service.OrderExportService;
 import com.smartshop.service.OrderService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -23,6 +44,9 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderBatchService orderBatchService;
+    private final OrderExportService orderExportService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @RequireRole("ADMIN")
@@ -31,24 +55,94 @@ public class OrderController {
         return ResponseEntity.status(HttpStatus.CREATED).body(order);
     }
 
+    /**
+     * Creates many orders from a JSON array or an NDJSON stream of {@link CreateOrderRequest}.
+     * One NDJSON result line (order id or error) is written per submitted order, as each chunk completes.
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @RequireRole("ADMIN")
+    public void createOrdersBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+
+        OutputStream out = response.getOutputStream();
+        ObjectWriter resultWriter = objectMapper.writerFor(OrderBatchResult.class);
+
+        try (MappingIterator<CreateOrderRequest> requests = objectMapper.readerFor(CreateOrderRequest.class)
+                .readValues(request.getInputStream())) {
+            orderBatchService.createOrders(requests, result -> {
+                try {
+                    out.write(resultWriter.writeValueAsBytes(result));
+                    out.write('\n');
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Streams orders with their items as NDJSON (one order per line) or CSV (one item per line).
+     */
+    @GetMapping("/export")
+    @RequireRole("ADMIN")
+    public void exportOrders(
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "ndjson") ExportFormat format,
+            HttpServletResponse response) throws IOException {
+
+        OrderSearchCriteria criteria = OrderSearchCriteria.builder()
+                .status(status)
+                .fromDate(from)
+                .toDate(to)
+                .build();
+
+        response.setStatus(HttpStatus.OK.value());
+        if (format == ExportFormat.CSV) {
+            response.setContentType("text/csv");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders.csv\"");
+        } else {
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        }
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        log.info("Exporting orders as {} (status: {}, from: {}, to: {})", format, status, from, to);
+        orderExportService.exportOrders(criteria, format, response.getOutputStream());
+    }
+
     @GetMapping("/{id}")
     @RequireAuth
-    public ResponseEntity<OrderDTO> getOrderById(@PathVariable Long id, HttpSession session) {
+    public ResponseEntity<OrderDTO> getOrderById(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "") List<String> include,
+            HttpSession session) {
         Long loggedInUserId = (Long) session.getAttribute("userId");
-
-        OrderDTO order = orderService.getOrderById(id);
-
         String userRole = (String) session.getAttribute("userRole");
-        if (!userRole.equals("ADMIN") && !order.getUserId().equals(loggedInUserId)) {
-            throw new UnauthorizedException("You can only view your own orders");
-        }
 
+        // Ownership is enforced by the detail query itself
+        Long ownerId = userRole.equals("ADMIN") ? null : loggedInUserId;
+
+        OrderDTO order = orderService.getOrderDetail(id, ownerId,
+                include.contains("items"), include.contains("payments"));
         return ResponseEntity.ok(order);
     }
 
     @GetMapping("/user/{userId}")
     @RequireAuth
-    public ResponseEntity<List<OrderDTO>> getOrdersByUserId(@PathVariable Long userId, HttpSession session) {
+    public ResponseEntity<CursorPage<OrderDTO>> getOrdersByUserId(
+            @PathVariable Long userId,
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            HttpSession session) {
         Long loggedInUserId = (Long) session.getAttribute("userId");
 
         String userRole = (String) session.getAttribute("userRole");
@@ -56,14 +150,41 @@ public class OrderController {
             throw new UnauthorizedException("You can only view your own orders");
         }
 
-        List<OrderDTO> orders = orderService.getOrdersByUserId(userId);
+        OrderSearchCriteria criteria = OrderSearchCriteria.builder()
+                .userId(userId)
+                .status(status)
+                .fromDate(from)
+                .toDate(to)
+                .minAmount(minAmount)
+                .maxAmount(maxAmount)
+                .build();
+
+        CursorPage<OrderDTO> orders = orderService.getOrders(criteria, cursor, size, includeTotal);
         return ResponseEntity.ok(orders);
     }
 
     @GetMapping
     @RequireRole("ADMIN")
-    public ResponseEntity<List<OrderDTO>> getAllOrders() {
-        List<OrderDTO> orders = orderService.getAllOrders();
+    public ResponseEntity<CursorPage<OrderDTO>> getAllOrders(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        OrderSearchCriteria criteria = OrderSearchCriteria.builder()
+                .userId(userId)
+                .status(status)
+                .fromDate(from)
+                .toDate(to)
+                .minAmount(minAmount)
+                .maxAmount(maxAmount)
+                .build();
+
+        CursorPage<OrderDTO> orders = orderService.getOrders(criteria, cursor, size, includeTotal);
         return ResponseEntity.ok(orders);
     }
 
@@ -89,9 +210,6 @@ public class OrderController {
         return ResponseEntity.ok(canceledOrder);
     }
 
-    public static class CreateOrderRequest {
-        public Long userId;
-        public List<OrderService.OrderItemRequest> items;
-        public String couponCode;
+    public static class CreateOrderRequest extends OrderService.OrderRequest {
     }
 }
@@ -0,0 +1,39 @@
+package com.smartshop.controller;
+
+import com.smartshop.annotation.RequireRole;
+import com.smartshop.enums.OutboxEventType;
+import com.smartshop.service.OutboxDispatcher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/outbox")
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxController {
+
+    private final OutboxDispatcher outboxDispatcher;
+
+    /**
+     * Delivers the events created since the given time to the subscribers again, e.g. after fixing a subscriber.
+     * Only events still within the retention period can be replayed.
+     */
+    @PostMapping("/replay")
+    @RequireRole("ADMIN")
+    public ResponseEntity<Map<String, Integer>> replay(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) OutboxEventType type) {
+        log.info("Replaying outbox events since {} (type: {})", since, type);
+        int replayed = outboxDispatcher.replay(since, type);
+        return ResponseEntity.ok(Map.of("replayed", replayed));
+    }
+}
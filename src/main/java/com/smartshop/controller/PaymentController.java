@@ -1,20 +1,38 @@
 package com.smartshop.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.smartshop.annotation.RequireAuth;
 import com.smartshop.annotation.RequireRole;
+import com.smartshop.dto.CursorPage;
 import com.smartshop.dto.OrderDTO;
 import com.smartshop.dto.PaymentDTO;
-import com.smartshop.exception.UnauthorizedException;
+import com.smartshop.dto.PaymentImportResult;
+import com.smartshop.dto.PaymentListItem;
+import com.smartshop.dto.PaymentSearchCriteria;
+import com.smartshop.dto.PaymentSummary;
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
 import com.smartshop.service.OrderService;
+import com.smartshop.service.PaymentImportService;
 import com.smartshop.service.PaymentService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -25,31 +43,51 @@ public class PaymentController {
 
     private final PaymentService paymentService;
     private final OrderService orderService;
+    private final PaymentImportService paymentImportService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @RequireRole("ADMIN")
     public ResponseEntity<PaymentDTO> createPayment(@Valid @RequestBody PaymentDTO payment) {
-        OrderDTO orderDTO = orderService.getOrderById(payment.getOrderId());
-
         log.info("Creating payment for order: {}", payment.getOrderId());
         PaymentDTO createdPayment = paymentService.createPayment(payment);
         return ResponseEntity.status(HttpStatus.CREATED).body(createdPayment);
     }
 
+    /**
+     * Imports a CSV bank statement streamed from the request body.
+     * One NDJSON result line (payment id or error) is written per statement row, as each chunk completes.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    @RequireRole("ADMIN")
+    public void importPayments(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+
+        OutputStream out = response.getOutputStream();
+        ObjectWriter resultWriter = objectMapper.writerFor(PaymentImportResult.class);
+
+        log.info("Importing bank statement");
+        paymentImportService.importStatement(Channels.newChannel(request.getInputStream()), result -> {
+            try {
+                out.write(resultWriter.writeValueAsBytes(result));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
     @GetMapping("/{id}")
     @RequireAuth
     public ResponseEntity<PaymentDTO> getPaymentById(@PathVariable Long id, HttpSession session) {
         Long loggedInUserId = (Long) session.getAttribute("userId");
-
-        PaymentDTO payment = paymentService.getPaymentById(id);
-        OrderDTO order = orderService.getOrderById(payment.getOrderId());
-
         String userRole = (String) session.getAttribute("userRole");
-        if (!userRole.equals("ADMIN") && !order.getUserId().equals(loggedInUserId)) {
-            throw new UnauthorizedException("You can only view payments for your own orders");
-        }
 
         log.info("Fetching payment with id: {}", id);
+        Long ownerId = userRole.equals("ADMIN") ? null : loggedInUserId;
+        PaymentDTO payment = paymentService.getPaymentById(id, ownerId);
         return ResponseEntity.ok(payment);
     }
 
@@ -57,27 +95,53 @@ public class PaymentController {
     @RequireAuth
     public ResponseEntity<List<PaymentDTO>> getPaymentsByOrderId(@PathVariable Long orderId, HttpSession session) {
         Long loggedInUserId = (Long) session.getAttribute("userId");
-
-        OrderDTO order = orderService.getOrderById(orderId);
-
         String userRole = (String) session.getAttribute("userRole");
-        if (!userRole.equals("ADMIN") && !order.getUserId().equals(loggedInUserId)) {
-            throw new UnauthorizedException("You can only view payments for your own orders");
-        }
 
         log.info("Fetching payments for order: {}", orderId);
-        List<PaymentDTO> payments = paymentService.getPaymentsByOrderId(orderId);
-        return ResponseEntity.ok(payments);
+        Long ownerId = userRole.equals("ADMIN") ? null : loggedInUserId;
+        // Checks ownership along the way
+        OrderDTO order = orderService.getOrderDetail(orderId, ownerId, false, true);
+        return ResponseEntity.ok(order.getPayments());
     }
 
     @GetMapping
     @RequireRole("ADMIN")
-    public ResponseEntity<List<PaymentDTO>> getAllPayments() {
-        log.info("Fetching all payments");
-        List<PaymentDTO> payments = paymentService.getAllPayments();
+    public ResponseEntity<CursorPage<PaymentListItem>> getAllPayments(
+            @RequestParam(required = false) PaymentMethod method,
+            @RequestParam(required = false) PaymentStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueTo,
+            @RequestParam(required = false) String bankName,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        PaymentSearchCriteria criteria = buildCriteria(method, status, from, to, dueFrom, dueTo, bankName);
+
+        CursorPage<PaymentListItem> payments = paymentService.getPayments(criteria, cursor, size, includeTotal);
         return ResponseEntity.ok(payments);
     }
 
+    /**
+     * Count and total amount per payment method and status, over the same filters as the listing.
+     */
+    @GetMapping("/summary")
+    @RequireRole("ADMIN")
+    public ResponseEntity<List<PaymentSummary>> getPaymentSummary(
+            @RequestParam(required = false) PaymentMethod method,
+            @RequestParam(required = false) PaymentStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueTo,
+            @RequestParam(required = false) String bankName) {
+        PaymentSearchCriteria criteria = buildCriteria(method, status, from, to, dueFrom, dueTo, bankName);
+
+        List<PaymentSummary> summary = paymentService.getPaymentSummary(criteria);
+        return ResponseEntity.ok(summary);
+    }
+
     @PutMapping("/{id}")
     @RequireRole("ADMIN")
     public ResponseEntity<PaymentDTO> updatePayment(@PathVariable Long id, @Valid @RequestBody PaymentDTO payment) {
@@ -93,4 +157,17 @@ public class PaymentController {
         paymentService.deletePayment(id);
         return ResponseEntity.noContent().build();
     }
+
+    private PaymentSearchCriteria buildCriteria(PaymentMethod method, PaymentStatus status, LocalDate from,
+                                                LocalDate to, LocalDate dueFrom, LocalDate dueTo, String bankName) {
+        return PaymentSearchCriteria.builder()
+                .method(method)
+                .status(status)
+                .fromDate(from)
+                .toDate(to)
+                .dueFrom(dueFrom)
+                .dueTo(dueTo)
+                .bankName(bankName)
+                .build();
+    }
 }
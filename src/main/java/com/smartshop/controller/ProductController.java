@@ -2,7 +2,9 @@ package com.smartshop.controller;
 
 import com.smartshop.annotation.RequireRole;
 import com.smartshop.dto.ProductDTO;
+import com.smartshop.dto.RelatedProduct;
 import com.smartshop.service.ProductService;
+import com.smartshop.service.RelatedProductsService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -13,12 +15,15 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/products")
 @RequiredArgsConstructor
 public class ProductController {
 
     private final ProductService productService;
+    private final RelatedProductsService relatedProductsService;
 
     @PostMapping
     @RequireRole("ADMIN")
@@ -33,6 +38,16 @@ public class ProductController {
         return ResponseEntity.ok(product);
     }
 
+    /**
+     * Products most often ordered together with this one, for reorder suggestions.
+     */
+    @GetMapping("/{id}/related")
+    public ResponseEntity<List<RelatedProduct>> getRelatedProducts(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(relatedProductsService.getRelatedProducts(id, limit));
+    }
+
     @GetMapping
     public ResponseEntity<Page<ProductDTO>> getAllProducts(
             @RequestParam(defaultValue = "0") int page,
@@ -0,0 +1,59 @@
+package com.smartshop.controller;
+
+import com.smartshop.annotation.RequireRole;
+import com.smartshop.dto.ReceivablesCriteria;
+import com.smartshop.enums.ReceivablesGrouping;
+import com.smartshop.service.ReceivablesReportService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/reports")
+@RequiredArgsConstructor
+@Slf4j
+public class ReportController {
+
+    private final ReceivablesReportService receivablesReportService;
+
+    /**
+     * Streams outstanding balances as NDJSON, per client (default), per tier or in total,
+     * each split into aging buckets (0-30, 31-60, 61-90, over 90 days before asOf).
+     */
+    @GetMapping("/receivables")
+    @RequireRole("ADMIN")
+    public void getReceivables(
+            @RequestParam(defaultValue = "client") String groupBy,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            HttpServletResponse response) throws IOException {
+        ReceivablesGrouping grouping = ReceivablesGrouping.valueOf(groupBy.toUpperCase());
+        if (from != null && asOf != null && from.isAfter(asOf)) {
+            throw new IllegalArgumentException("from (" + from + ") must not be after asOf (" + asOf + ")");
+        }
+
+        ReceivablesCriteria criteria = ReceivablesCriteria.builder()
+                .grouping(grouping)
+                .asOf(asOf)
+                .fromDate(from)
+                .build();
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        log.info("Reporting receivables by {} (asOf: {}, from: {})", grouping, asOf, from);
+        receivablesReportService.exportReceivables(criteria, response.getOutputStream());
+    }
+}
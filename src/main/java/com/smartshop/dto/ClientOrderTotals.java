@@ -0,0 +1,23 @@
+package com.smartshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Order count, outstanding amount and order date range of one client, aggregated in SQL.
+ * The dates are null when the client has no orders.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClientOrderTotals {
+
+    private Long orderCount;
+    private BigDecimal totalRemaining;
+    private LocalDateTime firstOrderDate;
+    private LocalDateTime lastOrderDate;
+}
@@ -0,0 +1,25 @@
+package com.smartshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> items;
+
+    // Opaque cursor to pass back for the next page, null on the last page
+    private String nextCursor;
+
+    private boolean hasMore;
+
+    // Only computed when the caller asks for it
+    private Long totalCount;
+}
@@ -0,0 +1,22 @@
+package com.smartshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderBatchResult {
+
+    // Position of the order in the submitted batch
+    private Integer index;
+
+    private Boolean success;
+
+    private Long orderId;
+
+    private String error;
+}
@@ -1,5 +1,6 @@
 package com.smartshop.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.smartshop.enums.OrderStatus;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -9,6 +10,7 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Builder
@@ -42,6 +44,13 @@ public class OrderDTO {
     // Nested DTO for output
     private CouponDTO coupon;
 
+    // Only filled when requested with include=items / include=payments
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<OrderItemDTO> items;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<PaymentDTO> payments;
+
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
@@ -0,0 +1,29 @@
+package com.smartshop.dto;
+
+import com.smartshop.enums.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderExport {
+
+    private Long orderId;
+    private Long userId;
+    private LocalDateTime orderDate;
+    private OrderStatus status;
+    private BigDecimal subtotalHT;
+    private BigDecimal totalTTC;
+    private BigDecimal remainingAmount;
+    private Long couponId;
+
+    private List<OrderItemDTO> items;
+}
@@ -0,0 +1,34 @@
+package com.smartshop.dto;
+
+import com.smartshop.enums.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One order item joined with its order, as read by the export cursor.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderExportRow {
+
+    private Long orderId;
+    private Long userId;
+    private LocalDateTime orderDate;
+    private OrderStatus status;
+    private BigDecimal subtotalHT;
+    private BigDecimal totalTTC;
+    private BigDecimal remainingAmount;
+    private Long couponId;
+
+    private Long itemId;
+    private Long productId;
+    private String productName;
+    private Integer quantity;
+    private BigDecimal unitPrice;
+    private BigDecimal lineTotal;
+}
@@ -0,0 +1,29 @@
+package com.smartshop.dto;
+
+import com.smartshop.enums.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSearchCriteria {
+
+    private Long userId;
+
+    private OrderStatus status;
+
+    private LocalDateTime fromDate;
+
+    private LocalDateTime toDate;
+
+    private BigDecimal minAmount;
+
+    private BigDecimal maxAmount;
+}
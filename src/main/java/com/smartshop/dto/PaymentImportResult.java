@@ -0,0 +1,28 @@
+package com.smartshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentImportResult {
+
+    // Line of the statement the result belongs to, header included
+    private Integer line;
+
+    private Boolean success;
+
+    private String reference;
+
+    private Long orderId;
+
+    private Long paymentId;
+
+    private Integer paymentNumber;
+
+    private String error;
+}
@@ -0,0 +1,31 @@
+package com.smartshop.dto;
+
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Payment columns selected straight into the listing, without loading Payment entities.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentListItem {
+
+    private Long id;
+    private Long orderId;
+    private Integer paymentNumber;
+    private BigDecimal amount;
+    private PaymentMethod paymentMethod;
+    private PaymentStatus status;
+    private LocalDate paymentDate;
+    private LocalDate dueDate;
+    private LocalDate collectionDate;
+    private String reference;
+    private String bankName;
+}
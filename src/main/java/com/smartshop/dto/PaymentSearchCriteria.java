@@ -0,0 +1,33 @@
+package com.smartshop.dto;
+
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentSearchCriteria {
+
+    private PaymentMethod method;
+
+    private PaymentStatus status;
+
+    // Payment date range, both ends inclusive
+    private LocalDate fromDate;
+
+    private LocalDate toDate;
+
+    // Due date range, both ends inclusive
+    private LocalDate dueFrom;
+
+    private LocalDate dueTo;
+
+    private String bankName;
+}
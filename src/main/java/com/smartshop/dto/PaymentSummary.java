@@ -0,0 +1,23 @@
+package com.smartshop.dto;
+
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Number and total amount of the payments sharing a method and a status.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentSummary {
+
+    private PaymentMethod paymentMethod;
+    private PaymentStatus status;
+    private Long count;
+    private BigDecimal totalAmount;
+}
@@ -0,0 +1,22 @@
+package com.smartshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Stock of a product next to the total quantity still demanded by unpaid pending orders.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingDemand {
+
+    private Long productId;
+    private Integer stock;
+    private Long demanded;
+
+    public boolean exceedsStock() {
+        return demanded > stock;
+    }
+}
@@ -0,0 +1,24 @@
+package com.smartshop.dto;
+
+import com.smartshop.enums.ReceivablesGrouping;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceivablesCriteria {
+
+    private ReceivablesGrouping grouping;
+
+    // Orders placed after this day are left out; aging is measured from it
+    private LocalDate asOf;
+
+    // Optional: orders placed before this day are left out
+    private LocalDate fromDate;
+}
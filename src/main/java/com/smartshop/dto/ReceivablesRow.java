@@ -0,0 +1,62 @@
+package com.smartshop.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.smartshop.enums.CustomerTier;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Outstanding amounts of one client, one tier or all clients, split by how old the orders are.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReceivablesRow {
+
+    private Long clientId;
+    private String clientName;
+    private CustomerTier tier;
+    private Long orderCount;
+
+    // Aging buckets, by days between the order date and the as-of date
+    private BigDecimal current;
+    private BigDecimal days31To60;
+    private BigDecimal days61To90;
+    private BigDecimal over90Days;
+
+    private BigDecimal total;
+
+    // Per-client row
+    public ReceivablesRow(Long clientId, String clientName, CustomerTier tier, Long orderCount, BigDecimal current,
+                          BigDecimal days31To60, BigDecimal days61To90, BigDecimal over90Days) {
+        this.clientId = clientId;
+        this.clientName = clientName;
+        this.tier = tier;
+        this.orderCount = orderCount;
+        this.current = zeroIfNull(current);
+        this.days31To60 = zeroIfNull(days31To60);
+        this.days61To90 = zeroIfNull(days61To90);
+        this.over90Days = zeroIfNull(over90Days);
+        this.total = this.current.add(this.days31To60).add(this.days61To90).add(this.over90Days);
+    }
+
+    // Per-tier row
+    public ReceivablesRow(CustomerTier tier, Long orderCount, BigDecimal current, BigDecimal days31To60,
+                          BigDecimal days61To90, BigDecimal over90Days) {
+        this(null, null, tier, orderCount, current, days31To60, days61To90, over90Days);
+    }
+
+    // Row over all clients
+    public ReceivablesRow(Long orderCount, BigDecimal current, BigDecimal days31To60, BigDecimal days61To90,
+                          BigDecimal over90Days) {
+        this(null, null, null, orderCount, current, days31To60, days61To90, over90Days);
+    }
+
+    private static BigDecimal zeroIfNull(BigDecimal amount) {
+        return amount != null ? amount : BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,26 @@
+package com.smartshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * A product frequently bought together with another one.
+ * Confidence is the share of the other product's orders that also contain this one.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RelatedProduct {
+
+    private Long productId;
+    private String name;
+    private String category;
+    private BigDecimal unitPrice;
+    private Long ordersTogether;
+    private BigDecimal confidence;
+}
@@ -0,0 +1,51 @@
+package com.smartshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+
+/**
+ * Sales of one product, category, tier or of the whole shop over one day, week or month.
+ * Amounts exclude tax; revenue is what remains of gross sales after discounts.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesBucket {
+
+    // First day of the bucket
+    private LocalDate period;
+    private String key;
+    private String label;
+
+    private Long orders;
+    private Long canceledOrders;
+    private Long quantity;
+
+    private BigDecimal grossSales;
+    private BigDecimal discounts;
+    private BigDecimal revenue;
+    private BigDecimal averageBasket;
+    private BigDecimal paid;
+
+    public SalesBucket(LocalDate period, String key, String label, Long orders, Long canceledOrders, Long quantity,
+                       BigDecimal grossSales, BigDecimal discounts, BigDecimal paid) {
+        this.period = period;
+        this.key = key;
+        this.label = label;
+        this.orders = orders;
+        this.canceledOrders = canceledOrders;
+        this.quantity = quantity;
+        this.grossSales = grossSales;
+        this.discounts = discounts;
+        this.revenue = grossSales.subtract(discounts);
+        this.averageBasket = orders > 0
+                ? revenue.divide(BigDecimal.valueOf(orders), 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
+        this.paid = paid;
+    }
+}
@@ -0,0 +1,26 @@
+package com.smartshop.dto;
+
+import com.smartshop.enums.CustomerTier;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Outcome of re-tiering one id range of clients.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TierRecalculationChunk {
+
+    private int scanned;
+
+    // Clients moved (or, in a dry run, to be moved) to each tier
+    @Builder.Default
+    private Map<CustomerTier, Integer> upgrades = new EnumMap<>(CustomerTier.class);
+}
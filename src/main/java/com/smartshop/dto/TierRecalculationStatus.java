@@ -0,0 +1,43 @@
+package com.smartshop.dto;
+
+import com.smartshop.enums.CustomerTier;
+import com.smartshop.enums.JobState;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Progress of a loyalty tier recalculation run, complete once the state is no longer RUNNING.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TierRecalculationStatus {
+
+    private JobState state;
+
+    private Boolean dryRun;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    private Integer totalChunks;
+
+    private Integer completedChunks;
+
+    private Integer failedChunks;
+
+    private Long scannedClients;
+
+    private Long upgradedClients;
+
+    private Map<CustomerTier, Long> upgradesByTier;
+
+    private String error;
+}
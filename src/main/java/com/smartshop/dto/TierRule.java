@@ -0,0 +1,33 @@
+package com.smartshop.dto;
+
+import com.smartshop.enums.CustomerTier;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Acquisition thresholds and order discount of one loyalty tier.
+ * A client reaches the tier with minOrders confirmed orders OR minSpending in payments;
+ * orders of at least discountThreshold then get discountRate off their subtotal.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TierRule {
+
+    @NotNull(message = "Tier is required")
+    private CustomerTier tier;
+
+    private BigDecimal minSpending;
+
+    private Integer minOrders;
+
+    private BigDecimal discountThreshold;
+
+    private BigDecimal discountRate;
+}
@@ -0,0 +1,24 @@
+package com.smartshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * A product's place in a sales ranking. Revenue excludes tax and the product's share of order discounts.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopProduct {
+
+    private Integer rank;
+    private Long productId;
+    private String productName;
+    private Long quantity;
+    private BigDecimal revenue;
+}
@@ -40,6 +40,9 @@ public class UserDTO {
 
     private CustomerTier loyaltyTier;
 
+    // True while a payment or confirmation has not been reflected in the tier yet; read-only
+    private Boolean tierEvaluationPending;
+
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
@@ -1,11 +1,13 @@
 package com.smartshop.entity;
 
+import com.smartshop.enums.CustomerTier;
 import com.smartshop.enums.OrderStatus;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -13,7 +15,11 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_order_date_id", columnList = "order_date, id"),
+        @Index(name = "idx_orders_user_order_date_id", columnList = "user_id, order_date, id"),
+        @Index(name = "idx_orders_status_order_date_id", columnList = "status, order_date, id")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -21,7 +27,8 @@ import java.time.LocalDateTime;
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "user_id", nullable = false)
@@ -47,6 +54,26 @@ public class Order {
     @Column(name = "coupon_id")
     private Long couponId;
 
+    // Loyalty and coupon discounts granted at checkout, and the client's tier at that time;
+    // null on orders placed before they were recorded
+    @Column(name = "discount_amount", precision = 10, scale = 2)
+    private BigDecimal discountAmount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "customer_tier")
+    private CustomerTier customerTier;
+
+    // Number of payments recorded so far; the next payment gets paymentCount + 1
+    @Column(name = "payment_count", nullable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private Integer paymentCount = 0;
+
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private Long version;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
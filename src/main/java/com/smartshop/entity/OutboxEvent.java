@@ -0,0 +1,64 @@
+package com.smartshop.entity;
+
+import com.smartshop.enums.OutboxEventType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An order or payment state change, written in the same transaction as the change itself
+ * and delivered to {@link com.smartshop.service.OutboxSubscriber}s once committed.
+ * Delivered events are kept until purged, so they can be replayed.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_events_pending", columnList = "delivered_at, available_at, id"),
+        @Index(name = "idx_outbox_events_order_id_id", columnList = "order_id, id"),
+        @Index(name = "idx_outbox_events_created_at", columnList = "created_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    // Ids are assigned at insert, not at commit, so they do not follow commit order across transactions.
+    // Publishers of one order's events hold the order's row lock, which orders that order's ids;
+    // see OutboxEventRepository#lockDueEvents
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_events_seq")
+    @SequenceGenerator(name = "outbox_events_seq", sequenceName = "outbox_events_seq", allocationSize = 1)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false)
+    private OutboxEventType eventType;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    // JSON object; its fields depend on the event type
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // The event is not handed out before this time: set while a dispatcher holds it, and after a failure
+    @Column(name = "available_at", nullable = false)
+    private LocalDateTime availableAt;
+
+    @Column(name = "delivered_at")
+    private LocalDateTime deliveredAt;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+}
@@ -14,7 +14,15 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_payments_order_id_payment_number", columnNames = {"order_id", "payment_number"})
+}, indexes = {
+        @Index(name = "idx_payments_status_due_date_id", columnList = "status, due_date, id"),
+        @Index(name = "idx_payments_payment_date_id", columnList = "payment_date, id"),
+        @Index(name = "idx_payments_status_payment_date_id", columnList = "status, payment_date, id"),
+        @Index(name = "idx_payments_method_payment_date_id", columnList = "payment_method, payment_date, id"),
+        @Index(name = "idx_payments_bank_name_payment_date_id", columnList = "bank_name, payment_date, id")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -22,7 +30,8 @@ import java.time.LocalDateTime;
 public class Payment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payments_seq")
+    @SequenceGenerator(name = "payments_seq", sequenceName = "payments_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "order_id", nullable = false)
@@ -0,0 +1,86 @@
+package com.smartshop.entity;
+
+import com.smartshop.enums.SalesDimension;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Sales of one day for one product, category, tier or for the whole shop.
+ * Orders count on the day they were placed, payments on the day they were made.
+ * The week and month the day belongs to are stored with it, so coarser buckets are a plain GROUP BY.
+ */
+@Entity
+@Table(name = "sales_rollups", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_sales_rollups_day_dimension_key",
+                columnNames = {"bucket_date", "dimension", "dimension_key"})
+}, indexes = {
+        @Index(name = "idx_sales_rollups_dimension_bucket_date", columnList = "dimension, bucket_date")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sales_rollups_seq")
+    @SequenceGenerator(name = "sales_rollups_seq", sequenceName = "sales_rollups_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "bucket_date", nullable = false)
+    private LocalDate bucketDate;
+
+    // Monday of the ISO week
+    @Column(name = "week_start", nullable = false)
+    private LocalDate weekStart;
+
+    @Column(name = "month_start", nullable = false)
+    private LocalDate monthStart;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private SalesDimension dimension;
+
+    // Product id, category, tier name, or "all" for the whole shop
+    @Column(name = "dimension_key", nullable = false)
+    private String dimensionKey;
+
+    // Product name for products, the key otherwise
+    @Column(nullable = false)
+    private String label;
+
+    // Orders placed that day and still pending or confirmed
+    @Column(nullable = false)
+    @Builder.Default
+    private Long orders = 0L;
+
+    // Orders placed that day and since canceled or rejected
+    @Column(name = "canceled_orders", nullable = false)
+    @Builder.Default
+    private Long canceledOrders = 0L;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long quantity = 0L;
+
+    // Before discounts and tax
+    @Column(name = "gross_sales", nullable = false, precision = 14, scale = 2)
+    @Builder.Default
+    private BigDecimal grossSales = BigDecimal.ZERO;
+
+    // Product and category rows get their share of each order's discount, pro rata to their line totals
+    @Column(nullable = false, precision = 14, scale = 2)
+    @Builder.Default
+    private BigDecimal discounts = BigDecimal.ZERO;
+
+    // Payments made that day; only kept on total and tier rows
+    @Column(nullable = false, precision = 14, scale = 2)
+    @Builder.Default
+    private BigDecimal paid = BigDecimal.ZERO;
+}
@@ -0,0 +1,23 @@
+package com.smartshop.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Single row locked by every rollup refresh, so refreshes running on different instances
+ * cannot interleave their deletes and inserts of the same day.
+ */
+@Entity
+@Table(name = "sales_rollup_lock")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesRollupLock {
+
+    public static final long ID = 1L;
+
+    @Id
+    private Long id;
+}
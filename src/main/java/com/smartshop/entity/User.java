@@ -7,13 +7,20 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_tier_evaluation_pending", columnList = "tier_evaluation_pending, id")
+})
+// Only changed columns are written, so saving a loaded user never overwrites counters updated concurrently
+@DynamicUpdate
 @Data
 @Builder
 @NoArgsConstructor
@@ -46,6 +53,23 @@ public class User {
     @Column(name = "loyalty_tier")
     private CustomerTier loyaltyTier;
 
+    // Sum of all payments on the user's orders, kept up to date by atomic UPDATEs
+    @Column(name = "total_spent", nullable = false, precision = 12, scale = 2)
+    @ColumnDefault("0")
+    @Builder.Default
+    private BigDecimal totalSpent = BigDecimal.ZERO;
+
+    @Column(name = "confirmed_order_count", nullable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private Integer confirmedOrderCount = 0;
+
+    // Set with every counter change and cleared once the tier has been evaluated against the new counters
+    @Column(name = "tier_evaluation_pending", nullable = false)
+    @ColumnDefault("false")
+    @Builder.Default
+    private Boolean tierEvaluationPending = false;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,12 @@
+package com.smartshop.enums;
+
+public enum OutboxEventType {
+    ORDER_CREATED,
+    ORDER_CONFIRMED,
+    ORDER_CANCELED,
+    ORDER_REJECTED,
+    PAYMENT_RECORDED,
+    PAYMENT_COLLECTED,
+    PAYMENT_UPDATED,
+    PAYMENT_DELETED
+}
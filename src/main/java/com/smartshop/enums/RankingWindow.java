@@ -0,0 +1,35 @@
+package com.smartshop.enums;
+
+/**
+ * Trailing periods the product rankings cover, in whole hours up to the current one.
+ */
+public enum RankingWindow {
+    LAST_24H("24h", 24),
+    LAST_7D("7d", 7 * 24),
+    LAST_30D("30d", 30 * 24);
+
+    private final String label;
+    private final int hours;
+
+    RankingWindow(String label, int hours) {
+        this.label = label;
+        this.hours = hours;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getHours() {
+        return hours;
+    }
+
+    public static RankingWindow fromLabel(String label) {
+        for (RankingWindow window : values()) {
+            if (window.label.equalsIgnoreCase(label)) {
+                return window;
+            }
+        }
+        throw new IllegalArgumentException("Unknown ranking window: " + label + " (expected 24h, 7d or 30d)");
+    }
+}
@@ -0,0 +1,8 @@
+package com.smartshop.enums;
+
+public enum SalesDimension {
+    TOTAL,
+    PRODUCT,
+    CATEGORY,
+    TIER
+}
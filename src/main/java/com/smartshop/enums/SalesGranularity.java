@@ -0,0 +1,7 @@
+package com.smartshop.enums;
+
+public enum SalesGranularity {
+    DAY,
+    WEEK,
+    MONTH
+}
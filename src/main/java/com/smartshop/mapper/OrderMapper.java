@@ -12,15 +12,25 @@ import java.util.List;
 public interface OrderMapper {
 
     @Mapping(target = "coupon", ignore = true)
+    @Mapping(target = "items", ignore = true)
+    @Mapping(target = "payments", ignore = true)
     OrderDTO toDTO(Order order);
 
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "paymentCount", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "discountAmount", ignore = true)
+    @Mapping(target = "customerTier", ignore = true)
     Order toEntity(OrderDTO orderDTO);
 
     List<OrderDTO> toDTOList(List<Order> orders);
 
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "paymentCount", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "discountAmount", ignore = true)
+    @Mapping(target = "customerTier", ignore = true)
     void updateEntityFromDTO(OrderDTO orderDTO, @MappingTarget Order order);
 }
@@ -18,5 +18,7 @@ public interface PaymentMapper {
     List<PaymentDTO> toDTOList(List<Payment> payments);
 
     @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "paymentNumber", ignore = true)
+    @Mapping(target = "orderId", ignore = true)
     void updateEntityFromDTO(PaymentDTO paymentDTO, @MappingTarget Payment payment);
 }
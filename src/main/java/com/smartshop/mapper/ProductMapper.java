@@ -12,9 +12,11 @@ public interface ProductMapper {
 
     ProductDTO toDTO(Product product);
 
+    @Mapping(target = "version", ignore = true)
     Product toEntity(ProductDTO productDTO);
 
     List<ProductDTO> toDTOList(List<Product> products);
 
+    @Mapping(target = "version", ignore = true)
     void updateEntityFromDTO(ProductDTO productDTO, @MappingTarget Product product);
 }
@@ -12,9 +12,15 @@ public interface UserMapper {
 
     UserDTO toDTO(User user);
 
+    @Mapping(target = "tierEvaluationPending", ignore = true)
+    @Mapping(target = "totalSpent", ignore = true)
+    @Mapping(target = "confirmedOrderCount", ignore = true)
     User toEntity(UserDTO userDTO);
 
     List<UserDTO> toDTOList(List<User> users);
 
+    @Mapping(target = "tierEvaluationPending", ignore = true)
+    @Mapping(target = "totalSpent", ignore = true)
+    @Mapping(target = "confirmedOrderCount", ignore = true)
     void updateEntityFromDTO(UserDTO userDTO, @MappingTarget User user);
 }
@@ -2,12 +2,36 @@ package com.smartshop.repository;
 
 import com.smartshop.entity.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
 
     List<OrderItem> findByOrderId(Long orderId);
+
+    List<OrderItem> findByOrderIdOrderByIdAsc(Long orderId);
+
+    /**
+     * Lines of the given orders with what the product ranking needs, as
+     * [orderId, orderDate, OrderStatus, productId, quantity, line total, share of the order discount].
+     */
+    @Query("SELECT o.id, o.orderDate, o.status, i.productId, i.quantity, i.lineTotal, " +
+            SalesRollupRepository.LINE_DISCOUNT + " " +
+            "FROM OrderItem i JOIN Order o ON o.id = i.orderId " +
+            "WHERE o.id IN :orderIds " +
+            "ORDER BY o.id, i.id")
+    List<Object[]> findProductSalesByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * Products of the orders with ids in [fromId, toId), as [orderId, productId] rows grouped by order.
+     */
+    @Query("SELECT i.orderId, i.productId FROM OrderItem i " +
+            "WHERE i.orderId >= :fromId AND i.orderId < :toId " +
+            "ORDER BY i.orderId")
+    List<Object[]> findProductIdsByOrderIdRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
 }
@@ -1,18 +1,232 @@
 package com.smartshop.repository;
 
+import com.smartshop.dto.ClientOrderTotals;
+import com.smartshop.dto.ClientStatistics;
+import com.smartshop.dto.OrderExportRow;
+import com.smartshop.dto.PendingDemand;
+import com.smartshop.dto.ReceivablesRow;
 import com.smartshop.entity.Order;
 import com.smartshop.enums.OrderStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order> {
 
     List<Order> findByUserId(Long userId);
 
     List<Order> findByStatus(OrderStatus status);
 
     List<Order> findByUserIdAndStatus(Long userId, OrderStatus status);
+
+    /**
+     * Records a payment on the order: bumps the payment counter and takes the amount off the remaining amount.
+     * Affects no row when the amount exceeds what is left to pay.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.paymentCount = o.paymentCount + 1, " +
+            "o.remainingAmount = o.remainingAmount - :amount, o.version = o.version + 1, " +
+            "o.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE o.id = :id AND o.remainingAmount >= :amount")
+    int applyPayment(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    /**
+     * Locks the orders' rows until the transaction ends, in id order so that concurrent lockers cannot deadlock.
+     * Publishers of an order's events that change nothing on the order take it first, see
+     * {@link OutboxEventRepository#lockDueEvents}.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o.id FROM Order o WHERE o.id IN :ids ORDER BY o.id")
+    List<Long> lockByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT o.paymentCount FROM Order o WHERE o.id = :id")
+    int findPaymentCountById(@Param("id") Long id);
+
+    @Query("SELECT o.userId FROM Order o WHERE o.id = :id")
+    Optional<Long> findUserIdById(@Param("id") Long id);
+
+    @Query("SELECT DISTINCT o.userId FROM Order o WHERE o.id IN :ids")
+    List<Long> findUserIdsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT MAX(o.id) FROM Order o")
+    Long findMaxId();
+
+    @Query("SELECT o.orderDate FROM Order o WHERE o.id IN :ids")
+    List<LocalDateTime> findOrderDatesByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Ids of the pending and confirmed orders placed since the given time, after the given id, in id order.
+     */
+    @Query("SELECT o.id FROM Order o " +
+            "WHERE o.orderDate >= :since AND o.id > :afterId AND " + SalesRollupRepository.BOOKED + " " +
+            "ORDER BY o.id")
+    List<Long> findBookedIdsSince(@Param("since") LocalDateTime since, @Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT new com.smartshop.dto.ClientOrderTotals(COUNT(o.id), COALESCE(SUM(o.remainingAmount), 0), " +
+            "MIN(o.orderDate), MAX(o.orderDate)) " +
+            "FROM Order o WHERE o.userId = :userId")
+    ClientOrderTotals findTotalsByUserId(@Param("userId") Long userId);
+
+    /**
+     * Number of orders of the user per status, as [OrderStatus, Long] rows. Statuses without orders are not returned.
+     */
+    @Query("SELECT o.status, COUNT(o.id) FROM Order o WHERE o.userId = :userId GROUP BY o.status")
+    List<Object[]> countByStatusForUser(@Param("userId") Long userId);
+
+    /**
+     * The user's latest orders, newest first.
+     */
+    @Query("SELECT new com.smartshop.dto.ClientStatistics$OrderSummary(o.id, o.orderDate, o.totalTTC, o.status) " +
+            "FROM Order o WHERE o.userId = :userId " +
+            "ORDER BY o.orderDate DESC, o.id DESC")
+    List<ClientStatistics.OrderSummary> findRecentSummariesByUserId(@Param("userId") Long userId, Limit limit);
+
+    /**
+     * Sets the payment counter of orders created before it existed from their highest payment number.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Order o SET o.paymentCount = " +
+            "(SELECT MAX(p.paymentNumber) FROM Payment p WHERE p.orderId = o.id) " +
+            "WHERE o.paymentCount = 0 AND EXISTS (SELECT p.id FROM Payment p WHERE p.orderId = o.id)")
+    int backfillPaymentCounts();
+
+    /**
+     * Stock demanded by unpaid orders with the given status, per product.
+     * Products nobody is waiting for are not returned.
+     */
+    @Query("SELECT new com.smartshop.dto.PendingDemand(p.id, p.stock, SUM(i.quantity)) " +
+            "FROM OrderItem i JOIN Order o ON o.id = i.orderId JOIN Product p ON p.id = i.productId " +
+            "WHERE i.productId IN :productIds AND o.status = :status " +
+            "AND NOT EXISTS (SELECT pay.id FROM Payment pay WHERE pay.orderId = o.id) " +
+            "GROUP BY p.id, p.stock")
+    List<PendingDemand> findPendingDemand(@Param("productIds") Collection<Long> productIds,
+                                          @Param("status") OrderStatus status);
+
+    /**
+     * Unpaid orders with the given status that need more of one of the given products than is in stock.
+     */
+    @Query("SELECT DISTINCT o.id FROM Order o " +
+            "JOIN OrderItem i ON i.orderId = o.id JOIN Product p ON p.id = i.productId " +
+            "WHERE i.productId IN :productIds AND o.status = :status " +
+            "AND NOT EXISTS (SELECT pay.id FROM Payment pay WHERE pay.orderId = o.id) " +
+            "GROUP BY o.id, p.id, p.stock " +
+            "HAVING SUM(i.quantity) > p.stock")
+    List<Long> findUnfulfillableOrderIds(@Param("productIds") Collection<Long> productIds,
+                                         @Param("status") OrderStatus status);
+
+    /**
+     * Locks the given orders that are still unpaid and have the given status, in id order, and returns them.
+     * The locks hold until the transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids AND o.status = :status AND o.paymentCount = 0 ORDER BY o.id")
+    List<Order> lockUnpaidByIds(@Param("ids") Collection<Long> ids, @Param("status") OrderStatus status);
+
+    /**
+     * Moves the given orders that are still unpaid from one status to another. Orders paid meanwhile are left alone.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = :newStatus, o.version = o.version + 1, o.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE o.id IN :ids AND o.status = :currentStatus AND o.paymentCount = 0")
+    int updateUnpaidStatus(@Param("ids") Collection<Long> ids, @Param("currentStatus") OrderStatus currentStatus,
+                           @Param("newStatus") OrderStatus newStatus);
+
+    /**
+     * The order, unless a non-null ownerId is given and the order belongs to someone else.
+     */
+    @Query("SELECT o FROM Order o WHERE o.id = :id AND (:ownerId IS NULL OR o.userId = :ownerId)")
+    Optional<Order> findByIdAndOwner(@Param("id") Long id, @Param("ownerId") Long ownerId);
+
+    /**
+     * Order lines placed in [from, to), optionally only those of orders with the given status, in export order.
+     */
+    @Query("SELECT new com.smartshop.dto.OrderExportRow(o.id, o.userId, o.orderDate, o.status, o.subtotalHT, " +
+            "o.totalTTC, o.remainingAmount, o.couponId, i.id, i.productId, i.productName, i.quantity, " +
+            "i.unitPrice, i.lineTotal) " +
+            "FROM Order o JOIN OrderItem i ON i.orderId = o.id " +
+            "WHERE o.orderDate >= :from AND o.orderDate < :to AND (:status IS NULL OR o.status = :status) " +
+            "ORDER BY o.orderDate, o.id, i.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<OrderExportRow> streamExportRows(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                            @Param("status") OrderStatus status);
+
+    // Shared by the receivables queries below
+    String RECEIVABLES_BUCKETS =
+            "SUM(CASE WHEN o.orderDate >= :days30 THEN o.remainingAmount ELSE 0 END), " +
+            "SUM(CASE WHEN o.orderDate < :days30 AND o.orderDate >= :days60 THEN o.remainingAmount ELSE 0 END), " +
+            "SUM(CASE WHEN o.orderDate < :days60 AND o.orderDate >= :days90 THEN o.remainingAmount ELSE 0 END), " +
+            "SUM(CASE WHEN o.orderDate < :days90 THEN o.remainingAmount ELSE 0 END)";
+
+    String RECEIVABLES_FILTER =
+            "WHERE o.status IN :statuses AND o.remainingAmount > 0 " +
+            "AND o.orderDate >= :from AND o.orderDate < :to ";
+
+    /**
+     * Outstanding amounts per client, split into aging buckets by order date, ordered by client id.
+     * Orders in the given statuses with something left to pay and an order date in [from, to) are counted;
+     * a client without a tier yet counts as BASIC.
+     */
+    @Query("SELECT new com.smartshop.dto.ReceivablesRow(u.id, u.name, " +
+            "COALESCE(u.loyaltyTier, com.smartshop.enums.CustomerTier.BASIC), COUNT(o.id), " +
+            RECEIVABLES_BUCKETS + ") " +
+            "FROM Order o JOIN User u ON u.id = o.userId " + RECEIVABLES_FILTER +
+            "GROUP BY u.id, u.name, COALESCE(u.loyaltyTier, com.smartshop.enums.CustomerTier.BASIC) " +
+            "ORDER BY u.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<ReceivablesRow> streamReceivablesByClient(@Param("statuses") Collection<OrderStatus> statuses,
+                                                     @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                                     @Param("days30") LocalDateTime days30,
+                                                     @Param("days60") LocalDateTime days60,
+                                                     @Param("days90") LocalDateTime days90);
+
+    /**
+     * Same amounts as {@link #streamReceivablesByClient}, per loyalty tier.
+     */
+    @Query("SELECT new com.smartshop.dto.ReceivablesRow(" +
+            "COALESCE(u.loyaltyTier, com.smartshop.enums.CustomerTier.BASIC), COUNT(o.id), " +
+            RECEIVABLES_BUCKETS + ") " +
+            "FROM Order o JOIN User u ON u.id = o.userId " + RECEIVABLES_FILTER +
+            "GROUP BY COALESCE(u.loyaltyTier, com.smartshop.enums.CustomerTier.BASIC) " +
+            "ORDER BY COALESCE(u.loyaltyTier, com.smartshop.enums.CustomerTier.BASIC)")
+    List<ReceivablesRow> findReceivablesByTier(@Param("statuses") Collection<OrderStatus> statuses,
+                                               @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                               @Param("days30") LocalDateTime days30,
+                                               @Param("days60") LocalDateTime days60,
+                                               @Param("days90") LocalDateTime days90);
+
+    /**
+     * Same amounts as {@link #streamReceivablesByClient}, over all clients.
+     */
+    @Query("SELECT new com.smartshop.dto.ReceivablesRow(COUNT(o.id), " + RECEIVABLES_BUCKETS + ") " +
+            "FROM Order o " + RECEIVABLES_FILTER)
+    ReceivablesRow findReceivablesTotal(@Param("statuses") Collection<OrderStatus> statuses,
+                                        @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                        @Param("days30") LocalDateTime days30,
+                                        @Param("days60") LocalDateTime days60,
+                                        @Param("days90") LocalDateTime days90);
 }
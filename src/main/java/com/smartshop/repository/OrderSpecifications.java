@@ -0,0 +1,58 @@
+package com.smartshop.repository;
+
+import com.smartshop.dto.OrderSearchCriteria;
+import com.smartshop.entity.Order;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Criteria predicates for order listing. Only the filters that are set end up in the query,
+ * so each combination can use the matching (…, order_date, id) index on the orders table.
+ */
+public final class OrderSpecifications {
+
+    private OrderSpecifications() {
+    }
+
+    public static Specification<Order> matching(OrderSearchCriteria criteria) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (criteria.getUserId() != null) {
+                predicates.add(cb.equal(root.get("userId"), criteria.getUserId()));
+            }
+            if (criteria.getStatus() != null) {
+                predicates.add(cb.equal(root.get("status"), criteria.getStatus()));
+            }
+            if (criteria.getFromDate() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("orderDate"), criteria.getFromDate()));
+            }
+            if (criteria.getToDate() != null) {
+                predicates.add(cb.lessThan(root.get("orderDate"), criteria.getToDate()));
+            }
+            if (criteria.getMinAmount() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("totalTTC"), criteria.getMinAmount()));
+            }
+            if (criteria.getMaxAmount() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("totalTTC"), criteria.getMaxAmount()));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Keyset predicate for (orderDate DESC, id DESC): rows strictly after the given position.
+     */
+    public static Specification<Order> before(LocalDateTime orderDate, Long id) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("orderDate"), orderDate),
+                cb.and(
+                        cb.equal(root.get("orderDate"), orderDate),
+                        cb.lessThan(root.get("id"), id)));
+    }
+}
@@ -0,0 +1,73 @@
+package com.smartshop.repository;
+
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.enums.OutboxEventType;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Locks the next undelivered events that are due, lowest id first. Rows already locked elsewhere are skipped
+     * (lock timeout -2).
+     * Ids are assigned at insert, not at commit, so id order is not commit order in general. An order's events
+     * are still delivered in publish order, because every transaction that publishes one holds the order's row lock
+     * from before it draws the event id until it commits. Order changes take it through the versioned or conditional
+     * update of the order; payment updates, deletions and collections, which leave the order as is, lock it
+     * explicitly ({@link OrderRepository#lockByIds}). A second publisher thus waits for the first to commit before
+     * drawing a higher id, and only the oldest undelivered event of each order qualifies (NOT EXISTS), so even
+     * several dispatchers hand them out one at a time. Nothing relies on ids ordering the events of different orders.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_LOCK_TIMEOUT, value = "-2"))
+    @Query("SELECT e FROM OutboxEvent e " +
+            "WHERE e.deliveredAt IS NULL AND e.availableAt <= :now " +
+            "AND NOT EXISTS (SELECT p.id FROM OutboxEvent p " +
+            "WHERE p.orderId = e.orderId AND p.deliveredAt IS NULL AND p.id < e.id) " +
+            "ORDER BY e.id")
+    List<OutboxEvent> lockDueEvents(@Param("now") LocalDateTime now, Limit limit);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE OutboxEvent e SET e.availableAt = :availableAt, e.attempts = e.attempts + 1 WHERE e.id IN :ids")
+    int lease(@Param("ids") Collection<Long> ids, @Param("availableAt") LocalDateTime availableAt);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE OutboxEvent e SET e.deliveredAt = :deliveredAt, e.lastError = NULL " +
+            "WHERE e.id IN :ids AND e.deliveredAt IS NULL")
+    int markDelivered(@Param("ids") Collection<Long> ids, @Param("deliveredAt") LocalDateTime deliveredAt);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE OutboxEvent e SET e.availableAt = :retryAt, e.lastError = :error " +
+            "WHERE e.id = :id AND e.deliveredAt IS NULL")
+    int markFailed(@Param("id") Long id, @Param("retryAt") LocalDateTime retryAt, @Param("error") String error);
+
+    /**
+     * Makes delivered events created since the given time pending again, optionally of one type only.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE OutboxEvent e SET e.deliveredAt = NULL, e.availableAt = :now, e.attempts = 0, e.lastError = NULL " +
+            "WHERE e.deliveredAt IS NOT NULL AND e.createdAt >= :since " +
+            "AND (:eventType IS NULL OR e.eventType = :eventType)")
+    int replay(@Param("since") LocalDateTime since, @Param("eventType") OutboxEventType eventType,
+               @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM OutboxEvent e WHERE e.deliveredAt < :before")
+    int deleteDeliveredBefore(@Param("before") LocalDateTime before);
+
+    long countByDeliveredAtIsNull();
+}
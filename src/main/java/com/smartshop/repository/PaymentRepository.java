@@ -1,15 +1,83 @@
 package com.smartshop.repository;
 
 import com.smartshop.entity.Payment;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface PaymentRepository extends JpaRepository<Payment, Long> {
+public interface PaymentRepository extends JpaRepository<Payment, Long>, JpaSpecificationExecutor<Payment>,
+        PaymentRepositoryCustom {
 
     List<Payment> findByOrderId(Long orderId);
 
+    /**
+     * Total of all payments made on the user's orders, zero when there are none.
+     */
+    @Query("SELECT COALESCE(SUM(p.amount), 0) FROM Payment p JOIN Order o ON o.id = p.orderId WHERE o.userId = :userId")
+    BigDecimal sumAmountByUserId(@Param("userId") Long userId);
+
     List<Payment> findByOrderIdOrderByPaymentNumberAsc(Long orderId);
+
+    /**
+     * Loads the payment and locks its row until the transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.id = :id")
+    Optional<Payment> lockById(@Param("id") Long id);
+
+    /**
+     * Returns the payment with the owning user's id, so ownership can be checked without loading the order.
+     * Each row is [Payment, userId].
+     */
+    @Query("SELECT p, o.userId FROM Payment p JOIN Order o ON o.id = p.orderId WHERE p.id = :id")
+    List<Object[]> findWithOwnerById(@Param("id") Long id);
+
+    /**
+     * Returns the references already recorded on the given orders, as [orderId, reference] rows.
+     */
+    @Query("SELECT p.orderId, p.reference FROM Payment p WHERE p.orderId IN :orderIds AND p.reference IN :references")
+    List<Object[]> findReferencesByOrderIds(@Param("orderIds") Collection<Long> orderIds,
+                                            @Param("references") Collection<String> references);
+
+    /**
+     * Locks the next pending payments due on or before the given date, oldest due date first.
+     * Rows another collector has already locked are skipped instead of waited for (lock timeout -2).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_LOCK_TIMEOUT, value = "-2"))
+    @Query("SELECT p.id FROM Payment p " +
+            "WHERE p.status = com.smartshop.enums.PaymentStatus.PENDING AND p.dueDate <= :date " +
+            "ORDER BY p.dueDate, p.id")
+    List<Long> lockDuePendingPaymentIds(@Param("date") LocalDate date, Limit limit);
+
+    /**
+     * Returns the order of each given payment, as [paymentId, orderId] rows.
+     */
+    @Query("SELECT p.id, p.orderId FROM Payment p WHERE p.id IN :ids")
+    List<Object[]> findOrderIdsByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Marks the given payments collected. Payments that are no longer pending are left alone.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Payment p SET p.status = com.smartshop.enums.PaymentStatus.COLLECTED, " +
+            "p.collectionDate = :collectionDate " +
+            "WHERE p.id IN :ids AND p.status = com.smartshop.enums.PaymentStatus.PENDING")
+    int markCollected(@Param("ids") Collection<Long> ids, @Param("collectionDate") LocalDate collectionDate);
 }
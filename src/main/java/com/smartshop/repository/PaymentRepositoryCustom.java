@@ -0,0 +1,24 @@
+package com.smartshop.repository;
+
+import com.smartshop.dto.PaymentListItem;
+import com.smartshop.dto.PaymentSummary;
+import com.smartshop.entity.Payment;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Specification queries that select columns instead of entities.
+ */
+public interface PaymentRepositoryCustom {
+
+    /**
+     * Payments matching the specification, newest payment date first, at most limit rows.
+     */
+    List<PaymentListItem> findListItems(Specification<Payment> specification, int limit);
+
+    /**
+     * Count and total amount of the matching payments per method and status, grouped in SQL.
+     */
+    List<PaymentSummary> summarize(Specification<Payment> specification);
+}
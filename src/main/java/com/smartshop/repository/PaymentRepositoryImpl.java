@@ -0,0 +1,55 @@
+package com.smartshop.repository;
+
+import com.smartshop.dto.PaymentListItem;
+import com.smartshop.dto.PaymentSummary;
+import com.smartshop.entity.Payment;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class PaymentRepositoryImpl implements PaymentRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<PaymentListItem> findListItems(Specification<Payment> specification, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<PaymentListItem> query = cb.createQuery(PaymentListItem.class);
+        Root<Payment> payment = query.from(Payment.class);
+
+        query.select(cb.construct(PaymentListItem.class,
+                        payment.get("id"), payment.get("orderId"), payment.get("paymentNumber"),
+                        payment.get("amount"), payment.get("paymentMethod"), payment.get("status"),
+                        payment.get("paymentDate"), payment.get("dueDate"), payment.get("collectionDate"),
+                        payment.get("reference"), payment.get("bankName")))
+                .where(specification.toPredicate(payment, query, cb))
+                .orderBy(cb.desc(payment.get("paymentDate")), cb.desc(payment.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<PaymentSummary> summarize(Specification<Payment> specification) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<PaymentSummary> query = cb.createQuery(PaymentSummary.class);
+        Root<Payment> payment = query.from(Payment.class);
+
+        query.select(cb.construct(PaymentSummary.class,
+                        payment.get("paymentMethod"), payment.get("status"),
+                        cb.count(payment), cb.sum(payment.<BigDecimal>get("amount"))))
+                .where(specification.toPredicate(payment, query, cb))
+                .groupBy(payment.get("paymentMethod"), payment.get("status"))
+                .orderBy(cb.asc(payment.get("paymentMethod")), cb.asc(payment.get("status")));
+
+        return entityManager.createQuery(query).getResultList();
+    }
+}
@@ -0,0 +1,61 @@
+package com.smartshop.repository;
+
+import com.smartshop.dto.PaymentSearchCriteria;
+import com.smartshop.entity.Payment;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Criteria predicates for payment listing. Only the filters that are set end up in the query,
+ * so each combination can use the matching (…, payment_date, id) index on the payments table.
+ */
+public final class PaymentSpecifications {
+
+    private PaymentSpecifications() {
+    }
+
+    public static Specification<Payment> matching(PaymentSearchCriteria criteria) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (criteria.getMethod() != null) {
+                predicates.add(cb.equal(root.get("paymentMethod"), criteria.getMethod()));
+            }
+            if (criteria.getStatus() != null) {
+                predicates.add(cb.equal(root.get("status"), criteria.getStatus()));
+            }
+            if (criteria.getFromDate() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("paymentDate"), criteria.getFromDate()));
+            }
+            if (criteria.getToDate() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("paymentDate"), criteria.getToDate()));
+            }
+            if (criteria.getDueFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("dueDate"), criteria.getDueFrom()));
+            }
+            if (criteria.getDueTo() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("dueDate"), criteria.getDueTo()));
+            }
+            if (criteria.getBankName() != null && !criteria.getBankName().isBlank()) {
+                predicates.add(cb.equal(root.get("bankName"), criteria.getBankName()));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Keyset predicate for (paymentDate DESC, id DESC): rows strictly after the given position.
+     */
+    public static Specification<Payment> before(LocalDate paymentDate, Long id) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("paymentDate"), paymentDate),
+                cb.and(
+                        cb.equal(root.get("paymentDate"), paymentDate),
+                        cb.lessThan(root.get("id"), id)));
+    }
+}
@@ -0,0 +1,22 @@
+package com.smartshop.repository;
+
+import com.smartshop.entity.SalesRollupLock;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface SalesRollupLockRepository extends JpaRepository<SalesRollupLock, Long> {
+
+    /**
+     * Locks the row until the transaction ends, waiting for any other holder.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l.id FROM SalesRollupLock l WHERE l.id = :id")
+    Optional<Long> lock(@Param("id") Long id);
+}
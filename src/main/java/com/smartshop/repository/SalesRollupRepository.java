@@ -0,0 +1,125 @@
+package com.smartshop.repository;
+
+import com.smartshop.dto.SalesBucket;
+import com.smartshop.entity.SalesRollup;
+import com.smartshop.enums.SalesDimension;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, Long> {
+
+    // No clearAutomatically: a refresh may run inside the transaction that published the event,
+    // whose pending changes must stay managed; rollup rows are never loaded as entities
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM SalesRollup r WHERE r.bucketDate = :day")
+    int deleteByBucketDate(@Param("day") LocalDate day);
+
+    // Shared by the source aggregates below: canceled and rejected orders are not sales
+    String BOOKED = "o.status IN (com.smartshop.enums.OrderStatus.PENDING, com.smartshop.enums.OrderStatus.CONFIRMED)";
+
+    // Tier at checkout; orders placed before it was recorded fall back to the client's current tier
+    String ORDER_TIER = "COALESCE(o.customerTier, u.loyaltyTier, com.smartshop.enums.CustomerTier.BASIC)";
+
+    String ORDER_DISCOUNT = "COALESCE(o.discountAmount, 0)";
+
+    // A line's share of its order's discount
+    String LINE_DISCOUNT = "CASE WHEN o.subtotalHT > 0 THEN i.lineTotal * " + ORDER_DISCOUNT + " / o.subtotalHT ELSE 0 END";
+
+    /**
+     * Orders placed in [from, to), per tier, as [CustomerTier, booked orders, canceled orders, gross sales, discounts].
+     */
+    @Query("SELECT " + ORDER_TIER + ", " +
+            "SUM(CASE WHEN " + BOOKED + " THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN " + BOOKED + " THEN 0 ELSE 1 END), " +
+            "SUM(CASE WHEN " + BOOKED + " THEN o.subtotalHT ELSE 0 END), " +
+            "SUM(CASE WHEN " + BOOKED + " THEN " + ORDER_DISCOUNT + " ELSE 0 END) " +
+            "FROM Order o JOIN User u ON u.id = o.userId " +
+            "WHERE o.orderDate >= :from AND o.orderDate < :to " +
+            "GROUP BY " + ORDER_TIER)
+    List<Object[]> sumOrdersByTier(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * Units sold by orders placed in [from, to), per tier, as [CustomerTier, quantity].
+     */
+    @Query("SELECT " + ORDER_TIER + ", SUM(i.quantity) " +
+            "FROM OrderItem i JOIN Order o ON o.id = i.orderId JOIN User u ON u.id = o.userId " +
+            "WHERE o.orderDate >= :from AND o.orderDate < :to AND " + BOOKED + " " +
+            "GROUP BY " + ORDER_TIER)
+    List<Object[]> sumQuantitiesByTier(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * Sales of orders placed in [from, to), per product,
+     * as [productId, product name, orders, quantity, gross sales, discounts].
+     */
+    @Query("SELECT i.productId, MAX(i.productName), COUNT(DISTINCT o.id), SUM(i.quantity), SUM(i.lineTotal), " +
+            "SUM(" + LINE_DISCOUNT + ") " +
+            "FROM OrderItem i JOIN Order o ON o.id = i.orderId " +
+            "WHERE o.orderDate >= :from AND o.orderDate < :to AND " + BOOKED + " " +
+            "GROUP BY i.productId")
+    List<Object[]> sumSalesByProduct(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * Sales of orders placed in [from, to), per product category,
+     * as [category or null, orders, quantity, gross sales, discounts].
+     */
+    @Query("SELECT p.category, COUNT(DISTINCT o.id), SUM(i.quantity), SUM(i.lineTotal), SUM(" + LINE_DISCOUNT + ") " +
+            "FROM OrderItem i JOIN Order o ON o.id = i.orderId LEFT JOIN Product p ON p.id = i.productId " +
+            "WHERE o.orderDate >= :from AND o.orderDate < :to AND " + BOOKED + " " +
+            "GROUP BY p.category")
+    List<Object[]> sumSalesByCategory(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * Payments made on the day, per tier of the paid order, as [CustomerTier, amount].
+     */
+    @Query("SELECT " + ORDER_TIER + ", SUM(pay.amount) " +
+            "FROM Payment pay JOIN Order o ON o.id = pay.orderId JOIN User u ON u.id = o.userId " +
+            "WHERE pay.paymentDate = :day " +
+            "GROUP BY " + ORDER_TIER)
+    List<Object[]> sumPaymentsByTier(@Param("day") LocalDate day);
+
+    @Query("SELECT MIN(o.orderDate) FROM Order o")
+    LocalDateTime findFirstOrderDate();
+
+    @Query("SELECT MIN(pay.paymentDate) FROM Payment pay")
+    LocalDate findFirstPaymentDate();
+
+    // Shared by the bucket queries below
+    String BUCKET_TOTALS = "r.dimensionKey, MAX(r.label), SUM(r.orders), SUM(r.canceledOrders), SUM(r.quantity), " +
+            "SUM(r.grossSales), SUM(r.discounts), SUM(r.paid)) ";
+
+    String BUCKET_FILTER = "FROM SalesRollup r " +
+            "WHERE r.dimension = :dimension AND r.bucketDate >= :from AND r.bucketDate <= :to " +
+            "AND (:key IS NULL OR r.dimensionKey = :key) ";
+
+    /**
+     * Sales per day and key over the days [from, to], optionally of a single key.
+     */
+    @Query("SELECT new com.smartshop.dto.SalesBucket(r.bucketDate, " + BUCKET_TOTALS + BUCKET_FILTER +
+            "GROUP BY r.bucketDate, r.dimensionKey ORDER BY r.bucketDate, r.dimensionKey")
+    List<SalesBucket> findDailySales(@Param("dimension") SalesDimension dimension, @Param("from") LocalDate from,
+                                     @Param("to") LocalDate to, @Param("key") String key);
+
+    /**
+     * Same as {@link #findDailySales}, per ISO week. Weeks cut by the range only count the days inside it.
+     */
+    @Query("SELECT new com.smartshop.dto.SalesBucket(r.weekStart, " + BUCKET_TOTALS + BUCKET_FILTER +
+            "GROUP BY r.weekStart, r.dimensionKey ORDER BY r.weekStart, r.dimensionKey")
+    List<SalesBucket> findWeeklySales(@Param("dimension") SalesDimension dimension, @Param("from") LocalDate from,
+                                      @Param("to") LocalDate to, @Param("key") String key);
+
+    /**
+     * Same as {@link #findDailySales}, per calendar month. Months cut by the range only count the days inside it.
+     */
+    @Query("SELECT new com.smartshop.dto.SalesBucket(r.monthStart, " + BUCKET_TOTALS + BUCKET_FILTER +
+            "GROUP BY r.monthStart, r.dimensionKey ORDER BY r.monthStart, r.dimensionKey")
+    List<SalesBucket> findMonthlySales(@Param("dimension") SalesDimension dimension, @Param("from") LocalDate from,
+                                       @Param("to") LocalDate to, @Param("key") String key);
+}
@@ -1,10 +1,19 @@
 package com.smartshop.repository;
 
 import com.smartshop.entity.User;
+import com.smartshop.enums.CustomerTier;
 import com.smartshop.enums.UserRole;
+import org.springframework.data.domain.Limit;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,4 +27,84 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findByRole(UserRole role);
 
     Optional<User> findByIdAndRole(Long id, UserRole role);
+
+    // Counters recomputed from the source tables, shared by the repair query below
+    String TOTAL_SPENT_FROM_PAYMENTS = "COALESCE((SELECT SUM(p.amount) FROM Payment p " +
+            "JOIN Order o ON o.id = p.orderId WHERE o.userId = u.id), 0)";
+    String CONFIRMED_ORDERS_FROM_ORDERS = "(SELECT COUNT(o.id) FROM Order o " +
+            "WHERE o.userId = u.id AND o.status = com.smartshop.enums.OrderStatus.CONFIRMED)";
+
+    /**
+     * Adds an amount to the user's total spending in one atomic UPDATE; a negative amount removes spending.
+     * The user's tier is flagged for re-evaluation.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE User u SET u.totalSpent = u.totalSpent + :amount, u.tierEvaluationPending = true, " +
+            "u.updatedAt = CURRENT_TIMESTAMP WHERE u.id = :userId")
+    int addSpending(@Param("userId") Long userId, @Param("amount") BigDecimal amount);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE User u SET u.confirmedOrderCount = u.confirmedOrderCount + 1, u.tierEvaluationPending = true, " +
+            "u.updatedAt = CURRENT_TIMESTAMP WHERE u.id = :userId")
+    int incrementConfirmedOrderCount(@Param("userId") Long userId);
+
+    /**
+     * Clears the re-evaluation flag ahead of an evaluation. The row stays locked until the evaluation commits,
+     * so a counter change can only land before it (and be seen) or after it (and flag the user again).
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE User u SET u.tierEvaluationPending = false WHERE u.id = :userId AND u.tierEvaluationPending = true")
+    int clearTierEvaluationPending(@Param("userId") Long userId);
+
+    @Query("SELECT u.id FROM User u WHERE u.tierEvaluationPending = true ORDER BY u.id")
+    List<Long> findTierEvaluationPendingIds(Limit limit);
+
+    String COUNTERS_DRIFTED = "(u.totalSpent <> " + TOTAL_SPENT_FROM_PAYMENTS + " " +
+            "OR u.confirmedOrderCount <> " + CONFIRMED_ORDERS_FROM_ORDERS + ")";
+
+    /**
+     * Ids of the users with ids in [fromId, toId) whose counters differ from their payments and orders.
+     */
+    @Query("SELECT u.id FROM User u WHERE u.id >= :fromId AND u.id < :toId AND " + COUNTERS_DRIFTED + " ORDER BY u.id")
+    List<Long> findDriftedCounterIds(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /**
+     * Locks the users' rows until the transaction ends, in id order so that concurrent lockers cannot deadlock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids ORDER BY u.id")
+    List<Long> lockByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Rebuilds the counters of the given users from their payments and orders, for those still drifted;
+     * returns how many were written. Run it after {@link #lockByIds} in the same transaction: the sums are then
+     * computed by a statement started once the rows are locked, so they include every counter change already
+     * committed, and a later one waits for this transaction and is applied on top of the repaired value.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE User u SET u.totalSpent = " + TOTAL_SPENT_FROM_PAYMENTS + ", " +
+            "u.confirmedOrderCount = " + CONFIRMED_ORDERS_FROM_ORDERS + ", " +
+            "u.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE u.id IN :ids AND " + COUNTERS_DRIFTED)
+    int repairCounters(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT MAX(u.id) FROM User u")
+    Long findMaxId();
+
+    /**
+     * Tier inputs of the clients with ids in [fromId, toId), as [id, loyaltyTier, totalSpent, confirmedOrderCount] rows.
+     */
+    @Query("SELECT u.id, u.loyaltyTier, u.totalSpent, u.confirmedOrderCount FROM User u " +
+            "WHERE u.role = com.smartshop.enums.UserRole.CLIENT AND u.id >= :fromId AND u.id < :toId")
+    List<Object[]> findTierInputs(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /**
+     * Moves the given users up to a tier. Users already at that tier or above, e.g. upgraded
+     * by a payment in the meantime, are left alone.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE User u SET u.loyaltyTier = :tier, u.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE u.id IN :ids AND (u.loyaltyTier IS NULL OR u.loyaltyTier IN :lowerTiers)")
+    int upgradeTiers(@Param("ids") Collection<Long> ids, @Param("tier") CustomerTier tier,
+                     @Param("lowerTiers") Collection<CustomerTier> lowerTiers);
 }
@@ -0,0 +1,20 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.ClientStatistics;
+
+import java.util.function.Supplier;
+
+public interface ClientStatisticsCache {
+
+    /**
+     * Returns the cached statistics of the client, computing and caching them with the loader on a miss.
+     * Cached statistics are shared between callers and must not be modified.
+     */
+    ClientStatistics get(Long clientId, Supplier<ClientStatistics> loader);
+
+    /**
+     * Drops the client's statistics once the current transaction commits, or right away outside a transaction.
+     * Loads that started before the invalidation are not cached.
+     */
+    void invalidate(Long clientId);
+}
@@ -0,0 +1,27 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.TierRule;
+import com.smartshop.util.CompiledLoyaltyRules;
+
+import java.util.List;
+
+public interface LoyaltyRulesService {
+
+    /**
+     * Rules in effect. Callers evaluating several clients should fetch them once, so a concurrent
+     * reload cannot mix two rule sets within one operation.
+     */
+    CompiledLoyaltyRules getRules();
+
+    /**
+     * Compiles the given rules and swaps them in for every subsequent evaluation, without a restart.
+     *
+     * @throws IllegalArgumentException if the rules are incomplete or inconsistent; the current rules stay in effect
+     */
+    List<TierRule> replaceRules(List<TierRule> rules);
+
+    /**
+     * Goes back to the rules from the application configuration.
+     */
+    List<TierRule> resetRules();
+}
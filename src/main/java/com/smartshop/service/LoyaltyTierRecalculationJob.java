@@ -0,0 +1,22 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.TierRecalculationStatus;
+
+public interface LoyaltyTierRecalculationJob {
+
+    /**
+     * Starts re-tiering every client in the background and returns its initial progress.
+     * Only one run at a time: starting a second one fails with an IllegalStateException.
+     */
+    TierRecalculationStatus start(boolean dryRun);
+
+    /**
+     * Re-tiers every client and returns once done.
+     */
+    TierRecalculationStatus recalculate(boolean dryRun);
+
+    /**
+     * Progress of the current run, or the outcome of the last one.
+     */
+    TierRecalculationStatus getStatus();
+}
@@ -1,5 +1,6 @@
 package com.smartshop.service;
 
+import com.smartshop.dto.TierRecalculationChunk;
 import com.smartshop.entity.User;
 
 public interface LoyaltyTierService {
@@ -7,4 +8,10 @@ public interface LoyaltyTierService {
     void checkAndUpgradeTier(Long userId);
 
     User upgradeTierIfEligible(Long userId);
+
+    /**
+     * Re-applies the tier rules to the clients with ids in [fromId, toId), in one transaction.
+     * Like payments, it only ever upgrades. A dry run reports the upgrades without writing them.
+     */
+    TierRecalculationChunk recalculateTiers(Long fromId, Long toId, boolean dryRun);
 }
@@ -0,0 +1,17 @@
+package com.smartshop.service;
+
+public interface LoyaltyUpgradeScheduler {
+
+    /**
+     * Queues a tier evaluation for the user once the current transaction commits.
+     * Requests for a user already waiting in the queue are folded into the queued evaluation.
+     */
+    void requestUpgrade(Long userId);
+
+    /**
+     * Queues every user still flagged for tier re-evaluation, e.g. after a restart or a full queue.
+     *
+     * @return the number of users queued
+     */
+    int sweepPending();
+}
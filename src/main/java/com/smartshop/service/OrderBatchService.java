@@ -0,0 +1,11 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.OrderBatchResult;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+public interface OrderBatchService {
+
+    void createOrders(Iterator<? extends OrderService.OrderRequest> requests, Consumer<OrderBatchResult> resultHandler);
+}
@@ -0,0 +1,14 @@
+package com.smartshop.service;
+
+import com.smartshop.entity.Order;
+import com.smartshop.enums.OutboxEventType;
+
+public interface OrderEventPublisher {
+
+    /**
+     * Publishes the order's current state to the outbox in the caller's transaction and drops the client's
+     * cached statistics. Every order event carries the same payload: userId, status, totalTTC and remainingAmount.
+     * Pending changes to the order are flushed first, so its row is locked before the event id is drawn.
+     */
+    void publish(OutboxEventType eventType, Order order);
+}
@@ -0,0 +1,11 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.OrderSearchCriteria;
+import com.smartshop.enums.ExportFormat;
+
+import java.io.OutputStream;
+
+public interface OrderExportService {
+
+    void exportOrders(OrderSearchCriteria criteria, ExportFormat format, OutputStream out);
+}
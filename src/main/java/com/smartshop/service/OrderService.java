@@ -1,6 +1,9 @@
 package com.smartshop.service;
 
+import com.smartshop.dto.CursorPage;
+import com.smartshop.dto.OrderBatchResult;
 import com.smartshop.dto.OrderDTO;
+import com.smartshop.dto.OrderSearchCriteria;
 
 import java.util.List;
 
@@ -8,16 +11,28 @@ public interface OrderService {
 
     OrderDTO createOrder(Long userId, List<OrderItemRequest> items, String couponCode);
 
+    List<OrderBatchResult> createOrders(List<OrderRequest> requests);
+
     OrderDTO getOrderById(Long id);
 
-    List<OrderDTO> getOrdersByUserId(Long userId);
+    /**
+     * Loads an order and, on request, its items and payments, with one query for each.
+     * When ownerId is not null, only that user's order is returned.
+     */
+    OrderDTO getOrderDetail(Long id, Long ownerId, boolean includeItems, boolean includePayments);
 
-    List<OrderDTO> getAllOrders();
+    CursorPage<OrderDTO> getOrders(OrderSearchCriteria criteria, String cursor, int size, boolean includeTotal);
 
     OrderDTO confirmOrder(Long orderId);
 
     OrderDTO cancelOrder(Long orderId);
 
+    class OrderRequest {
+        public Long userId;
+        public List<OrderItemRequest> items;
+        public String couponCode;
+    }
+
     class OrderItemRequest {
         public Long productId;
         public Integer quantity;
@@ -0,0 +1,19 @@
+package com.smartshop.service;
+
+import com.smartshop.enums.OutboxEventType;
+
+import java.time.LocalDateTime;
+
+public interface OutboxDispatcher {
+
+    /**
+     * Delivers every due outbox event to the subscribers, batch by batch, and returns how many were delivered.
+     */
+    int dispatchPending();
+
+    /**
+     * Delivers the events created since the given time again, optionally of one type only.
+     * Returns the number of events scheduled for delivery.
+     */
+    int replay(LocalDateTime since, OutboxEventType eventType);
+}
@@ -0,0 +1,41 @@
+package com.smartshop.service;
+
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.enums.OutboxEventType;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface OutboxService {
+
+    /**
+     * Records an event of the given order in the caller's transaction, which must exist:
+     * the event is only delivered if that transaction commits.
+     */
+    void publish(OutboxEventType eventType, Long orderId, Map<String, Object> payload);
+
+    /**
+     * Takes the next due events for delivery, oldest first and at most one per order.
+     * They are handed out to no one else until delivered, failed or their lease expires.
+     */
+    List<OutboxEvent> claimBatch(int batchSize);
+
+    void markDelivered(Collection<Long> eventIds);
+
+    /**
+     * Schedules a failed event for another attempt, with a backoff growing with its attempts.
+     */
+    void markFailed(OutboxEvent event, String error);
+
+    /**
+     * Makes delivered events created since the given time pending again, optionally of one type only.
+     * Returns the number of events to be delivered again.
+     */
+    int replay(LocalDateTime since, OutboxEventType eventType);
+
+    int purgeDelivered(LocalDateTime before);
+
+    long countPending();
+}
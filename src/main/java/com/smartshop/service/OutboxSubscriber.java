@@ -0,0 +1,20 @@
+package com.smartshop.service;
+
+import com.smartshop.entity.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Receives committed order and payment events from the outbox.
+ * Delivery is at least once: after a failure or a crash the same events come again,
+ * possibly together with events this subscriber already handled, so handling must be idempotent.
+ */
+public interface OutboxSubscriber {
+
+    /**
+     * Handles a batch of events, in the order they were published.
+     * A batch holds at most one event per order; the next event of an order is only delivered
+     * once the previous one was handled by every subscriber. Throwing fails the whole batch.
+     */
+    void onEvents(List<OutboxEvent> events);
+}
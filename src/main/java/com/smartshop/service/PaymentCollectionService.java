@@ -0,0 +1,14 @@
+package com.smartshop.service;
+
+import java.time.LocalDate;
+
+public interface PaymentCollectionService {
+
+    /**
+     * Marks up to chunkSize pending payments due on or before the given date as collected on that date,
+     * in one transaction. Payments another node is collecting at the same time are skipped.
+     *
+     * @return the number of payments collected
+     */
+    int collectDueChunk(LocalDate date, int chunkSize);
+}
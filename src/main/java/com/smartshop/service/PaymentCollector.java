@@ -0,0 +1,11 @@
+package com.smartshop.service;
+
+public interface PaymentCollector {
+
+    /**
+     * Collects every pending payment due today or earlier, chunk by chunk.
+     *
+     * @return the number of payments collected by this run
+     */
+    int collectDuePayments();
+}
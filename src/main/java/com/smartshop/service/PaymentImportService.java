@@ -0,0 +1,15 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.PaymentImportResult;
+
+import java.nio.channels.ReadableByteChannel;
+import java.util.function.Consumer;
+
+public interface PaymentImportService {
+
+    /**
+     * Reads a CSV bank statement and records one payment per row.
+     * Every row, including rows that cannot be read, produces exactly one result, in statement order.
+     */
+    void importStatement(ReadableByteChannel statement, Consumer<PaymentImportResult> resultHandler);
+}
@@ -1,6 +1,11 @@
 package com.smartshop.service;
 
+import com.smartshop.dto.CursorPage;
 import com.smartshop.dto.PaymentDTO;
+import com.smartshop.dto.PaymentImportResult;
+import com.smartshop.dto.PaymentListItem;
+import com.smartshop.dto.PaymentSearchCriteria;
+import com.smartshop.dto.PaymentSummary;
 
 import java.util.List;
 
@@ -8,11 +13,33 @@ public interface PaymentService {
 
     PaymentDTO createPayment(PaymentDTO paymentDTO);
 
+    /**
+     * Records a chunk of imported payments in one transaction, with the same rules as {@link #createPayment}.
+     * A payment whose reference is already recorded on its order is refused, so a statement can be imported twice.
+     * Returns one result per payment, in the same order.
+     */
+    List<PaymentImportResult> createPayments(List<PaymentDTO> paymentDTOs);
+
     PaymentDTO getPaymentById(Long id);
 
+    /**
+     * Loads a payment and checks in the same query that its order belongs to ownerId.
+     * A null ownerId skips the ownership check.
+     */
+    PaymentDTO getPaymentById(Long id, Long ownerId);
+
     List<PaymentDTO> getPaymentsByOrderId(Long orderId);
 
-    List<PaymentDTO> getAllPayments();
+    /**
+     * Lists payments newest first, one keyset page at a time.
+     * Pass the nextCursor of the previous page to get the following one.
+     */
+    CursorPage<PaymentListItem> getPayments(PaymentSearchCriteria criteria, String cursor, int size, boolean includeTotal);
+
+    /**
+     * Count and total amount of the matching payments per method and status.
+     */
+    List<PaymentSummary> getPaymentSummary(PaymentSearchCriteria criteria);
 
     PaymentDTO updatePayment(Long id, PaymentDTO paymentDTO);
 
@@ -0,0 +1,14 @@
+package com.smartshop.service;
+
+import java.util.Collection;
+
+public interface PendingOrderService {
+
+    /**
+     * Re-evaluates the unpaid pending orders that contain one of the given products
+     * and rejects those the remaining stock can no longer cover.
+     *
+     * @return the number of orders rejected
+     */
+    int rejectUnfulfillableOrders(Collection<Long> productIds);
+}
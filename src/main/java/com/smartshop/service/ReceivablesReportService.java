@@ -0,0 +1,13 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.ReceivablesCriteria;
+
+import java.io.OutputStream;
+
+public interface ReceivablesReportService {
+
+    /**
+     * Writes the outstanding balances as NDJSON, one {@link com.smartshop.dto.ReceivablesRow} per line.
+     */
+    void exportReceivables(ReceivablesCriteria criteria, OutputStream out);
+}
@@ -0,0 +1,29 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.RelatedProduct;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface RelatedProductsService {
+
+    /**
+     * Products most often ordered together with the given one, most frequent first; deleted products are left out.
+     *
+     * @throws com.smartshop.exception.ResourceNotFoundException if the product does not exist
+     * @throws IllegalArgumentException if the limit is not between 1 and the configured maximum
+     */
+    List<RelatedProduct> getRelatedProducts(Long productId, int limit);
+
+    /**
+     * Counts a new order's products once the current transaction commits, or right away outside of one.
+     */
+    void recordOrder(Long orderId, Collection<Long> productIds);
+
+    /**
+     * Rebuilds the co-occurrence index from every order in the database.
+     *
+     * @return the number of orders counted
+     */
+    long rebuild();
+}
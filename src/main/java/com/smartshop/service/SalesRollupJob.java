@@ -0,0 +1,21 @@
+package com.smartshop.service;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+public interface SalesRollupJob {
+
+    /**
+     * Recomputes the rollups of days touched by recent order and payment changes.
+     */
+    void refresh(Collection<LocalDate> days);
+
+    /**
+     * Regenerates the rollups of the days [from, to] from history, a chunk of days per transaction.
+     *
+     * @param from first day, or null for the day of the first order or payment
+     * @param to   last day, or null for today
+     * @return the number of days rebuilt
+     */
+    int rebuild(LocalDate from, LocalDate to);
+}
@@ -0,0 +1,34 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.SalesBucket;
+import com.smartshop.enums.SalesDimension;
+import com.smartshop.enums.SalesGranularity;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface SalesRollupService {
+
+    /**
+     * Recomputes the rollups of the given days from the orders and payments tables, replacing what was there.
+     * Recomputing a day twice gives the same rows, so replayed events are harmless.
+     * Refreshes are serialized across instances by a database row lock held until the transaction commits.
+     *
+     * @return the number of rollup rows written
+     */
+    int refreshDays(Collection<LocalDate> days);
+
+    /**
+     * Sales over the days [from, to], per bucket of the given granularity and per key of the dimension.
+     *
+     * @param key restricts the result to one product id, category or tier; null for all of them
+     */
+    List<SalesBucket> getSales(LocalDate from, LocalDate to, SalesGranularity granularity, SalesDimension dimension,
+                               String key);
+
+    /**
+     * Day of the first order or payment, or null when there is none.
+     */
+    LocalDate findFirstSalesDate();
+}
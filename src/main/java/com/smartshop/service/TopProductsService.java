@@ -0,0 +1,31 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.TopProduct;
+import com.smartshop.enums.RankingMetric;
+import com.smartshop.enums.RankingWindow;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface TopProductsService {
+
+    /**
+     * Best-selling products over the window, best first, from the in-memory counters.
+     *
+     * @throws IllegalArgumentException if the limit is not between 1 and the configured maximum
+     */
+    List<TopProduct> getTopProducts(RankingWindow window, RankingMetric metric, int limit);
+
+    /**
+     * Brings the counters of the given orders in line with the database: pending and confirmed orders count,
+     * canceled, rejected and deleted ones do not. Refreshing an order twice changes nothing.
+     */
+    void refreshOrders(Collection<Long> orderIds);
+
+    /**
+     * Reloads the counters from the orders of the widest window.
+     *
+     * @return the number of orders counted
+     */
+    int rebuild();
+}
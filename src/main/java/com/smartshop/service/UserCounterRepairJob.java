@@ -0,0 +1,11 @@
+package com.smartshop.service;
+
+public interface UserCounterRepairJob {
+
+    /**
+     * Recomputes the counters of every user, chunk by chunk.
+     *
+     * @return the number of users whose counters were corrected
+     */
+    int repairAll();
+}
@@ -0,0 +1,17 @@
+package com.smartshop.service;
+
+public interface UserCounterService {
+
+    /**
+     * Rebuilds the spending and confirmed order counters of the users with ids in [fromId, toId)
+     * from their payments and orders, in one transaction.
+     *
+     * @return the number of users whose counters had drifted
+     */
+    int repairChunk(Long fromId, Long toId);
+
+    /**
+     * Highest user id, or null when there are no users.
+     */
+    Long findMaxUserId();
+}
@@ -1,9 +1,8 @@
 package com.smartshop.service.impl;
 
+import com.smartshop.dto.ClientOrderTotals;
 import com.smartshop.dto.ClientStatistics;
 import com.smartshop.dto.UserDTO;
-import com.smartshop.entity.Order;
-import com.smartshop.entity.Payment;
 import com.smartshop.entity.User;
 import com.smartshop.enums.CustomerTier;
 import com.smartshop.enums.OrderStatus;
@@ -14,14 +13,15 @@ import com.smartshop.repository.OrderRepository;
 import com.smartshop.repository.PaymentRepository;
 import com.smartshop.repository.UserRepository;
 import com.smartshop.service.ClientService;
+import com.smartshop.service.ClientStatisticsCache;
 import com.smartshop.util.PasswordEncoder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -31,11 +31,14 @@ import java.util.stream.Collectors;
 @Transactional
 public class ClientServiceImpl implements ClientService {
 
+    private static final int RECENT_ORDERS = 10;
+
     private final UserRepository userRepository;
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
     private final OrderRepository orderRepository;
     private final PaymentRepository paymentRepository;
+    private final ClientStatisticsCache clientStatisticsCache;
 
     @Override
     public UserDTO createClient(UserDTO userDTO) {
@@ -101,6 +104,7 @@ public class ClientServiceImpl implements ClientService {
 
         userMapper.updateEntityFromDTO(userDTO, existingClient);
         User updatedClient = userRepository.save(existingClient);
+        clientStatisticsCache.invalidate(id);
         log.info("Updated client with id: {}", updatedClient.getId());
 
         UserDTO resultDTO = userMapper.toDTO(updatedClient);
@@ -114,76 +118,44 @@ public class ClientServiceImpl implements ClientService {
                 .orElseThrow(() -> new ResourceNotFoundException("Client not found with id: " + id));
 
         userRepository.delete(client);
+        clientStatisticsCache.invalidate(id);
         log.info("Deleted client with id: {}", id);
     }
 
     @Override
     @Transactional(readOnly = true)
     public ClientStatistics getClientStatistics(Long clientId) {
+        return clientStatisticsCache.get(clientId, () -> computeStatistics(clientId));
+    }
+
+    private ClientStatistics computeStatistics(Long clientId) {
         User client = userRepository.findByIdAndRole(clientId, UserRole.CLIENT)
                 .orElseThrow(() -> new ResourceNotFoundException("Client not found with id: " + clientId));
 
-        List<Order> allOrders = orderRepository.findByUserId(clientId);
-
-        Integer totalOrders = allOrders.size();
-        BigDecimal totalSpent = calculateTotalSpent(clientId);
-        BigDecimal totalRemaining = allOrders.stream()
-                .map(Order::getRemainingAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        LocalDateTime firstOrderDate = allOrders.stream()
-                .map(Order::getOrderDate)
-                .min(Comparator.naturalOrder())
-                .orElse(null);
-
-        LocalDateTime lastOrderDate = allOrders.stream()
-                .map(Order::getOrderDate)
-                .max(Comparator.naturalOrder())
-                .orElse(null);
-
-        Map<OrderStatus, Integer> ordersByStatus = allOrders.stream()
-                .collect(Collectors.groupingBy(
-                        Order::getStatus,
-                        Collectors.collectingAndThen(Collectors.counting(), Long::intValue)
-                ));
-
-        List<ClientStatistics.OrderSummary> recentOrders = allOrders.stream()
-                .sorted(Comparator.comparing(Order::getOrderDate).reversed())
-                .limit(10)
-                .map(order -> ClientStatistics.OrderSummary.builder()
-                        .orderId(order.getId())
-                        .orderDate(order.getOrderDate())
-                        .totalTTC(order.getTotalTTC())
-                        .status(order.getStatus())
-                        .build())
-                .collect(Collectors.toList());
+        // A fixed number of aggregate queries, whatever the client's order count
+        ClientOrderTotals totals = orderRepository.findTotalsByUserId(clientId);
+        BigDecimal totalSpent = paymentRepository.sumAmountByUserId(clientId);
+
+        Map<OrderStatus, Integer> ordersByStatus = new EnumMap<>(OrderStatus.class);
+        for (Object[] row : orderRepository.countByStatusForUser(clientId)) {
+            ordersByStatus.put((OrderStatus) row[0], ((Long) row[1]).intValue());
+        }
+
+        List<ClientStatistics.OrderSummary> recentOrders =
+                orderRepository.findRecentSummariesByUserId(clientId, Limit.of(RECENT_ORDERS));
 
         return ClientStatistics.builder()
                 .clientId(client.getId())
                 .clientName(client.getName())
                 .email(client.getEmail())
                 .loyaltyTier(client.getLoyaltyTier())
-                .totalOrders(totalOrders)
+                .totalOrders(totals.getOrderCount().intValue())
                 .totalSpent(totalSpent)
-                .totalRemaining(totalRemaining)
-                .firstOrderDate(firstOrderDate)
-                .lastOrderDate(lastOrderDate)
+                .totalRemaining(totals.getTotalRemaining())
+                .firstOrderDate(totals.getFirstOrderDate())
+                .lastOrderDate(totals.getLastOrderDate())
                 .ordersByStatus(ordersByStatus)
                 .recentOrders(recentOrders)
                 .build();
     }
-
-    private BigDecimal calculateTotalSpent(Long userId) {
-        List<Order> allOrders = orderRepository.findByUserId(userId);
-        BigDecimal totalSpending = BigDecimal.ZERO;
-
-        for (Order order : allOrders) {
-            List<Payment> payments = paymentRepository.findByOrderId(order.getId());
-            for (Payment payment : payments) {
-                totalSpending = totalSpending.add(payment.getAmount());
-            }
-        }
-
-        return totalSpending;
-    }
 }
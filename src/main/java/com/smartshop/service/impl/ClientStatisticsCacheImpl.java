@@ -0,0 +1,167 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.dto.ClientStatistics;
+import com.smartshop.service.ClientStatisticsCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * In-process LRU cache of client statistics, bounded in size and entry age.
+ * Order and payment writes invalidate the client's entry after they commit. Each invalidation also bumps a stamp
+ * shared by a stripe of clients, and a load only keeps its result if its stripe's stamp did not move while it ran,
+ * so statistics read before a commit are never cached after it.
+ */
+@Service
+@Slf4j
+public class ClientStatisticsCacheImpl implements ClientStatisticsCache {
+
+    private static final int STAMP_STRIPES = 64;
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    // Access-ordered, so the first entry is the least recently read; guarded by itself
+    private final LinkedHashMap<Long, CachedStatistics> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+    private final Counter invalidations;
+
+    public ClientStatisticsCacheImpl(
+            MeterRegistry meterRegistry,
+            @Value("${smartshop.clients.statistics.cache.enabled:true}") boolean enabled,
+            @Value("${smartshop.clients.statistics.cache.max-size:10000}") int maxSize,
+            @Value("${smartshop.clients.statistics.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.enabled = enabled && maxSize > 0 && ttlSeconds > 0;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+
+        Gauge.builder("smartshop.clients.statistics.cache.size", this, ClientStatisticsCacheImpl::size)
+                .description("Client statistics currently cached")
+                .register(meterRegistry);
+        this.hits = Counter.builder("smartshop.clients.statistics.cache.gets")
+                .description("Client statistics lookups")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("smartshop.clients.statistics.cache.gets")
+                .description("Client statistics lookups")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.sizeEvictions = Counter.builder("smartshop.clients.statistics.cache.evictions")
+                .description("Client statistics dropped before being invalidated")
+                .tag("cause", "size")
+                .register(meterRegistry);
+        this.expiredEvictions = Counter.builder("smartshop.clients.statistics.cache.evictions")
+                .description("Client statistics dropped before being invalidated")
+                .tag("cause", "expired")
+                .register(meterRegistry);
+        this.invalidations = Counter.builder("smartshop.clients.statistics.cache.invalidations")
+                .description("Client statistics invalidated by order and payment changes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ClientStatistics get(Long clientId, Supplier<ClientStatistics> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        synchronized (entries) {
+            CachedStatistics cached = entries.get(clientId);
+            if (cached != null) {
+                if (cached.expiresAt > System.currentTimeMillis()) {
+                    hits.increment();
+                    return cached.statistics;
+                }
+                entries.remove(clientId);
+                expiredEvictions.increment();
+            }
+        }
+        misses.increment();
+
+        int stripe = stripe(clientId);
+        long stamp = stamps.get(stripe);
+        ClientStatistics statistics = loader.get();
+
+        synchronized (entries) {
+            if (stamps.get(stripe) == stamp) {
+                entries.put(clientId, new CachedStatistics(statistics, System.currentTimeMillis() + ttlMillis));
+                evictOverflow();
+            }
+        }
+        return statistics;
+    }
+
+    @Override
+    public void invalidate(Long clientId) {
+        if (!enabled || clientId == null) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(clientId);
+                }
+            });
+        } else {
+            evict(clientId);
+        }
+    }
+
+    private void evict(Long clientId) {
+        stamps.incrementAndGet(stripe(clientId));
+        synchronized (entries) {
+            entries.remove(clientId);
+        }
+        invalidations.increment();
+        log.debug("Invalidated statistics of client {}", clientId);
+    }
+
+    // Least recently read entries go first; expired ones are only dropped when read
+    private void evictOverflow() {
+        Iterator<Map.Entry<Long, CachedStatistics>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            sizeEvictions.increment();
+        }
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static int stripe(Long clientId) {
+        return Long.hashCode(clientId) & (STAMP_STRIPES - 1);
+    }
+
+    private static class CachedStatistics {
+        private final ClientStatistics statistics;
+        private final long expiresAt;
+
+        private CachedStatistics(ClientStatistics statistics, long expiresAt) {
+            this.statistics = statistics;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.config.LoyaltyRulesProperties;
+import com.smartshop.dto.TierRule;
+import com.smartshop.service.LoyaltyRulesService;
+import com.smartshop.util.CompiledLoyaltyRules;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the compiled loyalty rules. Readers take the current instance without locking;
+ * a reload compiles a complete new instance first and only then publishes it.
+ * Rules replaced at runtime apply to this node until the next restart or reset.
+ */
+@Service
+@Slf4j
+public class LoyaltyRulesServiceImpl implements LoyaltyRulesService {
+
+    private final LoyaltyRulesProperties properties;
+    private final AtomicReference<CompiledLoyaltyRules> rules;
+
+    public LoyaltyRulesServiceImpl(LoyaltyRulesProperties properties) {
+        this.properties = properties;
+        // Invalid configured rules fail the startup rather than the first order
+        this.rules = new AtomicReference<>(CompiledLoyaltyRules.compile(properties.getTiers()));
+    }
+
+    @Override
+    public CompiledLoyaltyRules getRules() {
+        return rules.get();
+    }
+
+    @Override
+    public List<TierRule> replaceRules(List<TierRule> tierRules) {
+        CompiledLoyaltyRules compiled = CompiledLoyaltyRules.compile(tierRules);
+        rules.set(compiled);
+        log.info("Loyalty rules replaced: {}", compiled.getRules());
+        return compiled.getRules();
+    }
+
+    @Override
+    public List<TierRule> resetRules() {
+        CompiledLoyaltyRules compiled = CompiledLoyaltyRules.compile(properties.getTiers());
+        rules.set(compiled);
+        log.info("Loyalty rules reset to the configured ones");
+        return compiled.getRules();
+    }
+}
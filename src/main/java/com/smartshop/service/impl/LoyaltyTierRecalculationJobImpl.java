@@ -0,0 +1,243 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.dto.TierRecalculationChunk;
+import com.smartshop.dto.TierRecalculationStatus;
+import com.smartshop.enums.CustomerTier;
+import com.smartshop.enums.JobState;
+import com.smartshop.exception.ResourceNotFoundException;
+import com.smartshop.repository.UserRepository;
+import com.smartshop.service.LoyaltyTierRecalculationJob;
+import com.smartshop.service.LoyaltyTierService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Re-applies the loyalty tier rules to every client, e.g. after the thresholds changed.
+ * Clients are split into id ranges re-tiered in parallel, each in its own transaction: one query reads the
+ * range's spending and order counters, and upgrades are written with one UPDATE per target tier.
+ */
+@Service
+@Slf4j
+public class LoyaltyTierRecalculationJobImpl implements LoyaltyTierRecalculationJob {
+
+    private final LoyaltyTierService loyaltyTierService;
+    private final UserRepository userRepository;
+    private final int chunkSize;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tier-recalculation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService workers;
+
+    private final AtomicReference<Run> currentRun = new AtomicReference<>();
+
+    private final Counter upgradedClients;
+    private final Timer runs;
+
+    public LoyaltyTierRecalculationJobImpl(
+            LoyaltyTierService loyaltyTierService,
+            UserRepository userRepository,
+            MeterRegistry meterRegistry,
+            @Value("${smartshop.loyalty.recalculation.chunk-size:5000}") int chunkSize,
+            @Value("${smartshop.loyalty.recalculation.parallelism:4}") int parallelism) {
+        this.loyaltyTierService = loyaltyTierService;
+        this.userRepository = userRepository;
+        this.chunkSize = chunkSize;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "tier-recalculation-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.upgradedClients = Counter.builder("smartshop.loyalty.recalculation.upgrades")
+                .description("Clients upgraded by tier recalculation runs")
+                .register(meterRegistry);
+        this.runs = Timer.builder("smartshop.loyalty.recalculation.run")
+                .description("Duration of a loyalty tier recalculation run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${smartshop.loyalty.recalculation.cron:0 0 4 * * *}")
+    public void scheduledRecalculation() {
+        try {
+            recalculate(false);
+        } catch (IllegalStateException e) {
+            log.info("Skipping scheduled tier recalculation: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Scheduled tier recalculation failed", e);
+        }
+    }
+
+    @Override
+    public TierRecalculationStatus start(boolean dryRun) {
+        Run run = begin(dryRun);
+        runner.execute(() -> execute(run));
+        return run.snapshot();
+    }
+
+    @Override
+    public TierRecalculationStatus recalculate(boolean dryRun) {
+        Run run = begin(dryRun);
+        execute(run);
+        return run.snapshot();
+    }
+
+    @Override
+    public TierRecalculationStatus getStatus() {
+        Run run = currentRun.get();
+        if (run == null) {
+            throw new ResourceNotFoundException("No loyalty tier recalculation has run yet");
+        }
+        return run.snapshot();
+    }
+
+    private Run begin(boolean dryRun) {
+        Run run = new Run(dryRun);
+        Run previous = currentRun.get();
+        if ((previous != null && previous.state == JobState.RUNNING) || !currentRun.compareAndSet(previous, run)) {
+            throw new IllegalStateException("A loyalty tier recalculation is already running");
+        }
+        return run;
+    }
+
+    private void execute(Run run) {
+        long startTime = System.nanoTime();
+        try {
+            Long maxId = userRepository.findMaxId();
+            int totalChunks = maxId == null ? 0 : (int) ((maxId + chunkSize - 1) / chunkSize);
+            run.totalChunks = totalChunks;
+            log.info("Starting {}tier recalculation over {} chunks of {} ids",
+                    run.dryRun ? "dry-run " : "", totalChunks, chunkSize);
+
+            List<Future<?>> chunks = new ArrayList<>(totalChunks);
+            for (long fromId = 1; maxId != null && fromId <= maxId; fromId += chunkSize) {
+                long chunkFromId = fromId;
+                chunks.add(workers.submit(() -> recalculateChunk(run, chunkFromId, chunkFromId + chunkSize)));
+            }
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+
+            if (run.failedChunks.get() > 0) {
+                run.finish(JobState.FAILED, run.failedChunks.get() + " chunks failed, see the logs");
+            } else {
+                run.finish(JobState.COMPLETED, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.finish(JobState.FAILED, "Interrupted");
+        } catch (ExecutionException | RuntimeException e) {
+            log.error("Tier recalculation failed", e);
+            run.finish(JobState.FAILED, e.getMessage());
+        }
+
+        runs.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        log.info("Tier recalculation {}: {} clients scanned, {} {} in {} ms", run.state, run.scannedClients.get(),
+                run.upgradedClients.get(), run.dryRun ? "would be upgraded" : "upgraded",
+                (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    private void recalculateChunk(Run run, long fromId, long toId) {
+        try {
+            TierRecalculationChunk chunk = loyaltyTierService.recalculateTiers(fromId, toId, run.dryRun);
+            run.scannedClients.addAndGet(chunk.getScanned());
+            for (Map.Entry<CustomerTier, Integer> upgrade : chunk.getUpgrades().entrySet()) {
+                run.upgradesByTier.get(upgrade.getKey()).addAndGet(upgrade.getValue());
+                run.upgradedClients.addAndGet(upgrade.getValue());
+                if (!run.dryRun) {
+                    upgradedClients.increment(upgrade.getValue());
+                }
+            }
+        } catch (RuntimeException e) {
+            // The other chunks go on; the next run retries this range
+            log.error("Tier recalculation of ids [{}, {}) failed", fromId, toId, e);
+            run.failedChunks.incrementAndGet();
+        }
+
+        int completed = run.completedChunks.incrementAndGet();
+        if (completed % Math.max(1, run.totalChunks / 10) == 0) {
+            log.info("Tier recalculation progress: {}/{} chunks, {} clients scanned, {} upgrades",
+                    completed, run.totalChunks, run.scannedClients.get(), run.upgradedClients.get());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runner.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private static class Run {
+        private final boolean dryRun;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicInteger completedChunks = new AtomicInteger();
+        private final AtomicInteger failedChunks = new AtomicInteger();
+        private final AtomicLong scannedClients = new AtomicLong();
+        private final AtomicLong upgradedClients = new AtomicLong();
+        private final Map<CustomerTier, AtomicLong> upgradesByTier = new EnumMap<>(CustomerTier.class);
+
+        private volatile int totalChunks;
+        private volatile JobState state = JobState.RUNNING;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private Run(boolean dryRun) {
+            this.dryRun = dryRun;
+            for (CustomerTier tier : CustomerTier.values()) {
+                upgradesByTier.put(tier, new AtomicLong());
+            }
+        }
+
+        private void finish(JobState state, String error) {
+            this.error = error;
+            this.finishedAt = LocalDateTime.now();
+            this.state = state;
+        }
+
+        private TierRecalculationStatus snapshot() {
+            Map<CustomerTier, Long> upgrades = new EnumMap<>(CustomerTier.class);
+            upgradesByTier.forEach((tier, count) -> {
+                if (count.get() > 0) {
+                    upgrades.put(tier, count.get());
+                }
+            });
+            return TierRecalculationStatus.builder()
+                    .state(state)
+                    .dryRun(dryRun)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .totalChunks(totalChunks)
+                    .completedChunks(completedChunks.get())
+                    .failedChunks(failedChunks.get())
+                    .scannedClients(scannedClients.get())
+                    .upgradedClients(upgradedClients.get())
+                    .upgradesByTier(upgrades)
+                    .error(error)
+                    .build();
+        }
+    }
+}
@@ -1,23 +1,25 @@
 package com.smartshop.service.impl;
 
-import com.smartshop.entity.Order;
-import com.smartshop.entity.Payment;
+import com.smartshop.dto.TierRecalculationChunk;
 import com.smartshop.entity.User;
 import com.smartshop.enums.CustomerTier;
-import com.smartshop.enums.OrderStatus;
 import com.smartshop.exception.ResourceNotFoundException;
-import com.smartshop.repository.OrderRepository;
-import com.smartshop.repository.PaymentRepository;
 import com.smartshop.repository.UserRepository;
+import com.smartshop.service.ClientStatisticsCache;
+import com.smartshop.service.LoyaltyRulesService;
 import com.smartshop.service.LoyaltyTierService;
-import com.smartshop.util.LoyaltyTierRules;
+import com.smartshop.util.CompiledLoyaltyRules;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -26,8 +28,8 @@ import java.util.List;
 public class LoyaltyTierServiceImpl implements LoyaltyTierService {
 
     private final UserRepository userRepository;
-    private final OrderRepository orderRepository;
-    private final PaymentRepository paymentRepository;
+    private final LoyaltyRulesService loyaltyRulesService;
+    private final ClientStatisticsCache clientStatisticsCache;
 
     @Override
     public void checkAndUpgradeTier(Long userId) {
@@ -36,22 +38,24 @@ public class LoyaltyTierServiceImpl implements LoyaltyTierService {
 
     @Override
     public User upgradeTierIfEligible(Long userId) {
+        userRepository.clearTierEvaluationPending(userId);
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
 
-        int confirmedOrdersCount = countConfirmedOrders(userId);
-
-        BigDecimal totalSpending = calculateTotalSpending(userId);
+        // Both counters are maintained on the user as payments and confirmations happen
+        int confirmedOrdersCount = user.getConfirmedOrderCount();
+        BigDecimal totalSpending = user.getTotalSpent();
 
         CustomerTier currentTier = user.getLoyaltyTier();
         if (currentTier == null) {
             currentTier = CustomerTier.BASIC;
         }
 
-        if (LoyaltyTierRules.needsUpgrade(currentTier, totalSpending, confirmedOrdersCount)) {
-            CustomerTier newTier = LoyaltyTierRules.getUpgradedTier(totalSpending, confirmedOrdersCount);
+        CustomerTier newTier = loyaltyRulesService.getRules().calculateTier(totalSpending, confirmedOrdersCount);
+        if (newTier.ordinal() > currentTier.ordinal()) {
             user.setLoyaltyTier(newTier);
             User savedUser = userRepository.save(user);
+            clientStatisticsCache.invalidate(userId);
             log.info("Upgraded user {} from {} to {}. Total spending: {}, Confirmed orders: {}",
                     userId, currentTier, newTier, totalSpending, confirmedOrdersCount);
             return savedUser;
@@ -60,23 +64,35 @@ public class LoyaltyTierServiceImpl implements LoyaltyTierService {
         return user;
     }
 
-    private int countConfirmedOrders(Long userId) {
-        List<Order> confirmedOrders = orderRepository.findByUserIdAndStatus(userId, OrderStatus.CONFIRMED);
-        return confirmedOrders.size();
-    }
-
-    private BigDecimal calculateTotalSpending(Long userId) {
-        List<Order> allOrders = orderRepository.findByUserId(userId);
-
-        BigDecimal totalSpending = BigDecimal.ZERO;
-
-        for (Order order : allOrders) {
-            List<Payment> payments = paymentRepository.findByOrderId(order.getId());
-            for (Payment payment : payments) {
-                totalSpending = totalSpending.add(payment.getAmount());
+    @Override
+    public TierRecalculationChunk recalculateTiers(Long fromId, Long toId, boolean dryRun) {
+        List<Object[]> rows = userRepository.findTierInputs(fromId, toId);
+        CompiledLoyaltyRules rules = loyaltyRulesService.getRules();
+
+        Map<CustomerTier, List<Long>> upgradesByTier = new EnumMap<>(CustomerTier.class);
+        for (Object[] row : rows) {
+            CustomerTier currentTier = row[1] != null ? (CustomerTier) row[1] : CustomerTier.BASIC;
+            BigDecimal totalSpending = (BigDecimal) row[2];
+            int confirmedOrdersCount = (Integer) row[3];
+
+            CustomerTier newTier = rules.calculateTier(totalSpending, confirmedOrdersCount);
+            if (newTier.ordinal() > currentTier.ordinal()) {
+                upgradesByTier.computeIfAbsent(newTier, tier -> new ArrayList<>()).add((Long) row[0]);
             }
         }
 
-        return totalSpending;
+        // One UPDATE per target tier rather than one per client
+        TierRecalculationChunk chunk = TierRecalculationChunk.builder().scanned(rows.size()).build();
+        for (Map.Entry<CustomerTier, List<Long>> entry : upgradesByTier.entrySet()) {
+            CustomerTier tier = entry.getKey();
+            List<Long> ids = entry.getValue();
+            int upgraded = ids.size();
+            if (!dryRun) {
+                upgraded = userRepository.upgradeTiers(ids, tier, Arrays.asList(CustomerTier.values()).subList(0, tier.ordinal()));
+                ids.forEach(clientStatisticsCache::invalidate);
+            }
+            chunk.getUpgrades().put(tier, upgraded);
+        }
+        return chunk;
     }
 }
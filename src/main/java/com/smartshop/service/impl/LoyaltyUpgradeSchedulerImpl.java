@@ -0,0 +1,178 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.exception.ResourceNotFoundException;
+import com.smartshop.repository.UserRepository;
+import com.smartshop.service.LoyaltyTierService;
+import com.smartshop.service.LoyaltyUpgradeScheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates loyalty tiers in the background instead of on the request thread.
+ * A request queues the user for one evaluation after a short coalesce window; requests arriving while the user
+ * is queued fold into that evaluation, so a burst of payments costs one evaluation. Evaluations run on a bounded
+ * pool. Users it cannot take, or lost to a restart, keep their tier_evaluation_pending flag and are picked up
+ * by the sweep. With async evaluation off, the tier is evaluated on the calling thread, inside its transaction.
+ */
+@Service
+@Slf4j
+public class LoyaltyUpgradeSchedulerImpl implements LoyaltyUpgradeScheduler {
+
+    private final LoyaltyTierService loyaltyTierService;
+    private final UserRepository userRepository;
+    private final boolean async;
+    private final long coalesceWindowMs;
+    private final int sweepBatchSize;
+
+    // Users waiting for an evaluation that has not started yet
+    private final Set<Long> queuedUsers = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "loyalty-upgrade-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ThreadPoolExecutor workers;
+
+    private final Counter requests;
+    private final Counter coalescedRequests;
+    private final Counter rejectedEvaluations;
+    private final Timer evaluations;
+
+    public LoyaltyUpgradeSchedulerImpl(
+            LoyaltyTierService loyaltyTierService,
+            UserRepository userRepository,
+            MeterRegistry meterRegistry,
+            @Value("${smartshop.loyalty.upgrades.async:true}") boolean async,
+            @Value("${smartshop.loyalty.upgrades.coalesce-window-ms:1000}") long coalesceWindowMs,
+            @Value("${smartshop.loyalty.upgrades.threads:2}") int threads,
+            @Value("${smartshop.loyalty.upgrades.queue-capacity:10000}") int queueCapacity,
+            @Value("${smartshop.loyalty.upgrades.sweep.batch-size:1000}") int sweepBatchSize) {
+        this.loyaltyTierService = loyaltyTierService;
+        this.userRepository = userRepository;
+        this.async = async;
+        this.coalesceWindowMs = coalesceWindowMs;
+        this.sweepBatchSize = sweepBatchSize;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "loyalty-upgrade-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Gauge.builder("smartshop.loyalty.upgrades.queued", queuedUsers, Set::size)
+                .description("Users waiting for a tier evaluation")
+                .register(meterRegistry);
+        this.requests = Counter.builder("smartshop.loyalty.upgrades.requests")
+                .description("Tier evaluation requests")
+                .register(meterRegistry);
+        this.coalescedRequests = Counter.builder("smartshop.loyalty.upgrades.coalesced")
+                .description("Tier evaluation requests folded into an evaluation already queued")
+                .register(meterRegistry);
+        this.rejectedEvaluations = Counter.builder("smartshop.loyalty.upgrades.rejected")
+                .description("Tier evaluations left to the sweep because the pool was full")
+                .register(meterRegistry);
+        this.evaluations = Timer.builder("smartshop.loyalty.upgrades.evaluation")
+                .description("Duration of a tier evaluation")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void requestUpgrade(Long userId) {
+        if (!async) {
+            requests.increment();
+            evaluations.record(() -> loyaltyTierService.upgradeTierIfEligible(userId));
+            return;
+        }
+
+        // The evaluation must see the counters this transaction is about to commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(userId);
+                }
+            });
+        } else {
+            enqueue(userId);
+        }
+    }
+
+    @Scheduled(cron = "${smartshop.loyalty.upgrades.sweep.cron:0 * * * * *}")
+    @Override
+    public int sweepPending() {
+        List<Long> userIds = userRepository.findTierEvaluationPendingIds(Limit.of(sweepBatchSize));
+        int queued = 0;
+        for (Long userId : userIds) {
+            if (!queuedUsers.contains(userId)) {
+                enqueue(userId);
+                queued++;
+            }
+        }
+        if (queued > 0) {
+            log.info("Queued {} users still pending tier evaluation", queued);
+        }
+        return queued;
+    }
+
+    private void enqueue(Long userId) {
+        requests.increment();
+        if (!queuedUsers.add(userId)) {
+            coalescedRequests.increment();
+            return;
+        }
+        timer.schedule(() -> submit(userId), coalesceWindowMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void submit(Long userId) {
+        try {
+            workers.execute(() -> evaluate(userId));
+        } catch (RejectedExecutionException e) {
+            queuedUsers.remove(userId);
+            rejectedEvaluations.increment();
+            log.warn("Tier evaluation queue is full, leaving user {} to the sweep", userId);
+        }
+    }
+
+    private void evaluate(Long userId) {
+        // Requests from here on need a fresh evaluation, since this one may read the counters before them
+        queuedUsers.remove(userId);
+        try {
+            evaluations.record(() -> loyaltyTierService.upgradeTierIfEligible(userId));
+        } catch (ResourceNotFoundException e) {
+            log.debug("User {} was deleted before its tier evaluation", userId);
+        } catch (RuntimeException e) {
+            // The flag was cleared in the rolled back transaction, so the sweep retries this user
+            log.warn("Tier evaluation of user {} failed", userId, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+        workers.shutdown();
+    }
+}
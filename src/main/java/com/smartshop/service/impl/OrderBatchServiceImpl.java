@@ -0,0 +1,120 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.dto.OrderBatchResult;
+import com.smartshop.dto.OrderDTO;
+import com.smartshop.service.OrderBatchService;
+import com.smartshop.service.OrderService;
+import com.smartshop.service.OrderService.OrderRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Creates orders from a stream of requests, one transaction per chunk.
+ * Each chunk goes through {@link OrderService#createOrders(List)}; if the chunk itself fails,
+ * its orders are retried one by one so a single bad order cannot take the others down with it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderBatchServiceImpl implements OrderBatchService {
+
+    private final OrderService orderService;
+
+    @Value("${smartshop.orders.batch.chunk-size:100}")
+    private int chunkSize;
+
+    @Override
+    public void createOrders(Iterator<? extends OrderRequest> requests, Consumer<OrderBatchResult> resultHandler) {
+        long startTime = System.currentTimeMillis();
+        List<OrderRequest> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        int created = 0;
+
+        while (true) {
+            OrderRequest request;
+            try {
+                if (!requests.hasNext()) {
+                    break;
+                }
+                request = requests.next();
+            } catch (RuntimeException e) {
+                // Unreadable input: finish what was already read, then report where the stream broke
+                int firstIndex = index;
+                index += chunk.size();
+                created += processChunk(chunk, firstIndex, resultHandler);
+                log.warn("Order batch stopped at index {}: {}", index, e.getMessage());
+                resultHandler.accept(OrderBatchResult.builder()
+                        .index(index)
+                        .success(false)
+                        .error("Unreadable order request: " + e.getMessage())
+                        .build());
+                return;
+            }
+
+            chunk.add(request);
+            if (chunk.size() >= chunkSize) {
+                int firstIndex = index;
+                index += chunk.size();
+                created += processChunk(chunk, firstIndex, resultHandler);
+            }
+        }
+
+        int firstIndex = index;
+        index += chunk.size();
+        created += processChunk(chunk, firstIndex, resultHandler);
+
+        log.info("Order batch finished: {} of {} orders created in {} ms",
+                created, index, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Creates the chunk's orders, empties the chunk and hands the results to the handler.
+     * Exceptions thrown by the handler propagate to the caller.
+     */
+    private int processChunk(List<OrderRequest> chunk, int firstIndex, Consumer<OrderBatchResult> resultHandler) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+
+        List<OrderBatchResult> results;
+        try {
+            results = orderService.createOrders(chunk);
+        } catch (RuntimeException e) {
+            log.warn("Order batch chunk starting at index {} failed, retrying its orders one by one", firstIndex, e);
+            results = createOneByOne(chunk);
+        }
+        // The chunk is committed: a failing handler (e.g. a disconnected client) must end the batch, not replay it
+        chunk.clear();
+
+        int created = 0;
+        for (int i = 0; i < results.size(); i++) {
+            OrderBatchResult result = results.get(i);
+            result.setIndex(firstIndex + i);
+            if (Boolean.TRUE.equals(result.getSuccess())) {
+                created++;
+            }
+            resultHandler.accept(result);
+        }
+        return created;
+    }
+
+    private List<OrderBatchResult> createOneByOne(List<OrderRequest> chunk) {
+        List<OrderBatchResult> results = new ArrayList<>(chunk.size());
+        for (OrderRequest request : chunk) {
+            try {
+                OrderDTO order = orderService.createOrder(request.userId, request.items, request.couponCode);
+                results.add(OrderBatchResult.builder().success(true).orderId(order.getId()).build());
+            } catch (RuntimeException e) {
+                results.add(OrderBatchResult.builder().success(false).error(e.getMessage()).build());
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,38 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.entity.Order;
+import com.smartshop.enums.OutboxEventType;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.service.ClientStatisticsCache;
+import com.smartshop.service.OrderEventPublisher;
+import com.smartshop.service.OutboxService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+public class OrderEventPublisherImpl implements OrderEventPublisher {
+
+    private final OrderRepository orderRepository;
+    private final OutboxService outboxService;
+    private final ClientStatisticsCache clientStatisticsCache;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(OutboxEventType eventType, Order order) {
+        // The versioned update of the order takes its row lock, which orders its events (see
+        // OutboxEventRepository#lockDueEvents); run it now rather than at commit, after the id was drawn
+        orderRepository.flush();
+
+        clientStatisticsCache.invalidate(order.getUserId());
+        outboxService.publish(eventType, order.getId(), Map.of(
+                "userId", order.getUserId(),
+                "status", order.getStatus(),
+                "totalTTC", order.getTotalTTC(),
+                "remainingAmount", order.getRemainingAmount()));
+    }
+}
@@ -0,0 +1,185 @@
+package com.smartshop.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.smartshop.dto.OrderExport;
+import com.smartshop.dto.OrderExportRow;
+import com.smartshop.dto.OrderItemDTO;
+import com.smartshop.dto.OrderSearchCriteria;
+import com.smartshop.enums.ExportFormat;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.service.OrderExportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Streams orders joined with their items straight from a forward-only cursor to the output,
+ * so memory use does not depend on how many orders match.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(readOnly = true)
+public class OrderExportServiceImpl implements OrderExportService {
+
+    // Bounds used when the caller does not restrict the date range
+    private static final LocalDateTime EXPORT_MIN_DATE = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime EXPORT_MAX_DATE = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private static final String CSV_HEADER = "order_id,user_id,order_date,status,subtotal_ht,total_ttc,remaining_amount," +
+            "coupon_id,item_id,product_id,product_name,quantity,unit_price,line_total";
+
+    // Spreadsheets evaluate a cell starting with one of these as a formula
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    private final OrderRepository orderRepository;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void exportOrders(OrderSearchCriteria criteria, ExportFormat format, OutputStream out) {
+        LocalDateTime from = criteria.getFromDate() != null ? criteria.getFromDate() : EXPORT_MIN_DATE;
+        LocalDateTime to = criteria.getToDate() != null ? criteria.getToDate() : EXPORT_MAX_DATE;
+
+        long startTime = System.nanoTime();
+        long[] counts;
+
+        // The writer is flushed but not closed: the caller owns the output stream
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (Stream<OrderExportRow> rows = orderRepository.streamExportRows(from, to, criteria.getStatus())) {
+
+            counts = format == ExportFormat.CSV
+                    ? writeCsv(rows.iterator(), writer)
+                    : writeNdjson(rows.iterator(), writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+        log.info("Exported {} orders ({} item rows) as {} in {} ms ({} rows/s)",
+                counts[0], counts[1], format, elapsedMillis, counts[1] * 1000 / elapsedMillis);
+    }
+
+    private long[] writeNdjson(Iterator<OrderExportRow> rows, Writer writer) throws IOException {
+        ObjectWriter orderWriter = objectMapper.writerFor(OrderExport.class);
+        long orderCount = 0;
+        long rowCount = 0;
+
+        // Rows arrive grouped by order, so only the current order's items are held in memory
+        OrderExport current = null;
+        while (rows.hasNext()) {
+            OrderExportRow row = rows.next();
+            rowCount++;
+
+            if (current == null || !current.getOrderId().equals(row.getOrderId())) {
+                if (current != null) {
+                    writer.write(orderWriter.writeValueAsString(current));
+                    writer.write('\n');
+                    orderCount++;
+                }
+                current = toOrderExport(row);
+            }
+            current.getItems().add(toItem(row));
+        }
+
+        if (current != null) {
+            writer.write(orderWriter.writeValueAsString(current));
+            writer.write('\n');
+            orderCount++;
+        }
+
+        return new long[]{orderCount, rowCount};
+    }
+
+    private long[] writeCsv(Iterator<OrderExportRow> rows, Writer writer) throws IOException {
+        long orderCount = 0;
+        long rowCount = 0;
+        Long lastOrderId = null;
+
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+
+        while (rows.hasNext()) {
+            OrderExportRow row = rows.next();
+            rowCount++;
+            if (!row.getOrderId().equals(lastOrderId)) {
+                orderCount++;
+                lastOrderId = row.getOrderId();
+            }
+
+            writer.write(String.join(",",
+                    csv(row.getOrderId()),
+                    csv(row.getUserId()),
+                    csv(row.getOrderDate()),
+                    csv(row.getStatus()),
+                    csv(row.getSubtotalHT()),
+                    csv(row.getTotalTTC()),
+                    csv(row.getRemainingAmount()),
+                    csv(row.getCouponId()),
+                    csv(row.getItemId()),
+                    csv(row.getProductId()),
+                    csv(row.getProductName()),
+                    csv(row.getQuantity()),
+                    csv(row.getUnitPrice()),
+                    csv(row.getLineTotal())));
+            writer.write('\n');
+        }
+
+        return new long[]{orderCount, rowCount};
+    }
+
+    private OrderExport toOrderExport(OrderExportRow row) {
+        return OrderExport.builder()
+                .orderId(row.getOrderId())
+                .userId(row.getUserId())
+                .orderDate(row.getOrderDate())
+                .status(row.getStatus())
+                .subtotalHT(row.getSubtotalHT())
+                .totalTTC(row.getTotalTTC())
+                .remainingAmount(row.getRemainingAmount())
+                .couponId(row.getCouponId())
+                .items(new ArrayList<>())
+                .build();
+    }
+
+    private OrderItemDTO toItem(OrderExportRow row) {
+        return OrderItemDTO.builder()
+                .id(row.getItemId())
+                .orderId(row.getOrderId())
+                .productId(row.getProductId())
+                .productName(row.getProductName())
+                .quantity(row.getQuantity())
+                .unitPrice(row.getUnitPrice())
+                .lineTotal(row.getLineTotal())
+                .build();
+    }
+
+    private String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        // Numbers are written as they are; text that would read as a formula is kept as text with a leading quote
+        if (!(value instanceof Number) && !text.isEmpty() && FORMULA_PREFIXES.indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+}
@@ -1,32 +1,55 @@
 package com.smartshop.service.impl;
 
+import com.smartshop.annotation.RetryOnConflict;
+import com.smartshop.dto.CursorPage;
+import com.smartshop.dto.OrderBatchResult;
 import com.smartshop.dto.OrderDTO;
+import com.smartshop.dto.OrderSearchCriteria;
 import com.smartshop.entity.Coupon;
 import com.smartshop.entity.Order;
 import com.smartshop.entity.OrderItem;
 import com.smartshop.entity.Product;
 import com.smartshop.entity.User;
+import com.smartshop.enums.CustomerTier;
 import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.OutboxEventType;
 import com.smartshop.exception.ResourceNotFoundException;
+import com.smartshop.exception.UnauthorizedException;
+import com.smartshop.mapper.OrderItemMapper;
 import com.smartshop.mapper.OrderMapper;
+import com.smartshop.mapper.PaymentMapper;
 import com.smartshop.repository.CouponRepository;
 import com.smartshop.repository.OrderItemRepository;
 import com.smartshop.repository.OrderRepository;
+import com.smartshop.repository.OrderSpecifications;
+import com.smartshop.repository.PaymentRepository;
 import com.smartshop.repository.ProductRepository;
 import com.smartshop.repository.UserRepository;
-import com.smartshop.service.LoyaltyTierService;
+import com.smartshop.service.LoyaltyRulesService;
+import com.smartshop.service.LoyaltyUpgradeScheduler;
+import com.smartshop.service.OrderEventPublisher;
 import com.smartshop.service.OrderService;
-import com.smartshop.util.CustomerTierDiscount;
+import com.smartshop.service.RelatedProductsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -36,11 +59,21 @@ public class OrderServiceImpl implements OrderService {
 
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
+    private final PaymentRepository paymentRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final CouponRepository couponRepository;
-    private final LoyaltyTierService loyaltyTierService;
+    private final LoyaltyUpgradeScheduler loyaltyUpgradeScheduler;
+    private final LoyaltyRulesService loyaltyRulesService;
+    private final OrderEventPublisher orderEventPublisher;
+    private final RelatedProductsService relatedProductsService;
     private final OrderMapper orderMapper;
+    private final OrderItemMapper orderItemMapper;
+    private final PaymentMapper paymentMapper;
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String CURSOR_SEPARATOR = "_";
+    private static final Sort ORDER_LISTING_SORT = Sort.by(Sort.Order.desc("orderDate"), Sort.Order.desc("id"));
 
     @Override
     public OrderDTO createOrder(Long userId, List<OrderItemRequest> items, String couponCode) {
@@ -52,18 +85,143 @@ public class OrderServiceImpl implements OrderService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
 
+        // Load all referenced products in one query and validate stock against them
+        Map<Long, Product> products = loadProducts(items);
+        validateProducts(items, products);
+
+        Coupon coupon = null;
+        if (hasCouponCode(couponCode)) {
+            coupon = couponRepository.findByCode(couponCode)
+                    .orElseThrow(() -> new ResourceNotFoundException("Coupon not found with code: " + couponCode));
+        }
+
+        PricedOrder pricedOrder = priceOrder(user, items, products, coupon);
+
+        Order savedOrder = orderRepository.save(pricedOrder.order);
+        logCreatedOrder(savedOrder, pricedOrder);
+
+        // Save order items in one JDBC batch
+        for (OrderItem item : pricedOrder.items) {
+            item.setOrderId(savedOrder.getId());
+        }
+        orderItemRepository.saveAll(pricedOrder.items);
+
+        orderEventPublisher.publish(OutboxEventType.ORDER_CREATED, savedOrder);
+        recordRelatedProducts(savedOrder, pricedOrder.items);
+
+        return orderMapper.toDTO(savedOrder);
+    }
+
+    @Override
+    public List<OrderBatchResult> createOrders(List<OrderRequest> requests) {
+        // Resolve users, products and coupons for the whole chunk up front
+        Set<Long> userIds = new HashSet<>();
+        List<OrderItemRequest> allItems = new ArrayList<>();
+        Set<String> couponCodes = new HashSet<>();
+        for (OrderRequest request : requests) {
+            if (request.userId != null) {
+                userIds.add(request.userId);
+            }
+            if (request.items != null) {
+                allItems.addAll(request.items);
+            }
+            if (hasCouponCode(request.couponCode)) {
+                couponCodes.add(request.couponCode);
+            }
+        }
+
+        Map<Long, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(userIds)) {
+            users.put(user.getId(), user);
+        }
+        Map<Long, Product> products = loadProducts(allItems);
+        Map<String, Coupon> coupons = new HashMap<>();
+        if (!couponCodes.isEmpty()) {
+            for (Coupon coupon : couponRepository.findByCodeIn(couponCodes)) {
+                coupons.put(coupon.getCode(), coupon);
+            }
+        }
+
+        // Price every order in memory; a rejected order only fails its own result
+        List<OrderBatchResult> results = new ArrayList<>(requests.size());
+        List<PricedOrder> pricedOrders = new ArrayList<>();
+        List<OrderBatchResult> createdResults = new ArrayList<>();
+        for (OrderRequest request : requests) {
+            try {
+                PricedOrder pricedOrder = priceOrder(request, users, products, coupons);
+                pricedOrders.add(pricedOrder);
+
+                OrderBatchResult result = OrderBatchResult.builder().success(true).build();
+                createdResults.add(result);
+                results.add(result);
+            } catch (ResourceNotFoundException | IllegalArgumentException e) {
+                results.add(OrderBatchResult.builder().success(false).error(e.getMessage()).build());
+            }
+        }
+
+        if (pricedOrders.isEmpty()) {
+            return results;
+        }
+
+        List<Order> orders = new ArrayList<>(pricedOrders.size());
+        for (PricedOrder pricedOrder : pricedOrders) {
+            orders.add(pricedOrder.order);
+        }
+        List<Order> savedOrders = orderRepository.saveAll(orders);
+
         List<OrderItem> orderItems = new ArrayList<>();
-        BigDecimal subtotalHT = BigDecimal.ZERO;
+        for (int i = 0; i < pricedOrders.size(); i++) {
+            Order savedOrder = savedOrders.get(i);
+            PricedOrder pricedOrder = pricedOrders.get(i);
+            for (OrderItem item : pricedOrder.items) {
+                item.setOrderId(savedOrder.getId());
+                orderItems.add(item);
+            }
+            createdResults.get(i).setOrderId(savedOrder.getId());
+            logCreatedOrder(savedOrder, pricedOrder);
+        }
+        orderItemRepository.saveAll(orderItems);
 
-        // Calculate subtotal and validate stock
-        for (OrderItemRequest itemRequest : items) {
-            Product product = productRepository.findByIdAndDeletedFalse(itemRequest.productId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + itemRequest.productId));
+        for (int i = 0; i < savedOrders.size(); i++) {
+            orderEventPublisher.publish(OutboxEventType.ORDER_CREATED, savedOrders.get(i));
+            recordRelatedProducts(savedOrders.get(i), pricedOrders.get(i).items);
+        }
+
+        log.info("Created {} of {} orders in batch chunk", savedOrders.size(), requests.size());
+        return results;
+    }
+
+    private PricedOrder priceOrder(OrderRequest request, Map<Long, User> users,
+                                   Map<Long, Product> products, Map<String, Coupon> coupons) {
+        if (request.items == null || request.items.isEmpty()) {
+            throw new IllegalArgumentException("Order must contain at least one item");
+        }
+
+        User user = users.get(request.userId);
+        if (user == null) {
+            throw new ResourceNotFoundException("User not found with id: " + request.userId);
+        }
 
-            if (product.getStock() < itemRequest.quantity) {
-                throw new IllegalArgumentException("Insufficient stock for product: " + product.getName() +
-                        ". Available: " + product.getStock() + ", Requested: " + itemRequest.quantity);
+        validateProducts(request.items, products);
+
+        Coupon coupon = null;
+        if (hasCouponCode(request.couponCode)) {
+            coupon = coupons.get(request.couponCode);
+            if (coupon == null) {
+                throw new ResourceNotFoundException("Coupon not found with code: " + request.couponCode);
             }
+        }
+
+        return priceOrder(user, request.items, products, coupon);
+    }
+
+    private PricedOrder priceOrder(User user, List<OrderItemRequest> items, Map<Long, Product> products, Coupon coupon) {
+        List<OrderItem> orderItems = new ArrayList<>();
+        BigDecimal subtotalHT = BigDecimal.ZERO;
+
+        // Calculate subtotal
+        for (OrderItemRequest itemRequest : items) {
+            Product product = products.get(itemRequest.productId);
 
             BigDecimal lineTotal = product.getUnitPrice().multiply(new BigDecimal(itemRequest.quantity));
             subtotalHT = subtotalHT.add(lineTotal);
@@ -80,15 +238,13 @@ public class OrderServiceImpl implements OrderService {
         }
 
         // Calculate loyalty discount
-        BigDecimal loyaltyDiscountAmount = CustomerTierDiscount.applyLoyaltyDiscount(user.getLoyaltyTier(), subtotalHT);
+        BigDecimal loyaltyDiscountAmount = loyaltyRulesService.getRules()
+                .applyLoyaltyDiscount(user.getLoyaltyTier(), subtotalHT);
 
         // Calculate coupon discount and get couponId
         BigDecimal couponDiscountAmount = BigDecimal.ZERO;
         Long couponId = null;
-        if (couponCode != null && !couponCode.trim().isEmpty()) {
-            Coupon coupon = couponRepository.findByCode(couponCode)
-                    .orElseThrow(() -> new ResourceNotFoundException("Coupon not found with code: " + couponCode));
-
+        if (coupon != null) {
             // Check if coupon is already used
             if (coupon.getIsUsed()) {
                 throw new IllegalArgumentException("Coupon has already been used");
@@ -98,7 +254,7 @@ public class OrderServiceImpl implements OrderService {
                     .setScale(2, RoundingMode.HALF_UP);
 
             couponId = coupon.getId();
-            log.info("Applied coupon: {} (will be marked as used when payment is made)", couponCode);
+            log.info("Applied coupon: {} (will be marked as used when payment is made)", coupon.getCode());
         }
 
         // Calculate total discount and amount after discount
@@ -114,26 +270,90 @@ public class OrderServiceImpl implements OrderService {
 
         // Create order with subtotalHT, totalTTC, remainingAmount, and couponId
         Order order = Order.builder()
-                .userId(userId)
+                .userId(user.getId())
                 .orderDate(LocalDateTime.now())
                 .status(OrderStatus.PENDING)
                 .subtotalHT(subtotalHT)
                 .totalTTC(totalTTC)
                 .remainingAmount(totalTTC)
                 .couponId(couponId)
+                .discountAmount(totalDiscount.setScale(2, RoundingMode.HALF_UP))
+                .customerTier(user.getLoyaltyTier() != null ? user.getLoyaltyTier() : CustomerTier.BASIC)
                 .build();
 
-        Order savedOrder = orderRepository.save(order);
+        return new PricedOrder(order, orderItems, loyaltyDiscountAmount, couponDiscountAmount);
+    }
+
+    private void logCreatedOrder(Order savedOrder, PricedOrder pricedOrder) {
         log.info("Created order with id: {} for user: {}. Subtotal: {}, Loyalty discount: {}, Coupon discount: {}, Total: {}",
-                savedOrder.getId(), userId, subtotalHT, loyaltyDiscountAmount, couponDiscountAmount, totalTTC);
+                savedOrder.getId(), savedOrder.getUserId(), savedOrder.getSubtotalHT(),
+                pricedOrder.loyaltyDiscountAmount, pricedOrder.couponDiscountAmount, savedOrder.getTotalTTC());
+    }
 
-        // Save order items
-        for (OrderItem item : orderItems) {
-            item.setOrderId(savedOrder.getId());
-            orderItemRepository.save(item);
+    private void recordRelatedProducts(Order order, List<OrderItem> items) {
+        List<Long> productIds = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            productIds.add(item.getProductId());
         }
+        relatedProductsService.recordOrder(order.getId(), productIds);
+    }
 
-        return orderMapper.toDTO(savedOrder);
+    private boolean hasCouponCode(String couponCode) {
+        return couponCode != null && !couponCode.trim().isEmpty();
+    }
+
+    private Map<Long, Product> loadProducts(List<OrderItemRequest> items) {
+        Set<Long> productIds = new HashSet<>();
+        for (OrderItemRequest itemRequest : items) {
+            if (itemRequest.productId != null) {
+                productIds.add(itemRequest.productId);
+            }
+        }
+
+        Map<Long, Product> products = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return products;
+        }
+        for (Product product : productRepository.findByIdInAndDeletedFalse(productIds)) {
+            products.put(product.getId(), product);
+        }
+        return products;
+    }
+
+    private void validateProducts(List<OrderItemRequest> items, Map<Long, Product> products) {
+        // Sum requested quantities per product so repeated lines are checked against the same stock
+        Map<Long, Integer> requestedQuantities = new LinkedHashMap<>();
+        for (OrderItemRequest itemRequest : items) {
+            if (itemRequest.productId == null || itemRequest.quantity == null || itemRequest.quantity <= 0) {
+                throw new IllegalArgumentException("Each order item requires a product ID and a positive quantity");
+            }
+            requestedQuantities.merge(itemRequest.productId, itemRequest.quantity, Integer::sum);
+        }
+
+        List<Long> missingProductIds = new ArrayList<>();
+        List<String> stockErrors = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : requestedQuantities.entrySet()) {
+            Product product = products.get(entry.getKey());
+            if (product == null) {
+                missingProductIds.add(entry.getKey());
+            } else if (product.getStock() < entry.getValue()) {
+                stockErrors.add("Insufficient stock for product: " + product.getName() +
+                        ". Available: " + product.getStock() + ", Requested: " + entry.getValue());
+            }
+        }
+
+        if (!missingProductIds.isEmpty()) {
+            StringBuilder message = new StringBuilder("Product not found with id: ");
+            message.append(missingProductIds.stream().map(String::valueOf).collect(Collectors.joining(", ")));
+            if (!stockErrors.isEmpty()) {
+                message.append("; ").append(String.join("; ", stockErrors));
+            }
+            throw new ResourceNotFoundException(message.toString());
+        }
+
+        if (!stockErrors.isEmpty()) {
+            throw new IllegalArgumentException(String.join("; ", stockErrors));
+        }
     }
 
     @Override
@@ -146,19 +366,77 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<OrderDTO> getOrdersByUserId(Long userId) {
-        List<Order> orders = orderRepository.findByUserId(userId);
-        return orderMapper.toDTOList(orders);
+    public OrderDTO getOrderDetail(Long id, Long ownerId, boolean includeItems, boolean includePayments) {
+        Order order = orderRepository.findByIdAndOwner(id, ownerId).orElseThrow(() -> {
+            // Only the failure path needs a second query, to tell a foreign order from a missing one
+            if (ownerId != null && orderRepository.existsById(id)) {
+                return new UnauthorizedException("You can only view your own orders");
+            }
+            return new ResourceNotFoundException("Order not found with id: " + id);
+        });
+
+        // One query per requested collection, rather than a join returning their cross product
+        OrderDTO orderDTO = orderMapper.toDTO(order);
+        if (includeItems) {
+            orderDTO.setItems(orderItemMapper.toDTOList(orderItemRepository.findByOrderIdOrderByIdAsc(id)));
+        }
+        if (includePayments) {
+            orderDTO.setPayments(paymentMapper.toDTOList(paymentRepository.findByOrderIdOrderByPaymentNumberAsc(id)));
+        }
+        return orderDTO;
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<OrderDTO> getAllOrders() {
-        List<Order> orders = orderRepository.findAll();
-        return orderMapper.toDTOList(orders);
+    public CursorPage<OrderDTO> getOrders(OrderSearchCriteria criteria, String cursor, int size, boolean includeTotal) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        Specification<Order> filter = OrderSpecifications.matching(criteria);
+        Specification<Order> pageSpec = filter;
+        if (cursor != null && !cursor.isBlank()) {
+            Order position = decodeCursor(cursor);
+            pageSpec = pageSpec.and(OrderSpecifications.before(position.getOrderDate(), position.getId()));
+        }
+
+        // Fetch one extra row to know whether another page exists without counting
+        List<Order> orders = orderRepository.findBy(pageSpec,
+                query -> query.sortBy(ORDER_LISTING_SORT).limit(size + 1).all());
+
+        boolean hasMore = orders.size() > size;
+        if (hasMore) {
+            orders = orders.subList(0, size);
+        }
+
+        return CursorPage.<OrderDTO>builder()
+                .items(orderMapper.toDTOList(orders))
+                .hasMore(hasMore)
+                .nextCursor(hasMore ? encodeCursor(orders.get(orders.size() - 1)) : null)
+                .totalCount(includeTotal ? orderRepository.count(filter) : null)
+                .build();
+    }
+
+    private String encodeCursor(Order order) {
+        String position = order.getOrderDate() + CURSOR_SEPARATOR + order.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Order decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf(CURSOR_SEPARATOR);
+            return Order.builder()
+                    .orderDate(LocalDateTime.parse(position.substring(0, separator)))
+                    .id(Long.parseLong(position.substring(separator + 1)))
+                    .build();
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
     }
 
     @Override
+    @RetryOnConflict
     public OrderDTO confirmOrder(Long orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
@@ -175,14 +453,18 @@ public class OrderServiceImpl implements OrderService {
 
         order.setStatus(OrderStatus.CONFIRMED);
         Order confirmedOrder = orderRepository.save(order);
+        userRepository.incrementConfirmedOrderCount(order.getUserId());
         log.info("Confirmed order with id: {}", orderId);
 
-        loyaltyTierService.checkAndUpgradeTier(order.getUserId());
+        orderEventPublisher.publish(OutboxEventType.ORDER_CONFIRMED, confirmedOrder);
+
+        loyaltyUpgradeScheduler.requestUpgrade(order.getUserId());
 
         return orderMapper.toDTO(confirmedOrder);
     }
 
     @Override
+    @RetryOnConflict
     public OrderDTO cancelOrder(Long orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
@@ -201,6 +483,23 @@ public class OrderServiceImpl implements OrderService {
         Order canceledOrder = orderRepository.save(order);
         log.info("Canceled order with id: {}", orderId);
 
+        orderEventPublisher.publish(OutboxEventType.ORDER_CANCELED, canceledOrder);
+
         return orderMapper.toDTO(canceledOrder);
     }
+
+    private static class PricedOrder {
+        private final Order order;
+        private final List<OrderItem> items;
+        private final BigDecimal loyaltyDiscountAmount;
+        private final BigDecimal couponDiscountAmount;
+
+        private PricedOrder(Order order, List<OrderItem> items,
+                            BigDecimal loyaltyDiscountAmount, BigDecimal couponDiscountAmount) {
+            this.order = order;
+            this.items = items;
+            this.loyaltyDiscountAmount = loyaltyDiscountAmount;
+            this.couponDiscountAmount = couponDiscountAmount;
+        }
+    }
 }
@@ -0,0 +1,241 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.enums.OutboxEventType;
+import com.smartshop.service.OutboxDispatcher;
+import com.smartshop.service.OutboxService;
+import com.smartshop.service.OutboxSubscriber;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the outbox to the subscribers on a single background thread.
+ * A commit that published events wakes the dispatcher up after a short coalesce window, so a burst of
+ * events is delivered in a few batches; polling picks up whatever was left behind by a crash or a failure.
+ * With async dispatch off, events are delivered on the publishing thread, inside its transaction.
+ */
+@Service
+@Slf4j
+public class OutboxDispatcherImpl implements OutboxDispatcher {
+
+    private final OutboxService outboxService;
+    private final ObjectProvider<OutboxSubscriber> subscriberProvider;
+    private final boolean async;
+    private final long coalesceWindowMs;
+    private final long pollIntervalMs;
+    private final int batchSize;
+    private final int retentionDays;
+
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final AtomicLong pendingEvents = new AtomicLong();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "outbox-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Resolved on first use: subscribers may themselves publish events
+    private volatile List<OutboxSubscriber> subscribers;
+
+    private final Counter deliveredEvents;
+    private final Counter failures;
+    private final DistributionSummary batchSizes;
+    private final Timer lag;
+
+    public OutboxDispatcherImpl(
+            OutboxService outboxService,
+            ObjectProvider<OutboxSubscriber> subscriberProvider,
+            MeterRegistry meterRegistry,
+            @Value("${smartshop.outbox.dispatch.async:true}") boolean async,
+            @Value("${smartshop.outbox.dispatch.coalesce-window-ms:200}") long coalesceWindowMs,
+            @Value("${smartshop.outbox.dispatch.poll-interval-ms:5000}") long pollIntervalMs,
+            @Value("${smartshop.outbox.dispatch.batch-size:500}") int batchSize,
+            @Value("${smartshop.outbox.retention-days:7}") int retentionDays) {
+        this.outboxService = outboxService;
+        this.subscriberProvider = subscriberProvider;
+        this.async = async;
+        this.coalesceWindowMs = coalesceWindowMs;
+        this.pollIntervalMs = pollIntervalMs;
+        this.batchSize = batchSize;
+        this.retentionDays = retentionDays;
+
+        Gauge.builder("smartshop.outbox.pending", pendingEvents, AtomicLong::get)
+                .description("Undelivered outbox events, as of the last dispatch")
+                .register(meterRegistry);
+        this.deliveredEvents = Counter.builder("smartshop.outbox.delivered")
+                .register(meterRegistry);
+        this.failures = Counter.builder("smartshop.outbox.failures")
+                .description("Outbox events whose delivery failed and was rescheduled")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("smartshop.outbox.batch.size")
+                .description("Outbox events delivered per batch")
+                .register(meterRegistry);
+        this.lag = Timer.builder("smartshop.outbox.lag")
+                .description("Time from publishing an outbox event to its delivery")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (async) {
+            executor.scheduleWithFixedDelay(this::drain, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @EventListener
+    public void onPublished(OutboxEvent event) {
+        if (!async) {
+            deliverNow(event);
+            return;
+        }
+
+        // The event is only visible to the dispatcher once the publishing transaction has committed
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    scheduleDrain(coalesceWindowMs);
+                }
+            });
+        } else {
+            scheduleDrain(coalesceWindowMs);
+        }
+    }
+
+    @Override
+    public int dispatchPending() {
+        int delivered = 0;
+        List<OutboxEvent> batch;
+        while (!(batch = outboxService.claimBatch(batchSize)).isEmpty()) {
+            delivered += deliver(batch);
+        }
+        pendingEvents.set(outboxService.countPending());
+        return delivered;
+    }
+
+    @Override
+    public int replay(LocalDateTime since, OutboxEventType eventType) {
+        int replayed = outboxService.replay(since, eventType);
+        if (async) {
+            scheduleDrain(0);
+        } else {
+            dispatchPending();
+        }
+        return replayed;
+    }
+
+    @Scheduled(cron = "${smartshop.outbox.purge.cron:0 30 3 * * *}")
+    public void purgeDelivered() {
+        try {
+            outboxService.purgeDelivered(LocalDateTime.now().minusDays(retentionDays));
+        } catch (RuntimeException e) {
+            log.error("Outbox purge failed", e);
+        }
+    }
+
+    private void deliverNow(OutboxEvent event) {
+        notifySubscribers(List.of(event));
+        // The event is still managed by the publishing transaction, which stores the delivery with it
+        event.setDeliveredAt(LocalDateTime.now());
+        deliveredEvents.increment();
+    }
+
+    private int deliver(List<OutboxEvent> batch) {
+        List<OutboxEvent> delivered = new ArrayList<>(batch.size());
+        try {
+            notifySubscribers(batch);
+            delivered.addAll(batch);
+        } catch (RuntimeException batchFailure) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), batchFailure);
+            } else {
+                // Retry the events one by one so a single bad event cannot hold the others back
+                log.warn("Delivery of {} outbox events failed, retrying them one by one", batch.size(), batchFailure);
+                for (OutboxEvent event : batch) {
+                    try {
+                        notifySubscribers(List.of(event));
+                        delivered.add(event);
+                    } catch (RuntimeException e) {
+                        fail(event, e);
+                    }
+                }
+            }
+        }
+
+        if (!delivered.isEmpty()) {
+            outboxService.markDelivered(delivered.stream().map(OutboxEvent::getId).toList());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        delivered.forEach(event -> lag.record(Duration.between(event.getCreatedAt(), now)));
+        batchSizes.record(batch.size());
+        deliveredEvents.increment(delivered.size());
+        return delivered.size();
+    }
+
+    private void fail(OutboxEvent event, RuntimeException e) {
+        failures.increment();
+        outboxService.markFailed(event, e.toString());
+    }
+
+    private void notifySubscribers(List<OutboxEvent> events) {
+        for (OutboxSubscriber subscriber : subscribers()) {
+            subscriber.onEvents(events);
+        }
+    }
+
+    private List<OutboxSubscriber> subscribers() {
+        List<OutboxSubscriber> resolved = subscribers;
+        if (resolved == null) {
+            resolved = subscriberProvider.orderedStream().toList();
+            subscribers = resolved;
+        }
+        return resolved;
+    }
+
+    private void scheduleDrain(long delayMs) {
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::drain, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void drain() {
+        // Cleared first: events committed while a batch runs schedule the next drain themselves
+        drainScheduled.set(false);
+
+        try {
+            dispatchPending();
+        } catch (RuntimeException e) {
+            // Claimed events are released when their lease runs out; the next poll retries the rest
+            log.error("Outbox dispatch failed", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,128 @@
+package com.smartshop.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.enums.OutboxEventType;
+import com.smartshop.repository.OutboxEventRepository;
+import com.smartshop.service.OutboxService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores order and payment events next to the data they describe.
+ * Publishing also raises the saved event as an application event, which wakes the dispatcher up.
+ */
+@Service
+@Slf4j
+@Transactional
+public class OutboxServiceImpl implements OutboxService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final long leaseSeconds;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    public OutboxServiceImpl(
+            OutboxEventRepository outboxEventRepository,
+            ObjectMapper objectMapper,
+            ApplicationEventPublisher applicationEventPublisher,
+            @Value("${smartshop.outbox.lease-seconds:60}") long leaseSeconds,
+            @Value("${smartshop.outbox.retry.initial-backoff-ms:1000}") long initialBackoffMs,
+            @Value("${smartshop.outbox.retry.max-backoff-ms:300000}") long maxBackoffMs) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.leaseSeconds = leaseSeconds;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(OutboxEventType eventType, Long orderId, Map<String, Object> payload) {
+        LocalDateTime now = LocalDateTime.now();
+        OutboxEvent event;
+        try {
+            event = OutboxEvent.builder()
+                    .eventType(eventType)
+                    .orderId(orderId)
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .createdAt(now)
+                    .availableAt(now)
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize " + eventType + " event of order " + orderId, e);
+        }
+
+        OutboxEvent savedEvent = outboxEventRepository.save(event);
+        log.debug("Published {} event {} for order {}", eventType, savedEvent.getId(), orderId);
+        applicationEventPublisher.publishEvent(savedEvent);
+    }
+
+    @Override
+    public List<OutboxEvent> claimBatch(int batchSize) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> events = outboxEventRepository.lockDueEvents(now, Limit.of(batchSize));
+        if (events.isEmpty()) {
+            return events;
+        }
+
+        // A dispatcher that dies while holding the events releases them when the lease runs out
+        List<Long> ids = events.stream().map(OutboxEvent::getId).toList();
+        outboxEventRepository.lease(ids, now.plusSeconds(leaseSeconds));
+        events.forEach(event -> event.setAttempts(event.getAttempts() + 1));
+        return events;
+    }
+
+    @Override
+    public void markDelivered(Collection<Long> eventIds) {
+        outboxEventRepository.markDelivered(eventIds, LocalDateTime.now());
+    }
+
+    @Override
+    public void markFailed(OutboxEvent event, String error) {
+        long backoffMs = initialBackoffMs << Math.min(Math.max(event.getAttempts() - 1, 0), 20);
+        LocalDateTime retryAt = LocalDateTime.now().plusNanos(Math.min(backoffMs, maxBackoffMs) * 1_000_000);
+
+        String lastError = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        outboxEventRepository.markFailed(event.getId(), retryAt, lastError);
+        log.warn("Outbox event {} ({}) failed after {} attempts, retrying at {}: {}",
+                event.getId(), event.getEventType(), event.getAttempts(), retryAt, error);
+    }
+
+    @Override
+    public int replay(LocalDateTime since, OutboxEventType eventType) {
+        int replayed = outboxEventRepository.replay(since, eventType, LocalDateTime.now());
+        log.info("Replaying {} outbox events created since {} (type: {})",
+                replayed, since, eventType != null ? eventType : "all");
+        return replayed;
+    }
+
+    @Override
+    public int purgeDelivered(LocalDateTime before) {
+        int purged = outboxEventRepository.deleteDeliveredBefore(before);
+        log.info("Purged {} outbox events delivered before {}", purged, before);
+        return purged;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countPending() {
+        return outboxEventRepository.countByDeliveredAtIsNull();
+    }
+}
@@ -0,0 +1,58 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.enums.OutboxEventType;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.repository.PaymentRepository;
+import com.smartshop.service.OutboxService;
+import com.smartshop.service.PaymentCollectionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class PaymentCollectionServiceImpl implements PaymentCollectionService {
+
+    private final PaymentRepository paymentRepository;
+    private final OrderRepository orderRepository;
+    private final OutboxService outboxService;
+
+    @Override
+    public int collectDueChunk(LocalDate date, int chunkSize) {
+        // The ids stay locked until commit, so concurrent collectors take disjoint chunks
+        List<Long> ids = paymentRepository.lockDuePendingPaymentIds(date, Limit.of(chunkSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        int collected = paymentRepository.markCollected(ids, date);
+        log.debug("Collected {} of {} due payments", collected, ids.size());
+
+        // Locked pending payments cannot have changed, so every id was collected
+        List<Object[]> rows = paymentRepository.findOrderIdsByIds(ids);
+        // Collecting leaves the orders untouched, so lock them to keep the events in line with theirs
+        // (see OutboxEventRepository#lockDueEvents)
+        Set<Long> orderIds = new HashSet<>();
+        for (Object[] row : rows) {
+            orderIds.add((Long) row[1]);
+        }
+        orderRepository.lockByIds(orderIds);
+
+        for (Object[] row : rows) {
+            outboxService.publish(OutboxEventType.PAYMENT_COLLECTED, (Long) row[1], Map.of(
+                    "paymentId", row[0],
+                    "collectionDate", date));
+        }
+        return collected;
+    }
+}
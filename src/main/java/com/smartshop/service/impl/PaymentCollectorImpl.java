@@ -0,0 +1,82 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.service.PaymentCollectionService;
+import com.smartshop.service.PaymentCollector;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves due CHECK and TRANSFER payments to COLLECTED on a schedule.
+ * Each chunk is its own transaction, so a long backlog never holds locks for the whole run,
+ * and every node of a cluster can run the collector: chunks are claimed with SKIP LOCKED.
+ */
+@Service
+@Slf4j
+public class PaymentCollectorImpl implements PaymentCollector {
+
+    private final PaymentCollectionService paymentCollectionService;
+    private final int chunkSize;
+
+    private final Counter collectedPayments;
+    private final Timer runs;
+
+    public PaymentCollectorImpl(
+            PaymentCollectionService paymentCollectionService,
+            MeterRegistry meterRegistry,
+            @Value("${smartshop.payments.collection.chunk-size:500}") int chunkSize) {
+        this.paymentCollectionService = paymentCollectionService;
+        this.chunkSize = chunkSize;
+
+        this.collectedPayments = Counter.builder("smartshop.collection.payments")
+                .description("Payments moved from PENDING to COLLECTED")
+                .register(meterRegistry);
+        this.runs = Timer.builder("smartshop.collection.run")
+                .description("Duration of a payment collection run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${smartshop.payments.collection.cron:0 0 * * * *}")
+    public void scheduledCollection() {
+        try {
+            collectDuePayments();
+        } catch (RuntimeException e) {
+            // The next run picks up whatever this one left pending
+            log.error("Payment collection run failed", e);
+        }
+    }
+
+    @Override
+    public int collectDuePayments() {
+        LocalDate today = LocalDate.now();
+        long startTime = System.nanoTime();
+        int total = 0;
+        int chunks = 0;
+
+        // A short chunk means nothing is left that another node is not already collecting
+        int collected;
+        do {
+            collected = paymentCollectionService.collectDueChunk(today, chunkSize);
+            collectedPayments.increment(collected);
+            total += collected;
+            chunks++;
+        } while (collected == chunkSize);
+
+        long elapsedNanos = System.nanoTime() - startTime;
+        runs.record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        if (total > 0) {
+            long elapsedMs = Math.max(1, elapsedNanos / 1_000_000);
+            log.info("Collected {} due payments in {} chunks in {} ms ({} payments/s)",
+                    total, chunks, elapsedMs, total * 1000L / elapsedMs);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,266 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.dto.PaymentDTO;
+import com.smartshop.dto.PaymentImportResult;
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
+import com.smartshop.service.PaymentImportService;
+import com.smartshop.service.PaymentService;
+import com.smartshop.util.CsvLineReader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Imports CSV bank statements, one transaction per chunk of rows.
+ * The statement starts with a header naming its columns, in any order:
+ * payment_date, reference, amount, method (required) and bank_name, due_date, status (optional).
+ * Rows are matched to their order through an ORD-&lt;id&gt; token in the reference, e.g. "VIR ORD-42 ACME".
+ * Each chunk goes through {@link PaymentService#createPayments(List)}; if the chunk itself fails,
+ * its rows are retried one by one so a single bad row cannot take the others down with it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentImportServiceImpl implements PaymentImportService {
+
+    private static final Pattern ORDER_REFERENCE = Pattern.compile("\\bORD(?:ER)?[-#]?(\\d+)\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final List<String> REQUIRED_COLUMNS = List.of("payment_date", "reference", "amount", "method");
+
+    private final PaymentService paymentService;
+
+    @Value("${smartshop.payments.import.chunk-size:100}")
+    private int chunkSize;
+
+    // Longer lines are reported as invalid rather than buffered whole
+    @Value("${smartshop.payments.import.max-line-length:4096}")
+    private int maxLineLength;
+
+    @Override
+    public void importStatement(ReadableByteChannel statement, Consumer<PaymentImportResult> resultHandler) {
+        long startTime = System.currentTimeMillis();
+        List<StatementRow> chunk = new ArrayList<>(chunkSize);
+        int rows = 0;
+        int imported = 0;
+        int lastLine = 0;
+
+        try (CsvLineReader reader = new CsvLineReader(statement, StandardCharsets.UTF_8, maxLineLength)) {
+            Map<String, Integer> columns;
+            try {
+                String header = reader.readLine();
+                lastLine = reader.getLineNumber();
+                if (header == null) {
+                    resultHandler.accept(failure(1, "Statement is empty"));
+                    return;
+                }
+                columns = readHeader(header);
+            } catch (IllegalArgumentException e) {
+                resultHandler.accept(failure(reader.getLineNumber(), e.getMessage()));
+                return;
+            }
+
+            while (true) {
+                StatementRow row;
+                try {
+                    String line = reader.readLine();
+                    if (line == null) {
+                        break;
+                    }
+                    lastLine = reader.getLineNumber();
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    row = parseRow(lastLine, line, columns);
+                } catch (IllegalArgumentException e) {
+                    // The reader skipped an overlong line: report it and carry on with the next one
+                    lastLine = reader.getLineNumber();
+                    row = new StatementRow(lastLine, null, failure(lastLine, "Invalid row: " + e.getMessage()));
+                }
+                chunk.add(row);
+                rows++;
+                if (chunk.size() >= chunkSize) {
+                    imported += processChunk(chunk, resultHandler);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            // Unreadable input: finish what was already read, then report where the statement broke
+            imported += processChunk(chunk, resultHandler);
+            int brokenLine = lastLine + 1;
+            log.warn("Statement import stopped at line {}: {}", brokenLine, e.getMessage());
+            resultHandler.accept(failure(brokenLine, "Unreadable statement: " + e.getMessage()));
+            return;
+        }
+
+        imported += processChunk(chunk, resultHandler);
+
+        log.info("Statement import finished: {} of {} payments imported in {} ms",
+                imported, rows, System.currentTimeMillis() - startTime);
+    }
+
+    private int processChunk(List<StatementRow> chunk, Consumer<PaymentImportResult> resultHandler) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+
+        List<PaymentDTO> payments = new ArrayList<>(chunk.size());
+        for (StatementRow row : chunk) {
+            if (row.payment != null) {
+                payments.add(row.payment);
+            }
+        }
+
+        List<PaymentImportResult> results = List.of();
+        if (!payments.isEmpty()) {
+            try {
+                results = paymentService.createPayments(payments);
+            } catch (RuntimeException e) {
+                log.warn("Statement chunk starting at line {} failed, retrying its rows one by one", chunk.get(0).line, e);
+                results = createOneByOne(payments);
+            }
+        }
+
+        // Parse failures and payment results are reported together, in statement order
+        int imported = 0;
+        Iterator<PaymentImportResult> paymentResults = results.iterator();
+        for (StatementRow row : chunk) {
+            PaymentImportResult result = row.payment != null ? paymentResults.next() : row.failure;
+            result.setLine(row.line);
+            if (Boolean.TRUE.equals(result.getSuccess())) {
+                imported++;
+            }
+            resultHandler.accept(result);
+        }
+        return imported;
+    }
+
+    private List<PaymentImportResult> createOneByOne(List<PaymentDTO> payments) {
+        List<PaymentImportResult> results = new ArrayList<>(payments.size());
+        for (PaymentDTO payment : payments) {
+            try {
+                results.addAll(paymentService.createPayments(List.of(payment)));
+            } catch (RuntimeException e) {
+                results.add(PaymentImportResult.builder()
+                        .success(false)
+                        .reference(payment.getReference())
+                        .orderId(payment.getOrderId())
+                        .error(e.getMessage())
+                        .build());
+            }
+        }
+        return results;
+    }
+
+    private Map<String, Integer> readHeader(String header) {
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = CsvLineReader.splitFields(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).toLowerCase(Locale.ROOT), i);
+        }
+
+        for (String column : REQUIRED_COLUMNS) {
+            if (!columns.containsKey(column)) {
+                throw new IllegalArgumentException("Statement header is missing column: " + column);
+            }
+        }
+        return columns;
+    }
+
+    private StatementRow parseRow(int lineNumber, String line, Map<String, Integer> columns) {
+        String reference = null;
+        try {
+            List<String> fields = CsvLineReader.splitFields(line);
+            reference = field(fields, columns, "reference");
+            if (reference == null) {
+                throw new IllegalArgumentException("Reference is required");
+            }
+
+            Matcher matcher = ORDER_REFERENCE.matcher(reference);
+            if (!matcher.find()) {
+                throw new IllegalArgumentException("No order number found in reference: " + reference);
+            }
+            Long orderId = Long.valueOf(matcher.group(1));
+
+            BigDecimal amount = new BigDecimal(required(fields, columns, "amount"));
+            if (amount.signum() <= 0) {
+                throw new IllegalArgumentException("Amount must be positive: " + amount);
+            }
+            PaymentMethod method = PaymentMethod.valueOf(required(fields, columns, "method").toUpperCase(Locale.ROOT));
+            LocalDate paymentDate = LocalDate.parse(required(fields, columns, "payment_date"));
+            String dueDate = field(fields, columns, "due_date");
+            String status = field(fields, columns, "status");
+
+            // Checks clear later; transfers and cash are collected on the statement date
+            PaymentStatus paymentStatus = status != null
+                    ? PaymentStatus.valueOf(status.toUpperCase(Locale.ROOT))
+                    : method == PaymentMethod.CHECK ? PaymentStatus.PENDING : PaymentStatus.COLLECTED;
+
+            PaymentDTO payment = PaymentDTO.builder()
+                    .orderId(orderId)
+                    .amount(amount)
+                    .paymentMethod(method)
+                    .paymentDate(paymentDate)
+                    .collectionDate(paymentStatus == PaymentStatus.COLLECTED ? paymentDate : null)
+                    .reference(reference)
+                    .bankName(field(fields, columns, "bank_name"))
+                    .dueDate(dueDate != null ? LocalDate.parse(dueDate) : null)
+                    .status(paymentStatus)
+                    .build();
+            return new StatementRow(lineNumber, payment, null);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // NumberFormatException and unknown enum constants are IllegalArgumentExceptions too
+            PaymentImportResult failure = failure(lineNumber, "Invalid row: " + e.getMessage());
+            failure.setReference(reference);
+            return new StatementRow(lineNumber, null, failure);
+        }
+    }
+
+    private String required(List<String> fields, Map<String, Integer> columns, String column) {
+        String value = field(fields, columns, column);
+        if (value == null) {
+            throw new IllegalArgumentException("Column " + column + " is required");
+        }
+        return value;
+    }
+
+    private String field(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= fields.size() || fields.get(index).isBlank()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    private PaymentImportResult failure(int line, String error) {
+        return PaymentImportResult.builder()
+                .line(line)
+                .success(false)
+                .error(error)
+                .build();
+    }
+
+    private static class StatementRow {
+        private final int line;
+        private final PaymentDTO payment;
+        private final PaymentImportResult failure;
+
+        private StatementRow(int line, PaymentDTO payment, PaymentImportResult failure) {
+            this.line = line;
+            this.payment = payment;
+            this.failure = failure;
+        }
+    }
+}
@@ -1,21 +1,34 @@
 package com.smartshop.service.impl;
 
+import com.smartshop.annotation.RetryOnConflict;
+import com.smartshop.dto.CursorPage;
 import com.smartshop.dto.PaymentDTO;
+import com.smartshop.dto.PaymentImportResult;
+import com.smartshop.dto.PaymentListItem;
+import com.smartshop.dto.PaymentSearchCriteria;
+import com.smartshop.dto.PaymentSummary;
 import com.smartshop.entity.*;
-import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.OutboxEventType;
 import com.smartshop.enums.PaymentMethod;
 import com.smartshop.exception.ResourceNotFoundException;
+import com.smartshop.exception.UnauthorizedException;
 import com.smartshop.mapper.PaymentMapper;
 import com.smartshop.repository.*;
-import com.smartshop.service.LoyaltyTierService;
+import com.smartshop.service.ClientStatisticsCache;
+import com.smartshop.service.LoyaltyUpgradeScheduler;
+import com.smartshop.service.OutboxService;
 import com.smartshop.service.PaymentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
@@ -28,13 +41,20 @@ public class PaymentServiceImpl implements PaymentService {
     private final OrderItemRepository orderItemRepository;
     private final ProductRepository productRepository;
     private final CouponRepository couponRepository;
-    private final LoyaltyTierService loyaltyTierService;
+    private final UserRepository userRepository;
+    private final OutboxService outboxService;
+    private final ClientStatisticsCache clientStatisticsCache;
+    private final LoyaltyUpgradeScheduler loyaltyUpgradeScheduler;
     private final PaymentMapper paymentMapper;
 
     // Maximum payment limit for CASH payments (Article 193 CGI - Morocco)
     private static final BigDecimal CASH_PAYMENT_LIMIT = new BigDecimal("20000");
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String CURSOR_SEPARATOR = "_";
+
     @Override
+    @RetryOnConflict
     public PaymentDTO createPayment(PaymentDTO paymentDTO) {
         // Convert DTO to entity
         Payment payment = paymentMapper.toEntity(paymentDTO);
@@ -43,6 +63,102 @@ public class PaymentServiceImpl implements PaymentService {
         Order order = orderRepository.findById(payment.getOrderId())
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + payment.getOrderId()));
 
+        validatePayment(payment, order.getRemainingAmount());
+
+        // The order's payment counter tells whether this is the first payment, without loading payments
+        boolean isFirstPayment = order.getPaymentCount() == 0;
+        Payment savedPayment = recordPayment(payment, order, isFirstPayment);
+        userRepository.addSpending(order.getUserId(), savedPayment.getAmount());
+
+        loyaltyUpgradeScheduler.requestUpgrade(order.getUserId());
+
+        return paymentMapper.toDTO(savedPayment);
+    }
+
+    @Override
+    @RetryOnConflict
+    public List<PaymentImportResult> createPayments(List<PaymentDTO> paymentDTOs) {
+        // Resolve the chunk's orders and already recorded references up front
+        Set<Long> orderIds = new HashSet<>();
+        Set<String> references = new HashSet<>();
+        for (PaymentDTO paymentDTO : paymentDTOs) {
+            orderIds.add(paymentDTO.getOrderId());
+            references.add(paymentDTO.getReference());
+        }
+
+        Map<Long, Order> orders = new HashMap<>();
+        for (Order order : orderRepository.findAllById(orderIds)) {
+            orders.put(order.getId(), order);
+        }
+        Map<Long, Set<String>> recordedReferences = new HashMap<>();
+        for (Object[] row : paymentRepository.findReferencesByOrderIds(orderIds, references)) {
+            recordedReferences.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((String) row[1]);
+        }
+
+        // Orders are not reloaded between payments, so the chunk tracks what its own payments consumed
+        Map<Long, BigDecimal> remainingAmounts = new HashMap<>();
+        Set<Long> paidOrderIds = new HashSet<>();
+        // Sorted so concurrent chunks lock user rows in the same order
+        Map<Long, BigDecimal> spendingByUser = new TreeMap<>();
+
+        List<PaymentImportResult> results = new ArrayList<>(paymentDTOs.size());
+        for (PaymentDTO paymentDTO : paymentDTOs) {
+            PaymentImportResult result = PaymentImportResult.builder()
+                    .reference(paymentDTO.getReference())
+                    .orderId(paymentDTO.getOrderId())
+                    .build();
+            results.add(result);
+
+            Order order = orders.get(paymentDTO.getOrderId());
+            if (order == null) {
+                result.setSuccess(false);
+                result.setError("Order not found with id: " + paymentDTO.getOrderId());
+                continue;
+            }
+
+            Set<String> orderReferences = recordedReferences.computeIfAbsent(order.getId(), id -> new HashSet<>());
+            if (orderReferences.contains(paymentDTO.getReference())) {
+                result.setSuccess(false);
+                result.setError("Payment " + paymentDTO.getReference() + " is already recorded for order " + order.getId());
+                continue;
+            }
+
+            Payment payment = paymentMapper.toEntity(paymentDTO);
+            BigDecimal remainingAmount = remainingAmounts.getOrDefault(order.getId(), order.getRemainingAmount());
+            try {
+                validatePayment(payment, remainingAmount);
+            } catch (IllegalArgumentException e) {
+                result.setSuccess(false);
+                result.setError(e.getMessage());
+                continue;
+            }
+
+            // Failures past this point leave partial writes, so they abort the whole chunk
+            boolean isFirstPayment = order.getPaymentCount() == 0 && !paidOrderIds.contains(order.getId());
+            Payment savedPayment = recordPayment(payment, order, isFirstPayment);
+
+            paidOrderIds.add(order.getId());
+            orderReferences.add(payment.getReference());
+            remainingAmounts.put(order.getId(), remainingAmount.subtract(payment.getAmount()));
+            spendingByUser.merge(order.getUserId(), savedPayment.getAmount(), BigDecimal::add);
+
+            result.setSuccess(true);
+            result.setPaymentId(savedPayment.getId());
+            result.setPaymentNumber(savedPayment.getPaymentNumber());
+        }
+
+        // One counter update per user rather than per payment
+        for (Map.Entry<Long, BigDecimal> spending : spendingByUser.entrySet()) {
+            userRepository.addSpending(spending.getKey(), spending.getValue());
+        }
+        for (Long userId : spendingByUser.keySet()) {
+            loyaltyUpgradeScheduler.requestUpgrade(userId);
+        }
+
+        return results;
+    }
+
+    private void validatePayment(Payment payment, BigDecimal remainingAmount) {
         // Validate cash payment limit (Art. 193 CGI)
         if (PaymentMethod.CASH.equals(payment.getPaymentMethod()) &&
                 payment.getAmount().compareTo(CASH_PAYMENT_LIMIT) > 0) {
@@ -50,65 +166,79 @@ public class PaymentServiceImpl implements PaymentService {
         }
 
         // Validate payment amount doesn't exceed remaining amount
-        if (payment.getAmount().compareTo(order.getRemainingAmount()) > 0) {
+        if (payment.getAmount().compareTo(remainingAmount) > 0) {
             throw new IllegalArgumentException("Payment amount (" + payment.getAmount() +
-                    ") cannot exceed remaining amount (" + order.getRemainingAmount() + ")");
+                    ") cannot exceed remaining amount (" + remainingAmount + ")");
         }
+    }
 
-        // Check if this is the first payment for the order
-        List<Payment> existingPayments = paymentRepository.findByOrderId(order.getId());
-        boolean isFirstPayment = existingPayments.isEmpty();
+    private Payment recordPayment(Payment payment, Order order, boolean isFirstPayment) {
+        // Reserve stock before writing anything else, so concurrent first payments
+        // queue on the product rows instead of deadlocking on each other's orders
+        Set<Long> deductedProductIds = Set.of();
+        if (isFirstPayment) {
+            log.info("First payment for order {}, performing stock deduction", order.getId());
+            deductedProductIds = deductStockForOrder(order);
+        }
 
-        // Auto-calculate payment number
-        int paymentNumber = existingPayments.size() + 1;
+        // Number the payment and update the remaining amount in one atomic UPDATE
+        if (orderRepository.applyPayment(order.getId(), payment.getAmount()) == 0) {
+            throw new IllegalArgumentException("Payment amount (" + payment.getAmount() +
+                    ") exceeds the remaining amount of order " + order.getId());
+        }
+        int paymentNumber = orderRepository.findPaymentCountById(order.getId());
+        if (isFirstPayment && paymentNumber != 1) {
+            // Another payment got in first and already deducted the stock; roll back and retry as a later installment
+            throw new OptimisticLockingFailureException("Order " + order.getId() + " was paid concurrently");
+        }
         payment.setPaymentNumber(paymentNumber);
 
         // Save the payment
         Payment savedPayment = paymentRepository.save(payment);
         log.info("Created payment #{} for order {} with amount: {}", paymentNumber, order.getId(), payment.getAmount());
 
-        // Update order remaining amount
-        BigDecimal newRemainingAmount = order.getRemainingAmount().subtract(payment.getAmount());
-        order.setRemainingAmount(newRemainingAmount);
-        orderRepository.save(order);
-        log.info("Updated order {} remaining amount: {}", order.getId(), newRemainingAmount);
-
         // If this is the first payment, perform special actions
-        if (isFirstPayment) {
-            log.info("First payment for order {}, performing stock deduction and coupon marking", order.getId());
-
-            deductStockForOrder(order);
-
-            if (order.getCouponId() != null) {
-                markCouponAsUsed(order.getCouponId());
-            }
-
-            checkAndRejectPendingOrders();
+        if (isFirstPayment && order.getCouponId() != null) {
+            markCouponAsUsed(order.getCouponId());
         }
 
-        loyaltyTierService.checkAndUpgradeTier(order.getUserId());
+        // Only orders waiting for the products that just lost stock can have become unfulfillable;
+        // subscribers re-check them once this payment commits
+        Map<String, Object> payload = paymentPayload(savedPayment);
+        payload.put("userId", order.getUserId());
+        payload.put("firstPayment", isFirstPayment);
+        payload.put("deductedProductIds", deductedProductIds);
+        outboxService.publish(OutboxEventType.PAYMENT_RECORDED, order.getId(), payload);
+        clientStatisticsCache.invalidate(order.getUserId());
 
-        return paymentMapper.toDTO(savedPayment);
+        return savedPayment;
     }
 
-    private void deductStockForOrder(Order order) {
+    private Set<Long> deductStockForOrder(Order order) {
         List<OrderItem> orderItems = orderItemRepository.findByOrderId(order.getId());
 
+        // One conditional UPDATE per product, in id order so concurrent payers lock rows in the same order
+        Map<Long, Integer> quantitiesByProduct = new TreeMap<>();
         for (OrderItem item : orderItems) {
-            Product product = productRepository.findById(item.getProductId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + item.getProductId()));
+            quantitiesByProduct.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+
+        for (Map.Entry<Long, Integer> entry : quantitiesByProduct.entrySet()) {
+            Long productId = entry.getKey();
+            int quantity = entry.getValue();
 
-            int newStock = product.getStock() - item.getQuantity();
-            if (newStock < 0) {
+            // The transaction rolls back, so products already decremented for this order are restored
+            if (productRepository.decrementStock(productId, quantity) == 0) {
+                Product product = productRepository.findById(productId)
+                        .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + productId));
                 throw new IllegalArgumentException("Insufficient stock for product: " + product.getName() +
-                        ". Available: " + product.getStock() + ", Required: " + item.getQuantity());
+                        ". Available: " + product.getStock() + ", Required: " + quantity);
             }
 
-            product.setStock(newStock);
-            productRepository.save(product);
-            log.info("Deducted {} units from product {} (ID: {}). New stock: {}",
-                    item.getQuantity(), product.getName(), product.getId(), newStock);
+            log.info("Deducted {} units from product ID: {}", quantity, productId);
         }
+
+        return quantitiesByProduct.keySet();
     }
 
     private void markCouponAsUsed(Long couponId) {
@@ -120,45 +250,6 @@ public class PaymentServiceImpl implements PaymentService {
         log.info("Marked coupon {} (ID: {}) as used", coupon.getCode(), coupon.getId());
     }
 
-    private void checkAndRejectPendingOrders() {
-        // Get all pending orders
-        List<Order> pendingOrders = orderRepository.findByStatus(OrderStatus.PENDING);
-
-        for (Order pendingOrder : pendingOrders) {
-            // Check if any payment has been made for this order
-            List<Payment> payments = paymentRepository.findByOrderId(pendingOrder.getId());
-            if (!payments.isEmpty()) {
-                // Order has payments, skip it
-                continue;
-            }
-
-            // Check if there's enough stock for all items in this order
-            List<OrderItem> orderItems = orderItemRepository.findByOrderId(pendingOrder.getId());
-            boolean insufficientStock = false;
-
-            for (OrderItem item : orderItems) {
-                Product product = productRepository.findById(item.getProductId())
-                        .orElse(null);
-
-                if (product == null || product.getStock() < item.getQuantity()) {
-                    insufficientStock = true;
-                    log.info("Insufficient stock for pending order {}. Product: {}, Required: {}, Available: {}",
-                            pendingOrder.getId(),
-                            product != null ? product.getName() : "Unknown",
-                            item.getQuantity(),
-                            product != null ? product.getStock() : 0);
-                    break;
-                }
-            }
-
-            if (insufficientStock) {
-                pendingOrder.setStatus(OrderStatus.REJECTED);
-                orderRepository.save(pendingOrder);
-                log.info("Rejected pending order {} due to insufficient stock", pendingOrder.getId());
-            }
-        }
-    }
-
     @Override
     @Transactional(readOnly = true)
     public PaymentDTO getPaymentById(Long id) {
@@ -167,6 +258,23 @@ public class PaymentServiceImpl implements PaymentService {
         return paymentMapper.toDTO(payment);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public PaymentDTO getPaymentById(Long id, Long ownerId) {
+        List<Object[]> rows = paymentRepository.findWithOwnerById(id);
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("Payment not found with id: " + id);
+        }
+
+        Payment payment = (Payment) rows.get(0)[0];
+        Long orderOwnerId = (Long) rows.get(0)[1];
+        if (ownerId != null && !ownerId.equals(orderOwnerId)) {
+            throw new UnauthorizedException("You can only view payments for your own orders");
+        }
+
+        return paymentMapper.toDTO(payment);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<PaymentDTO> getPaymentsByOrderId(Long orderId) {
@@ -176,29 +284,124 @@ public class PaymentServiceImpl implements PaymentService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<PaymentDTO> getAllPayments() {
-        List<Payment> payments = paymentRepository.findAll();
-        return paymentMapper.toDTOList(payments);
+    public CursorPage<PaymentListItem> getPayments(PaymentSearchCriteria criteria, String cursor, int size,
+                                                   boolean includeTotal) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        Specification<Payment> filter = PaymentSpecifications.matching(criteria);
+        Specification<Payment> pageSpec = filter;
+        if (cursor != null && !cursor.isBlank()) {
+            Payment position = decodeCursor(cursor);
+            pageSpec = pageSpec.and(PaymentSpecifications.before(position.getPaymentDate(), position.getId()));
+        }
+
+        // Fetch one extra row to know whether another page exists without counting
+        List<PaymentListItem> payments = paymentRepository.findListItems(pageSpec, size + 1);
+
+        boolean hasMore = payments.size() > size;
+        if (hasMore) {
+            payments = payments.subList(0, size);
+        }
+
+        return CursorPage.<PaymentListItem>builder()
+                .items(payments)
+                .hasMore(hasMore)
+                .nextCursor(hasMore ? encodeCursor(payments.get(payments.size() - 1)) : null)
+                .totalCount(includeTotal ? paymentRepository.count(filter) : null)
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PaymentSummary> getPaymentSummary(PaymentSearchCriteria criteria) {
+        return paymentRepository.summarize(PaymentSpecifications.matching(criteria));
+    }
+
+    private String encodeCursor(PaymentListItem payment) {
+        String position = payment.getPaymentDate() + CURSOR_SEPARATOR + payment.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Payment decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf(CURSOR_SEPARATOR);
+            return Payment.builder()
+                    .paymentDate(LocalDate.parse(position.substring(0, separator)))
+                    .id(Long.parseLong(position.substring(separator + 1)))
+                    .build();
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
     }
 
     @Override
     public PaymentDTO updatePayment(Long id, PaymentDTO paymentDTO) {
-        Payment existingPayment = paymentRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Payment not found with id: " + id));
+        Payment existingPayment = lockPaymentAndOrder(id);
+        // The order's remaining amount and payment counter account for this payment, so it cannot move
+        if (paymentDTO.getOrderId() != null && !paymentDTO.getOrderId().equals(existingPayment.getOrderId())) {
+            throw new IllegalArgumentException("Payment " + id + " belongs to order " + existingPayment.getOrderId() +
+                    " and cannot be moved to another order");
+        }
+        BigDecimal previousAmount = existingPayment.getAmount();
+        LocalDate previousPaymentDate = existingPayment.getPaymentDate();
 
         paymentMapper.updateEntityFromDTO(paymentDTO, existingPayment);
         Payment updatedPayment = paymentRepository.save(existingPayment);
         log.info("Updated payment with id: {}", updatedPayment.getId());
 
+        // Adjust the user's spending when the amount changed
+        Long userId = findOrderUserId(updatedPayment.getOrderId());
+        BigDecimal delta = updatedPayment.getAmount().subtract(previousAmount);
+        if (delta.signum() != 0) {
+            userRepository.addSpending(userId, delta);
+        }
+        clientStatisticsCache.invalidate(userId);
+
+        Map<String, Object> payload = paymentPayload(updatedPayment);
+        payload.put("previousPaymentDate", previousPaymentDate);
+        outboxService.publish(OutboxEventType.PAYMENT_UPDATED, updatedPayment.getOrderId(), payload);
+
         return paymentMapper.toDTO(updatedPayment);
     }
 
     @Override
     public void deletePayment(Long id) {
-        Payment payment = paymentRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Payment not found with id: " + id));
+        Payment payment = lockPaymentAndOrder(id);
 
         paymentRepository.delete(payment);
+        Long userId = findOrderUserId(payment.getOrderId());
+        userRepository.addSpending(userId, payment.getAmount().negate());
+        clientStatisticsCache.invalidate(userId);
         log.info("Deleted payment with id: {}", id);
+
+        outboxService.publish(OutboxEventType.PAYMENT_DELETED, payment.getOrderId(), paymentPayload(payment));
+    }
+
+    // The payment first and then its order, like the collector, so the two cannot deadlock. The order lock keeps
+    // the event published afterwards in line with the order's other events (see OutboxEventRepository#lockDueEvents)
+    private Payment lockPaymentAndOrder(Long id) {
+        Payment payment = paymentRepository.lockById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Payment not found with id: " + id));
+        orderRepository.lockByIds(List.of(payment.getOrderId()));
+        return payment;
+    }
+
+    private Long findOrderUserId(Long orderId) {
+        return orderRepository.findUserIdById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
+    }
+
+    private Map<String, Object> paymentPayload(Payment payment) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("paymentId", payment.getId());
+        payload.put("paymentNumber", payment.getPaymentNumber());
+        payload.put("amount", payment.getAmount());
+        payload.put("paymentMethod", payment.getPaymentMethod());
+        payload.put("paymentDate", payment.getPaymentDate());
+        payload.put("status", payment.getStatus());
+        return payload;
     }
 }
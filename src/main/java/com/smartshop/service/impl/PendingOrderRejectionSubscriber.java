@@ -0,0 +1,55 @@
+package com.smartshop.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.enums.OutboxEventType;
+import com.smartshop.service.OutboxSubscriber;
+import com.smartshop.service.PendingOrderService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Re-checks the pending orders waiting for products whose stock a first payment just deducted.
+ * Products are collected over the whole batch, so a burst of payments on the same SKU costs one re-check.
+ * Re-checking is idempotent: orders still covered by the stock are left pending.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PendingOrderRejectionSubscriber implements OutboxSubscriber {
+
+    private final PendingOrderService pendingOrderService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void onEvents(List<OutboxEvent> events) {
+        Set<Long> productIds = new LinkedHashSet<>();
+        for (OutboxEvent event : events) {
+            if (event.getEventType() == OutboxEventType.PAYMENT_RECORDED) {
+                readPayload(event).path("deductedProductIds").forEach(id -> productIds.add(id.asLong()));
+            }
+        }
+
+        if (productIds.isEmpty()) {
+            return;
+        }
+
+        int rejected = pendingOrderService.rejectUnfulfillableOrders(productIds);
+        log.debug("Re-checked pending orders of {} products, {} rejected", productIds.size(), rejected);
+    }
+
+    private JsonNode readPayload(OutboxEvent event) {
+        try {
+            return objectMapper.readTree(event.getPayload());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable payload in outbox event " + event.getId(), e);
+        }
+    }
+}
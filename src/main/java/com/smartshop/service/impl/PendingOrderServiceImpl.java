@@ -0,0 +1,83 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.dto.PendingDemand;
+import com.smartshop.entity.Order;
+import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.OutboxEventType;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.service.OrderEventPublisher;
+import com.smartshop.service.PendingOrderService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class PendingOrderServiceImpl implements PendingOrderService {
+
+    private final OrderRepository orderRepository;
+    private final OrderEventPublisher orderEventPublisher;
+
+    // Keeps the IN lists of the set-based queries bounded
+    private static final int PRODUCT_BATCH_SIZE = 500;
+
+    @Override
+    public int rejectUnfulfillableOrders(Collection<Long> productIds) {
+        List<Long> distinctIds = productIds.stream().distinct().toList();
+        int rejected = 0;
+
+        for (int from = 0; from < distinctIds.size(); from += PRODUCT_BATCH_SIZE) {
+            List<Long> batch = distinctIds.subList(from, Math.min(from + PRODUCT_BATCH_SIZE, distinctIds.size()));
+            rejected += rejectBatch(batch);
+        }
+
+        return rejected;
+    }
+
+    private int rejectBatch(List<Long> productIds) {
+        // Only products whose stock no longer covers the total pending demand can reject anything
+        List<Long> shortProductIds = new ArrayList<>();
+        for (PendingDemand demand : orderRepository.findPendingDemand(productIds, OrderStatus.PENDING)) {
+            if (demand.exceedsStock()) {
+                shortProductIds.add(demand.getProductId());
+                log.info("Pending orders demand {} units of product {}, stock is {}",
+                        demand.getDemanded(), demand.getProductId(), demand.getStock());
+            }
+        }
+
+        if (shortProductIds.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> orderIds = orderRepository.findUnfulfillableOrderIds(shortProductIds, OrderStatus.PENDING);
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+
+        // Lock the orders first and keep those still unpaid: an order paid since it was selected has had its stock
+        // deducted and is left alone, and the update then rejects exactly the locked ones
+        List<Order> orders = orderRepository.lockUnpaidByIds(orderIds, OrderStatus.PENDING);
+        if (orders.isEmpty()) {
+            return 0;
+        }
+        List<Long> lockedIds = orders.stream().map(Order::getId).toList();
+
+        int rejected = orderRepository.updateUnpaidStatus(lockedIds, OrderStatus.PENDING, OrderStatus.REJECTED);
+        log.info("Rejected {} pending orders due to insufficient stock: {}", rejected, lockedIds);
+
+        // The update cleared the persistence context, so the locked copies are detached and only carry the payload
+        for (Order order : orders) {
+            order.setStatus(OrderStatus.REJECTED);
+            orderEventPublisher.publish(OutboxEventType.ORDER_REJECTED, order);
+        }
+
+        return rejected;
+    }
+}
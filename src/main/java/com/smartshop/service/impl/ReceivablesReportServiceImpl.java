@@ -0,0 +1,156 @@
+package com.smartshop.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.smartshop.dto.ReceivablesCriteria;
+import com.smartshop.dto.ReceivablesRow;
+import com.smartshop.enums.OrderStatus;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.service.ReceivablesReportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Computes receivables with GROUP BY queries and writes them as they are read.
+ * Reports can be kept for a few seconds, so a dashboard refreshing the same report
+ * does not rescan the orders table; reports larger than the cache row limit are never kept.
+ */
+@Service
+@Slf4j
+@Transactional(readOnly = true)
+public class ReceivablesReportServiceImpl implements ReceivablesReportService {
+
+    // Orders that can still be paid; canceled and rejected orders are not owed
+    private static final Set<OrderStatus> OUTSTANDING_STATUSES = Set.of(OrderStatus.PENDING, OrderStatus.CONFIRMED);
+
+    private static final LocalDate MIN_DATE = LocalDate.of(1970, 1, 1);
+
+    private final OrderRepository orderRepository;
+    private final ObjectMapper objectMapper;
+    private final long cacheTtlMillis;
+    private final int cacheMaxRows;
+
+    private final Map<ReceivablesCriteria, CachedReport> cache = new ConcurrentHashMap<>();
+
+    public ReceivablesReportServiceImpl(
+            OrderRepository orderRepository,
+            ObjectMapper objectMapper,
+            @Value("${smartshop.reports.receivables.cache-ttl-seconds:30}") long cacheTtlSeconds,
+            @Value("${smartshop.reports.receivables.cache-max-rows:10000}") int cacheMaxRows) {
+        this.orderRepository = orderRepository;
+        this.objectMapper = objectMapper;
+        this.cacheTtlMillis = cacheTtlSeconds * 1000;
+        this.cacheMaxRows = cacheMaxRows;
+    }
+
+    @Override
+    public void exportReceivables(ReceivablesCriteria request, OutputStream out) {
+        long startTime = System.nanoTime();
+
+        // Resolved up front so the report of "today" is cached under today's date
+        ReceivablesCriteria criteria = ReceivablesCriteria.builder()
+                .grouping(request.getGrouping())
+                .asOf(request.getAsOf() != null ? request.getAsOf() : LocalDate.now())
+                .fromDate(request.getFromDate())
+                .build();
+        if (criteria.getFromDate() != null && criteria.getFromDate().isAfter(criteria.getAsOf())) {
+            throw new IllegalArgumentException("from (" + criteria.getFromDate() + ") must not be after asOf ("
+                    + criteria.getAsOf() + ")");
+        }
+
+        // The writer is flushed but not closed: the caller owns the output stream
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        ObjectWriter rowWriter = objectMapper.writerFor(ReceivablesRow.class);
+        try {
+            CachedReport cached = cacheTtlMillis > 0 ? cache.get(criteria) : null;
+            if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+                writeRows(cached.rows.iterator(), rowWriter, writer, null);
+                writer.flush();
+                log.debug("Served {} receivables rows for {} from cache", cached.rows.size(), criteria);
+                return;
+            }
+
+            List<ReceivablesRow> collected = cacheTtlMillis > 0 ? new ArrayList<>() : null;
+            long rowCount;
+            try (Stream<ReceivablesRow> rows = queryRows(criteria)) {
+                rowCount = writeRows(rows.iterator(), rowWriter, writer, collected);
+            }
+            writer.flush();
+
+            if (collected != null && rowCount <= cacheMaxRows) {
+                long now = System.currentTimeMillis();
+                cache.values().removeIf(report -> report.expiresAt <= now);
+                cache.put(criteria, new CachedReport(List.copyOf(collected), now + cacheTtlMillis));
+            }
+
+            long elapsedMillis = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+            log.info("Computed {} receivables rows for {} in {} ms", rowCount, criteria, elapsedMillis);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Stream<ReceivablesRow> queryRows(ReceivablesCriteria criteria) {
+        LocalDate asOf = criteria.getAsOf();
+        LocalDate fromDate = criteria.getFromDate() != null ? criteria.getFromDate() : MIN_DATE;
+
+        // Orders placed on the as-of day are included; aging buckets start at midnight
+        LocalDateTime from = fromDate.atStartOfDay();
+        LocalDateTime to = asOf.plusDays(1).atStartOfDay();
+        LocalDateTime days30 = asOf.minusDays(30).atStartOfDay();
+        LocalDateTime days60 = asOf.minusDays(60).atStartOfDay();
+        LocalDateTime days90 = asOf.minusDays(90).atStartOfDay();
+
+        return switch (criteria.getGrouping()) {
+            case CLIENT -> orderRepository.streamReceivablesByClient(OUTSTANDING_STATUSES, from, to, days30, days60, days90);
+            case TIER -> orderRepository.findReceivablesByTier(OUTSTANDING_STATUSES, from, to, days30, days60, days90).stream();
+            case TOTAL -> Stream.of(orderRepository.findReceivablesTotal(OUTSTANDING_STATUSES, from, to, days30, days60, days90));
+        };
+    }
+
+    private long writeRows(Iterator<ReceivablesRow> rows, ObjectWriter rowWriter, Writer writer,
+                           List<ReceivablesRow> collected) throws IOException {
+        long rowCount = 0;
+        while (rows.hasNext()) {
+            ReceivablesRow row = rows.next();
+            writer.write(rowWriter.writeValueAsString(row));
+            writer.write('\n');
+            rowCount++;
+
+            // Stop collecting once the report is too large to be worth keeping
+            if (collected != null && collected.size() < cacheMaxRows + 1) {
+                collected.add(row);
+            }
+        }
+        return rowCount;
+    }
+
+    private static class CachedReport {
+        private final List<ReceivablesRow> rows;
+        private final long expiresAt;
+
+        private CachedReport(List<ReceivablesRow> rows, long expiresAt) {
+            this.rows = rows;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
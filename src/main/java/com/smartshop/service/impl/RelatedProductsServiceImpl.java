@@ -0,0 +1,322 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.dto.RelatedProduct;
+import com.smartshop.entity.Product;
+import com.smartshop.exception.ResourceNotFoundException;
+import com.smartshop.repository.OrderItemRepository;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.repository.ProductRepository;
+import com.smartshop.service.RelatedProductsService;
+import com.smartshop.util.CooccurrenceIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers "frequently bought together" from an in-memory co-occurrence index of order items.
+ * The index is built at startup from id ranges of orders read and counted in parallel, each range into its own
+ * index, merged as they complete; new orders are then added as they commit. Orders that commit while a rebuild
+ * runs are recorded from before it reads anything, and each one the chunks did not see is added to the rebuilt
+ * index before it replaces the current one. Ids are assigned at insert, not at commit, so whether a chunk saw
+ * an order is decided from the order ids it actually read, not from its id range.
+ * Every order counts, whatever its status: a canceled order still says which products go together.
+ */
+@Service
+@Slf4j
+public class RelatedProductsServiceImpl implements RelatedProductsService {
+
+    // Extra candidates read from the index, so that deleted products can be skipped
+    private static final int DELETED_PRODUCTS_SLACK = 10;
+
+    private final OrderItemRepository orderItemRepository;
+    private final OrderRepository orderRepository;
+    private final ProductRepository productRepository;
+    private final boolean rebuildOnStartup;
+    private final int chunkSize;
+    private final int maxLimit;
+
+    private final ExecutorService workers;
+
+    // Guarded by this
+    private CooccurrenceIndex index = new CooccurrenceIndex();
+    private List<RecordedOrder> recordedDuringRebuild;
+
+    private final Object rebuildLock = new Object();
+    private final Timer rebuilds;
+
+    public RelatedProductsServiceImpl(
+            OrderItemRepository orderItemRepository,
+            OrderRepository orderRepository,
+            ProductRepository productRepository,
+            MeterRegistry meterRegistry,
+            @Value("${smartshop.products.related.rebuild-on-startup:true}") boolean rebuildOnStartup,
+            @Value("${smartshop.products.related.rebuild.chunk-size:10000}") int chunkSize,
+            @Value("${smartshop.products.related.rebuild.parallelism:4}") int parallelism,
+            @Value("${smartshop.products.related.max-limit:50}") int maxLimit) {
+        this.orderItemRepository = orderItemRepository;
+        this.orderRepository = orderRepository;
+        this.productRepository = productRepository;
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.chunkSize = chunkSize;
+        this.maxLimit = maxLimit;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "related-products-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("smartshop.products.related.orders", this, RelatedProductsServiceImpl::indexedOrders)
+                .description("Orders counted in the co-occurrence index")
+                .register(meterRegistry);
+        Gauge.builder("smartshop.products.related.bytes", this, RelatedProductsServiceImpl::indexBytes)
+                .description("Approximate heap size of the co-occurrence index")
+                .register(meterRegistry);
+        this.rebuilds = Timer.builder("smartshop.products.related.rebuild")
+                .description("Duration of a co-occurrence index rebuild")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!rebuildOnStartup) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            // Suggestions then only come from orders placed from now on, until the next rebuild
+            log.error("Related products rebuild failed", e);
+        }
+    }
+
+    @Override
+    public List<RelatedProduct> getRelatedProducts(Long productId, int limit) {
+        if (limit < 1 || limit > maxLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxLimit);
+        }
+        productRepository.findByIdAndDeletedFalse(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + productId));
+
+        long ordersWithProduct;
+        long[] candidateIds;
+        long[] ordersTogether;
+        synchronized (this) {
+            ordersWithProduct = index.orderCount(productId);
+            candidateIds = index.related(productId, limit + DELETED_PRODUCTS_SLACK);
+            ordersTogether = new long[candidateIds.length];
+            for (int i = 0; i < candidateIds.length; i++) {
+                ordersTogether[i] = index.pairCount(productId, candidateIds[i]);
+            }
+        }
+        if (candidateIds.length == 0) {
+            return List.of();
+        }
+
+        List<Long> ids = new ArrayList<>(candidateIds.length);
+        for (long candidateId : candidateIds) {
+            ids.add(candidateId);
+        }
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(ids)) {
+            products.put(product.getId(), product);
+        }
+
+        List<RelatedProduct> related = new ArrayList<>(limit);
+        for (int i = 0; i < candidateIds.length && related.size() < limit; i++) {
+            Product product = products.get(candidateIds[i]);
+            if (product == null || Boolean.TRUE.equals(product.getDeleted())) {
+                continue;
+            }
+            related.add(RelatedProduct.builder()
+                    .productId(product.getId())
+                    .name(product.getName())
+                    .category(product.getCategory())
+                    .unitPrice(product.getUnitPrice())
+                    .ordersTogether(ordersTogether[i])
+                    .confidence(BigDecimal.valueOf(ordersTogether[i])
+                            .divide(BigDecimal.valueOf(ordersWithProduct), 4, RoundingMode.HALF_UP))
+                    .build());
+        }
+        return related;
+    }
+
+    @Override
+    public void recordOrder(Long orderId, Collection<Long> productIds) {
+        long[] ids = productIds.stream().mapToLong(Long::longValue).toArray();
+
+        // An order rolled back must not count
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addOrder(orderId, ids);
+                }
+            });
+        } else {
+            addOrder(orderId, ids);
+        }
+    }
+
+    @Override
+    public long rebuild() {
+        synchronized (rebuildLock) {
+            long startTime = System.nanoTime();
+            // Recording starts first: an order committed after this is either read by a chunk or recorded
+            synchronized (this) {
+                recordedDuringRebuild = new ArrayList<>();
+            }
+            Long maxId = orderRepository.findMaxId();
+            long lastId = maxId != null ? maxId : 0;
+
+            CooccurrenceIndex rebuilt = new CooccurrenceIndex();
+            int chunks = 0;
+            try {
+                CompletionService<IndexChunk> completion = new ExecutorCompletionService<>(workers);
+                for (long fromId = 1; fromId <= lastId; fromId += chunkSize) {
+                    long chunkFromId = fromId;
+                    long chunkToId = Math.min(fromId + chunkSize, lastId + 1);
+                    completion.submit(() -> buildChunk(chunkFromId, chunkToId));
+                    chunks++;
+                }
+                // Merged as they complete, so finished chunks do not wait for the slowest one
+                long[][] readOrderIds = new long[chunks][];
+                for (int i = 0; i < chunks; i++) {
+                    IndexChunk chunk = completion.take().get();
+                    rebuilt.merge(chunk.index);
+                    readOrderIds[(int) ((chunk.fromId - 1) / chunkSize)] = chunk.orderIds;
+                }
+
+                synchronized (this) {
+                    for (RecordedOrder order : recordedDuringRebuild) {
+                        if (!wasRead(readOrderIds, order.orderId)) {
+                            rebuilt.addOrder(order.productIds);
+                        }
+                    }
+                    index = rebuilt;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Related products rebuild was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Related products rebuild failed", e.getCause());
+            } finally {
+                synchronized (this) {
+                    recordedDuringRebuild = null;
+                }
+            }
+
+            long elapsedNanos = System.nanoTime() - startTime;
+            rebuilds.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            log.info("Rebuilt related products from {} orders in {} chunks in {} ms: {} products, {} pairs, ~{} KB",
+                    rebuilt.orderCount(), chunks, elapsedNanos / 1_000_000, rebuilt.productCount(),
+                    rebuilt.pairCount(), rebuilt.footprintBytes() / 1024);
+            return rebuilt.orderCount();
+        }
+    }
+
+    private IndexChunk buildChunk(long fromId, long toId) {
+        CooccurrenceIndex chunk = new CooccurrenceIndex();
+        List<Object[]> rows = orderItemRepository.findProductIdsByOrderIdRange(fromId, toId);
+
+        // Rows come grouped by order, in ascending order id, so the ids read come out sorted
+        long[] orderIds = new long[16];
+        int orders = 0;
+        long[] productIds = new long[16];
+        int lines = 0;
+        for (Object[] row : rows) {
+            long orderId = (Long) row[0];
+            if (orders == 0 || orderId != orderIds[orders - 1]) {
+                if (lines > 0) {
+                    chunk.addOrder(Arrays.copyOf(productIds, lines));
+                }
+                if (orders == orderIds.length) {
+                    orderIds = Arrays.copyOf(orderIds, orders * 2);
+                }
+                orderIds[orders++] = orderId;
+                lines = 0;
+            }
+            if (lines == productIds.length) {
+                productIds = Arrays.copyOf(productIds, lines * 2);
+            }
+            productIds[lines++] = (Long) row[1];
+        }
+        if (lines > 0) {
+            chunk.addOrder(Arrays.copyOf(productIds, lines));
+        }
+        return new IndexChunk(fromId, chunk, Arrays.copyOf(orderIds, orders));
+    }
+
+    // Whether the chunk covering the order's id read its items; false past the last chunk
+    private boolean wasRead(long[][] readOrderIds, long orderId) {
+        long chunk = (orderId - 1) / chunkSize;
+        return chunk < readOrderIds.length && Arrays.binarySearch(readOrderIds[(int) chunk], orderId) >= 0;
+    }
+
+    private synchronized void addOrder(Long orderId, long[] productIds) {
+        index.addOrder(productIds);
+        if (recordedDuringRebuild != null) {
+            recordedDuringRebuild.add(new RecordedOrder(orderId, productIds));
+        }
+    }
+
+    private synchronized long indexedOrders() {
+        return index.orderCount();
+    }
+
+    private synchronized long indexBytes() {
+        return index.footprintBytes();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private static final class IndexChunk {
+        private final long fromId;
+        private final CooccurrenceIndex index;
+        private final long[] orderIds;
+
+        private IndexChunk(long fromId, CooccurrenceIndex index, long[] orderIds) {
+            this.fromId = fromId;
+            this.index = index;
+            this.orderIds = orderIds;
+        }
+    }
+
+    private static final class RecordedOrder {
+        private final long orderId;
+        private final long[] productIds;
+
+        private RecordedOrder(long orderId, long[] productIds) {
+            this.orderId = orderId;
+            this.productIds = productIds;
+        }
+    }
+}
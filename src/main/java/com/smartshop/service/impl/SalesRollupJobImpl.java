@@ -0,0 +1,102 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.service.SalesRollupJob;
+import com.smartshop.service.SalesRollupService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs rollup refreshes and rebuilds one at a time, each until its transaction has committed,
+ * so a rebuild chunk and an event-driven refresh of the same day cannot interleave their deletes and inserts.
+ * The lock here only queues this instance's refreshes; across instances, each refresh transaction also holds
+ * the database row lock taken by {@link SalesRollupService#refreshDays}.
+ */
+@Service
+@Slf4j
+public class SalesRollupJobImpl implements SalesRollupJob {
+
+    private final SalesRollupService salesRollupService;
+    private final int chunkDays;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Timer refreshes;
+    private final Timer rebuilds;
+
+    public SalesRollupJobImpl(
+            SalesRollupService salesRollupService,
+            MeterRegistry meterRegistry,
+            @Value("${smartshop.analytics.rollups.rebuild.chunk-days:31}") int chunkDays) {
+        this.salesRollupService = salesRollupService;
+        this.chunkDays = chunkDays;
+
+        this.refreshes = Timer.builder("smartshop.analytics.rollups.refresh")
+                .description("Duration of an event-driven sales rollup refresh")
+                .register(meterRegistry);
+        this.rebuilds = Timer.builder("smartshop.analytics.rollups.rebuild")
+                .description("Duration of a sales rollup rebuild")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void refresh(Collection<LocalDate> days) {
+        if (days.isEmpty()) {
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        lock.lock();
+        try {
+            salesRollupService.refreshDays(days);
+        } finally {
+            lock.unlock();
+        }
+        refreshes.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int rebuild(LocalDate from, LocalDate to) {
+        LocalDate first = from != null ? from : salesRollupService.findFirstSalesDate();
+        LocalDate last = to != null ? to : LocalDate.now();
+        if (first == null) {
+            return 0;
+        }
+        if (first.isAfter(last)) {
+            throw new IllegalArgumentException("from (" + first + ") must not be after to (" + last + ")");
+        }
+
+        long startTime = System.nanoTime();
+        int rebuiltDays = 0;
+        int rows = 0;
+        for (LocalDate chunkStart = first; !chunkStart.isAfter(last); chunkStart = chunkStart.plusDays(chunkDays)) {
+            List<LocalDate> days = new ArrayList<>(chunkDays);
+            for (LocalDate day = chunkStart; days.size() < chunkDays && !day.isAfter(last); day = day.plusDays(1)) {
+                days.add(day);
+            }
+
+            lock.lock();
+            try {
+                rows += salesRollupService.refreshDays(days);
+            } finally {
+                lock.unlock();
+            }
+            rebuiltDays += days.size();
+        }
+
+        long elapsedNanos = System.nanoTime() - startTime;
+        rebuilds.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        log.info("Rebuilt sales rollups of {} days from {} to {} ({} rows) in {} ms",
+                rebuiltDays, first, last, rows, elapsedNanos / 1_000_000);
+        return rebuiltDays;
+    }
+}
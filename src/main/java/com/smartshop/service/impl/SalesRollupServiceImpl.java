@@ -0,0 +1,172 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.dto.SalesBucket;
+import com.smartshop.entity.SalesRollup;
+import com.smartshop.entity.SalesRollupLock;
+import com.smartshop.enums.CustomerTier;
+import com.smartshop.enums.SalesDimension;
+import com.smartshop.enums.SalesGranularity;
+import com.smartshop.repository.SalesRollupLockRepository;
+import com.smartshop.repository.SalesRollupRepository;
+import com.smartshop.service.SalesRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Keeps one rollup row per day and product, category, tier and for the whole shop.
+ * A day is always recomputed whole from the source tables, so refreshing is idempotent and safe to repeat
+ * under at-least-once event delivery; it only reads the orders placed and payments made that day.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class SalesRollupServiceImpl implements SalesRollupService {
+
+    static final String TOTAL_KEY = "all";
+    static final String UNCATEGORIZED_KEY = "uncategorized";
+
+    private final SalesRollupRepository salesRollupRepository;
+    private final SalesRollupLockRepository salesRollupLockRepository;
+
+    @Override
+    public int refreshDays(Collection<LocalDate> days) {
+        // Held until commit, across instances; the days are then read by statements started after the lock
+        if (salesRollupLockRepository.lock(SalesRollupLock.ID).isEmpty()) {
+            // First refresh ever: the new row is locked until commit, a concurrent first insert fails and is retried
+            salesRollupLockRepository.saveAndFlush(new SalesRollupLock(SalesRollupLock.ID));
+        }
+
+        int written = 0;
+        for (LocalDate day : new TreeSet<>(days)) {
+            salesRollupRepository.deleteByBucketDate(day);
+            List<SalesRollup> rollups = computeDay(day);
+            salesRollupRepository.saveAll(rollups);
+            written += rollups.size();
+        }
+        return written;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<SalesBucket> getSales(LocalDate from, LocalDate to, SalesGranularity granularity,
+                                      SalesDimension dimension, String key) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("from and to are required");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from (" + from + ") must not be after to (" + to + ")");
+        }
+
+        return switch (granularity) {
+            case DAY -> salesRollupRepository.findDailySales(dimension, from, to, key);
+            case WEEK -> salesRollupRepository.findWeeklySales(dimension, from, to, key);
+            case MONTH -> salesRollupRepository.findMonthlySales(dimension, from, to, key);
+        };
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public LocalDate findFirstSalesDate() {
+        LocalDateTime firstOrder = salesRollupRepository.findFirstOrderDate();
+        LocalDate firstPayment = salesRollupRepository.findFirstPaymentDate();
+        if (firstOrder == null) {
+            return firstPayment;
+        }
+        LocalDate firstOrderDay = firstOrder.toLocalDate();
+        return firstPayment != null && firstPayment.isBefore(firstOrderDay) ? firstPayment : firstOrderDay;
+    }
+
+    private List<SalesRollup> computeDay(LocalDate day) {
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = day.plusDays(1).atStartOfDay();
+
+        // Tier rows first; the shop total is their sum
+        Map<CustomerTier, SalesRollup> byTier = new EnumMap<>(CustomerTier.class);
+        for (Object[] row : salesRollupRepository.sumOrdersByTier(from, to)) {
+            SalesRollup rollup = tierRollup(byTier, day, (CustomerTier) row[0]);
+            rollup.setOrders(toLong(row[1]));
+            rollup.setCanceledOrders(toLong(row[2]));
+            rollup.setGrossSales(toAmount(row[3]));
+            rollup.setDiscounts(toAmount(row[4]));
+        }
+        for (Object[] row : salesRollupRepository.sumQuantitiesByTier(from, to)) {
+            tierRollup(byTier, day, (CustomerTier) row[0]).setQuantity(toLong(row[1]));
+        }
+        for (Object[] row : salesRollupRepository.sumPaymentsByTier(day)) {
+            tierRollup(byTier, day, (CustomerTier) row[0]).setPaid(toAmount(row[1]));
+        }
+
+        List<SalesRollup> rollups = new ArrayList<>(byTier.values());
+        if (!byTier.isEmpty()) {
+            SalesRollup total = rollup(day, SalesDimension.TOTAL, TOTAL_KEY, TOTAL_KEY);
+            for (SalesRollup tier : byTier.values()) {
+                total.setOrders(total.getOrders() + tier.getOrders());
+                total.setCanceledOrders(total.getCanceledOrders() + tier.getCanceledOrders());
+                total.setQuantity(total.getQuantity() + tier.getQuantity());
+                total.setGrossSales(total.getGrossSales().add(tier.getGrossSales()));
+                total.setDiscounts(total.getDiscounts().add(tier.getDiscounts()));
+                total.setPaid(total.getPaid().add(tier.getPaid()));
+            }
+            rollups.add(total);
+        }
+
+        for (Object[] row : salesRollupRepository.sumSalesByProduct(from, to)) {
+            SalesRollup rollup = rollup(day, SalesDimension.PRODUCT, String.valueOf(row[0]), (String) row[1]);
+            fillSales(rollup, row, 2);
+            rollups.add(rollup);
+        }
+        for (Object[] row : salesRollupRepository.sumSalesByCategory(from, to)) {
+            String category = row[0] != null ? (String) row[0] : UNCATEGORIZED_KEY;
+            SalesRollup rollup = rollup(day, SalesDimension.CATEGORY, category, category);
+            fillSales(rollup, row, 1);
+            rollups.add(rollup);
+        }
+        return rollups;
+    }
+
+    // Reads [orders, quantity, gross sales, discounts] starting at the given column
+    private void fillSales(SalesRollup rollup, Object[] row, int offset) {
+        rollup.setOrders(toLong(row[offset]));
+        rollup.setQuantity(toLong(row[offset + 1]));
+        rollup.setGrossSales(toAmount(row[offset + 2]));
+        rollup.setDiscounts(toAmount(row[offset + 3]));
+    }
+
+    private SalesRollup tierRollup(Map<CustomerTier, SalesRollup> byTier, LocalDate day, CustomerTier tier) {
+        return byTier.computeIfAbsent(tier, t -> rollup(day, SalesDimension.TIER, t.name(), t.name()));
+    }
+
+    private SalesRollup rollup(LocalDate day, SalesDimension dimension, String key, String label) {
+        return SalesRollup.builder()
+                .bucketDate(day)
+                .weekStart(day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)))
+                .monthStart(day.withDayOfMonth(1))
+                .dimension(dimension)
+                .dimensionKey(key)
+                .label(label)
+                .build();
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0;
+    }
+
+    private static BigDecimal toAmount(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal amount = value instanceof BigDecimal decimal ? decimal : new BigDecimal(value.toString());
+        return amount.setScale(2, RoundingMode.HALF_UP);
+    }
+}
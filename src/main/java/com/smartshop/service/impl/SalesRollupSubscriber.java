@@ -0,0 +1,81 @@
+package com.smartshop.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.service.OutboxSubscriber;
+import com.smartshop.service.SalesRollupJob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Refreshes the sales rollups of the days touched by order and payment events:
+ * the day an order was placed for order events, the day of the payment (before and after an update)
+ * for payment events. A batch refreshes each of its days once.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SalesRollupSubscriber implements OutboxSubscriber {
+
+    private final SalesRollupJob salesRollupJob;
+    private final OrderRepository orderRepository;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void onEvents(List<OutboxEvent> events) {
+        Set<LocalDate> days = new TreeSet<>();
+        Set<Long> orderIds = new HashSet<>();
+        for (OutboxEvent event : events) {
+            switch (event.getEventType()) {
+                case ORDER_CREATED, ORDER_CONFIRMED, ORDER_CANCELED, ORDER_REJECTED -> orderIds.add(event.getOrderId());
+                case PAYMENT_RECORDED, PAYMENT_UPDATED, PAYMENT_DELETED -> addPaymentDays(event, days);
+                case PAYMENT_COLLECTED -> {
+                    // Collection changes neither the order nor the amount or day of the payment
+                }
+            }
+        }
+
+        if (!orderIds.isEmpty()) {
+            for (LocalDateTime orderDate : orderRepository.findOrderDatesByIds(orderIds)) {
+                days.add(orderDate.toLocalDate());
+            }
+        }
+
+        salesRollupJob.refresh(days);
+        log.debug("Refreshed sales rollups of {} days for {} events", days.size(), events.size());
+    }
+
+    private void addPaymentDays(OutboxEvent event, Set<LocalDate> days) {
+        JsonNode payload = readPayload(event);
+        JsonNode paymentDate = payload.path("paymentDate");
+        if (!paymentDate.isTextual()) {
+            // Published before payment days were part of the payload
+            days.add(event.getCreatedAt().toLocalDate());
+            return;
+        }
+        days.add(LocalDate.parse(paymentDate.asText()));
+        JsonNode previousPaymentDate = payload.path("previousPaymentDate");
+        if (previousPaymentDate.isTextual()) {
+            days.add(LocalDate.parse(previousPaymentDate.asText()));
+        }
+    }
+
+    private JsonNode readPayload(OutboxEvent event) {
+        try {
+            return objectMapper.readTree(event.getPayload());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable payload in outbox event " + event.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.dto.TopProduct;
+import com.smartshop.entity.Product;
+import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.RankingMetric;
+import com.smartshop.enums.RankingWindow;
+import com.smartshop.repository.OrderItemRepository;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.repository.ProductRepository;
+import com.smartshop.service.TopProductsService;
+import com.smartshop.util.LongCounters;
+import com.smartshop.util.SlidingSalesWindow;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps product rankings in memory, fed by order events through {@link #refreshOrders} and reloaded from
+ * the database at startup. Refreshes read the orders' current lines and status first, then apply them under
+ * the lock, so the counters stay right whatever the event was and however often it is delivered.
+ * Orders refreshed while a rebuild runs are refreshed again once the rebuilt counters are swapped in.
+ * Product names are read from the catalog when a ranking is served, so renamed products show their current name.
+ * <p>
+ * The counters live in this instance's memory and the outbox hands each event to a single instance, so the
+ * rankings assume the application runs as one instance: with several, each would only rank the orders whose
+ * events it dispatched, until its next restart rebuilds it from the database.
+ */
+@Service
+@Slf4j
+public class TopProductsServiceImpl implements TopProductsService {
+
+    private static final int WIDEST_WINDOW_HOURS = RankingWindow.LAST_30D.getHours();
+
+    private final OrderItemRepository orderItemRepository;
+    private final OrderRepository orderRepository;
+    private final ProductRepository productRepository;
+    private final boolean rebuildOnStartup;
+    private final int rebuildBatchSize;
+    private final int maxLimit;
+
+    // Guarded by this
+    private SlidingSalesWindow window;
+    private Set<Long> refreshedDuringRebuild;
+
+    private final Object rebuildLock = new Object();
+    private final Timer rebuilds;
+
+    public TopProductsServiceImpl(
+            OrderItemRepository orderItemRepository,
+            OrderRepository orderRepository,
+            ProductRepository productRepository,
+            MeterRegistry meterRegistry,
+            @Value("${smartshop.analytics.top-products.rebuild-on-startup:true}") boolean rebuildOnStartup,
+            @Value("${smartshop.analytics.top-products.rebuild.batch-size:1000}") int rebuildBatchSize,
+            @Value("${smartshop.analytics.top-products.max-limit:100}") int maxLimit) {
+        this.orderItemRepository = orderItemRepository;
+        this.orderRepository = orderRepository;
+        this.productRepository = productRepository;
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.rebuildBatchSize = rebuildBatchSize;
+        this.maxLimit = maxLimit;
+        this.window = new SlidingSalesWindow(currentHour());
+
+        Gauge.builder("smartshop.analytics.top-products.orders", this, TopProductsServiceImpl::countedOrders)
+                .description("Orders counted in the product rankings")
+                .register(meterRegistry);
+        this.rebuilds = Timer.builder("smartshop.analytics.top-products.rebuild")
+                .description("Duration of a product ranking rebuild")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!rebuildOnStartup) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            // Rankings then only cover orders placed from now on, until the next rebuild
+            log.error("Product ranking rebuild failed", e);
+        }
+    }
+
+    @Override
+    public List<TopProduct> getTopProducts(RankingWindow rankingWindow, RankingMetric metric, int limit) {
+        if (limit < 1 || limit > maxLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxLimit);
+        }
+
+        List<TopProduct> ranking = new ArrayList<>(limit);
+        synchronized (this) {
+            window.advance(currentHour());
+            LongCounters totals = window.totals(rankingWindow);
+            long[] productIds = totals.top(limit,
+                    metric == RankingMetric.REVENUE ? SlidingSalesWindow.REVENUE : SlidingSalesWindow.QUANTITY);
+            for (int i = 0; i < productIds.length; i++) {
+                long productId = productIds[i];
+                ranking.add(TopProduct.builder()
+                        .rank(i + 1)
+                        .productId(productId)
+                        .quantity(totals.get(productId, SlidingSalesWindow.QUANTITY))
+                        .revenue(BigDecimal.valueOf(totals.get(productId, SlidingSalesWindow.REVENUE), 2))
+                        .build());
+            }
+        }
+        if (ranking.isEmpty()) {
+            return ranking;
+        }
+
+        Map<Long, String> names = new HashMap<>(ranking.size() * 2);
+        for (Product product : productRepository.findAllById(ranking.stream().map(TopProduct::getProductId).toList())) {
+            names.put(product.getId(), product.getName());
+        }
+        for (TopProduct product : ranking) {
+            product.setProductName(names.get(product.getProductId()));
+        }
+        return ranking;
+    }
+
+    @Override
+    public void refreshOrders(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+
+        Map<Long, OrderSales> sales = readSales(orderItemRepository.findProductSalesByOrderIds(orderIds));
+        synchronized (this) {
+            window.advance(currentHour());
+            for (Long orderId : orderIds) {
+                OrderSales orderSales = sales.get(orderId);
+                if (orderSales != null && orderSales.booked) {
+                    count(window, orderSales);
+                } else {
+                    window.uncount(orderId);
+                }
+            }
+            if (refreshedDuringRebuild != null) {
+                refreshedDuringRebuild.addAll(orderIds);
+            }
+        }
+    }
+
+    @Override
+    public int rebuild() {
+        synchronized (rebuildLock) {
+            long startTime = System.nanoTime();
+            synchronized (this) {
+                refreshedDuringRebuild = new HashSet<>();
+            }
+
+            Set<Long> refreshedMeanwhile;
+            SlidingSalesWindow rebuilt;
+            try {
+                long hour = currentHour();
+                rebuilt = new SlidingSalesWindow(hour);
+                LocalDateTime since = LocalDateTime.ofEpochSecond((hour - WIDEST_WINDOW_HOURS + 1) * 3600, 0, ZoneOffset.UTC);
+
+                // Keyset pages of order ids, then the lines of each page
+                List<Long> orderIds;
+                long afterId = 0;
+                while (!(orderIds = orderRepository.findBookedIdsSince(since, afterId, Limit.of(rebuildBatchSize))).isEmpty()) {
+                    for (OrderSales orderSales : readSales(orderItemRepository.findProductSalesByOrderIds(orderIds)).values()) {
+                        if (orderSales.booked) {
+                            count(rebuilt, orderSales);
+                        }
+                    }
+                    afterId = orderIds.get(orderIds.size() - 1);
+                }
+
+                synchronized (this) {
+                    rebuilt.advance(currentHour());
+                    window = rebuilt;
+                    refreshedMeanwhile = refreshedDuringRebuild;
+                }
+            } finally {
+                synchronized (this) {
+                    refreshedDuringRebuild = null;
+                }
+            }
+
+            // Those refreshes went to the counters just replaced, and may be newer than what the rebuild read
+            refreshOrders(refreshedMeanwhile);
+
+            long elapsedNanos = System.nanoTime() - startTime;
+            rebuilds.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            int counted = countedOrders();
+            log.info("Rebuilt product rankings from {} orders in {} ms", counted, elapsedNanos / 1_000_000);
+            return counted;
+        }
+    }
+
+    private synchronized int countedOrders() {
+        return window.orderCount();
+    }
+
+    private static void count(SlidingSalesWindow target, OrderSales orderSales) {
+        target.count(orderSales.orderId, orderSales.hour, orderSales.productIds, orderSales.quantities, orderSales.revenues);
+    }
+
+    // Groups [orderId, orderDate, status, productId, quantity, lineTotal, discount] rows per order
+    private static Map<Long, OrderSales> readSales(List<Object[]> rows) {
+        Map<Long, List<Object[]>> linesByOrder = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            linesByOrder.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add(row);
+        }
+
+        Map<Long, OrderSales> sales = new HashMap<>(linesByOrder.size() * 2);
+        for (Map.Entry<Long, List<Object[]>> entry : linesByOrder.entrySet()) {
+            List<Object[]> lines = entry.getValue();
+            Object[] first = lines.get(0);
+            OrderStatus status = (OrderStatus) first[2];
+
+            OrderSales orderSales = new OrderSales(entry.getKey(), hourOf((LocalDateTime) first[1]),
+                    status == OrderStatus.PENDING || status == OrderStatus.CONFIRMED, lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                Object[] line = lines.get(i);
+                orderSales.productIds[i] = (Long) line[3];
+                orderSales.quantities[i] = ((Number) line[4]).longValue();
+                orderSales.revenues[i] = toMinorUnits((BigDecimal) line[5], line[6]);
+            }
+            sales.put(entry.getKey(), orderSales);
+        }
+        return sales;
+    }
+
+    private static long toMinorUnits(BigDecimal lineTotal, Object discount) {
+        BigDecimal share = discount == null ? BigDecimal.ZERO
+                : discount instanceof BigDecimal decimal ? decimal : new BigDecimal(discount.toString());
+        return lineTotal.subtract(share).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static long currentHour() {
+        return hourOf(LocalDateTime.now());
+    }
+
+    // Order dates are local times; counting hours on the UTC scale keeps them evenly spaced
+    private static long hourOf(LocalDateTime dateTime) {
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 3600);
+    }
+
+    private static final class OrderSales {
+        private final long orderId;
+        private final long hour;
+        private final boolean booked;
+        private final long[] productIds;
+        private final long[] quantities;
+        private final long[] revenues;
+
+        private OrderSales(long orderId, long hour, boolean booked, int lines) {
+            this.orderId = orderId;
+            this.hour = hour;
+            this.booked = booked;
+            this.productIds = new long[lines];
+            this.quantities = new long[lines];
+            this.revenues = new long[lines];
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.service.OutboxSubscriber;
+import com.smartshop.service.TopProductsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Feeds order creations, cancellations and rejections to the product rankings.
+ * Confirmation and payments leave an order's lines and its place in the rankings unchanged.
+ */
+@Service
+@RequiredArgsConstructor
+public class TopProductsSubscriber implements OutboxSubscriber {
+
+    private final TopProductsService topProductsService;
+
+    @Override
+    public void onEvents(List<OutboxEvent> events) {
+        Set<Long> orderIds = new LinkedHashSet<>();
+        for (OutboxEvent event : events) {
+            switch (event.getEventType()) {
+                case ORDER_CREATED, ORDER_CANCELED, ORDER_REJECTED -> orderIds.add(event.getOrderId());
+                default -> {
+                }
+            }
+        }
+        topProductsService.refreshOrders(orderIds);
+    }
+}
@@ -0,0 +1,76 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.service.UserCounterRepairJob;
+import com.smartshop.service.UserCounterService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilds the denormalized spending and order counters on users from the payments and orders tables.
+ * The counters are kept up to date as payments and confirmations happen; this job catches anything
+ * written outside the services. Each id range is its own transaction, and only its drifted users are locked
+ * before being rewritten, so a run never locks every user at once nor overwrites a concurrent increment.
+ */
+@Service
+@Slf4j
+public class UserCounterRepairJobImpl implements UserCounterRepairJob {
+
+    private final UserCounterService userCounterService;
+    private final int chunkSize;
+
+    private final Counter repairedUsers;
+    private final Timer runs;
+
+    public UserCounterRepairJobImpl(
+            UserCounterService userCounterService,
+            MeterRegistry meterRegistry,
+            @Value("${smartshop.users.counters.repair.chunk-size:1000}") int chunkSize) {
+        this.userCounterService = userCounterService;
+        this.chunkSize = chunkSize;
+
+        this.repairedUsers = Counter.builder("smartshop.users.counters.repaired")
+                .description("Users whose spending or order counters had drifted")
+                .register(meterRegistry);
+        this.runs = Timer.builder("smartshop.users.counters.repair.run")
+                .description("Duration of a user counter repair run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${smartshop.users.counters.repair.cron:0 30 3 * * *}")
+    public void scheduledRepair() {
+        try {
+            repairAll();
+        } catch (RuntimeException e) {
+            log.error("User counter repair run failed", e);
+        }
+    }
+
+    @Override
+    public int repairAll() {
+        Long maxId = userCounterService.findMaxUserId();
+        if (maxId == null) {
+            return 0;
+        }
+
+        long startTime = System.nanoTime();
+        int total = 0;
+        for (long fromId = 1; fromId <= maxId; fromId += chunkSize) {
+            int repaired = userCounterService.repairChunk(fromId, fromId + chunkSize);
+            repairedUsers.increment(repaired);
+            total += repaired;
+        }
+
+        long elapsedNanos = System.nanoTime() - startTime;
+        runs.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        log.info("User counter repair checked ids up to {} and corrected {} users in {} ms",
+                maxId, total, elapsedNanos / 1_000_000);
+        return total;
+    }
+}
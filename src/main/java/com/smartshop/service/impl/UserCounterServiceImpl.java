@@ -0,0 +1,40 @@
+package com.smartshop.service.impl;
+
+import com.smartshop.repository.UserRepository;
+import com.smartshop.service.UserCounterService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class UserCounterServiceImpl implements UserCounterService {
+
+    private final UserRepository userRepository;
+
+    @Override
+    public int repairChunk(Long fromId, Long toId) {
+        List<Long> driftedIds = userRepository.findDriftedCounterIds(fromId, toId);
+        if (driftedIds.isEmpty()) {
+            return 0;
+        }
+        // Without the lock, sums read before a concurrent payment commits could overwrite its increment
+        userRepository.lockByIds(driftedIds);
+        int repaired = userRepository.repairCounters(driftedIds);
+        if (repaired > 0) {
+            log.warn("Repaired drifted counters of {} users with ids in [{}, {})", repaired, fromId, toId);
+        }
+        return repaired;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Long findMaxUserId() {
+        return userRepository.findMaxId();
+    }
+}
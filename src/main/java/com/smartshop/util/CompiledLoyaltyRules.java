@@ -0,0 +1,176 @@
+package com.smartshop.util;
+
+import com.smartshop.dto.TierRule;
+import com.smartshop.enums.CustomerTier;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, precompiled form of the loyalty tier rules.
+ * Thresholds are held in minor currency units (centimes) in arrays sorted by tier, so evaluating a client
+ * is a couple of long comparisons instead of a chain of BigDecimal compares.
+ * Instances are never modified: new rules are compiled into a new instance and swapped in whole.
+ */
+public final class CompiledLoyaltyRules {
+
+    private static final int MINOR_UNIT_SCALE = 2;
+    private static final CustomerTier[] TIERS = CustomerTier.values();
+
+    // Index i holds the threshold of TIERS[i + 1]; BASIC needs nothing
+    private final long[] spendingThresholds;
+    private final int[] orderThresholds;
+
+    // Indexed by tier ordinal
+    private final long[] discountThresholds;
+    private final BigDecimal[] discountRates;
+
+    private final List<TierRule> rules;
+
+    private CompiledLoyaltyRules(long[] spendingThresholds, int[] orderThresholds, long[] discountThresholds,
+                                 BigDecimal[] discountRates, List<TierRule> rules) {
+        this.spendingThresholds = spendingThresholds;
+        this.orderThresholds = orderThresholds;
+        this.discountThresholds = discountThresholds;
+        this.discountRates = discountRates;
+        this.rules = rules;
+    }
+
+    /**
+     * Validates and compiles a rule set. Every tier above BASIC needs both thresholds, and each tier must ask
+     * for strictly more than the one below it.
+     *
+     * @throws IllegalArgumentException if the rules are incomplete or inconsistent
+     */
+    public static CompiledLoyaltyRules compile(List<TierRule> tierRules) {
+        if (tierRules == null) {
+            throw new IllegalArgumentException("Loyalty rules are required");
+        }
+
+        Map<CustomerTier, TierRule> byTier = new EnumMap<>(CustomerTier.class);
+        for (TierRule rule : tierRules) {
+            if (rule == null || rule.getTier() == null) {
+                throw new IllegalArgumentException("Every loyalty rule needs a tier");
+            }
+            if (byTier.put(rule.getTier(), rule) != null) {
+                throw new IllegalArgumentException("Duplicate loyalty rule for tier " + rule.getTier());
+            }
+        }
+
+        long[] spendingThresholds = new long[TIERS.length - 1];
+        int[] orderThresholds = new int[TIERS.length - 1];
+        long[] discountThresholds = new long[TIERS.length];
+        BigDecimal[] discountRates = new BigDecimal[TIERS.length];
+
+        for (CustomerTier tier : TIERS) {
+            TierRule rule = byTier.get(tier);
+            int index = tier.ordinal();
+
+            if (index > 0) {
+                if (rule == null || rule.getMinSpending() == null || rule.getMinOrders() == null) {
+                    throw new IllegalArgumentException("Tier " + tier + " needs minSpending and minOrders");
+                }
+                spendingThresholds[index - 1] = toMinorUnits(rule.getMinSpending(), tier + " minSpending");
+                orderThresholds[index - 1] = rule.getMinOrders();
+                if (index > 1 && (spendingThresholds[index - 1] <= spendingThresholds[index - 2]
+                        || orderThresholds[index - 1] <= orderThresholds[index - 2])) {
+                    throw new IllegalArgumentException("Tier " + tier + " thresholds must be above those of " + TIERS[index - 1]);
+                }
+                if (orderThresholds[index - 1] <= 0 || spendingThresholds[index - 1] <= 0) {
+                    throw new IllegalArgumentException("Tier " + tier + " thresholds must be positive");
+                }
+            }
+
+            BigDecimal rate = rule != null && rule.getDiscountRate() != null ? rule.getDiscountRate() : BigDecimal.ZERO;
+            if (rate.signum() < 0 || rate.compareTo(BigDecimal.ONE) >= 0) {
+                throw new IllegalArgumentException("Tier " + tier + " discountRate must be in [0, 1)");
+            }
+            discountRates[index] = rate;
+            discountThresholds[index] = rule != null && rule.getDiscountThreshold() != null
+                    ? toMinorUnits(rule.getDiscountThreshold(), tier + " discountThreshold")
+                    : 0;
+        }
+
+        // Keep a copy of the definitions for display, detached from the caller's objects
+        List<TierRule> definitions = new ArrayList<>(byTier.size());
+        byTier.values().stream()
+                .sorted(Comparator.comparing(TierRule::getTier))
+                .forEach(rule -> definitions.add(new TierRule(rule.getTier(), rule.getMinSpending(), rule.getMinOrders(),
+                        rule.getDiscountThreshold(), rule.getDiscountRate())));
+
+        return new CompiledLoyaltyRules(spendingThresholds, orderThresholds, discountThresholds, discountRates,
+                List.copyOf(definitions));
+    }
+
+    /**
+     * Highest tier the client qualifies for: enough confirmed orders OR enough spending.
+     */
+    public CustomerTier calculateTier(BigDecimal totalSpending, int confirmedOrdersCount) {
+        long spending = totalSpending == null ? 0 : toMinorUnitsFloor(totalSpending);
+        return calculateTier(spending, confirmedOrdersCount);
+    }
+
+    public CustomerTier calculateTier(long totalSpendingMinor, int confirmedOrdersCount) {
+        int bySpending = countReached(spendingThresholds, totalSpendingMinor);
+        int byOrders = countReached(orderThresholds, confirmedOrdersCount);
+        return TIERS[Math.max(bySpending, byOrders)];
+    }
+
+    public boolean needsUpgrade(CustomerTier currentTier, BigDecimal totalSpending, int confirmedOrdersCount) {
+        return calculateTier(totalSpending, confirmedOrdersCount).ordinal() > currentTier.ordinal();
+    }
+
+    /**
+     * Discount rate a client of the tier gets on an order of the given subtotal, zero below the tier's threshold.
+     */
+    public BigDecimal calculateLoyaltyDiscount(CustomerTier tier, BigDecimal subtotal) {
+        if (tier == null || subtotal == null) {
+            return BigDecimal.ZERO;
+        }
+        int index = tier.ordinal();
+        return toMinorUnitsFloor(subtotal) >= discountThresholds[index] ? discountRates[index] : BigDecimal.ZERO;
+    }
+
+    public BigDecimal applyLoyaltyDiscount(CustomerTier tier, BigDecimal subtotal) {
+        return subtotal.multiply(calculateLoyaltyDiscount(tier, subtotal));
+    }
+
+    public List<TierRule> getRules() {
+        return rules;
+    }
+
+    // Number of sorted thresholds the value reaches; the arrays are tiny, so a linear scan beats a binary search
+    private static int countReached(long[] sortedThresholds, long value) {
+        int reached = 0;
+        while (reached < sortedThresholds.length && value >= sortedThresholds[reached]) {
+            reached++;
+        }
+        return reached;
+    }
+
+    private static int countReached(int[] sortedThresholds, int value) {
+        int reached = 0;
+        while (reached < sortedThresholds.length && value >= sortedThresholds[reached]) {
+            reached++;
+        }
+        return reached;
+    }
+
+    // Flooring keeps "amount >= threshold" exact, as thresholds are whole minor units
+    private static long toMinorUnitsFloor(BigDecimal amount) {
+        return amount.setScale(MINOR_UNIT_SCALE, RoundingMode.FLOOR).unscaledValue().longValue();
+    }
+
+    private static long toMinorUnits(BigDecimal amount, String name) {
+        try {
+            return amount.setScale(MINOR_UNIT_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(name + " must be an amount with at most " + MINOR_UNIT_SCALE + " decimals");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.smartshop.util;
+
+import java.util.Arrays;
+
+/**
+ * How often products are bought together: for each product, the number of orders containing it and,
+ * per other product, the number of orders containing both. Each product gets a row number from a
+ * {@link LongCounters} lookup, and each row is a {@link LongCounters} itself, so the matrix holds no boxed
+ * ids or counts.
+ * Only pairs that actually co-occur take space. Not thread-safe; instances built separately can be merged.
+ */
+public final class CooccurrenceIndex {
+
+    private static final long EMPTY = 0;
+    private static final int MIN_ROWS = 16;
+
+    // Product id -> row number + 1, so that no stored value is zero
+    private final LongCounters rowNumbers = new LongCounters();
+    private long[] productIds = new long[MIN_ROWS];
+    private long[] orderCounts = new long[MIN_ROWS];
+    private LongCounters[] rows = new LongCounters[MIN_ROWS];
+    private int productCount;
+    private long orderCount;
+
+    /**
+     * Counts one order. A product listed on several lines of the order counts once.
+     */
+    public void addOrder(long[] orderProductIds) {
+        long[] distinct = distinct(orderProductIds);
+        for (long productId : distinct) {
+            int row = rowFor(productId);
+            orderCounts[row]++;
+            LongCounters counters = rows[row];
+            for (long other : distinct) {
+                if (other != productId) {
+                    counters.add(other, 1);
+                }
+            }
+        }
+        orderCount++;
+    }
+
+    /**
+     * Adds every count of the other index to this one.
+     */
+    public void merge(CooccurrenceIndex other) {
+        for (int i = 0; i < other.productCount; i++) {
+            int row = rowFor(other.productIds[i]);
+            orderCounts[row] += other.orderCounts[i];
+            rows[row].addAll(other.rows[i]);
+        }
+        orderCount += other.orderCount;
+    }
+
+    /**
+     * Number of counted orders containing the product.
+     */
+    public long orderCount(long productId) {
+        int row = rowOf(productId);
+        return row < 0 ? 0 : orderCounts[row];
+    }
+
+    /**
+     * Number of counted orders containing both products.
+     */
+    public long pairCount(long productId, long otherId) {
+        int row = rowOf(productId);
+        return row < 0 ? 0 : rows[row].get(otherId);
+    }
+
+    /**
+     * The (at most) k products most often bought with the given one, most frequent first.
+     */
+    public long[] related(long productId, int k) {
+        int row = rowOf(productId);
+        return row < 0 ? new long[0] : rows[row].top(k);
+    }
+
+    public long orderCount() {
+        return orderCount;
+    }
+
+    public int productCount() {
+        return productCount;
+    }
+
+    /**
+     * Number of distinct product pairs bought together at least once.
+     */
+    public long pairCount() {
+        long entries = 0;
+        for (int i = 0; i < productCount; i++) {
+            entries += rows[i].size();
+        }
+        return entries / 2;
+    }
+
+    /**
+     * Approximate heap size of the index: the arrays, plus a header and fields per product row.
+     */
+    public long footprintBytes() {
+        // Object header, two array references, three ints and padding per LongCounters
+        final long rowOverhead = 40;
+        long bytes = rowNumbers.footprintBytes() + (long) productIds.length * (2 * Long.BYTES + 4);
+        for (int i = 0; i < productCount; i++) {
+            bytes += rowOverhead + rows[i].footprintBytes();
+        }
+        return bytes;
+    }
+
+    private static long[] distinct(long[] ids) {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] == EMPTY) {
+                throw new IllegalArgumentException("Product id must not be " + EMPTY);
+            }
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return count == sorted.length ? sorted : Arrays.copyOf(sorted, count);
+    }
+
+    // Row of the product, or -1 if it was never counted
+    private int rowOf(long productId) {
+        return (int) rowNumbers.get(productId) - 1;
+    }
+
+    // Row of the product, added empty if it was not there
+    private int rowFor(long productId) {
+        int row = rowOf(productId);
+        if (row >= 0) {
+            return row;
+        }
+        if (productCount == productIds.length) {
+            int capacity = productCount * 2;
+            productIds = Arrays.copyOf(productIds, capacity);
+            orderCounts = Arrays.copyOf(orderCounts, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+        }
+        row = productCount++;
+        productIds[row] = productId;
+        rows[row] = new LongCounters();
+        rowNumbers.add(productId, row + 1);
+        return row;
+    }
+}
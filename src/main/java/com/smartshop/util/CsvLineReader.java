@@ -0,0 +1,160 @@
+package com.smartshop.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV lines from a channel through fixed-size buffers, so only the current line is ever held in memory.
+ * Lines end with \n or \r\n. A field may be wrapped in double quotes ("" escapes a quote) but cannot span lines.
+ * Lines longer than the maximum length are skipped rather than buffered, and reported as an error.
+ */
+public class CsvLineReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final ReadableByteChannel channel;
+    private final int maxLineLength;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final StringBuilder line = new StringBuilder();
+
+    private boolean endOfInput;
+    private int lineNumber;
+    private boolean lineTooLong;
+
+    public CsvLineReader(ReadableByteChannel channel, Charset charset, int maxLineLength) {
+        this.channel = channel;
+        this.maxLineLength = maxLineLength;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        chars.flip();
+    }
+
+    /**
+     * Returns the next line without its terminator, or null at the end of the input.
+     * A line longer than the maximum length is read to its end without being kept, then rejected with an
+     * IllegalArgumentException; the next call carries on with the following line.
+     */
+    public String readLine() throws IOException {
+        line.setLength(0);
+        lineTooLong = false;
+        while (true) {
+            while (chars.hasRemaining()) {
+                char c = chars.get();
+                if (c == '\n') {
+                    return completeLine();
+                }
+                // One extra character, which may be the \r of a line exactly at the limit
+                if (line.length() <= maxLineLength) {
+                    line.append(c);
+                } else {
+                    lineTooLong = true;
+                }
+            }
+            if (!fill()) {
+                return line.isEmpty() ? null : completeLine();
+            }
+        }
+    }
+
+    /**
+     * Number of the line last returned by {@link #readLine()}, starting at 1.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public static List<String> splitFields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                fields.add(wasQuoted ? field.toString() : field.toString().trim());
+                field.setLength(0);
+                wasQuoted = false;
+            } else {
+                field.append(c);
+            }
+        }
+
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(wasQuoted ? field.toString() : field.toString().trim());
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private String completeLine() {
+        lineNumber++;
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r' && !lineTooLong) {
+            line.setLength(length - 1);
+        }
+        if (lineTooLong || line.length() > maxLineLength) {
+            line.setLength(0);
+            throw new IllegalArgumentException("Line is longer than " + maxLineLength + " characters");
+        }
+        if (lineNumber == 1 && !line.isEmpty() && line.charAt(0) == BYTE_ORDER_MARK) {
+            line.deleteCharAt(0);
+        }
+        return line.toString();
+    }
+
+    // Decodes the next block of bytes; returns false once the input is exhausted
+    private boolean fill() throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+
+        chars.clear();
+        while (chars.position() == 0 && !endOfInput) {
+            if (channel.read(bytes) < 0) {
+                endOfInput = true;
+            }
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (endOfInput) {
+                decoder.flush(chars);
+            }
+            bytes.compact();
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+}
@@ -0,0 +1,249 @@
+package com.smartshop.util;
+
+/**
+ * Counters keyed by positive long ids, in open-addressing arrays of primitives:
+ * no boxed keys or values, and no entry objects to allocate per key.
+ * Each key holds a fixed number of counter columns, stored side by side; a key whose counters all drop back
+ * to zero is removed. Not thread-safe.
+ */
+public final class LongCounters {
+
+    // Ids are positive, so this never collides with a real key
+    private static final long EMPTY = 0;
+    private static final int MIN_CAPACITY = 8;
+
+    private final int columns;
+    private long[] keys;
+    // Counters of the key in slot s at [s * columns, (s + 1) * columns)
+    private long[] values;
+    private int mask;
+    private int size;
+
+    public LongCounters() {
+        this(1);
+    }
+
+    public LongCounters(int columns) {
+        if (columns < 1) {
+            throw new IllegalArgumentException("At least one counter column is required");
+        }
+        this.columns = columns;
+        allocate(MIN_CAPACITY);
+    }
+
+    public void add(long key, long delta) {
+        add(key, 0, delta);
+    }
+
+    /**
+     * Adds to one counter of the key; negative deltas take back what was added before.
+     */
+    public void add(long key, int column, long delta) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key must not be " + EMPTY);
+        }
+        int slot = slotOf(key);
+        if (keys[slot] == EMPTY) {
+            if (delta == 0) {
+                return;
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot * columns + column] += delta;
+
+        if (isZero(slot)) {
+            removeAt(slot);
+        } else if (size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /**
+     * Adds every counter of the other instance to this one.
+     */
+    public void addAll(LongCounters other) {
+        if (other.columns != columns) {
+            throw new IllegalArgumentException("Counters have " + other.columns + " columns, expected " + columns);
+        }
+        for (int slot = 0; slot < other.keys.length; slot++) {
+            if (other.keys[slot] != EMPTY) {
+                for (int column = 0; column < columns; column++) {
+                    add(other.keys[slot], column, other.values[slot * columns + column]);
+                }
+            }
+        }
+    }
+
+    public long get(long key) {
+        return get(key, 0);
+    }
+
+    public long get(long key, int column) {
+        int slot = slotOf(key);
+        return keys[slot] == EMPTY ? 0 : values[slot * columns + column];
+    }
+
+    public boolean contains(long key) {
+        return keys[slotOf(key)] != EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Bytes held by the arrays, not counting the object headers.
+     */
+    public long footprintBytes() {
+        return (long) keys.length * (1 + columns) * Long.BYTES;
+    }
+
+    public long[] top(int k) {
+        return top(k, 0);
+    }
+
+    /**
+     * The (at most) k keys with the highest value in the column, best first; ties go to the lower key.
+     * Selects through a k-sized heap instead of sorting every key.
+     */
+    public long[] top(int k, int column) {
+        int[] heap = new int[Math.min(k, size)];
+        int heapSize = 0;
+
+        // Min-heap of slots: the worst of the best k so far sits at the root
+        for (int slot = 0; slot < keys.length && heap.length > 0; slot++) {
+            if (keys[slot] == EMPTY) {
+                continue;
+            }
+            if (heapSize < heap.length) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++, column);
+            } else if (ranksBefore(slot, heap[0], column)) {
+                heap[0] = slot;
+                siftDown(heap, heapSize, column);
+            }
+        }
+
+        long[] top = new long[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            top[i] = keys[heap[0]];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, column);
+        }
+        return top;
+    }
+
+    private boolean ranksBefore(int slot, int other, int column) {
+        long value = values[slot * columns + column];
+        long otherValue = values[other * columns + column];
+        if (value != otherValue) {
+            return value > otherValue;
+        }
+        return keys[slot] < keys[other];
+    }
+
+    private void siftUp(int[] heap, int index, int column) {
+        int slot = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksBefore(heap[parent], slot, column)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = slot;
+    }
+
+    private void siftDown(int[] heap, int heapSize, int column) {
+        if (heapSize == 0) {
+            return;
+        }
+        int index = 0;
+        int slot = heap[0];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && ranksBefore(heap[child], heap[child + 1], column)) {
+                child++;
+            }
+            if (!ranksBefore(slot, heap[child], column)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = slot;
+    }
+
+    private boolean isZero(int slot) {
+        for (int i = slot * columns; i < (slot + 1) * columns; i++) {
+            if (values[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Slot holding the key, or the empty slot where it would go
+    private int slotOf(long key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Backward-shift deletion: pulls later entries of the probe run into the gap, so lookups need no tombstones
+    private void removeAt(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                System.arraycopy(values, next * columns, values, gap * columns, columns);
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        for (int i = gap * columns; i < (gap + 1) * columns; i++) {
+            values[i] = 0;
+        }
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                System.arraycopy(oldValues, i * columns, values, slot * columns, columns);
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity * columns];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,135 @@
+package com.smartshop.util;
+
+import com.smartshop.enums.RankingWindow;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Product sales over the trailing ranking windows, in hourly steps.
+ * Each window keeps running totals; an order is added to the windows it falls in when counted, and taken out
+ * of each window as the clock moves past it, so a ranking never has to re-aggregate the orders themselves.
+ * The lines of every counted order are kept until it leaves the widest window, which is what makes counting
+ * an order again (a replayed event) or uncounting it (a cancellation) exact. Not thread-safe.
+ */
+public final class SlidingSalesWindow {
+
+    /** Counter columns of the window totals. */
+    public static final int QUANTITY = 0;
+    public static final int REVENUE = 1;
+
+    private static final RankingWindow[] WINDOWS = RankingWindow.values();
+
+    private final int spanHours;
+    private final LongCounters[] totals = new LongCounters[WINDOWS.length];
+    private final Map<Long, CountedOrder> orders = new HashMap<>();
+    private long currentHour;
+
+    public SlidingSalesWindow(long currentHour) {
+        int span = 0;
+        for (RankingWindow window : WINDOWS) {
+            totals[window.ordinal()] = new LongCounters(2);
+            span = Math.max(span, window.getHours());
+        }
+        this.spanHours = span;
+        this.currentHour = currentHour;
+    }
+
+    /**
+     * Moves the windows forward to the given hour, dropping the orders that slid out of each.
+     */
+    public void advance(long hour) {
+        if (hour <= currentHour) {
+            return;
+        }
+        Iterator<CountedOrder> iterator = orders.values().iterator();
+        while (iterator.hasNext()) {
+            CountedOrder order = iterator.next();
+            long ageBefore = currentHour - order.hour;
+            long ageAfter = hour - order.hour;
+            for (RankingWindow window : WINDOWS) {
+                if (ageBefore < window.getHours() && ageAfter >= window.getHours()) {
+                    apply(totals[window.ordinal()], order, -1);
+                }
+            }
+            if (ageAfter >= spanHours) {
+                iterator.remove();
+            }
+        }
+        currentHour = hour;
+    }
+
+    /**
+     * Counts an order placed at the given hour, replacing what was counted for it before.
+     * The arrays hold one entry per order line; revenues are in minor currency units.
+     *
+     * @return false if the order is too old for every window and was not counted
+     */
+    public boolean count(long orderId, long hour, long[] productIds, long[] quantities, long[] revenues) {
+        uncount(orderId);
+        // Orders stamped slightly ahead of this clock belong to the current hour
+        long orderHour = Math.min(hour, currentHour);
+        if (currentHour - orderHour >= spanHours) {
+            return false;
+        }
+
+        CountedOrder order = new CountedOrder(orderHour, productIds.clone(), quantities.clone(), revenues.clone());
+        orders.put(orderId, order);
+        long age = currentHour - orderHour;
+        for (RankingWindow window : WINDOWS) {
+            if (age < window.getHours()) {
+                apply(totals[window.ordinal()], order, 1);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes an order back out of every window it was counted in.
+     *
+     * @return false if the order was not counted
+     */
+    public boolean uncount(long orderId) {
+        CountedOrder order = orders.remove(orderId);
+        if (order == null) {
+            return false;
+        }
+        long age = currentHour - order.hour;
+        for (RankingWindow window : WINDOWS) {
+            if (age < window.getHours()) {
+                apply(totals[window.ordinal()], order, -1);
+            }
+        }
+        return true;
+    }
+
+    public LongCounters totals(RankingWindow window) {
+        return totals[window.ordinal()];
+    }
+
+    public int orderCount() {
+        return orders.size();
+    }
+
+    private static void apply(LongCounters counters, CountedOrder order, int sign) {
+        for (int i = 0; i < order.productIds.length; i++) {
+            counters.add(order.productIds[i], QUANTITY, sign * order.quantities[i]);
+            counters.add(order.productIds[i], REVENUE, sign * order.revenues[i]);
+        }
+    }
+
+    private static final class CountedOrder {
+        private final long hour;
+        private final long[] productIds;
+        private final long[] quantities;
+        private final long[] revenues;
+
+        private CountedOrder(long hour, long[] productIds, long[] quantities, long[] revenues) {
+            this.hour = hour;
+            this.productIds = productIds;
+            this.quantities = quantities;
+            this.revenues = revenues;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.smartshop.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.smartshop.entity.Order;
+import com.smartshop.entity.OrderItem;
+import com.smartshop.entity.Payment;
+import com.smartshop.entity.Product;
+import com.smartshop.entity.User;
+import com.smartshop.enums.CustomerTier;
+import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
+import com.smartshop.enums.UserRole;
+import com.smartshop.repository.OrderItemRepository;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.repository.PaymentRepository;
+import com.smartshop.repository.ProductRepository;
+import com.smartshop.repository.SalesRollupRepository;
+import com.smartshop.repository.UserRepository;
+import com.smartshop.service.TopProductsService;
+import com.smartshop.util.PasswordEncoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class AnalyticsControllerIntegrationTest extends BaseIntegrationTest {
+
+    // A Monday
+    private static final LocalDate JUNE_1 = LocalDate.of(2026, 6, 1);
+
+    @Autowired
+    private SalesRollupRepository salesRollupRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TopProductsService topProductsService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private User client;
+    private Product laptop;
+    private Product book;
+    private MockHttpSession adminSession;
+    private MockHttpSession clientSession;
+
+    @BeforeEach
+    void setUp() {
+        salesRollupRepository.deleteAll();
+        paymentRepository.deleteAll();
+        orderItemRepository.deleteAll();
+        orderRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User admin = userRepository.save(User.builder()
+                .username("admin")
+                .password(passwordEncoder.encode("admin123"))
+                .role(UserRole.ADMIN)
+                .name("Admin User")
+                .email("admin@example.com")
+                .build());
+        client = userRepository.save(User.builder()
+                .username("client")
+                .password(passwordEncoder.encode("client123"))
+                .role(UserRole.CLIENT)
+                .name("Client")
+                .email("client@example.com")
+                .build());
+
+        laptop = productRepository.save(Product.builder()
+                .name("Laptop")
+                .sku("ANALYTICS-LAPTOP")
+                .unitPrice(new BigDecimal("800.00"))
+                .stock(100)
+                .category("Electronics")
+                .deleted(false)
+                .build());
+        book = productRepository.save(Product.builder()
+                .name("Book")
+                .sku("ANALYTICS-BOOK")
+                .unitPrice(new BigDecimal("50.00"))
+                .stock(100)
+                .deleted(false)
+                .build());
+
+        // Monday: a gold checkout with a 10% discount, paid in part the next day
+        Order first = createOrder(JUNE_1, OrderStatus.CONFIRMED, CustomerTier.GOLD, "1000.00", "100.00",
+                item(laptop, 1, "800.00"), item(book, 4, "200.00"));
+        createPayment(first, JUNE_1.plusDays(1), "500.00");
+        // Wednesday: an order placed before tiers and discounts were recorded, and a canceled one
+        createOrder(JUNE_1.plusDays(2), OrderStatus.PENDING, null, "100.00", null, item(book, 2, "100.00"));
+        createOrder(JUNE_1.plusDays(2), OrderStatus.CANCELED, CustomerTier.BASIC, "800.00", "0.00",
+                item(laptop, 1, "800.00"));
+        // Next month
+        createOrder(JUNE_1.plusMonths(1), OrderStatus.CONFIRMED, CustomerTier.GOLD, "800.00", "0.00",
+                item(laptop, 1, "800.00"));
+
+        adminSession = new MockHttpSession();
+        adminSession.setAttribute("userId", admin.getId());
+        adminSession.setAttribute("userRole", "ADMIN");
+
+        clientSession = new MockHttpSession();
+        clientSession.setAttribute("userId", client.getId());
+        clientSession.setAttribute("userRole", "CLIENT");
+    }
+
+    @Test
+    void rebuildThenGetDailyTotals() throws Exception {
+        rebuild(JUNE_1, JUNE_1.plusMonths(1).plusDays(30), 61);
+
+        JsonNode days = getSales(JUNE_1, JUNE_1.plusDays(29), "day", "total", null);
+        assertEquals(3, days.size());
+
+        JsonNode monday = days.get(0);
+        assertEquals(JUNE_1.toString(), monday.get("period").asText());
+        assertEquals(1, monday.get("orders").asInt());
+        assertEquals(5, monday.get("quantity").asInt());
+        assertAmount("1000.00", monday.get("grossSales"));
+        assertAmount("100.00", monday.get("discounts"));
+        assertAmount("900.00", monday.get("revenue"));
+        assertAmount("900.00", monday.get("averageBasket"));
+        assertAmount("0", monday.get("paid"));
+
+        // Only the payment happened on Tuesday
+        JsonNode tuesday = days.get(1);
+        assertEquals(0, tuesday.get("orders").asInt());
+        assertAmount("500.00", tuesday.get("paid"));
+
+        JsonNode wednesday = days.get(2);
+        assertEquals(1, wednesday.get("orders").asInt());
+        assertEquals(1, wednesday.get("canceledOrders").asInt());
+        assertAmount("100.00", wednesday.get("revenue"));
+    }
+
+    @Test
+    void getSales_PerWeekAndMonth() throws Exception {
+        rebuild(JUNE_1, JUNE_1.plusMonths(1).plusDays(30), 61);
+
+        JsonNode weeks = getSales(JUNE_1, JUNE_1.plusMonths(1).plusDays(30), "week", "total", null);
+        assertEquals(2, weeks.size());
+        assertEquals(JUNE_1.toString(), weeks.get(0).get("period").asText());
+        assertEquals(2, weeks.get(0).get("orders").asInt());
+        assertAmount("1000.00", weeks.get(0).get("revenue"));
+        assertAmount("500.00", weeks.get(0).get("averageBasket"));
+        assertEquals("2026-06-29", weeks.get(1).get("period").asText());
+
+        JsonNode months = getSales(JUNE_1, JUNE_1.plusMonths(1).plusDays(30), "month", "total", null);
+        assertEquals(2, months.size());
+        assertAmount("1000.00", months.get(0).get("revenue"));
+        assertEquals("2026-07-01", months.get(1).get("period").asText());
+        assertAmount("800.00", months.get(1).get("revenue"));
+    }
+
+    @Test
+    void getSales_PerProductCategoryAndTier() throws Exception {
+        rebuild(JUNE_1, JUNE_1.plusDays(29), 30);
+
+        JsonNode products = getSales(JUNE_1, JUNE_1.plusDays(29), "month", "product", null);
+        assertEquals(2, products.size());
+        JsonNode bookSales = find(products, book.getId().toString());
+        assertEquals("Book", bookSales.get("label").asText());
+        assertEquals(2, bookSales.get("orders").asInt());
+        assertEquals(6, bookSales.get("quantity").asInt());
+        // Its share of the first order's discount: 200 / 1000 of 100
+        assertAmount("20.00", bookSales.get("discounts"));
+        assertAmount("280.00", bookSales.get("revenue"));
+
+        JsonNode laptopOnly = getSales(JUNE_1, JUNE_1.plusDays(29), "month", "product", laptop.getId().toString());
+        assertEquals(1, laptopOnly.size());
+        assertAmount("720.00", laptopOnly.get(0).get("revenue"));
+
+        JsonNode categories = getSales(JUNE_1, JUNE_1.plusDays(29), "month", "category", null);
+        assertAmount("720.00", find(categories, "Electronics").get("revenue"));
+        assertAmount("280.00", find(categories, "uncategorized").get("revenue"));
+
+        // The order without a recorded tier counts under the client's current tier
+        JsonNode tiers = getSales(JUNE_1, JUNE_1.plusDays(29), "month", "tier", null);
+        assertAmount("900.00", find(tiers, "GOLD").get("revenue"));
+        assertAmount("500.00", find(tiers, "GOLD").get("paid"));
+        assertEquals(1, find(tiers, "BASIC").get("orders").asInt());
+        assertEquals(1, find(tiers, "BASIC").get("canceledOrders").asInt());
+    }
+
+    @Test
+    void rebuild_IsIdempotent() throws Exception {
+        rebuild(JUNE_1, JUNE_1.plusDays(6), 7);
+        rebuild(JUNE_1, JUNE_1.plusDays(6), 7);
+
+        JsonNode week = getSales(JUNE_1, JUNE_1.plusDays(6), "week", "total", null);
+        assertEquals(1, week.size());
+        assertEquals(2, week.get(0).get("orders").asInt());
+        assertAmount("1000.00", week.get(0).get("revenue"));
+    }
+
+    @Test
+    void createOrder_RefreshesTodaysRollups() throws Exception {
+        createOrderThroughApi(laptop, 2);
+
+        LocalDate today = LocalDate.now();
+        JsonNode days = getSales(today, today, "day", "total", null);
+        assertEquals(1, days.size());
+        assertEquals(1, days.get(0).get("orders").asInt());
+        assertEquals(2, days.get(0).get("quantity").asInt());
+        assertAmount("1600.00", days.get(0).get("grossSales"));
+    }
+
+    @Test
+    void topProducts_FollowOrdersAndCancellations() throws Exception {
+        // Starts from the database, where the June orders are too old for any window
+        topProductsService.rebuild();
+
+        createOrderThroughApi(laptop, 2);
+        Long bookOrderId = createOrderThroughApi(book, 3);
+        createOrderThroughApi(book, 1);
+
+        JsonNode byQuantity = getTopProducts("24h", "quantity");
+        assertEquals(2, byQuantity.size());
+        assertEquals(book.getId(), byQuantity.get(0).get("productId").asLong());
+        assertEquals("Book", byQuantity.get(0).get("productName").asText());
+        assertEquals(4, byQuantity.get(0).get("quantity").asInt());
+
+        JsonNode byRevenue = getTopProducts("24h", "revenue");
+        assertEquals(laptop.getId(), byRevenue.get(0).get("productId").asLong());
+        assertAmount("1600.00", byRevenue.get(0).get("revenue"));
+
+        mockMvc.perform(put("/orders/" + bookOrderId + "/cancel")
+                .session(clientSession))
+                .andExpect(status().isOk());
+
+        byQuantity = getTopProducts("7d", "quantity");
+        assertEquals(laptop.getId(), byQuantity.get(0).get("productId").asLong());
+        assertEquals(1, byQuantity.get(1).get("quantity").asInt());
+    }
+
+    @Test
+    void topProducts_RebuiltFromDatabase() throws Exception {
+        // Written without going through the services, so only a rebuild can see it
+        createOrder(LocalDate.now().minusDays(3), OrderStatus.CONFIRMED, CustomerTier.BASIC, "100.00", "0.00",
+                item(book, 2, "100.00"));
+        topProductsService.rebuild();
+
+        assertEquals(0, getTopProducts("24h", "quantity").size());
+        JsonNode week = getTopProducts("7d", "quantity");
+        assertEquals(1, week.size());
+        assertEquals(2, week.get(0).get("quantity").asInt());
+    }
+
+    @Test
+    void topProducts_InvalidParameters() throws Exception {
+        mockMvc.perform(get("/analytics/top-products")
+                .param("window", "1y")
+                .session(adminSession))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Unknown ranking window: 1y (expected 24h, 7d or 30d)"));
+
+        mockMvc.perform(get("/analytics/top-products")
+                .param("metric", "profit")
+                .session(adminSession))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Unknown RankingMetric: profit (expected one of [QUANTITY, REVENUE])"));
+
+        mockMvc.perform(get("/analytics/top-products")
+                .param("limit", "0")
+                .session(adminSession))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/analytics/top-products")
+                .session(clientSession))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void getSales_InvalidParameters() throws Exception {
+        mockMvc.perform(get("/analytics/sales")
+                .param("from", JUNE_1.toString())
+                .param("to", JUNE_1.plusDays(1).toString())
+                .param("granularity", "year")
+                .session(adminSession))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/analytics/sales")
+                .param("from", JUNE_1.plusDays(1).toString())
+                .param("to", JUNE_1.toString())
+                .session(adminSession))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void analytics_AdminOnly() throws Exception {
+        mockMvc.perform(get("/analytics/sales")
+                .param("from", JUNE_1.toString())
+                .param("to", JUNE_1.toString())
+                .session(clientSession))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(post("/analytics/sales/rebuild")
+                .session(clientSession))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private void rebuild(LocalDate from, LocalDate to, int expectedDays) throws Exception {
+        mockMvc.perform(post("/analytics/sales/rebuild")
+                .param("from", from.toString())
+                .param("to", to.toString())
+                .session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rebuiltDays").value(expectedDays));
+    }
+
+    private JsonNode getSales(LocalDate from, LocalDate to, String granularity, String groupBy, String key)
+            throws Exception {
+        MockHttpServletRequestBuilder request = get("/analytics/sales")
+                .param("from", from.toString())
+                .param("to", to.toString())
+                .param("granularity", granularity)
+                .param("groupBy", groupBy)
+                .session(adminSession);
+        if (key != null) {
+            request.param("key", key);
+        }
+
+        String response = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response);
+    }
+
+    private JsonNode getTopProducts(String window, String metric) throws Exception {
+        String response = mockMvc.perform(get("/analytics/top-products")
+                .param("window", window)
+                .param("metric", metric)
+                .session(adminSession))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response);
+    }
+
+    private Long createOrderThroughApi(Product product, int quantity) throws Exception {
+        String requestBody = "{\"userId\": " + client.getId() + ", \"items\": [{\"productId\": " + product.getId() +
+                ", \"quantity\": " + quantity + "}], \"couponCode\": null}";
+        String response = mockMvc.perform(post("/orders")
+                .session(adminSession)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(requestBody))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("id").asLong();
+    }
+
+    private JsonNode find(JsonNode buckets, String key) {
+        for (JsonNode bucket : buckets) {
+            if (bucket.get("key").asText().equals(key)) {
+                return bucket;
+            }
+        }
+        return fail("No bucket for key " + key + " in " + buckets);
+    }
+
+    private void assertAmount(String expected, JsonNode actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual.decimalValue()),
+                "expected " + expected + " but was " + actual);
+    }
+
+    private OrderItem item(Product product, int quantity, String lineTotal) {
+        return OrderItem.builder()
+                .productId(product.getId())
+                .productName(product.getName())
+                .quantity(quantity)
+                .unitPrice(new BigDecimal(lineTotal).divide(BigDecimal.valueOf(quantity)))
+                .lineTotal(new BigDecimal(lineTotal))
+                .build();
+    }
+
+    private Order createOrder(LocalDate day, OrderStatus status, CustomerTier tier, String subtotal, String discount,
+                              OrderItem... items) {
+        Order order = orderRepository.save(Order.builder()
+                .userId(client.getId())
+                .orderDate(day.atTime(10, 0))
+                .status(status)
+                .customerTier(tier)
+                .subtotalHT(new BigDecimal(subtotal))
+                .discountAmount(discount != null ? new BigDecimal(discount) : null)
+                .totalTTC(new BigDecimal(subtotal))
+                .remainingAmount(new BigDecimal(subtotal))
+                .build());
+        for (OrderItem item : items) {
+            item.setOrderId(order.getId());
+            orderItemRepository.save(item);
+        }
+        return order;
+    }
+
+    private void createPayment(Order order, LocalDate day, String amount) {
+        paymentRepository.save(Payment.builder()
+                .orderId(order.getId())
+                .paymentNumber(1)
+                .amount(new BigDecimal(amount))
+                .paymentMethod(PaymentMethod.TRANSFER)
+                .reference("VIR ORD-" + order.getId())
+                .paymentDate(day)
+                .collectionDate(day)
+                .status(PaymentStatus.COLLECTED)
+                .build());
+    }
+}
@@ -1,9 +1,16 @@
 package com.smartshop.integration;
 
 import com.smartshop.dto.UserDTO;
+import com.smartshop.entity.Order;
+import com.smartshop.entity.Payment;
 import com.smartshop.entity.User;
 import com.smartshop.enums.CustomerTier;
+import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
 import com.smartshop.enums.UserRole;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.repository.PaymentRepository;
 import com.smartshop.repository.UserRepository;
 import com.smartshop.util.PasswordEncoder;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,7 +19,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpSession;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -21,6 +33,12 @@ class ClientControllerIntegrationTest extends BaseIntegrationTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
@@ -214,4 +232,48 @@ class ClientControllerIntegrationTest extends BaseIntegrationTest {
         mockMvc.perform(get("/clients/" + clientUser.getId() + "/statistics"))
                 .andExpect(status().isUnauthorized());
     }
+
+    @Test
+    void repairCounters_RebuildsDriftedCounters() throws Exception {
+        // Written straight to the tables, so the counters on the user are not maintained
+        Order order = orderRepository.save(Order.builder()
+                .userId(clientUser.getId())
+                .orderDate(LocalDateTime.now())
+                .status(OrderStatus.CONFIRMED)
+                .subtotalHT(new BigDecimal("100.00"))
+                .totalTTC(new BigDecimal("120.00"))
+                .remainingAmount(new BigDecimal("0.00"))
+                .build());
+        paymentRepository.save(Payment.builder()
+                .orderId(order.getId())
+                .paymentNumber(1)
+                .amount(new BigDecimal("120.00"))
+                .paymentMethod(PaymentMethod.CASH)
+                .paymentDate(LocalDate.now())
+                .reference("REPAIR-1")
+                .status(PaymentStatus.COLLECTED)
+                .build());
+
+        mockMvc.perform(post("/clients/counters/repair")
+                        .session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.repaired", is(1)));
+
+        User repaired = userRepository.findById(clientUser.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("120.00").compareTo(repaired.getTotalSpent()));
+        assertEquals(1, repaired.getConfirmedOrderCount());
+
+        // Counters now match, so a second run changes nothing
+        mockMvc.perform(post("/clients/counters/repair")
+                        .session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.repaired", is(0)));
+    }
+
+    @Test
+    void repairCounters_AsClient_Unauthorized() throws Exception {
+        mockMvc.perform(post("/clients/counters/repair")
+                        .session(clientSession))
+                .andExpect(status().isUnauthorized());
+    }
 }
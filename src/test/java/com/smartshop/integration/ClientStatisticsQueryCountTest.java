@@ -0,0 +1,166 @@
+package com.smartshop.integration;
+
+import com.smartshop.dto.ClientStatistics;
+import com.smartshop.entity.Order;
+import com.smartshop.entity.Payment;
+import com.smartshop.entity.User;
+import com.smartshop.enums.CustomerTier;
+import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
+import com.smartshop.enums.UserRole;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.repository.PaymentRepository;
+import com.smartshop.repository.UserRepository;
+import com.smartshop.service.ClientService;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Client statistics must cost the same handful of statements whatever the client's order count.
+ * The previous implementation loaded the orders twice and ran one payment query per order,
+ * i.e. 4 statements for a one-order client and 1,003 for the 1,000-order client below.
+ */
+public class ClientStatisticsQueryCountTest extends BaseIntegrationTest {
+
+    private static final LocalDateTime FIRST_ORDER = LocalDateTime.of(2026, 1, 1, 10, 0);
+
+    // Client lookup, order totals, payment total, orders per status and recent orders
+    private static final long EXPECTED_STATEMENTS = 5;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    // Test: A client with 1,000 orders costs as many statements as a client with one
+    @Test
+    void getClientStatistics_ConstantStatementCount() {
+        User smallClient = createClient("small");
+        createOrders(smallClient, 1);
+        User largeClient = createClient("large");
+        createOrders(largeClient, 1000);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(EXPECTED_STATEMENTS, countStatements(smallClient.getId()));
+        assertEquals(EXPECTED_STATEMENTS, countStatements(largeClient.getId()));
+    }
+
+    // Test: The aggregates match the orders and payments they summarize
+    @Test
+    void getClientStatistics_AggregatesMatch() {
+        User client = createClient("client");
+        createOrders(client, 1000);
+        createOrders(createClient("other"), 5);
+        entityManager.flush();
+        entityManager.clear();
+
+        ClientStatistics stats = clientService.getClientStatistics(client.getId());
+
+        assertEquals(1000, stats.getTotalOrders());
+        // Every other order has a 40.00 payment and 60.00 left to pay
+        assertEquals(0, new BigDecimal("20000.00").compareTo(stats.getTotalSpent()));
+        assertEquals(0, new BigDecimal("80000.00").compareTo(stats.getTotalRemaining()));
+        assertEquals(FIRST_ORDER, stats.getFirstOrderDate());
+        assertEquals(FIRST_ORDER.plusHours(999), stats.getLastOrderDate());
+        assertEquals(334, stats.getOrdersByStatus().get(OrderStatus.PENDING));
+        assertEquals(333, stats.getOrdersByStatus().get(OrderStatus.CONFIRMED));
+        assertEquals(333, stats.getOrdersByStatus().get(OrderStatus.CANCELED));
+
+        assertEquals(10, stats.getRecentOrders().size());
+        assertEquals(FIRST_ORDER.plusHours(999), stats.getRecentOrders().get(0).getOrderDate());
+        assertEquals(FIRST_ORDER.plusHours(990), stats.getRecentOrders().get(9).getOrderDate());
+    }
+
+    // Test: A client without orders gets zero totals and no dates
+    @Test
+    void getClientStatistics_NoOrders() {
+        User client = createClient("client");
+
+        ClientStatistics stats = clientService.getClientStatistics(client.getId());
+
+        assertEquals(0, stats.getTotalOrders());
+        assertEquals(0, BigDecimal.ZERO.compareTo(stats.getTotalSpent()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(stats.getTotalRemaining()));
+        assertNull(stats.getFirstOrderDate());
+        assertTrue(stats.getOrdersByStatus().isEmpty());
+        assertTrue(stats.getRecentOrders().isEmpty());
+    }
+
+    private long countStatements(Long clientId) {
+        statistics.clear();
+        clientService.getClientStatistics(clientId);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private User createClient(String username) {
+        return userRepository.save(User.builder()
+                .username(username)
+                .password("secret")
+                .role(UserRole.CLIENT)
+                .name(username)
+                .email(username + "@example.com")
+                .loyaltyTier(CustomerTier.BASIC)
+                .build());
+    }
+
+    private void createOrders(User client, int count) {
+        OrderStatus[] statuses = {OrderStatus.PENDING, OrderStatus.CONFIRMED, OrderStatus.CANCELED};
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            orders.add(Order.builder()
+                    .userId(client.getId())
+                    .orderDate(FIRST_ORDER.plusHours(i))
+                    .status(statuses[i % statuses.length])
+                    .subtotalHT(new BigDecimal("100.00"))
+                    .totalTTC(new BigDecimal("100.00"))
+                    .remainingAmount(new BigDecimal(i % 2 == 0 ? "60.00" : "100.00"))
+                    .build());
+        }
+        orders = orderRepository.saveAll(orders);
+
+        List<Payment> payments = new ArrayList<>();
+        for (int i = 0; i < count; i += 2) {
+            payments.add(Payment.builder()
+                    .orderId(orders.get(i).getId())
+                    .paymentNumber(1)
+                    .amount(new BigDecimal("40.00"))
+                    .paymentMethod(PaymentMethod.CASH)
+                    .paymentDate(LocalDate.of(2026, 1, 1))
+                    .reference("PAY-" + orders.get(i).getId())
+                    .status(PaymentStatus.COLLECTED)
+                    .build());
+        }
+        paymentRepository.saveAll(payments);
+    }
+}
@@ -0,0 +1,96 @@
+package com.smartshop.integration;
+
+import com.smartshop.dto.TierRule;
+import com.smartshop.enums.CustomerTier;
+import com.smartshop.service.LoyaltyRulesService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class LoyaltyRulesControllerIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private LoyaltyRulesService loyaltyRulesService;
+
+    private MockHttpSession adminSession;
+    private MockHttpSession clientSession;
+
+    @BeforeEach
+    void setUp() {
+        adminSession = new MockHttpSession();
+        adminSession.setAttribute("userId", 1L);
+        adminSession.setAttribute("userRole", "ADMIN");
+
+        clientSession = new MockHttpSession();
+        clientSession.setAttribute("userId", 2L);
+        clientSession.setAttribute("userRole", "CLIENT");
+    }
+
+    @AfterEach
+    void tearDown() {
+        // The rules are shared by the whole application context
+        loyaltyRulesService.resetRules();
+    }
+
+    @Test
+    void getRules_AsAdmin_ReturnsConfiguredRules() throws Exception {
+        mockMvc.perform(get("/loyalty/rules").session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].tier", is("SILVER")))
+                .andExpect(jsonPath("$[0].minOrders", is(3)));
+    }
+
+    @Test
+    void replaceRules_AppliesWithoutRestart() throws Exception {
+        List<TierRule> rules = List.of(
+                new TierRule(CustomerTier.SILVER, new BigDecimal("100"), 1, new BigDecimal("50"), new BigDecimal("0.02")),
+                new TierRule(CustomerTier.GOLD, new BigDecimal("200"), 2, new BigDecimal("50"), new BigDecimal("0.04")),
+                new TierRule(CustomerTier.PLATINUM, new BigDecimal("300"), 3, new BigDecimal("50"), new BigDecimal("0.06")));
+
+        mockMvc.perform(put("/loyalty/rules")
+                        .session(adminSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(rules)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[1].minSpending", is(200)));
+
+        assertEquals(CustomerTier.PLATINUM, loyaltyRulesService.getRules().calculateTier(new BigDecimal("300"), 0));
+    }
+
+    @Test
+    void replaceRules_Inconsistent_BadRequest() throws Exception {
+        List<TierRule> rules = List.of(
+                new TierRule(CustomerTier.SILVER, new BigDecimal("1000"), 3, null, null),
+                new TierRule(CustomerTier.GOLD, new BigDecimal("500"), 10, null, null),
+                new TierRule(CustomerTier.PLATINUM, new BigDecimal("15000"), 20, null, null));
+
+        mockMvc.perform(put("/loyalty/rules")
+                        .session(adminSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(rules)))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(CustomerTier.SILVER, loyaltyRulesService.getRules().calculateTier(new BigDecimal("1000"), 0));
+    }
+
+    @Test
+    void replaceRules_AsClient_Unauthorized() throws Exception {
+        mockMvc.perform(put("/loyalty/rules")
+                        .session(clientSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isUnauthorized());
+    }
+}
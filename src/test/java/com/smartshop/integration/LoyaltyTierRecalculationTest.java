@@ -0,0 +1,138 @@
+package com.smartshop.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartshop.entity.User;
+import com.smartshop.enums.CustomerTier;
+import com.smartshop.enums.UserRole;
+import com.smartshop.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Re-tiers clients through the admin endpoints. Not transactional: the chunks run on worker threads
+ * and commit on their own, so the data is cleaned up after each test.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class LoyaltyTierRecalculationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private MockHttpSession adminSession;
+    private List<User> clients;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+
+        User admin = userRepository.save(User.builder()
+                .username("tier-admin")
+                .password("secret")
+                .role(UserRole.ADMIN)
+                .name("Tier Admin")
+                .email("tier-admin@example.com")
+                .build());
+        adminSession = new MockHttpSession();
+        adminSession.setAttribute("userId", admin.getId());
+        adminSession.setAttribute("userRole", "ADMIN");
+
+        // Ten clients spread over several chunks, every other one past the SILVER threshold
+        clients = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            clients.add(userRepository.save(User.builder()
+                    .username("tier-client-" + i)
+                    .password("secret")
+                    .role(UserRole.CLIENT)
+                    .name("Tier Client " + i)
+                    .email("tier-client-" + i + "@example.com")
+                    .loyaltyTier(CustomerTier.BASIC)
+                    .totalSpent(i % 2 == 0 ? new BigDecimal("1500.00") : BigDecimal.ZERO)
+                    .build()));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void dryRun_ReportsWithoutWriting() throws Exception {
+        JsonNode status = runToCompletion(true);
+
+        assertEquals("COMPLETED", status.get("state").asText());
+        assertEquals(10, status.get("scannedClients").asInt());
+        assertEquals(5, status.get("upgradesByTier").get("SILVER").asInt());
+        assertTrue(userRepository.findAll().stream()
+                .filter(user -> user.getRole() == UserRole.CLIENT)
+                .allMatch(user -> user.getLoyaltyTier() == CustomerTier.BASIC));
+    }
+
+    @Test
+    void recalculation_UpgradesEligibleClients() throws Exception {
+        JsonNode status = runToCompletion(false);
+
+        assertEquals("COMPLETED", status.get("state").asText());
+        assertEquals(5, status.get("upgradedClients").asInt());
+        for (int i = 0; i < clients.size(); i++) {
+            CustomerTier tier = userRepository.findById(clients.get(i).getId()).orElseThrow().getLoyaltyTier();
+            assertEquals(i % 2 == 0 ? CustomerTier.SILVER : CustomerTier.BASIC, tier);
+        }
+
+        // Everyone is already at their tier, so a second run changes nothing
+        assertEquals(0, runToCompletion(false).get("upgradedClients").asInt());
+    }
+
+    @Test
+    void recalculation_AsClient_Unauthorized() throws Exception {
+        MockHttpSession clientSession = new MockHttpSession();
+        clientSession.setAttribute("userId", clients.get(0).getId());
+        clientSession.setAttribute("userRole", "CLIENT");
+
+        mockMvc.perform(post("/clients/tiers/recalculation").session(clientSession))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private JsonNode runToCompletion(boolean dryRun) throws Exception {
+        mockMvc.perform(post("/clients/tiers/recalculation")
+                        .param("dryRun", String.valueOf(dryRun))
+                        .session(adminSession))
+                .andExpect(status().isAccepted());
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            String body = mockMvc.perform(get("/clients/tiers/recalculation").session(adminSession))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            JsonNode status = objectMapper.readTree(body);
+            if (!"RUNNING".equals(status.get("state").asText()) || System.currentTimeMillis() > deadline) {
+                return status;
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -2,11 +2,17 @@ package com.smartshop.integration;
 
 import com.smartshop.dto.OrderDTO;
 import com.smartshop.entity.Order;
+import com.smartshop.entity.OrderItem;
+import com.smartshop.entity.Payment;
 import com.smartshop.entity.Product;
 import com.smartshop.entity.User;
 import com.smartshop.enums.UserRole;
 import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
+import com.smartshop.repository.OrderItemRepository;
 import com.smartshop.repository.OrderRepository;
+import com.smartshop.repository.PaymentRepository;
 import com.smartshop.repository.ProductRepository;
 import com.smartshop.repository.UserRepository;
 import com.smartshop.service.OrderService;
@@ -24,8 +30,10 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -38,6 +46,12 @@ public class OrderControllerIntegrationTest extends BaseIntegrationTest {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -117,6 +131,58 @@ public class OrderControllerIntegrationTest extends BaseIntegrationTest {
                 .andExpect(jsonPath("$.status", is("PENDING")));
     }
 
+    @Test
+    void createOrdersBatch_JsonArray() throws Exception {
+        String requestBody = "[\n" +
+                "  {\"userId\": " + clientUser.getId() + ", \"items\": [{\"productId\": " + product.getId() + ", \"quantity\": 2}]},\n" +
+                "  {\"userId\": " + clientUser.getId() + ", \"items\": [{\"productId\": 999999, \"quantity\": 1}]},\n" +
+                "  {\"userId\": " + clientUser.getId() + ", \"items\": [{\"productId\": " + product.getId() + ", \"quantity\": 1}]}\n" +
+                "]";
+
+        String response = mockMvc.perform(post("/orders/batch")
+                .session(adminSession)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(requestBody))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = response.trim().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(objectMapper.readTree(lines[0]).get("success").asBoolean());
+        assertFalse(objectMapper.readTree(lines[1]).get("success").asBoolean());
+        assertTrue(objectMapper.readTree(lines[2]).get("success").asBoolean());
+        assertEquals(2, orderRepository.findByUserId(clientUser.getId()).size());
+    }
+
+    @Test
+    void createOrdersBatch_Ndjson() throws Exception {
+        String requestBody =
+                "{\"userId\": " + clientUser.getId() + ", \"items\": [{\"productId\": " + product.getId() + ", \"quantity\": 1}]}\n" +
+                "{\"userId\": " + clientUser.getId() + ", \"items\": [{\"productId\": " + product.getId() + ", \"quantity\": 3}]}\n";
+
+        String response = mockMvc.perform(post("/orders/batch")
+                .session(adminSession)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(requestBody))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = response.trim().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1, objectMapper.readTree(lines[1]).get("index").asInt());
+        assertEquals(2, orderRepository.findByUserId(clientUser.getId()).size());
+    }
+
+    @Test
+    void createOrdersBatch_AsClient_Unauthorized() throws Exception {
+        mockMvc.perform(post("/orders/batch")
+                .session(clientSession)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+                .andExpect(status().isUnauthorized());
+    }
+
     @Test
     void createOrder_NotAuthenticated() throws Exception {
         String requestBody = "{\n" +
@@ -167,6 +233,58 @@ public class OrderControllerIntegrationTest extends BaseIntegrationTest {
                 .andExpect(jsonPath("$.userId", is(clientUser.getId().intValue())));
     }
 
+    @Test
+    void getOrderById_WithoutInclude_OmitsItemsAndPayments() throws Exception {
+        Order order = createTestOrder(clientUser, product);
+
+        mockMvc.perform(get("/orders/" + order.getId())
+                .session(clientSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").doesNotExist())
+                .andExpect(jsonPath("$.payments").doesNotExist());
+    }
+
+    @Test
+    void getOrderById_IncludeItemsAndPayments() throws Exception {
+        Order order = createTestOrder(clientUser, product);
+        createTestItem(order, 1);
+        createTestItem(order, 2);
+        createTestPayment(order, 2, "100.00");
+        createTestPayment(order, 1, "50.00");
+
+        mockMvc.perform(get("/orders/" + order.getId())
+                .param("include", "items,payments")
+                .session(clientSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(2)))
+                .andExpect(jsonPath("$.items[0].quantity", is(1)))
+                .andExpect(jsonPath("$.items[1].quantity", is(2)))
+                .andExpect(jsonPath("$.payments.length()", is(2)))
+                .andExpect(jsonPath("$.payments[0].paymentNumber", is(1)))
+                .andExpect(jsonPath("$.payments[1].paymentNumber", is(2)));
+    }
+
+    @Test
+    void getOrderById_IncludeItemsOnly() throws Exception {
+        Order order = createTestOrder(clientUser, product);
+        createTestItem(order, 3);
+        createTestPayment(order, 1, "50.00");
+
+        mockMvc.perform(get("/orders/" + order.getId())
+                .param("include", "items")
+                .session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(1)))
+                .andExpect(jsonPath("$.payments").doesNotExist());
+    }
+
+    @Test
+    void getOrderById_NotFound() throws Exception {
+        mockMvc.perform(get("/orders/999999")
+                .session(adminSession))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void getOrderById_AsAdmin() throws Exception {
         Order order = createTestOrder(clientUser, product);
@@ -215,7 +333,9 @@ public class OrderControllerIntegrationTest extends BaseIntegrationTest {
         mockMvc.perform(get("/orders/user/" + clientUser.getId())
                 .session(clientSession))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$").isArray());
+                .andExpect(jsonPath("$.items").isArray())
+                .andExpect(jsonPath("$.items.length()", is(2)))
+                .andExpect(jsonPath("$.hasMore", is(false)));
     }
 
     @Test
@@ -225,7 +345,7 @@ public class OrderControllerIntegrationTest extends BaseIntegrationTest {
         mockMvc.perform(get("/orders/user/" + clientUser.getId())
                 .session(adminSession))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$").isArray());
+                .andExpect(jsonPath("$.items").isArray());
     }
 
     @Test
@@ -264,7 +384,66 @@ public class OrderControllerIntegrationTest extends BaseIntegrationTest {
         mockMvc.perform(get("/orders")
                 .session(adminSession))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$").isArray());
+                .andExpect(jsonPath("$.items").isArray())
+                .andExpect(jsonPath("$.totalCount").doesNotExist());
+    }
+
+    @Test
+    void getAllOrders_KeysetPagination() throws Exception {
+        // Whole-second dates so the in-memory values match what the database stores
+        java.time.LocalDateTime baseDate = java.time.LocalDateTime.now().withNano(0);
+        for (int i = 0; i < 5; i++) {
+            Order order = createTestOrder(clientUser, product);
+            order.setOrderDate(baseDate.minusSeconds(i % 3));
+            orderRepository.save(order);
+        }
+
+        String firstPage = mockMvc.perform(get("/orders")
+                .param("size", "3")
+                .param("includeTotal", "true")
+                .session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(3)))
+                .andExpect(jsonPath("$.hasMore", is(true)))
+                .andExpect(jsonPath("$.totalCount", is(5)))
+                .andReturn().getResponse().getContentAsString();
+
+        String cursor = objectMapper.readTree(firstPage).get("nextCursor").asText();
+
+        mockMvc.perform(get("/orders")
+                .param("size", "3")
+                .param("cursor", cursor)
+                .session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(2)))
+                .andExpect(jsonPath("$.hasMore", is(false)));
+    }
+
+    @Test
+    void getAllOrders_Filters() throws Exception {
+        Order canceled = createTestOrder(clientUser, product);
+        canceled.setStatus(OrderStatus.CANCELED);
+        orderRepository.save(canceled);
+        createTestOrder(clientUser, product);
+
+        mockMvc.perform(get("/orders")
+                .param("status", "CANCELED")
+                .session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(1)))
+                .andExpect(jsonPath("$.items[0].id", is(canceled.getId().intValue())));
+
+        mockMvc.perform(get("/orders")
+                .param("minAmount", "1000")
+                .session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(0)));
+
+        mockMvc.perform(get("/orders")
+                .param("from", java.time.LocalDateTime.now().plusDays(1).toString())
+                .session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(0)));
     }
 
     @Test
@@ -281,6 +460,74 @@ public class OrderControllerIntegrationTest extends BaseIntegrationTest {
     }
 
 
+    @Test
+    void exportOrders_Ndjson() throws Exception {
+        createOrderWithItems(2);
+        createOrderWithItems(1);
+
+        String response = mockMvc.perform(get("/orders/export")
+                .session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = response.trim().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1, objectMapper.readTree(lines[0]).get("items").size());
+        assertEquals(2, objectMapper.readTree(lines[0]).get("items").get(0).get("quantity").asInt());
+    }
+
+    @Test
+    void exportOrders_CsvWithStatusFilter() throws Exception {
+        createOrderWithItems(2);
+
+        String response = mockMvc.perform(get("/orders/export")
+                .param("format", "csv")
+                .param("status", "PENDING")
+                .session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = response.trim().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("order_id,"));
+        assertTrue(lines[1].contains("Test Product"));
+
+        String canceled = mockMvc.perform(get("/orders/export")
+                .param("format", "csv")
+                .param("status", "CANCELED")
+                .session(adminSession))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(1, canceled.trim().split("\n").length);
+    }
+
+    @Test
+    void exportOrders_CsvEscapesFormulas() throws Exception {
+        product.setName("=HYPERLINK(\"http://example.com\",\"Click\")");
+        productRepository.save(product);
+        createOrderWithItems(1);
+
+        String response = mockMvc.perform(get("/orders/export")
+                .param("format", "csv")
+                .session(adminSession))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = response.trim().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[1].contains(",\"'=HYPERLINK(\"\"http://example.com\"\",\"\"Click\"\")\","));
+    }
+
+    @Test
+    void exportOrders_AsClient_Unauthorized() throws Exception {
+        mockMvc.perform(get("/orders/export")
+                .session(clientSession))
+                .andExpect(status().isUnauthorized());
+    }
+
     @Test
     void cancelOrder_AsOwner() throws Exception {
         Order order = createTestOrder(clientUser, product);
@@ -321,6 +568,41 @@ public class OrderControllerIntegrationTest extends BaseIntegrationTest {
                 .andExpect(status().isUnauthorized());
     }
 
+    private void createOrderWithItems(int quantity) throws Exception {
+        String requestBody = "{\"userId\": " + clientUser.getId() + ", \"items\": [{\"productId\": " +
+                product.getId() + ", \"quantity\": " + quantity + "}]}";
+
+        mockMvc.perform(post("/orders")
+                .session(adminSession)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(requestBody))
+                .andExpect(status().isCreated());
+    }
+
+    private void createTestItem(Order order, int quantity) {
+        BigDecimal lineTotal = product.getUnitPrice().multiply(BigDecimal.valueOf(quantity));
+        orderItemRepository.save(OrderItem.builder()
+                .orderId(order.getId())
+                .productId(product.getId())
+                .productName(product.getName())
+                .quantity(quantity)
+                .unitPrice(product.getUnitPrice())
+                .lineTotal(lineTotal)
+                .build());
+    }
+
+    private void createTestPayment(Order order, int paymentNumber, String amount) {
+        paymentRepository.save(Payment.builder()
+                .orderId(order.getId())
+                .paymentNumber(paymentNumber)
+                .amount(new BigDecimal(amount))
+                .paymentMethod(PaymentMethod.CASH)
+                .paymentDate(LocalDate.now())
+                .reference("REF-" + paymentNumber)
+                .status(PaymentStatus.COLLECTED)
+                .build());
+    }
+
     private Order createTestOrder(User user, Product product) {
         Order order = Order.builder()
                 .userId(user.getId())
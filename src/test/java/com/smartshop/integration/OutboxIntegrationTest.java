@@ -0,0 +1,215 @@
+package com.smartshop.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.smartshop.dto.PaymentDTO;
+import com.smartshop.entity.Order;
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.entity.User;
+import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.OutboxEventType;
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
+import com.smartshop.enums.UserRole;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.repository.OutboxEventRepository;
+import com.smartshop.repository.PaymentRepository;
+import com.smartshop.repository.UserRepository;
+import com.smartshop.service.OutboxService;
+import com.smartshop.util.PasswordEncoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class OutboxIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private User clientUser;
+    private MockHttpSession adminSession;
+    private MockHttpSession clientSession;
+
+    @BeforeEach
+    void setUp() {
+        outboxEventRepository.deleteAll();
+        paymentRepository.deleteAll();
+        orderRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User adminUser = userRepository.save(User.builder()
+                .username("admin")
+                .password(passwordEncoder.encode("admin123"))
+                .role(UserRole.ADMIN)
+                .name("Admin User")
+                .email("admin@example.com")
+                .build());
+        clientUser = userRepository.save(User.builder()
+                .username("client1")
+                .password(passwordEncoder.encode("client123"))
+                .role(UserRole.CLIENT)
+                .name("Client User")
+                .email("client@example.com")
+                .build());
+
+        adminSession = new MockHttpSession();
+        adminSession.setAttribute("userId", adminUser.getId());
+        adminSession.setAttribute("userRole", "ADMIN");
+
+        clientSession = new MockHttpSession();
+        clientSession.setAttribute("userId", clientUser.getId());
+        clientSession.setAttribute("userRole", "CLIENT");
+    }
+
+    @Test
+    void createPayment_WritesEventInSameTransaction() throws Exception {
+        Order order = createOrder();
+
+        mockMvc.perform(post("/payments")
+                .session(adminSession)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(PaymentDTO.builder()
+                        .orderId(order.getId())
+                        .paymentNumber(1)
+                        .amount(new BigDecimal("40.00"))
+                        .paymentMethod(PaymentMethod.CASH)
+                        .paymentDate(LocalDate.now())
+                        .reference("REF-OUTBOX")
+                        .status(PaymentStatus.COLLECTED)
+                        .build())))
+                .andExpect(status().isCreated());
+
+        List<OutboxEvent> events = outboxEventRepository.findAll();
+        assertEquals(1, events.size());
+        OutboxEvent event = events.get(0);
+        assertEquals(OutboxEventType.PAYMENT_RECORDED, event.getEventType());
+        assertEquals(order.getId(), event.getOrderId());
+        assertNotNull(event.getDeliveredAt());
+
+        JsonNode payload = objectMapper.readTree(event.getPayload());
+        assertEquals(clientUser.getId(), payload.get("userId").asLong());
+        assertTrue(payload.get("firstPayment").asBoolean());
+        assertEquals(1, payload.get("paymentNumber").asInt());
+    }
+
+    @Test
+    void claimBatch_OneEventPerOrderInPublishOrder() {
+        OutboxEvent first = pendingEvent(1L, OutboxEventType.ORDER_CREATED);
+        OutboxEvent second = pendingEvent(1L, OutboxEventType.PAYMENT_RECORDED);
+        OutboxEvent otherOrder = pendingEvent(2L, OutboxEventType.ORDER_CREATED);
+
+        List<OutboxEvent> batch = outboxService.claimBatch(10);
+        assertEquals(List.of(first.getId(), otherOrder.getId()), batch.stream().map(OutboxEvent::getId).toList());
+        assertEquals(1, batch.get(0).getAttempts());
+
+        // Claimed events are leased, and the next event of order 1 waits for the first one
+        assertTrue(outboxService.claimBatch(10).isEmpty());
+
+        outboxService.markDelivered(List.of(first.getId()));
+        assertEquals(List.of(second.getId()),
+                outboxService.claimBatch(10).stream().map(OutboxEvent::getId).toList());
+    }
+
+    @Test
+    void markFailed_HoldsBackTheOrderUntilRetry() {
+        OutboxEvent failing = pendingEvent(1L, OutboxEventType.ORDER_CREATED);
+        pendingEvent(1L, OutboxEventType.ORDER_CONFIRMED);
+
+        OutboxEvent claimed = outboxService.claimBatch(10).get(0);
+        outboxService.markFailed(claimed, "java.lang.IllegalStateException: subscriber down");
+
+        assertTrue(outboxService.claimBatch(10).isEmpty());
+        OutboxEvent stored = outboxEventRepository.findById(failing.getId()).orElseThrow();
+        assertEquals("java.lang.IllegalStateException: subscriber down", stored.getLastError());
+        assertTrue(stored.getAvailableAt().isAfter(LocalDateTime.now()));
+        assertNull(stored.getDeliveredAt());
+    }
+
+    @Test
+    void replay_DeliversEventsAgain() throws Exception {
+        OutboxEvent old = deliveredEvent(LocalDateTime.now().minusDays(2));
+        OutboxEvent recent = deliveredEvent(LocalDateTime.now().minusHours(1));
+        LocalDateTime recentDelivery = recent.getDeliveredAt();
+
+        mockMvc.perform(post("/outbox/replay")
+                .param("since", LocalDateTime.now().minusDays(1).toString())
+                .session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.replayed", is(1)));
+
+        OutboxEvent replayed = outboxEventRepository.findById(recent.getId()).orElseThrow();
+        assertTrue(replayed.getDeliveredAt().isAfter(recentDelivery));
+        assertEquals(1, replayed.getAttempts());
+        // Events older than the replay window are left delivered
+        assertTrue(outboxEventRepository.findById(old.getId()).orElseThrow().getDeliveredAt()
+                .isBefore(LocalDateTime.now().minusDays(1)));
+    }
+
+    @Test
+    void replay_AdminOnly() throws Exception {
+        mockMvc.perform(post("/outbox/replay")
+                .param("since", LocalDateTime.now().minusDays(1).toString())
+                .session(clientSession))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private Order createOrder() {
+        return orderRepository.save(Order.builder()
+                .userId(clientUser.getId())
+                .orderDate(LocalDateTime.now())
+                .status(OrderStatus.PENDING)
+                .subtotalHT(new BigDecimal("100.00"))
+                .totalTTC(new BigDecimal("120.00"))
+                .remainingAmount(new BigDecimal("120.00"))
+                .build());
+    }
+
+    private OutboxEvent pendingEvent(Long orderId, OutboxEventType eventType) {
+        LocalDateTime now = LocalDateTime.now().minusSeconds(1);
+        return outboxEventRepository.save(OutboxEvent.builder()
+                .eventType(eventType)
+                .orderId(orderId)
+                .payload("{}")
+                .createdAt(now)
+                .availableAt(now)
+                .build());
+    }
+
+    private OutboxEvent deliveredEvent(LocalDateTime createdAt) {
+        return outboxEventRepository.save(OutboxEvent.builder()
+                .eventType(OutboxEventType.ORDER_CREATED)
+                .orderId(1L)
+                .payload("{}")
+                .createdAt(createdAt)
+                .availableAt(createdAt)
+                .deliveredAt(createdAt.plusSeconds(1))
+                .attempts(1)
+                .build());
+    }
+}
@@ -0,0 +1,173 @@
+package com.smartshop.integration;
+
+import com.smartshop.dto.PaymentDTO;
+import com.smartshop.entity.Order;
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.entity.Payment;
+import com.smartshop.entity.User;
+import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.OutboxEventType;
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
+import com.smartshop.enums.UserRole;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.repository.OutboxEventRepository;
+import com.smartshop.repository.PaymentRepository;
+import com.smartshop.repository.UserRepository;
+import com.smartshop.service.PaymentService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two transactions publishing events of the same order at once. Not transactional:
+ * each publisher commits on its own, so the data is cleaned up after each test.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class OutboxOrderingConcurrencyTest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Order order;
+    private Payment payment;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+
+        User client = userRepository.save(User.builder()
+                .username("outbox-client")
+                .password("secret")
+                .role(UserRole.CLIENT)
+                .name("Outbox Client")
+                .email("outbox@example.com")
+                .build());
+
+        order = orderRepository.save(Order.builder()
+                .userId(client.getId())
+                .orderDate(LocalDateTime.now())
+                .status(OrderStatus.PENDING)
+                .subtotalHT(new BigDecimal("100.00"))
+                .totalTTC(new BigDecimal("120.00"))
+                .remainingAmount(new BigDecimal("80.00"))
+                .paymentCount(1)
+                .build());
+
+        payment = paymentRepository.save(Payment.builder()
+                .orderId(order.getId())
+                .paymentNumber(1)
+                .amount(new BigDecimal("40.00"))
+                .paymentMethod(PaymentMethod.TRANSFER)
+                .paymentDate(LocalDate.now())
+                .reference("REF-1")
+                .status(PaymentStatus.PENDING)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanUp();
+    }
+
+    @Test
+    void paymentRecordedWhileUpdateUncommitted_GetsLaterEventId() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch updated = new CountDownLatch(1);
+        CountDownLatch commitUpdate = new CountDownLatch(1);
+        try {
+            // The update publishes its event, then holds its transaction open
+            Future<?> update = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                paymentService.updatePayment(payment.getId(), paymentDTO(payment.getOrderId(), "40.00", "REF-1-UPDATED"));
+                updated.countDown();
+                await(commitUpdate);
+            }));
+            assertTrue(updated.await(30, TimeUnit.SECONDS));
+
+            Future<?> create = executor.submit(() ->
+                    paymentService.createPayment(paymentDTO(order.getId(), "30.00", "REF-2")));
+
+            // The new payment queues on the order until the update commits, instead of committing a later event first
+            assertThrows(TimeoutException.class, () -> create.get(300, TimeUnit.MILLISECONDS));
+
+            commitUpdate.countDown();
+            update.get(30, TimeUnit.SECONDS);
+            create.get(30, TimeUnit.SECONDS);
+        } finally {
+            commitUpdate.countDown();
+            executor.shutdownNow();
+        }
+
+        List<OutboxEventType> eventTypes = outboxEventRepository.findAll().stream()
+                .filter(event -> event.getOrderId().equals(order.getId()))
+                .sorted(Comparator.comparing(OutboxEvent::getId))
+                .map(OutboxEvent::getEventType)
+                .toList();
+        assertEquals(List.of(OutboxEventType.PAYMENT_UPDATED, OutboxEventType.PAYMENT_RECORDED), eventTypes);
+    }
+
+    private PaymentDTO paymentDTO(Long orderId, String amount, String reference) {
+        return PaymentDTO.builder()
+                .orderId(orderId)
+                .paymentNumber(1)
+                .amount(new BigDecimal(amount))
+                .paymentMethod(PaymentMethod.TRANSFER)
+                .paymentDate(LocalDate.now())
+                .reference(reference)
+                .status(PaymentStatus.PENDING)
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(30, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void cleanUp() {
+        outboxEventRepository.deleteAll();
+        paymentRepository.deleteAll();
+        orderRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+}
@@ -0,0 +1,153 @@
+package com.smartshop.integration;
+
+import com.smartshop.entity.Order;
+import com.smartshop.entity.Payment;
+import com.smartshop.entity.User;
+import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
+import com.smartshop.enums.UserRole;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.repository.PaymentRepository;
+import com.smartshop.repository.UserRepository;
+import com.smartshop.service.PaymentCollector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the payment collector from several threads at once, standing in for several nodes.
+ * Not transactional: every chunk commits on its own, so the data is cleaned up after each test.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class PaymentCollectionConcurrencyTest {
+
+    private static final int COLLECTORS = 4;
+    private static final int DUE_PAYMENTS = 1200;
+
+    @Autowired
+    private PaymentCollector paymentCollector;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Order order;
+    private int paymentNumber;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        paymentNumber = 1;
+
+        User client = userRepository.save(User.builder()
+                .username("collection-client")
+                .password("secret")
+                .role(UserRole.CLIENT)
+                .name("Collection Client")
+                .email("collection@example.com")
+                .build());
+
+        order = orderRepository.save(Order.builder()
+                .userId(client.getId())
+                .orderDate(LocalDateTime.now())
+                .status(OrderStatus.PENDING)
+                .subtotalHT(new BigDecimal("10.00"))
+                .totalTTC(new BigDecimal("12.00"))
+                .remainingAmount(new BigDecimal("12.00"))
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanUp();
+    }
+
+    @Test
+    void concurrentCollectors_CollectEachDuePaymentOnce() throws Exception {
+        LocalDate today = LocalDate.now();
+        List<Payment> payments = new ArrayList<>();
+        for (int i = 0; i < DUE_PAYMENTS; i++) {
+            payments.add(payment(PaymentStatus.PENDING, today.minusDays(i % 30)));
+        }
+        payments.add(payment(PaymentStatus.PENDING, today.plusDays(1)));
+        payments.add(payment(PaymentStatus.PENDING, null));
+        payments.add(payment(PaymentStatus.COLLECTED, today.minusDays(3)));
+        paymentRepository.saveAll(payments);
+
+        ExecutorService executor = Executors.newFixedThreadPool(COLLECTORS);
+        CountDownLatch start = new CountDownLatch(1);
+        int collected = 0;
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < COLLECTORS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return paymentCollector.collectDuePayments();
+                }));
+            }
+
+            start.countDown();
+            for (Future<Integer> future : futures) {
+                collected += future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Every due payment was counted by exactly one collector
+        assertEquals(DUE_PAYMENTS, collected);
+
+        List<Payment> stored = paymentRepository.findByOrderId(order.getId());
+        long collectedToday = stored.stream()
+                .filter(p -> p.getStatus() == PaymentStatus.COLLECTED && today.equals(p.getCollectionDate()))
+                .count();
+        long stillPending = stored.stream().filter(p -> p.getStatus() == PaymentStatus.PENDING).count();
+        assertEquals(DUE_PAYMENTS, collectedToday);
+        assertEquals(2, stillPending);
+    }
+
+    private Payment payment(PaymentStatus status, LocalDate dueDate) {
+        int number = paymentNumber++;
+        return Payment.builder()
+                .orderId(order.getId())
+                .paymentNumber(number)
+                .amount(new BigDecimal("0.01"))
+                .paymentMethod(PaymentMethod.CHECK)
+                .paymentDate(LocalDate.now().minusDays(30))
+                .dueDate(dueDate)
+                .reference("CHQ-" + number)
+                .status(status)
+                .build();
+    }
+
+    private void cleanUp() {
+        paymentRepository.deleteAll();
+        orderRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+}
@@ -0,0 +1,168 @@
+package com.smartshop.integration;
+
+import com.smartshop.dto.PaymentDTO;
+import com.smartshop.entity.Order;
+import com.smartshop.entity.Payment;
+import com.smartshop.entity.User;
+import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
+import com.smartshop.enums.UserRole;
+import com.smartshop.repository.*;
+import com.smartshop.service.PaymentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many threads paying installments of the same order. Not transactional:
+ * every payment commits on its own, so the data is cleaned up after each test.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Slf4j
+public class PaymentContentionTest {
+
+    private static final int PAYMENTS_PER_ROUND = 64;
+    private static final int[] THREAD_COUNTS = {1, 8, 32, 64};
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private User client;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+
+        client = userRepository.save(User.builder()
+                .username("contention-client")
+                .password("secret")
+                .role(UserRole.CLIENT)
+                .name("Contention Client")
+                .email("contention@example.com")
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanUp();
+    }
+
+    @Test
+    void concurrentInstallments_AllRecordedOnce() throws Exception {
+        for (int threads : THREAD_COUNTS) {
+            Order order = orderRepository.save(Order.builder()
+                    .userId(client.getId())
+                    .orderDate(LocalDateTime.now())
+                    .status(OrderStatus.PENDING)
+                    .subtotalHT(new BigDecimal("1000.00"))
+                    .totalTTC(new BigDecimal("1200.00"))
+                    .remainingAmount(new BigDecimal("1200.00"))
+                    .build());
+
+            long elapsedNanos = payConcurrently(order, threads);
+
+            Order paid = orderRepository.findById(order.getId()).orElseThrow();
+            List<Integer> numbers = paymentRepository.findByOrderId(order.getId()).stream()
+                    .map(Payment::getPaymentNumber)
+                    .sorted()
+                    .toList();
+
+            assertEquals(PAYMENTS_PER_ROUND, paid.getPaymentCount());
+            assertEquals(0, new BigDecimal("1136.00").compareTo(paid.getRemainingAmount()));
+            assertEquals(PAYMENTS_PER_ROUND, numbers.size());
+            for (int i = 0; i < numbers.size(); i++) {
+                assertEquals(i + 1, numbers.get(i));
+            }
+
+            log.info("{} threads: {} payments in {} ms ({} payments/s)", threads, PAYMENTS_PER_ROUND,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    Math.round(PAYMENTS_PER_ROUND * 1e9 / elapsedNanos));
+        }
+
+        double retried = meterRegistry.find("smartshop.retry").tag("outcome", "retried").counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+        log.info("Payments re-run after a conflict: {}", (long) retried);
+    }
+
+    private long payConcurrently(Order order, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < PAYMENTS_PER_ROUND; i++) {
+                int installment = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    paymentService.createPayment(installment(order, installment));
+                    return null;
+                }));
+            }
+
+            long startTime = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            return System.nanoTime() - startTime;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private PaymentDTO installment(Order order, int installment) {
+        return PaymentDTO.builder()
+                .orderId(order.getId())
+                .amount(new BigDecimal("1.00"))
+                .paymentMethod(PaymentMethod.CASH)
+                .paymentDate(LocalDate.now())
+                .reference("REF-" + order.getId() + "-" + installment)
+                .status(PaymentStatus.COLLECTED)
+                .build();
+    }
+
+    private void cleanUp() {
+        paymentRepository.deleteAll();
+        orderItemRepository.deleteAll();
+        orderRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+}
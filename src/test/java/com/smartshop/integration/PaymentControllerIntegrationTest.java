@@ -2,6 +2,7 @@ package com.smartshop.integration;
 
 import com.smartshop.dto.PaymentDTO;
 import com.smartshop.entity.Order;
+import com.smartshop.entity.OrderItem;
 import com.smartshop.entity.Payment;
 import com.smartshop.entity.Product;
 import com.smartshop.entity.User;
@@ -9,11 +10,13 @@ import com.smartshop.enums.UserRole;
 import com.smartshop.enums.OrderStatus;
 import com.smartshop.enums.PaymentMethod;
 import com.smartshop.enums.PaymentStatus;
+import com.smartshop.repository.OrderItemRepository;
 import com.smartshop.repository.OrderRepository;
 import com.smartshop.repository.PaymentRepository;
 import com.smartshop.repository.ProductRepository;
 import com.smartshop.repository.UserRepository;
 import com.smartshop.util.PasswordEncoder;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -28,8 +31,10 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -45,6 +50,9 @@ public class PaymentControllerIntegrationTest extends BaseIntegrationTest {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -135,6 +143,143 @@ public class PaymentControllerIntegrationTest extends BaseIntegrationTest {
                 .andExpect(jsonPath("$.amount", is(100.0)));
     }
 
+    @Test
+    void createPayment_NumbersInstallmentsFromOrderCounter() throws Exception {
+        for (int expectedNumber = 1; expectedNumber <= 2; expectedNumber++) {
+            PaymentDTO paymentDTO = PaymentDTO.builder()
+                    .orderId(order.getId())
+                    .paymentNumber(1)
+                    .amount(new BigDecimal("100.00"))
+                    .paymentMethod(PaymentMethod.TRANSFER)
+                    .paymentDate(LocalDate.now())
+                    .reference("REF-" + expectedNumber)
+                    .status(PaymentStatus.PENDING)
+                    .build();
+
+            mockMvc.perform(post("/payments")
+                    .session(adminSession)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(paymentDTO)))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.paymentNumber", is(expectedNumber)));
+        }
+
+        Order updated = orderRepository.findById(order.getId()).orElseThrow();
+        assertEquals(2, updated.getPaymentCount());
+        assertEquals(0, new BigDecimal("39.98").compareTo(updated.getRemainingAmount()));
+        assertEquals(0, new BigDecimal("200.00").compareTo(
+                userRepository.findById(clientUser.getId()).orElseThrow().getTotalSpent()));
+    }
+
+    @Test
+    void createPayment_FirstPayment_RejectsPendingOrdersOutOfStock() throws Exception {
+        createTestItem(order, 60);
+
+        Order tooLarge = createPendingOrder();
+        createTestItem(tooLarge, 50);
+
+        Order stillCovered = createPendingOrder();
+        createTestItem(stillCovered, 30);
+
+        Order alreadyPaid = createPendingOrder();
+        createTestItem(alreadyPaid, 50);
+        createTestPayment(alreadyPaid);
+
+        PaymentDTO paymentDTO = PaymentDTO.builder()
+                .orderId(order.getId())
+                .paymentNumber(1)
+                .amount(new BigDecimal("100.00"))
+                .paymentMethod(PaymentMethod.TRANSFER)
+                .paymentDate(LocalDate.now())
+                .reference("REF-FIRST")
+                .status(PaymentStatus.PENDING)
+                .build();
+
+        mockMvc.perform(post("/payments")
+                .session(adminSession)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(paymentDTO)))
+                .andExpect(status().isCreated());
+
+        assertEquals(40, productRepository.findById(product.getId()).orElseThrow().getStock());
+        assertEquals(OrderStatus.REJECTED, orderRepository.findById(tooLarge.getId()).orElseThrow().getStatus());
+        assertEquals(OrderStatus.PENDING, orderRepository.findById(stillCovered.getId()).orElseThrow().getStatus());
+        assertEquals(OrderStatus.PENDING, orderRepository.findById(alreadyPaid.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void importPayments_ReportsEveryLine() throws Exception {
+        String statement = "payment_date,reference,amount,method,bank_name,due_date\n"
+                + "2026-01-05,VIR ORD-" + order.getId() + " CLIENT,100.00,TRANSFER,,\n"
+                + "2026-01-06,\"CHQ 0042, ORD-" + order.getId() + "\",50.00,CHECK,Attijariwafa,2026-02-06\n"
+                + "2026-01-07,VIR ORD-" + order.getId() + " CLIENT,100.00,TRANSFER,,\n"
+                + "2026-01-07,VIR UNKNOWN,10.00,TRANSFER,,\n"
+                + "\n"
+                + "2026-01-08,VIR ORD-" + order.getId() + " REST,500.00,TRANSFER,,\n";
+
+        String report = mockMvc.perform(post("/payments/import")
+                .session(adminSession)
+                .contentType("text/csv")
+                .content(statement))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = report.split("\n");
+        assertEquals(5, lines.length);
+
+        JsonNode transfer = objectMapper.readTree(lines[0]);
+        assertEquals(2, transfer.get("line").asInt());
+        assertTrue(transfer.get("success").asBoolean());
+        assertEquals(1, transfer.get("paymentNumber").asInt());
+
+        JsonNode check = objectMapper.readTree(lines[1]);
+        assertTrue(check.get("success").asBoolean());
+        assertEquals(2, check.get("paymentNumber").asInt());
+
+        JsonNode duplicate = objectMapper.readTree(lines[2]);
+        assertFalse(duplicate.get("success").asBoolean());
+        assertTrue(duplicate.get("error").asText().contains("already recorded"));
+
+        JsonNode unmatched = objectMapper.readTree(lines[3]);
+        assertEquals(5, unmatched.get("line").asInt());
+        assertFalse(unmatched.get("success").asBoolean());
+
+        JsonNode tooLarge = objectMapper.readTree(lines[4]);
+        assertEquals(7, tooLarge.get("line").asInt());
+        assertFalse(tooLarge.get("success").asBoolean());
+
+        List<Payment> payments = paymentRepository.findByOrderIdOrderByPaymentNumberAsc(order.getId());
+        assertEquals(2, payments.size());
+        assertEquals(PaymentStatus.COLLECTED, payments.get(0).getStatus());
+        assertEquals(PaymentStatus.PENDING, payments.get(1).getStatus());
+        assertEquals("Attijariwafa", payments.get(1).getBankName());
+        assertEquals(0, new BigDecimal("89.98").compareTo(
+                orderRepository.findById(order.getId()).orElseThrow().getRemainingAmount()));
+    }
+
+    @Test
+    void importPayments_MissingColumn() throws Exception {
+        mockMvc.perform(post("/payments/import")
+                .session(adminSession)
+                .contentType("text/csv")
+                .content("payment_date,reference,amount\n2026-01-05,ORD-1,10.00\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.line", is(1)))
+                .andExpect(jsonPath("$.success", is(false)))
+                .andExpect(jsonPath("$.error", is("Statement header is missing column: method")));
+
+        assertEquals(0, paymentRepository.count());
+    }
+
+    @Test
+    void importPayments_AsClient_Unauthorized() throws Exception {
+        mockMvc.perform(post("/payments/import")
+                .session(clientSession)
+                .contentType("text/csv")
+                .content("payment_date,reference,amount,method\n"))
+                .andExpect(status().isUnauthorized());
+    }
+
     @Test
     void createPayment_NotAuthenticated() throws Exception {
         PaymentDTO paymentDTO = PaymentDTO.builder()
@@ -280,7 +425,83 @@ public class PaymentControllerIntegrationTest extends BaseIntegrationTest {
         mockMvc.perform(get("/payments")
                 .session(adminSession))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$").isArray());
+                .andExpect(jsonPath("$.items").isArray())
+                .andExpect(jsonPath("$.items.length()", is(2)))
+                .andExpect(jsonPath("$.hasMore", is(false)));
+    }
+
+    @Test
+    void getAllPayments_KeysetPagination() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            createTestPayment(order);
+        }
+
+        String firstPage = mockMvc.perform(get("/payments")
+                .session(adminSession)
+                .param("size", "3")
+                .param("includeTotal", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(3)))
+                .andExpect(jsonPath("$.hasMore", is(true)))
+                .andExpect(jsonPath("$.totalCount", is(5)))
+                .andReturn().getResponse().getContentAsString();
+
+        String cursor = objectMapper.readTree(firstPage).get("nextCursor").asText();
+
+        mockMvc.perform(get("/payments")
+                .session(adminSession)
+                .param("size", "3")
+                .param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(2)))
+                .andExpect(jsonPath("$.hasMore", is(false)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void getAllPayments_Filters() throws Exception {
+        createTestPayment(order);
+        Payment check = createTestPayment(order);
+        check.setPaymentMethod(PaymentMethod.CHECK);
+        check.setBankName("CIH");
+        check.setDueDate(LocalDate.now().plusDays(10));
+        paymentRepository.save(check);
+
+        mockMvc.perform(get("/payments")
+                .session(adminSession)
+                .param("method", "CHECK")
+                .param("bankName", "CIH")
+                .param("dueFrom", LocalDate.now().toString())
+                .param("dueTo", LocalDate.now().plusDays(30).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(1)))
+                .andExpect(jsonPath("$.items[0].id", is(check.getId().intValue())));
+
+        mockMvc.perform(get("/payments")
+                .session(adminSession)
+                .param("status", "COLLECTED"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(0)));
+    }
+
+    @Test
+    void getPaymentSummary_GroupsByMethodAndStatus() throws Exception {
+        createTestPayment(order);
+        createTestPayment(order);
+        Payment check = createTestPayment(order);
+        check.setPaymentMethod(PaymentMethod.CHECK);
+        paymentRepository.save(check);
+
+        mockMvc.perform(get("/payments/summary")
+                .session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[0].paymentMethod", is("CHECK")))
+                .andExpect(jsonPath("$[0].count", is(1)))
+                .andExpect(jsonPath("$[1].paymentMethod", is("TRANSFER")))
+                .andExpect(jsonPath("$[1].status", is("PENDING")))
+                .andExpect(jsonPath("$[1].count", is(2)))
+                .andExpect(jsonPath("$[1].totalAmount", is(200.0)));
     }
 
     @Test
@@ -297,6 +518,40 @@ public class PaymentControllerIntegrationTest extends BaseIntegrationTest {
     }
 
 
+    @Test
+    void updatePayment_KeepsOrderAndPaymentNumber() throws Exception {
+        Payment payment = createTestPayment(order);
+        Order otherOrder = createPendingOrder();
+        PaymentDTO paymentDTO = PaymentDTO.builder()
+                .orderId(order.getId())
+                .paymentNumber(7)
+                .amount(new BigDecimal("100.00"))
+                .paymentMethod(PaymentMethod.TRANSFER)
+                .paymentDate(LocalDate.now())
+                .reference("REF-UPDATED")
+                .status(PaymentStatus.COLLECTED)
+                .build();
+
+        mockMvc.perform(put("/payments/" + payment.getId())
+                .session(adminSession)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(paymentDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.paymentNumber", is(1)))
+                .andExpect(jsonPath("$.reference", is("REF-UPDATED")));
+
+        paymentDTO.setOrderId(otherOrder.getId());
+        mockMvc.perform(put("/payments/" + payment.getId())
+                .session(adminSession)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(paymentDTO)))
+                .andExpect(status().isBadRequest());
+
+        Payment stored = paymentRepository.findById(payment.getId()).orElseThrow();
+        assertEquals(order.getId(), stored.getOrderId());
+        assertEquals(1, stored.getPaymentNumber());
+    }
+
     @Test
     void deletePayment_AsAdmin() throws Exception {
         Payment payment = createTestPayment(order);
@@ -323,10 +578,32 @@ public class PaymentControllerIntegrationTest extends BaseIntegrationTest {
                 .andExpect(status().isUnauthorized());
     }
 
+    private Order createPendingOrder() {
+        return orderRepository.save(Order.builder()
+                .userId(clientUser.getId())
+                .orderDate(java.time.LocalDateTime.now())
+                .status(OrderStatus.PENDING)
+                .subtotalHT(new BigDecimal("99.99"))
+                .totalTTC(new BigDecimal("119.99"))
+                .remainingAmount(new BigDecimal("119.99"))
+                .build());
+    }
+
+    private void createTestItem(Order order, int quantity) {
+        orderItemRepository.save(OrderItem.builder()
+                .orderId(order.getId())
+                .productId(product.getId())
+                .productName(product.getName())
+                .quantity(quantity)
+                .unitPrice(product.getUnitPrice())
+                .lineTotal(product.getUnitPrice().multiply(BigDecimal.valueOf(quantity)))
+                .build());
+    }
+
     private Payment createTestPayment(Order order) {
         Payment payment = Payment.builder()
                 .orderId(order.getId())
-                .paymentNumber(1)
+                .paymentNumber(paymentRepository.findByOrderId(order.getId()).size() + 1)
                 .amount(new BigDecimal("100.00"))
                 .paymentMethod(PaymentMethod.TRANSFER)
                 .paymentDate(LocalDate.now())
@@ -152,4 +152,22 @@ class ProductControllerIntegrationTest extends BaseIntegrationTest {
         mockMvc.perform(get("/products/" + testProduct.getId()))
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    void getRelatedProducts_NoOrderHistory() throws Exception {
+        // The index is built from committed orders, so a product nobody ordered has no related products yet
+        mockMvc.perform(get("/products/{id}/related", testProduct.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    void getRelatedProducts_InvalidRequests() throws Exception {
+        mockMvc.perform(get("/products/{id}/related", 999999L))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/products/{id}/related", testProduct.getId())
+                        .param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
 }
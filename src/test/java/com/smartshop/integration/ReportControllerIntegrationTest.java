@@ -0,0 +1,213 @@
+package com.smartshop.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.smartshop.entity.Order;
+import com.smartshop.entity.User;
+import com.smartshop.enums.CustomerTier;
+import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.UserRole;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.repository.PaymentRepository;
+import com.smartshop.repository.UserRepository;
+import com.smartshop.util.PasswordEncoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class ReportControllerIntegrationTest extends BaseIntegrationTest {
+
+    private static final LocalDate AS_OF = LocalDate.of(2026, 6, 30);
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private User goldClient;
+    private User basicClient;
+    private MockHttpSession adminSession;
+    private MockHttpSession clientSession;
+
+    @BeforeEach
+    void setUp() {
+        paymentRepository.deleteAll();
+        orderRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User admin = userRepository.save(User.builder()
+                .username("admin")
+                .password(passwordEncoder.encode("admin123"))
+                .role(UserRole.ADMIN)
+                .name("Admin User")
+                .email("admin@example.com")
+                .build());
+        goldClient = userRepository.save(User.builder()
+                .username("gold")
+                .password(passwordEncoder.encode("client123"))
+                .role(UserRole.CLIENT)
+                .name("Gold Client")
+                .email("gold@example.com")
+                .loyaltyTier(CustomerTier.GOLD)
+                .build());
+        basicClient = userRepository.save(User.builder()
+                .username("basic")
+                .password(passwordEncoder.encode("client123"))
+                .role(UserRole.CLIENT)
+                .name("Basic Client")
+                .email("basic@example.com")
+                .build());
+
+        // Gold client: one order in each aging bucket, plus orders that are not owed
+        createOrder(goldClient, 0, OrderStatus.CONFIRMED, "100.00");
+        createOrder(goldClient, 45, OrderStatus.PENDING, "200.00");
+        createOrder(goldClient, 75, OrderStatus.CONFIRMED, "300.00");
+        createOrder(goldClient, 120, OrderStatus.CONFIRMED, "400.00");
+        createOrder(goldClient, 10, OrderStatus.CONFIRMED, "0.00");
+        createOrder(goldClient, 10, OrderStatus.CANCELED, "500.00");
+        // Placed after the as-of date
+        createOrder(goldClient, -1, OrderStatus.PENDING, "600.00");
+
+        createOrder(basicClient, 30, OrderStatus.PENDING, "50.00");
+        createOrder(basicClient, 31, OrderStatus.PENDING, "25.00");
+
+        adminSession = new MockHttpSession();
+        adminSession.setAttribute("userId", admin.getId());
+        adminSession.setAttribute("userRole", "ADMIN");
+
+        clientSession = new MockHttpSession();
+        clientSession.setAttribute("userId", basicClient.getId());
+        clientSession.setAttribute("userRole", "CLIENT");
+    }
+
+    @Test
+    void getReceivables_ByClient() throws Exception {
+        List<JsonNode> rows = getReport("client", null);
+
+        assertEquals(2, rows.size());
+        JsonNode gold = rows.stream()
+                .filter(row -> row.get("clientId").asLong() == goldClient.getId())
+                .findFirst().orElseThrow();
+        assertEquals("Gold Client", gold.get("clientName").asText());
+        assertEquals("GOLD", gold.get("tier").asText());
+        assertEquals(4, gold.get("orderCount").asInt());
+        assertAmount("100.00", gold.get("current"));
+        assertAmount("200.00", gold.get("days31To60"));
+        assertAmount("300.00", gold.get("days61To90"));
+        assertAmount("400.00", gold.get("over90Days"));
+        assertAmount("1000.00", gold.get("total"));
+
+        JsonNode basic = rows.stream()
+                .filter(row -> row.get("clientId").asLong() == basicClient.getId())
+                .findFirst().orElseThrow();
+        assertEquals("BASIC", basic.get("tier").asText());
+        assertAmount("50.00", basic.get("current"));
+        assertAmount("25.00", basic.get("days31To60"));
+    }
+
+    @Test
+    void getReceivables_ByTierAndTotal() throws Exception {
+        List<JsonNode> tiers = getReport("tier", null);
+        assertEquals(2, tiers.size());
+        assertTrue(tiers.stream().noneMatch(row -> row.has("clientId")));
+        JsonNode basic = tiers.stream()
+                .filter(row -> row.get("tier").asText().equals("BASIC"))
+                .findFirst().orElseThrow();
+        assertEquals(2, basic.get("orderCount").asInt());
+        assertAmount("75.00", basic.get("total"));
+
+        List<JsonNode> total = getReport("total", null);
+        assertEquals(1, total.size());
+        assertEquals(6, total.get(0).get("orderCount").asInt());
+        assertAmount("1075.00", total.get(0).get("total"));
+    }
+
+    @Test
+    void getReceivables_FromDateExcludesOlderOrders() throws Exception {
+        List<JsonNode> total = getReport("total", AS_OF.minusDays(60));
+
+        assertEquals(1, total.size());
+        assertEquals(4, total.get(0).get("orderCount").asInt());
+        assertAmount("0", total.get(0).get("over90Days"));
+        assertAmount("375.00", total.get(0).get("total"));
+    }
+
+    @Test
+    void getReceivables_InvalidParameters() throws Exception {
+        mockMvc.perform(get("/reports/receivables")
+                .param("groupBy", "country")
+                .session(adminSession))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/reports/receivables")
+                .param("asOf", AS_OF.toString())
+                .param("from", AS_OF.plusDays(1).toString())
+                .session(adminSession))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getReceivables_AdminOnly() throws Exception {
+        mockMvc.perform(get("/reports/receivables")
+                .session(clientSession))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(get("/reports/receivables"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private List<JsonNode> getReport(String groupBy, LocalDate from) throws Exception {
+        MockHttpServletRequestBuilder request = get("/reports/receivables")
+                .param("groupBy", groupBy)
+                .param("asOf", AS_OF.toString())
+                .session(adminSession);
+        if (from != null) {
+            request.param("from", from.toString());
+        }
+
+        String response = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : response.trim().split("\n")) {
+            rows.add(objectMapper.readTree(line));
+        }
+        return rows;
+    }
+
+    private void assertAmount(String expected, JsonNode actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual.decimalValue()),
+                "expected " + expected + " but was " + actual);
+    }
+
+    private void createOrder(User user, int daysBeforeAsOf, OrderStatus status, String remaining) {
+        orderRepository.save(Order.builder()
+                .userId(user.getId())
+                .orderDate(AS_OF.minusDays(daysBeforeAsOf).atTime(14, 0))
+                .status(status)
+                .subtotalHT(new BigDecimal("1000.00"))
+                .totalTTC(new BigDecimal("1200.00"))
+                .remainingAmount(new BigDecimal(remaining))
+                .build());
+    }
+}
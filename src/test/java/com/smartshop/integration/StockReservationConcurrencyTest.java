@@ -0,0 +1,172 @@
+package com.smartshop.integration;
+
+import com.smartshop.dto.PaymentDTO;
+import com.smartshop.entity.Order;
+import com.smartshop.entity.OrderItem;
+import com.smartshop.entity.Product;
+import com.smartshop.entity.User;
+import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
+import com.smartshop.enums.UserRole;
+import com.smartshop.repository.*;
+import com.smartshop.service.PaymentService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs first payments from many threads against one product. Not transactional:
+ * every payment commits on its own, so the data is cleaned up after each test.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class StockReservationConcurrencyTest {
+
+    private static final int PAYERS = 64;
+    private static final int INITIAL_STOCK = 20;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Product product;
+    private List<Order> orders;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+
+        User client = userRepository.save(User.builder()
+                .username("concurrent-client")
+                .password("secret")
+                .role(UserRole.CLIENT)
+                .name("Concurrent Client")
+                .email("concurrent@example.com")
+                .build());
+
+        product = productRepository.save(Product.builder()
+                .name("Limited Product")
+                .sku("LIMITED-001")
+                .unitPrice(new BigDecimal("10.00"))
+                .stock(INITIAL_STOCK)
+                .deleted(false)
+                .build());
+
+        orders = new ArrayList<>();
+        for (int i = 0; i < PAYERS; i++) {
+            Order order = orderRepository.save(Order.builder()
+                    .userId(client.getId())
+                    .orderDate(LocalDateTime.now())
+                    .status(OrderStatus.PENDING)
+                    .subtotalHT(new BigDecimal("10.00"))
+                    .totalTTC(new BigDecimal("12.00"))
+                    .remainingAmount(new BigDecimal("12.00"))
+                    .build());
+            orderItemRepository.save(OrderItem.builder()
+                    .orderId(order.getId())
+                    .productId(product.getId())
+                    .productName(product.getName())
+                    .quantity(1)
+                    .unitPrice(product.getUnitPrice())
+                    .lineTotal(product.getUnitPrice())
+                    .build());
+            orders.add(order);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanUp();
+    }
+
+    @Test
+    void concurrentFirstPayments_NeverOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(PAYERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger insufficientStock = new AtomicInteger();
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Order order : orders) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        paymentService.createPayment(firstPayment(order));
+                        succeeded.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        insufficientStock.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int remainingStock = productRepository.findById(product.getId()).orElseThrow().getStock();
+
+        assertEquals(INITIAL_STOCK, succeeded.get());
+        assertEquals(PAYERS - INITIAL_STOCK, insufficientStock.get());
+        assertEquals(0, remainingStock);
+        assertEquals(INITIAL_STOCK, paymentRepository.count());
+    }
+
+    private PaymentDTO firstPayment(Order order) {
+        return PaymentDTO.builder()
+                .orderId(order.getId())
+                .amount(new BigDecimal("12.00"))
+                .paymentMethod(PaymentMethod.CASH)
+                .paymentDate(LocalDate.now())
+                .reference("REF-" + order.getId())
+                .status(PaymentStatus.COLLECTED)
+                .build();
+    }
+
+    private void cleanUp() {
+        paymentRepository.deleteAll();
+        orderItemRepository.deleteAll();
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+}
@@ -37,6 +37,9 @@ class ClientServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private ClientStatisticsCache clientStatisticsCache;
+
     @InjectMocks
     private ClientServiceImpl clientService;
 
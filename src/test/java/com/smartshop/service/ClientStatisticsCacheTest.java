@@ -0,0 +1,135 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.ClientStatistics;
+import com.smartshop.service.impl.ClientStatisticsCacheImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClientStatisticsCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        loads = new AtomicInteger();
+    }
+
+    // Test: A second lookup is served from the cache and counted as a hit
+    @Test
+    void testGet_CachesStatistics() {
+        ClientStatisticsCache cache = cache(true, 10, 60);
+
+        ClientStatistics first = cache.get(1L, loader(1L));
+        ClientStatistics second = cache.get(1L, loader(1L));
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1.0, gets("hit"));
+        assertEquals(1.0, gets("miss"));
+    }
+
+    // Test: Invalidating a client reloads its statistics but not those of other clients
+    @Test
+    void testInvalidate_DropsOnlyThatClient() {
+        ClientStatisticsCache cache = cache(true, 10, 60);
+        cache.get(1L, loader(1L));
+        cache.get(2L, loader(2L));
+
+        cache.invalidate(1L);
+        cache.get(1L, loader(1L));
+        cache.get(2L, loader(2L));
+
+        assertEquals(3, loads.get());
+        assertEquals(1.0, meterRegistry.counter("smartshop.clients.statistics.cache.invalidations").count());
+    }
+
+    // Test: Inside a transaction, the entry is only dropped once the transaction commits
+    @Test
+    void testInvalidate_AfterCommit() {
+        ClientStatisticsCache cache = cache(true, 10, 60);
+        cache.get(1L, loader(1L));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidate(1L);
+            cache.get(1L, loader(1L));
+            assertEquals(1, loads.get());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        cache.get(1L, loader(1L));
+        assertEquals(2, loads.get());
+    }
+
+    // Test: Statistics loaded while an invalidation happened are returned but not cached
+    @Test
+    void testGet_InvalidatedDuringLoadNotCached() {
+        ClientStatisticsCache cache = cache(true, 10, 60);
+
+        cache.get(1L, () -> {
+            cache.invalidate(1L);
+            return loader(1L).get();
+        });
+        cache.get(1L, loader(1L));
+
+        assertEquals(2, loads.get());
+        assertEquals(2.0, gets("miss"));
+    }
+
+    // Test: The least recently read client is evicted once the cache is full
+    @Test
+    void testGet_EvictsLeastRecentlyRead() {
+        ClientStatisticsCache cache = cache(true, 2, 60);
+        cache.get(1L, loader(1L));
+        cache.get(2L, loader(2L));
+        cache.get(1L, loader(1L));
+
+        cache.get(3L, loader(3L));
+        cache.get(1L, loader(1L));
+        cache.get(2L, loader(2L));
+
+        assertEquals(4, loads.get());
+        assertEquals(2.0, meterRegistry.counter("smartshop.clients.statistics.cache.evictions", "cause", "size").count());
+        assertEquals(2.0, meterRegistry.get("smartshop.clients.statistics.cache.size").gauge().value());
+    }
+
+    // Test: With the cache disabled, every lookup loads fresh statistics
+    @Test
+    void testGet_Disabled() {
+        ClientStatisticsCache cache = cache(false, 10, 60);
+
+        cache.get(1L, loader(1L));
+        cache.get(1L, loader(1L));
+
+        assertEquals(2, loads.get());
+        assertEquals(0.0, gets("hit"));
+    }
+
+    private ClientStatisticsCache cache(boolean enabled, int maxSize, long ttlSeconds) {
+        return new ClientStatisticsCacheImpl(meterRegistry, enabled, maxSize, ttlSeconds);
+    }
+
+    private Supplier<ClientStatistics> loader(Long clientId) {
+        return () -> {
+            loads.incrementAndGet();
+            return ClientStatistics.builder().clientId(clientId).build();
+        };
+    }
+
+    private double gets(String result) {
+        return meterRegistry.counter("smartshop.clients.statistics.cache.gets", "result", result).count();
+    }
+}
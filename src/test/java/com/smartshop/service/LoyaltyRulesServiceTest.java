@@ -0,0 +1,99 @@
+package com.smartshop.service;
+
+import com.smartshop.config.LoyaltyRulesProperties;
+import com.smartshop.dto.TierRule;
+import com.smartshop.enums.CustomerTier;
+import com.smartshop.service.impl.LoyaltyRulesServiceImpl;
+import com.smartshop.util.CompiledLoyaltyRules;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoyaltyRulesServiceTest {
+
+    private LoyaltyRulesServiceImpl loyaltyRulesService;
+
+    @BeforeEach
+    void setUp() {
+        loyaltyRulesService = new LoyaltyRulesServiceImpl(new LoyaltyRulesProperties());
+    }
+
+    // Test: Default rules - tier is reached by orders OR spending, thresholds included
+    @Test
+    void testDefaultRules_TierThresholds() {
+        CompiledLoyaltyRules rules = loyaltyRulesService.getRules();
+
+        assertEquals(CustomerTier.BASIC, rules.calculateTier(new BigDecimal("999.99"), 2));
+        assertEquals(CustomerTier.SILVER, rules.calculateTier(new BigDecimal("1000"), 0));
+        assertEquals(CustomerTier.SILVER, rules.calculateTier(BigDecimal.ZERO, 3));
+        assertEquals(CustomerTier.GOLD, rules.calculateTier(new BigDecimal("4999.99"), 10));
+        assertEquals(CustomerTier.GOLD, rules.calculateTier(new BigDecimal("5000.00"), 0));
+        assertEquals(CustomerTier.PLATINUM, rules.calculateTier(new BigDecimal("15000"), 0));
+        assertEquals(CustomerTier.PLATINUM, rules.calculateTier(null, 20));
+    }
+
+    // Test: Default rules - discount applies from the tier's subtotal threshold, fractions of a centime ignored
+    @Test
+    void testDefaultRules_Discounts() {
+        CompiledLoyaltyRules rules = loyaltyRulesService.getRules();
+
+        assertEquals(BigDecimal.ZERO, rules.calculateLoyaltyDiscount(CustomerTier.BASIC, new BigDecimal("10000")));
+        assertEquals(BigDecimal.ZERO, rules.calculateLoyaltyDiscount(CustomerTier.SILVER, new BigDecimal("499.999")));
+        assertEquals(new BigDecimal("0.05"), rules.calculateLoyaltyDiscount(CustomerTier.SILVER, new BigDecimal("500.00")));
+        assertEquals(new BigDecimal("0.10"), rules.calculateLoyaltyDiscount(CustomerTier.GOLD, new BigDecimal("800")));
+        assertEquals(new BigDecimal("0.15"), rules.calculateLoyaltyDiscount(CustomerTier.PLATINUM, new BigDecimal("1200.01")));
+        assertEquals(BigDecimal.ZERO, rules.calculateLoyaltyDiscount(null, new BigDecimal("1200")));
+        assertEquals(0, new BigDecimal("80.00").compareTo(rules.applyLoyaltyDiscount(CustomerTier.GOLD, new BigDecimal("800.00"))));
+    }
+
+    // Test: Replaced rules are used by every later evaluation
+    @Test
+    void testReplaceRules_SwapsRules() {
+        CompiledLoyaltyRules before = loyaltyRulesService.getRules();
+
+        loyaltyRulesService.replaceRules(List.of(
+                rule(CustomerTier.SILVER, "100", 1, "0", "0.02"),
+                rule(CustomerTier.GOLD, "200", 2, "0", "0.04"),
+                rule(CustomerTier.PLATINUM, "300", 3, "0", "0.06")));
+
+        assertEquals(CustomerTier.GOLD, loyaltyRulesService.getRules().calculateTier(new BigDecimal("250"), 0));
+        assertEquals(new BigDecimal("0.02"), loyaltyRulesService.getRules().calculateLoyaltyDiscount(CustomerTier.SILVER, BigDecimal.ONE));
+        // Rules already handed out are never modified
+        assertEquals(CustomerTier.BASIC, before.calculateTier(new BigDecimal("250"), 0));
+
+        loyaltyRulesService.resetRules();
+        assertEquals(CustomerTier.BASIC, loyaltyRulesService.getRules().calculateTier(new BigDecimal("250"), 0));
+    }
+
+    // Test: Inconsistent rules are refused and the current ones stay in effect
+    @Test
+    void testReplaceRules_InvalidRulesRejected() {
+        CompiledLoyaltyRules current = loyaltyRulesService.getRules();
+
+        // GOLD asks for less than SILVER
+        assertThrows(IllegalArgumentException.class, () -> loyaltyRulesService.replaceRules(List.of(
+                rule(CustomerTier.SILVER, "1000", 3, "0", "0.05"),
+                rule(CustomerTier.GOLD, "500", 10, "0", "0.10"),
+                rule(CustomerTier.PLATINUM, "15000", 20, "0", "0.15"))));
+        // PLATINUM missing
+        assertThrows(IllegalArgumentException.class, () -> loyaltyRulesService.replaceRules(List.of(
+                rule(CustomerTier.SILVER, "1000", 3, "0", "0.05"),
+                rule(CustomerTier.GOLD, "5000", 10, "0", "0.10"))));
+        // Sub-centime threshold
+        assertThrows(IllegalArgumentException.class, () -> loyaltyRulesService.replaceRules(List.of(
+                rule(CustomerTier.SILVER, "1000.001", 3, "0", "0.05"),
+                rule(CustomerTier.GOLD, "5000", 10, "0", "0.10"),
+                rule(CustomerTier.PLATINUM, "15000", 20, "0", "0.15"))));
+
+        assertSame(current, loyaltyRulesService.getRules());
+    }
+
+    private TierRule rule(CustomerTier tier, String minSpending, int minOrders, String discountThreshold, String discountRate) {
+        return new TierRule(tier, new BigDecimal(minSpending), minOrders, new BigDecimal(discountThreshold),
+                new BigDecimal(discountRate));
+    }
+}
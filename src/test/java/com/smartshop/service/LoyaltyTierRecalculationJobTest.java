@@ -0,0 +1,129 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.TierRecalculationChunk;
+import com.smartshop.dto.TierRecalculationStatus;
+import com.smartshop.enums.CustomerTier;
+import com.smartshop.enums.JobState;
+import com.smartshop.exception.ResourceNotFoundException;
+import com.smartshop.repository.UserRepository;
+import com.smartshop.service.impl.LoyaltyTierRecalculationJobImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LoyaltyTierRecalculationJobTest {
+
+    @Mock
+    private LoyaltyTierService loyaltyTierService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private LoyaltyTierRecalculationJobImpl recalculationJob;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        recalculationJob = new LoyaltyTierRecalculationJobImpl(loyaltyTierService, userRepository, meterRegistry, 100, 2);
+    }
+
+    // Test: Every id range is recalculated and the upgrades are totalled per tier
+    @Test
+    void testRecalculate_AggregatesChunks() {
+        when(userRepository.findMaxId()).thenReturn(250L);
+        when(loyaltyTierService.recalculateTiers(anyLong(), anyLong(), eq(false)))
+                .thenAnswer(invocation -> chunk(100, CustomerTier.SILVER, 2));
+
+        TierRecalculationStatus status = recalculationJob.recalculate(false);
+
+        assertEquals(JobState.COMPLETED, status.getState());
+        assertEquals(3, status.getTotalChunks());
+        assertEquals(3, status.getCompletedChunks());
+        assertEquals(300L, status.getScannedClients());
+        assertEquals(6L, status.getUpgradedClients());
+        assertEquals(6L, status.getUpgradesByTier().get(CustomerTier.SILVER));
+        verify(loyaltyTierService).recalculateTiers(1L, 101L, false);
+        verify(loyaltyTierService).recalculateTiers(201L, 301L, false);
+        assertEquals(6.0, meterRegistry.counter("smartshop.loyalty.recalculation.upgrades").count());
+    }
+
+    // Test: A dry run reports upgrades but does not count them as done
+    @Test
+    void testRecalculate_DryRun() {
+        when(userRepository.findMaxId()).thenReturn(50L);
+        when(loyaltyTierService.recalculateTiers(1L, 101L, true)).thenReturn(chunk(50, CustomerTier.GOLD, 5));
+
+        TierRecalculationStatus status = recalculationJob.recalculate(true);
+
+        assertTrue(status.getDryRun());
+        assertEquals(5L, status.getUpgradesByTier().get(CustomerTier.GOLD));
+        assertEquals(0.0, meterRegistry.counter("smartshop.loyalty.recalculation.upgrades").count());
+    }
+
+    // Test: A failing chunk does not stop the others but fails the run
+    @Test
+    void testRecalculate_FailedChunk() {
+        when(userRepository.findMaxId()).thenReturn(200L);
+        when(loyaltyTierService.recalculateTiers(1L, 101L, false)).thenThrow(new IllegalStateException("db down"));
+        when(loyaltyTierService.recalculateTiers(101L, 201L, false)).thenReturn(chunk(100, CustomerTier.SILVER, 1));
+
+        TierRecalculationStatus status = recalculationJob.recalculate(false);
+
+        assertEquals(JobState.FAILED, status.getState());
+        assertEquals(1, status.getFailedChunks());
+        assertEquals(2, status.getCompletedChunks());
+        assertEquals(1L, status.getUpgradedClients());
+    }
+
+    // Test: Only one run at a time
+    @Test
+    void testStart_RejectsConcurrentRun() throws Exception {
+        CountDownLatch chunkStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.findMaxId()).thenReturn(10L);
+        when(loyaltyTierService.recalculateTiers(1L, 101L, false)).thenAnswer(invocation -> {
+            chunkStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return chunk(10, CustomerTier.SILVER, 0);
+        });
+
+        assertEquals(JobState.RUNNING, recalculationJob.start(false).getState());
+        assertTrue(chunkStarted.await(5, TimeUnit.SECONDS));
+        assertThrows(IllegalStateException.class, () -> recalculationJob.start(true));
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (recalculationJob.getStatus().getState() == JobState.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(JobState.COMPLETED, recalculationJob.getStatus().getState());
+    }
+
+    // Test: Status before any run
+    @Test
+    void testGetStatus_NeverRun() {
+        assertThrows(ResourceNotFoundException.class, () -> recalculationJob.getStatus());
+    }
+
+    private TierRecalculationChunk chunk(int scanned, CustomerTier tier, int upgrades) {
+        Map<CustomerTier, Integer> upgradesByTier = new EnumMap<>(CustomerTier.class);
+        if (upgrades > 0) {
+            upgradesByTier.put(tier, upgrades);
+        }
+        return new TierRecalculationChunk(scanned, upgradesByTier);
+    }
+}
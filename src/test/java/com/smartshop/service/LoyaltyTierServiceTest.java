@@ -1,26 +1,22 @@
 package com.smartshop.service;
 
-import com.smartshop.entity.Order;
-import com.smartshop.entity.Payment;
+import com.smartshop.config.LoyaltyRulesProperties;
+import com.smartshop.dto.TierRecalculationChunk;
 import com.smartshop.entity.User;
 import com.smartshop.enums.CustomerTier;
-import com.smartshop.enums.OrderStatus;
-import com.smartshop.enums.PaymentMethod;
 import com.smartshop.exception.ResourceNotFoundException;
-import com.smartshop.repository.OrderRepository;
-import com.smartshop.repository.PaymentRepository;
 import com.smartshop.repository.UserRepository;
+import com.smartshop.service.impl.LoyaltyRulesServiceImpl;
 import com.smartshop.service.impl.LoyaltyTierServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,20 +31,15 @@ public class LoyaltyTierServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private OrderRepository orderRepository;
+    private ClientStatisticsCache clientStatisticsCache;
 
-    @Mock
-    private PaymentRepository paymentRepository;
+    @Spy
+    private LoyaltyRulesService loyaltyRulesService = new LoyaltyRulesServiceImpl(new LoyaltyRulesProperties());
 
     @InjectMocks
     private LoyaltyTierServiceImpl loyaltyTierService;
 
     private User user;
-    private Order order1;
-    private Order order2;
-    private Order order3;
-    private Payment payment1;
-    private Payment payment2;
 
     @BeforeEach
     void setUp() {
@@ -57,40 +48,6 @@ public class LoyaltyTierServiceTest {
                 .username("testuser")
                 .loyaltyTier(CustomerTier.BASIC)
                 .build();
-
-        order1 = Order.builder()
-                .id(1L)
-                .userId(1L)
-                .status(OrderStatus.CONFIRMED)
-                .build();
-
-        order2 = Order.builder()
-                .id(2L)
-                .userId(1L)
-                .status(OrderStatus.CONFIRMED)
-                .build();
-
-        order3 = Order.builder()
-                .id(3L)
-                .userId(1L)
-                .status(OrderStatus.CONFIRMED)
-                .build();
-
-        payment1 = Payment.builder()
-                .id(1L)
-                .orderId(1L)
-                .amount(new BigDecimal("500.00"))
-                .paymentMethod(PaymentMethod.TRANSFER)
-                .paymentDate(LocalDate.now())
-                .build();
-
-        payment2 = Payment.builder()
-                .id(2L)
-                .orderId(1L)
-                .amount(new BigDecimal("600.00"))
-                .paymentMethod(PaymentMethod.TRANSFER)
-                .paymentDate(LocalDate.now())
-                .build();
     }
 
     // Test: upgradeTierIfEligible - User not found
@@ -105,8 +62,6 @@ public class LoyaltyTierServiceTest {
     @Test
     void testUpgradeTierIfEligible_NoUpgradeNeeded() {
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(orderRepository.findByUserIdAndStatus(1L, OrderStatus.CONFIRMED)).thenReturn(List.of()); // 0 confirmed orders
-        when(orderRepository.findByUserId(1L)).thenReturn(new ArrayList<>()); // 0 spending
 
         User result = loyaltyTierService.upgradeTierIfEligible(1L);
 
@@ -117,40 +72,24 @@ public class LoyaltyTierServiceTest {
     // Test: upgradeTierIfEligible - Upgrade to SILVER via orders (3+ confirmed orders)
     @Test
     void testUpgradeTierIfEligible_UpgradeToSilverViaOrders() {
+        user.setConfirmedOrderCount(3);
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(orderRepository.findByUserIdAndStatus(1L, OrderStatus.CONFIRMED)).thenReturn(List.of(order1, order2, order3)); // 3 orders
-        when(orderRepository.findByUserId(1L)).thenReturn(List.of(order1, order2, order3));
-        when(paymentRepository.findByOrderId(anyLong())).thenReturn(new ArrayList<>());
-
-        User upgradedUser = User.builder()
-                .id(1L)
-                .username("testuser")
-                .loyaltyTier(CustomerTier.SILVER)
-                .build();
-
-        when(userRepository.save(any(User.class))).thenReturn(upgradedUser);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         User result = loyaltyTierService.upgradeTierIfEligible(1L);
 
         assertEquals(CustomerTier.SILVER, result.getLoyaltyTier());
         verify(userRepository).save(argThat(u -> u.getLoyaltyTier() == CustomerTier.SILVER));
+        verify(clientStatisticsCache).invalidate(1L);
     }
 
     // Test: upgradeTierIfEligible - Upgrade to SILVER via spending (1000+ total)
     @Test
     void testUpgradeTierIfEligible_UpgradeToSilverViaSpending() {
+        user.setConfirmedOrderCount(1);
+        user.setTotalSpent(new BigDecimal("1100.00"));
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(orderRepository.findByUserIdAndStatus(1L, OrderStatus.CONFIRMED)).thenReturn(List.of(order1)); // 1 order
-        when(orderRepository.findByUserId(1L)).thenReturn(List.of(order1));
-        when(paymentRepository.findByOrderId(1L)).thenReturn(List.of(payment1, payment2)); // 500 + 600 = 1100
-
-        User upgradedUser = User.builder()
-                .id(1L)
-                .username("testuser")
-                .loyaltyTier(CustomerTier.SILVER)
-                .build();
-
-        when(userRepository.save(any(User.class))).thenReturn(upgradedUser);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         User result = loyaltyTierService.upgradeTierIfEligible(1L);
 
@@ -162,28 +101,9 @@ public class LoyaltyTierServiceTest {
     @Test
     void testUpgradeTierIfEligible_UpgradeToGoldViaOrders() {
         user.setLoyaltyTier(CustomerTier.SILVER);
-
-        List<Order> tenOrders = new ArrayList<>();
-        for (int i = 1; i <= 10; i++) {
-            tenOrders.add(Order.builder()
-                    .id((long) i)
-                    .userId(1L)
-                    .status(OrderStatus.CONFIRMED)
-                    .build());
-        }
-
+        user.setConfirmedOrderCount(10);
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(orderRepository.findByUserIdAndStatus(1L, OrderStatus.CONFIRMED)).thenReturn(tenOrders); // 10 orders
-        when(orderRepository.findByUserId(1L)).thenReturn(tenOrders);
-        when(paymentRepository.findByOrderId(anyLong())).thenReturn(new ArrayList<>());
-
-        User upgradedUser = User.builder()
-                .id(1L)
-                .username("testuser")
-                .loyaltyTier(CustomerTier.GOLD)
-                .build();
-
-        when(userRepository.save(any(User.class))).thenReturn(upgradedUser);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         User result = loyaltyTierService.upgradeTierIfEligible(1L);
 
@@ -195,26 +115,10 @@ public class LoyaltyTierServiceTest {
     @Test
     void testUpgradeTierIfEligible_UpgradeToGoldViaSpending() {
         user.setLoyaltyTier(CustomerTier.SILVER);
-
+        user.setConfirmedOrderCount(1);
+        user.setTotalSpent(new BigDecimal("5100.00"));
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(orderRepository.findByUserIdAndStatus(1L, OrderStatus.CONFIRMED)).thenReturn(List.of(order1)); // 1 order
-        when(orderRepository.findByUserId(1L)).thenReturn(List.of(order1));
-
-        Payment highPayment = Payment.builder()
-                .id(3L)
-                .orderId(1L)
-                .amount(new BigDecimal("5100.00"))
-                .build();
-
-        when(paymentRepository.findByOrderId(1L)).thenReturn(List.of(highPayment)); // 5100
-
-        User upgradedUser = User.builder()
-                .id(1L)
-                .username("testuser")
-                .loyaltyTier(CustomerTier.GOLD)
-                .build();
-
-        when(userRepository.save(any(User.class))).thenReturn(upgradedUser);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         User result = loyaltyTierService.upgradeTierIfEligible(1L);
 
@@ -226,28 +130,9 @@ public class LoyaltyTierServiceTest {
     @Test
     void testUpgradeTierIfEligible_UpgradeToPlatinumViaOrders() {
         user.setLoyaltyTier(CustomerTier.GOLD);
-
-        List<Order> twentyOrders = new ArrayList<>();
-        for (int i = 1; i <= 20; i++) {
-            twentyOrders.add(Order.builder()
-                    .id((long) i)
-                    .userId(1L)
-                    .status(OrderStatus.CONFIRMED)
-                    .build());
-        }
-
+        user.setConfirmedOrderCount(20);
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(orderRepository.findByUserIdAndStatus(1L, OrderStatus.CONFIRMED)).thenReturn(twentyOrders); // 20 orders
-        when(orderRepository.findByUserId(1L)).thenReturn(twentyOrders);
-        when(paymentRepository.findByOrderId(anyLong())).thenReturn(new ArrayList<>());
-
-        User upgradedUser = User.builder()
-                .id(1L)
-                .username("testuser")
-                .loyaltyTier(CustomerTier.PLATINUM)
-                .build();
-
-        when(userRepository.save(any(User.class))).thenReturn(upgradedUser);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         User result = loyaltyTierService.upgradeTierIfEligible(1L);
 
@@ -259,26 +144,10 @@ public class LoyaltyTierServiceTest {
     @Test
     void testUpgradeTierIfEligible_UpgradeToPlatinumViaSpending() {
         user.setLoyaltyTier(CustomerTier.GOLD);
-
+        user.setConfirmedOrderCount(1);
+        user.setTotalSpent(new BigDecimal("15100.00"));
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(orderRepository.findByUserIdAndStatus(1L, OrderStatus.CONFIRMED)).thenReturn(List.of(order1)); // 1 order
-        when(orderRepository.findByUserId(1L)).thenReturn(List.of(order1));
-
-        Payment platinumPayment = Payment.builder()
-                .id(4L)
-                .orderId(1L)
-                .amount(new BigDecimal("15100.00"))
-                .build();
-
-        when(paymentRepository.findByOrderId(1L)).thenReturn(List.of(platinumPayment)); // 15100
-
-        User upgradedUser = User.builder()
-                .id(1L)
-                .username("testuser")
-                .loyaltyTier(CustomerTier.PLATINUM)
-                .build();
-
-        when(userRepository.save(any(User.class))).thenReturn(upgradedUser);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         User result = loyaltyTierService.upgradeTierIfEligible(1L);
 
@@ -290,19 +159,9 @@ public class LoyaltyTierServiceTest {
     @Test
     void testUpgradeTierIfEligible_NullLoyaltyTierDefaultsToBasic() {
         user.setLoyaltyTier(null);
-
+        user.setConfirmedOrderCount(3);
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(orderRepository.findByUserIdAndStatus(1L, OrderStatus.CONFIRMED)).thenReturn(List.of(order1, order2, order3)); // 3 orders
-        when(orderRepository.findByUserId(1L)).thenReturn(List.of(order1, order2, order3));
-        when(paymentRepository.findByOrderId(anyLong())).thenReturn(new ArrayList<>());
-
-        User upgradedUser = User.builder()
-                .id(1L)
-                .username("testuser")
-                .loyaltyTier(CustomerTier.SILVER)
-                .build();
-
-        when(userRepository.save(any(User.class))).thenReturn(upgradedUser);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         User result = loyaltyTierService.upgradeTierIfEligible(1L);
 
@@ -314,8 +173,6 @@ public class LoyaltyTierServiceTest {
     @Test
     void testCheckAndUpgradeTier_CallsUpgradeTierIfEligible() {
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(orderRepository.findByUserIdAndStatus(1L, OrderStatus.CONFIRMED)).thenReturn(new ArrayList<>());
-        when(orderRepository.findByUserId(1L)).thenReturn(new ArrayList<>());
 
         loyaltyTierService.checkAndUpgradeTier(1L);
 
@@ -326,10 +183,7 @@ public class LoyaltyTierServiceTest {
     @Test
     void testUpgradeTierIfEligible_NoDowngrade() {
         user.setLoyaltyTier(CustomerTier.PLATINUM);
-
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(orderRepository.findByUserIdAndStatus(1L, OrderStatus.CONFIRMED)).thenReturn(List.of()); // 0 orders
-        when(orderRepository.findByUserId(1L)).thenReturn(new ArrayList<>()); // 0 spending
 
         User result = loyaltyTierService.upgradeTierIfEligible(1L);
 
@@ -337,30 +191,56 @@ public class LoyaltyTierServiceTest {
         verify(userRepository, never()).save(any(User.class)); // Should NOT be saved
     }
 
-    // Test: upgradeTierIfEligible - Multiple payments for single order
+    // Test: upgradeTierIfEligible - Tier is evaluated from the user's counters alone
     @Test
-    void testUpgradeTierIfEligible_MultiplePaymentsCalculatedCorrectly() {
+    void testUpgradeTierIfEligible_UsesStoredCounters() {
+        user.setConfirmedOrderCount(2);
+        user.setTotalSpent(new BigDecimal("999.99"));
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(orderRepository.findByUserIdAndStatus(1L, OrderStatus.CONFIRMED)).thenReturn(List.of(order1));
-        when(orderRepository.findByUserId(1L)).thenReturn(List.of(order1));
 
-        Payment p1 = Payment.builder().id(1L).orderId(1L).amount(new BigDecimal("300.00")).build();
-        Payment p2 = Payment.builder().id(2L).orderId(1L).amount(new BigDecimal("400.00")).build();
-        Payment p3 = Payment.builder().id(3L).orderId(1L).amount(new BigDecimal("350.00")).build();
+        User result = loyaltyTierService.upgradeTierIfEligible(1L);
 
-        when(paymentRepository.findByOrderId(1L)).thenReturn(List.of(p1, p2, p3)); // 300 + 400 + 350 = 1050
+        assertEquals(CustomerTier.BASIC, result.getLoyaltyTier());
+        verify(userRepository).clearTierEvaluationPending(1L);
+        verify(userRepository).findById(1L);
+        verifyNoMoreInteractions(userRepository);
+    }
 
-        User upgradedUser = User.builder()
-                .id(1L)
-                .username("testuser")
-                .loyaltyTier(CustomerTier.SILVER)
-                .build();
+    // Test: recalculateTiers - Upgrades are written with one UPDATE per target tier
+    @Test
+    void testRecalculateTiers_OneUpdatePerTier() {
+        when(userRepository.findTierInputs(1L, 101L)).thenReturn(List.of(
+                new Object[]{1L, CustomerTier.BASIC, new BigDecimal("1200.00"), 0},
+                new Object[]{2L, null, BigDecimal.ZERO, 3},
+                new Object[]{3L, CustomerTier.SILVER, new BigDecimal("6000.00"), 0},
+                new Object[]{4L, CustomerTier.PLATINUM, BigDecimal.ZERO, 0},
+                new Object[]{5L, CustomerTier.BASIC, BigDecimal.ZERO, 0}));
+        when(userRepository.upgradeTiers(List.of(1L, 2L), CustomerTier.SILVER, List.of(CustomerTier.BASIC))).thenReturn(2);
+        when(userRepository.upgradeTiers(List.of(3L), CustomerTier.GOLD, List.of(CustomerTier.BASIC, CustomerTier.SILVER)))
+                .thenReturn(1);
+
+        TierRecalculationChunk chunk = loyaltyTierService.recalculateTiers(1L, 101L, false);
+
+        assertEquals(5, chunk.getScanned());
+        assertEquals(2, chunk.getUpgrades().get(CustomerTier.SILVER));
+        assertEquals(1, chunk.getUpgrades().get(CustomerTier.GOLD));
+        assertFalse(chunk.getUpgrades().containsKey(CustomerTier.PLATINUM));
+        verify(userRepository, never()).save(any(User.class));
+        verify(clientStatisticsCache).invalidate(1L);
+        verify(clientStatisticsCache).invalidate(3L);
+        verify(clientStatisticsCache, never()).invalidate(5L);
+    }
 
-        when(userRepository.save(any(User.class))).thenReturn(upgradedUser);
+    // Test: recalculateTiers - A dry run reports upgrades without writing them
+    @Test
+    void testRecalculateTiers_DryRun() {
+        when(userRepository.findTierInputs(1L, 101L)).thenReturn(List.<Object[]>of(
+                new Object[]{1L, CustomerTier.BASIC, new BigDecimal("1200.00"), 0}));
 
-        User result = loyaltyTierService.upgradeTierIfEligible(1L);
+        TierRecalculationChunk chunk = loyaltyTierService.recalculateTiers(1L, 101L, true);
 
-        assertEquals(CustomerTier.SILVER, result.getLoyaltyTier());
-        verify(userRepository).save(any(User.class));
+        assertEquals(1, chunk.getUpgrades().get(CustomerTier.SILVER));
+        verify(userRepository, never()).upgradeTiers(anyCollection(), any(), anyCollection());
+        verifyNoInteractions(clientStatisticsCache);
     }
 }
@@ -0,0 +1,120 @@
+package com.smartshop.service;
+
+import com.smartshop.repository.UserRepository;
+import com.smartshop.service.impl.LoyaltyUpgradeSchedulerImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LoyaltyUpgradeSchedulerTest {
+
+    @Mock
+    private LoyaltyTierService loyaltyTierService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    // Test: A burst of requests for one user triggers a single evaluation
+    @Test
+    void testRequestUpgrade_CoalescesBurst() {
+        LoyaltyUpgradeSchedulerImpl scheduler = scheduler(true, 100, 10);
+
+        for (int i = 0; i < 10; i++) {
+            scheduler.requestUpgrade(1L);
+        }
+        scheduler.requestUpgrade(2L);
+
+        verify(loyaltyTierService, timeout(2000).times(1)).upgradeTierIfEligible(1L);
+        verify(loyaltyTierService, timeout(2000).times(1)).upgradeTierIfEligible(2L);
+        assertEquals(9.0, meterRegistry.counter("smartshop.loyalty.upgrades.coalesced").count());
+        assertEquals(11.0, meterRegistry.counter("smartshop.loyalty.upgrades.requests").count());
+    }
+
+    // Test: Inside a transaction, nothing is queued before the commit
+    @Test
+    void testRequestUpgrade_WaitsForCommit() {
+        LoyaltyUpgradeSchedulerImpl scheduler = scheduler(true, 0, 10);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            scheduler.requestUpgrade(1L);
+            assertEquals(0.0, meterRegistry.counter("smartshop.loyalty.upgrades.requests").count());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(loyaltyTierService, timeout(2000)).upgradeTierIfEligible(1L);
+    }
+
+    // Test: Requests the full pool cannot take are left to the sweep
+    @Test
+    void testRequestUpgrade_FullQueueRejected() throws Exception {
+        LoyaltyUpgradeSchedulerImpl scheduler = scheduler(true, 0, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(loyaltyTierService.upgradeTierIfEligible(anyLong())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+
+        // One evaluation running, one waiting in the queue, the rest rejected
+        for (long userId = 1; userId <= 5; userId++) {
+            scheduler.requestUpgrade(userId);
+            Thread.sleep(50);
+        }
+
+        assertEquals(3.0, meterRegistry.counter("smartshop.loyalty.upgrades.rejected").count());
+        release.countDown();
+        verify(loyaltyTierService, timeout(2000).times(2)).upgradeTierIfEligible(anyLong());
+    }
+
+    // Test: The sweep queues users whose flag is still set
+    @Test
+    void testSweepPending_QueuesFlaggedUsers() {
+        LoyaltyUpgradeSchedulerImpl scheduler = scheduler(true, 0, 10);
+        when(userRepository.findTierEvaluationPendingIds(any(Limit.class))).thenReturn(List.of(3L, 4L));
+
+        assertEquals(2, scheduler.sweepPending());
+
+        verify(loyaltyTierService, timeout(2000)).upgradeTierIfEligible(3L);
+        verify(loyaltyTierService, timeout(2000)).upgradeTierIfEligible(4L);
+    }
+
+    // Test: With async evaluation off, the tier is evaluated on the calling thread
+    @Test
+    void testRequestUpgrade_Synchronous() {
+        LoyaltyUpgradeSchedulerImpl scheduler = scheduler(false, 1000, 10);
+
+        scheduler.requestUpgrade(1L);
+
+        verify(loyaltyTierService).upgradeTierIfEligible(1L);
+        assertEquals(1, meterRegistry.timer("smartshop.loyalty.upgrades.evaluation").count());
+    }
+
+    private LoyaltyUpgradeSchedulerImpl scheduler(boolean async, long coalesceWindowMs, int queueCapacity) {
+        return new LoyaltyUpgradeSchedulerImpl(loyaltyTierService, userRepository, meterRegistry,
+                async, coalesceWindowMs, 1, queueCapacity, 100);
+    }
+}
@@ -0,0 +1,135 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.OrderBatchResult;
+import com.smartshop.dto.OrderDTO;
+import com.smartshop.service.impl.OrderBatchServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class OrderBatchServiceTest {
+
+    @Mock
+    private OrderService orderService;
+
+    @InjectMocks
+    private OrderBatchServiceImpl orderBatchService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(orderBatchService, "chunkSize", 2);
+    }
+
+    // Test: Requests are processed in chunks and results are indexed in submission order
+    @Test
+    void testCreateOrders_ProcessesInChunks() {
+        List<OrderService.OrderRequest> requests = List.of(request(1L), request(2L), request(3L));
+
+        when(orderService.createOrders(anyList())).thenAnswer(invocation -> {
+            List<OrderService.OrderRequest> chunk = invocation.getArgument(0);
+            List<OrderBatchResult> results = new ArrayList<>();
+            for (OrderService.OrderRequest request : chunk) {
+                results.add(OrderBatchResult.builder().success(true).orderId(request.userId * 10).build());
+            }
+            return results;
+        });
+
+        List<OrderBatchResult> results = new ArrayList<>();
+        orderBatchService.createOrders(requests.iterator(), results::add);
+
+        verify(orderService, times(2)).createOrders(anyList());
+        assertEquals(3, results.size());
+        assertEquals(0, results.get(0).getIndex());
+        assertEquals(2, results.get(2).getIndex());
+        assertEquals(30L, results.get(2).getOrderId());
+    }
+
+    // Test: A failing chunk falls back to one transaction per order
+    @Test
+    void testCreateOrders_FailedChunkRetriedOneByOne() {
+        List<OrderService.OrderRequest> requests = List.of(request(1L), request(2L));
+
+        when(orderService.createOrders(anyList())).thenThrow(new IllegalStateException("constraint violation"));
+        when(orderService.createOrder(eq(1L), any(), any())).thenReturn(OrderDTO.builder().id(10L).build());
+        when(orderService.createOrder(eq(2L), any(), any())).thenThrow(new IllegalArgumentException("bad order"));
+
+        List<OrderBatchResult> results = new ArrayList<>();
+        orderBatchService.createOrders(requests.iterator(), results::add);
+
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).getSuccess());
+        assertEquals(10L, results.get(0).getOrderId());
+        assertFalse(results.get(1).getSuccess());
+        assertEquals("bad order", results.get(1).getError());
+    }
+
+    // Test: Unreadable input still processes what was read and reports the failure position
+    @Test
+    void testCreateOrders_UnreadableInput() {
+        Iterator<OrderService.OrderRequest> requests = new Iterator<>() {
+            private int calls = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public OrderService.OrderRequest next() {
+                if (calls++ == 0) {
+                    return request(1L);
+                }
+                throw new IllegalStateException("Unexpected character");
+            }
+        };
+
+        when(orderService.createOrders(anyList()))
+                .thenReturn(List.of(OrderBatchResult.builder().success(true).orderId(10L).build()));
+
+        List<OrderBatchResult> results = new ArrayList<>();
+        orderBatchService.createOrders(requests, results::add);
+
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).getSuccess());
+        assertFalse(results.get(1).getSuccess());
+        assertEquals(1, results.get(1).getIndex());
+    }
+
+    // Test: A failing result handler ends the batch without creating the committed chunk again
+    @Test
+    void testCreateOrders_HandlerFailureStopsBatch() {
+        List<OrderService.OrderRequest> requests = List.of(request(1L), request(2L), request(3L));
+
+        when(orderService.createOrders(anyList()))
+                .thenReturn(List.of(OrderBatchResult.builder().success(true).orderId(10L).build(),
+                        OrderBatchResult.builder().success(true).orderId(20L).build()));
+
+        assertThrows(UncheckedIOException.class, () -> orderBatchService.createOrders(requests.iterator(), result -> {
+            throw new UncheckedIOException(new IOException("Broken pipe"));
+        }));
+
+        verify(orderService, times(1)).createOrders(anyList());
+        verify(orderService, never()).createOrder(any(), any(), any());
+    }
+
+    private OrderService.OrderRequest request(Long userId) {
+        OrderService.OrderRequest request = new OrderService.OrderRequest();
+        request.userId = userId;
+        return request;
+    }
+}
@@ -1,20 +1,33 @@
 package com.smartshop.service;
 
+import com.smartshop.config.LoyaltyRulesProperties;
+import com.smartshop.dto.CursorPage;
+import com.smartshop.dto.OrderBatchResult;
 import com.smartshop.dto.OrderDTO;
+import com.smartshop.dto.OrderItemDTO;
+import com.smartshop.dto.OrderSearchCriteria;
+import com.smartshop.dto.PaymentDTO;
 import com.smartshop.entity.*;
 import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.OutboxEventType;
 import com.smartshop.enums.UserRole;
 import com.smartshop.enums.CustomerTier;
 import com.smartshop.exception.ResourceNotFoundException;
+import com.smartshop.exception.UnauthorizedException;
+import com.smartshop.mapper.OrderItemMapper;
 import com.smartshop.mapper.OrderMapper;
+import com.smartshop.mapper.PaymentMapper;
 import com.smartshop.repository.*;
+import com.smartshop.service.impl.LoyaltyRulesServiceImpl;
 import com.smartshop.service.impl.OrderServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -35,6 +48,9 @@ public class OrderServiceTest {
     @Mock
     private OrderItemRepository orderItemRepository;
 
+    @Mock
+    private PaymentRepository paymentRepository;
+
     @Mock
     private ProductRepository productRepository;
 
@@ -45,11 +61,26 @@ public class OrderServiceTest {
     private CouponRepository couponRepository;
 
     @Mock
-    private LoyaltyTierService loyaltyTierService;
+    private LoyaltyUpgradeScheduler loyaltyUpgradeScheduler;
 
     @Mock
     private OrderMapper orderMapper;
 
+    @Mock
+    private OrderItemMapper orderItemMapper;
+
+    @Mock
+    private PaymentMapper paymentMapper;
+
+    @Mock
+    private OrderEventPublisher orderEventPublisher;
+
+    @Mock
+    private RelatedProductsService relatedProductsService;
+
+    @Spy
+    private LoyaltyRulesService loyaltyRulesService = new LoyaltyRulesServiceImpl(new LoyaltyRulesProperties());
+
     @InjectMocks
     private OrderServiceImpl orderService;
 
@@ -105,9 +136,8 @@ public class OrderServiceTest {
         List<OrderService.OrderItemRequest> items = List.of(item);
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(productRepository.findByIdAndDeletedFalse(1L)).thenReturn(Optional.of(product));
+        when(productRepository.findByIdInAndDeletedFalse(anyCollection())).thenReturn(List.of(product));
         when(orderRepository.save(any(Order.class))).thenReturn(order);
-        when(orderItemRepository.save(any(OrderItem.class))).thenReturn(OrderItem.builder().build());
         when(orderMapper.toDTO(order)).thenReturn(orderDTO);
 
         OrderDTO result = orderService.createOrder(1L, items, null);
@@ -152,7 +182,7 @@ public class OrderServiceTest {
         List<OrderService.OrderItemRequest> items = List.of(item);
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(productRepository.findByIdAndDeletedFalse(1L)).thenReturn(Optional.empty());
+        when(productRepository.findByIdInAndDeletedFalse(anyCollection())).thenReturn(List.of());
 
         assertThrows(ResourceNotFoundException.class, () -> orderService.createOrder(1L, items, null));
     }
@@ -173,7 +203,7 @@ public class OrderServiceTest {
         List<OrderService.OrderItemRequest> items = List.of(item);
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(productRepository.findByIdAndDeletedFalse(1L)).thenReturn(Optional.of(lowStockProduct));
+        when(productRepository.findByIdInAndDeletedFalse(anyCollection())).thenReturn(List.of(lowStockProduct));
 
         assertThrows(IllegalArgumentException.class, () -> orderService.createOrder(1L, items, null));
     }
@@ -194,10 +224,9 @@ public class OrderServiceTest {
         List<OrderService.OrderItemRequest> items = List.of(item);
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(productRepository.findByIdAndDeletedFalse(1L)).thenReturn(Optional.of(product));
+        when(productRepository.findByIdInAndDeletedFalse(anyCollection())).thenReturn(List.of(product));
         when(couponRepository.findByCode("PROMO-TEST")).thenReturn(Optional.of(coupon));
         when(orderRepository.save(any(Order.class))).thenReturn(order);
-        when(orderItemRepository.save(any(OrderItem.class))).thenReturn(OrderItem.builder().build());
         when(orderMapper.toDTO(order)).thenReturn(orderDTO);
 
         OrderDTO result = orderService.createOrder(1L, items, "PROMO-TEST");
@@ -215,7 +244,7 @@ public class OrderServiceTest {
         List<OrderService.OrderItemRequest> items = List.of(item);
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(productRepository.findByIdAndDeletedFalse(1L)).thenReturn(Optional.of(product));
+        when(productRepository.findByIdInAndDeletedFalse(anyCollection())).thenReturn(List.of(product));
         when(couponRepository.findByCode("INVALID")).thenReturn(Optional.empty());
 
         assertThrows(ResourceNotFoundException.class, () -> orderService.createOrder(1L, items, "INVALID"));
@@ -236,7 +265,7 @@ public class OrderServiceTest {
         List<OrderService.OrderItemRequest> items = List.of(item);
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(productRepository.findByIdAndDeletedFalse(1L)).thenReturn(Optional.of(product));
+        when(productRepository.findByIdInAndDeletedFalse(anyCollection())).thenReturn(List.of(product));
         when(couponRepository.findByCode("PROMO-TEST")).thenReturn(Optional.of(usedCoupon));
 
         assertThrows(IllegalArgumentException.class, () -> orderService.createOrder(1L, items, "PROMO-TEST"));
@@ -262,32 +291,109 @@ public class OrderServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> orderService.getOrderById(1L));
     }
 
-    // Test: Get orders by user ID
+    // Test: Get order detail - items and payments are loaded with one query each
     @Test
-    void testGetOrdersByUserId_Success() {
-        List<Order> orders = List.of(order);
+    void testGetOrderDetail_WithItemsAndPayments() {
+        OrderItem item1 = OrderItem.builder().id(10L).orderId(1L).productId(1L).quantity(1).build();
+        OrderItem item2 = OrderItem.builder().id(11L).orderId(1L).productId(1L).quantity(2).build();
+        Payment payment1 = Payment.builder().id(20L).orderId(1L).paymentNumber(1).build();
+        Payment payment2 = Payment.builder().id(21L).orderId(1L).paymentNumber(2).build();
+
+        when(orderRepository.findByIdAndOwner(1L, 1L)).thenReturn(Optional.of(order));
+        when(orderItemRepository.findByOrderIdOrderByIdAsc(1L)).thenReturn(List.of(item1, item2));
+        when(paymentRepository.findByOrderIdOrderByPaymentNumberAsc(1L)).thenReturn(List.of(payment1, payment2));
+        when(orderMapper.toDTO(order)).thenReturn(orderDTO);
+        when(orderItemMapper.toDTOList(List.of(item1, item2))).thenReturn(List.of(new OrderItemDTO(), new OrderItemDTO()));
+        when(paymentMapper.toDTOList(List.of(payment1, payment2))).thenReturn(List.of(new PaymentDTO(), new PaymentDTO()));
 
-        when(orderRepository.findByUserId(1L)).thenReturn(orders);
-        when(orderMapper.toDTOList(orders)).thenReturn(List.of(orderDTO));
+        OrderDTO result = orderService.getOrderDetail(1L, 1L, true, true);
 
-        List<OrderDTO> result = orderService.getOrdersByUserId(1L);
+        assertEquals(2, result.getItems().size());
+        assertEquals(2, result.getPayments().size());
+        verify(orderRepository, never()).existsById(any());
+    }
 
-        assertNotNull(result);
-        assertEquals(1, result.size());
+    // Test: Get order detail - nothing requested leaves items and payments unset
+    @Test
+    void testGetOrderDetail_WithoutIncludes() {
+        when(orderRepository.findByIdAndOwner(1L, null)).thenReturn(Optional.of(order));
+        when(orderMapper.toDTO(order)).thenReturn(orderDTO);
+
+        OrderDTO result = orderService.getOrderDetail(1L, null, false, false);
+
+        assertNull(result.getItems());
+        assertNull(result.getPayments());
+        verifyNoInteractions(orderItemRepository, paymentRepository, orderItemMapper, paymentMapper);
     }
 
-    // Test: Get all orders
+    // Test: Get order detail - order owned by someone else
     @Test
-    void testGetAllOrders_Success() {
+    void testGetOrderDetail_NotOwner() {
+        when(orderRepository.findByIdAndOwner(1L, 2L)).thenReturn(Optional.empty());
+        when(orderRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(UnauthorizedException.class, () -> orderService.getOrderDetail(1L, 2L, false, false));
+    }
+
+    // Test: Get order detail - order not found
+    @Test
+    void testGetOrderDetail_NotFound() {
+        when(orderRepository.findByIdAndOwner(1L, null)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> orderService.getOrderDetail(1L, null, false, false));
+        verify(orderRepository, never()).existsById(any());
+    }
+
+    // Test: Get orders - last page has no cursor and no count unless requested
+    @Test
+    void testGetOrders_LastPage() {
         List<Order> orders = List.of(order);
 
-        when(orderRepository.findAll()).thenReturn(orders);
+        when(orderRepository.findBy(any(Specification.class), any())).thenReturn(orders);
         when(orderMapper.toDTOList(orders)).thenReturn(List.of(orderDTO));
 
-        List<OrderDTO> result = orderService.getAllOrders();
+        CursorPage<OrderDTO> result = orderService.getOrders(OrderSearchCriteria.builder().userId(1L).build(), null, 20, false);
 
-        assertNotNull(result);
-        assertEquals(1, result.size());
+        assertEquals(1, result.getItems().size());
+        assertFalse(result.isHasMore());
+        assertNull(result.getNextCursor());
+        assertNull(result.getTotalCount());
+        verify(orderRepository, never()).count(any(Specification.class));
+    }
+
+    // Test: Get orders - extra row yields a cursor that can be fed back
+    @Test
+    void testGetOrders_HasMoreWithCursor() {
+        Order newer = Order.builder().id(2L).orderDate(order.getOrderDate().plusMinutes(1)).build();
+        List<Order> orders = List.of(newer, order);
+
+        when(orderRepository.findBy(any(Specification.class), any())).thenReturn(orders);
+        when(orderMapper.toDTOList(List.of(newer))).thenReturn(List.of(orderDTO));
+        when(orderRepository.count(any(Specification.class))).thenReturn(2L);
+
+        CursorPage<OrderDTO> result = orderService.getOrders(new OrderSearchCriteria(), null, 1, true);
+
+        assertTrue(result.isHasMore());
+        assertNotNull(result.getNextCursor());
+        assertEquals(2L, result.getTotalCount());
+
+        when(orderRepository.findBy(any(Specification.class), any())).thenReturn(List.of(order));
+        when(orderMapper.toDTOList(List.of(order))).thenReturn(List.of(orderDTO));
+
+        CursorPage<OrderDTO> next = orderService.getOrders(new OrderSearchCriteria(), result.getNextCursor(), 1, false);
+
+        assertFalse(next.isHasMore());
+    }
+
+    // Test: Get orders - invalid cursor and page size are rejected
+    @Test
+    void testGetOrders_InvalidArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> orderService.getOrders(new OrderSearchCriteria(), "not-a-cursor", 20, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> orderService.getOrders(new OrderSearchCriteria(), null, 0, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> orderService.getOrders(new OrderSearchCriteria(), null, 1000, false));
     }
 
     // Test: Confirm order successfully
@@ -303,6 +409,8 @@ public class OrderServiceTest {
 
         assertNotNull(result);
         verify(orderRepository).save(argThat(o -> o.getStatus() == OrderStatus.CONFIRMED));
+        verify(userRepository).incrementConfirmedOrderCount(order.getUserId());
+        verify(orderEventPublisher).publish(OutboxEventType.ORDER_CONFIRMED, order);
     }
 
     // Test: Confirm order not found
@@ -342,6 +450,7 @@ public class OrderServiceTest {
 
         assertNotNull(result);
         verify(orderRepository).save(argThat(o -> o.getStatus() == OrderStatus.CANCELED));
+        verify(orderEventPublisher).publish(OutboxEventType.ORDER_CANCELED, order);
     }
 
     // Test: Cancel order not found
@@ -392,15 +501,120 @@ public class OrderServiceTest {
         List<OrderService.OrderItemRequest> items = List.of(item1, item2);
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(productRepository.findByIdAndDeletedFalse(1L)).thenReturn(Optional.of(product));
-        when(productRepository.findByIdAndDeletedFalse(2L)).thenReturn(Optional.of(product2));
+        when(productRepository.findByIdInAndDeletedFalse(anyCollection())).thenReturn(List.of(product, product2));
         when(orderRepository.save(any(Order.class))).thenReturn(order);
-        when(orderItemRepository.save(any(OrderItem.class))).thenReturn(OrderItem.builder().build());
         when(orderMapper.toDTO(order)).thenReturn(orderDTO);
 
         OrderDTO result = orderService.createOrder(1L, items, null);
 
         assertNotNull(result);
-        verify(orderItemRepository, times(2)).save(any(OrderItem.class));
+        verify(orderItemRepository).saveAll(argThat((List<OrderItem> orderItems) -> orderItems.size() == 2));
+        verify(orderItemRepository, never()).save(any(OrderItem.class));
+        verify(relatedProductsService).recordOrder(order.getId(), List.of(1L, 2L));
+    }
+
+    // Test: All products of a multi-line order are loaded with a single query
+    @Test
+    void testCreateOrder_LoadsProductsInSingleQuery() {
+        List<OrderService.OrderItemRequest> items = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            OrderService.OrderItemRequest item = new OrderService.OrderItemRequest();
+            item.productId = 1L;
+            item.quantity = 1;
+            items.add(item);
+        }
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(productRepository.findByIdInAndDeletedFalse(anyCollection())).thenReturn(List.of(product));
+        when(orderRepository.save(any(Order.class))).thenReturn(order);
+        when(orderMapper.toDTO(order)).thenReturn(orderDTO);
+
+        orderService.createOrder(1L, items, null);
+
+        verify(productRepository, times(1)).findByIdInAndDeletedFalse(anyCollection());
+        verify(productRepository, never()).findByIdAndDeletedFalse(anyLong());
+    }
+
+    // Test: Repeated lines for the same product are checked against its stock together
+    @Test
+    void testCreateOrder_RepeatedLinesExceedStock() {
+        OrderService.OrderItemRequest item1 = new OrderService.OrderItemRequest();
+        item1.productId = 1L;
+        item1.quantity = 6;
+        OrderService.OrderItemRequest item2 = new OrderService.OrderItemRequest();
+        item2.productId = 1L;
+        item2.quantity = 6;
+        List<OrderService.OrderItemRequest> items = List.of(item1, item2);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(productRepository.findByIdInAndDeletedFalse(anyCollection())).thenReturn(List.of(product));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> orderService.createOrder(1L, items, null));
+        assertTrue(ex.getMessage().contains("Requested: 12"));
+    }
+
+    // Test: Every missing and understocked product is reported in one error
+    @Test
+    void testCreateOrder_ReportsAllProductErrors() {
+        Product lowStockProduct = Product.builder()
+                .id(2L)
+                .stock(1)
+                .name("Low Stock Product")
+                .unitPrice(new BigDecimal("10.00"))
+                .deleted(false)
+                .build();
+
+        OrderService.OrderItemRequest missing1 = new OrderService.OrderItemRequest();
+        missing1.productId = 98L;
+        missing1.quantity = 1;
+        OrderService.OrderItemRequest missing2 = new OrderService.OrderItemRequest();
+        missing2.productId = 99L;
+        missing2.quantity = 1;
+        OrderService.OrderItemRequest lowStock = new OrderService.OrderItemRequest();
+        lowStock.productId = 2L;
+        lowStock.quantity = 5;
+        List<OrderService.OrderItemRequest> items = List.of(missing1, lowStock, missing2);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(productRepository.findByIdInAndDeletedFalse(anyCollection())).thenReturn(List.of(lowStockProduct));
+
+        ResourceNotFoundException ex = assertThrows(ResourceNotFoundException.class,
+                () -> orderService.createOrder(1L, items, null));
+        assertTrue(ex.getMessage().contains("98"));
+        assertTrue(ex.getMessage().contains("99"));
+        assertTrue(ex.getMessage().contains("Low Stock Product"));
+    }
+
+    // Test: Batch chunk persists valid orders and reports the invalid one without failing the others
+    @Test
+    void testCreateOrders_ChunkWithInvalidOrder() {
+        OrderService.OrderItemRequest item = new OrderService.OrderItemRequest();
+        item.productId = 1L;
+        item.quantity = 2;
+
+        OrderService.OrderRequest valid = new OrderService.OrderRequest();
+        valid.userId = 1L;
+        valid.items = List.of(item);
+
+        OrderService.OrderRequest unknownUser = new OrderService.OrderRequest();
+        unknownUser.userId = 42L;
+        unknownUser.items = List.of(item);
+
+        when(userRepository.findAllById(anyIterable())).thenReturn(List.of(user));
+        when(productRepository.findByIdInAndDeletedFalse(anyCollection())).thenReturn(List.of(product));
+        when(orderRepository.saveAll(anyList())).thenReturn(List.of(order));
+
+        List<OrderBatchResult> results = orderService.createOrders(List.of(valid, unknownUser));
+
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).getSuccess());
+        assertEquals(1L, results.get(0).getOrderId());
+        assertFalse(results.get(1).getSuccess());
+        assertTrue(results.get(1).getError().contains("42"));
+        verify(userRepository, never()).findById(anyLong());
+        verify(productRepository, times(1)).findByIdInAndDeletedFalse(anyCollection());
+        verify(orderItemRepository).saveAll(argThat((List<OrderItem> orderItems) -> orderItems.size() == 1));
+        verify(relatedProductsService).recordOrder(1L, List.of(1L));
     }
 }
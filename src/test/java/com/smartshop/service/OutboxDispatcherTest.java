@@ -0,0 +1,125 @@
+package com.smartshop.service;
+
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.enums.OutboxEventType;
+import com.smartshop.service.impl.OutboxDispatcherImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class OutboxDispatcherTest {
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private ObjectProvider<OutboxSubscriber> subscriberProvider;
+
+    @Mock
+    private OutboxSubscriber firstSubscriber;
+
+    @Mock
+    private OutboxSubscriber secondSubscriber;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxDispatcherImpl outboxDispatcher;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        outboxDispatcher = new OutboxDispatcherImpl(outboxService, subscriberProvider, meterRegistry,
+                false, 200, 5000, 2, 7);
+        lenient().when(subscriberProvider.orderedStream()).thenAnswer(invocation -> Stream.of(firstSubscriber, secondSubscriber));
+    }
+
+    // Test: Batches are claimed until none is left, each delivered to every subscriber and marked delivered
+    @Test
+    void testDispatchPending_DeliversBatchesToEverySubscriber() {
+        List<OutboxEvent> firstBatch = List.of(event(1L, 10L), event(2L, 11L));
+        List<OutboxEvent> secondBatch = List.of(event(3L, 10L));
+        when(outboxService.claimBatch(2)).thenReturn(firstBatch, secondBatch, List.of());
+        when(outboxService.countPending()).thenReturn(0L);
+
+        int delivered = outboxDispatcher.dispatchPending();
+
+        assertEquals(3, delivered);
+        verify(firstSubscriber).onEvents(firstBatch);
+        verify(secondSubscriber).onEvents(firstBatch);
+        verify(secondSubscriber).onEvents(secondBatch);
+        verify(outboxService).markDelivered(List.of(1L, 2L));
+        verify(outboxService).markDelivered(List.of(3L));
+        verify(outboxService, never()).markFailed(any(), any());
+        assertEquals(3.0, meterRegistry.counter("smartshop.outbox.delivered").count());
+        assertEquals(2, meterRegistry.summary("smartshop.outbox.batch.size").count());
+    }
+
+    // Test: A failing batch is retried event by event; only the bad event is rescheduled
+    @Test
+    void testDispatchPending_FailedBatchRetriedOneByOne() {
+        OutboxEvent good = event(1L, 10L);
+        OutboxEvent bad = event(2L, 11L);
+        when(outboxService.claimBatch(2)).thenReturn(List.of(good, bad), List.of());
+        doAnswer(invocation -> {
+            if (invocation.<List<OutboxEvent>>getArgument(0).contains(bad)) {
+                throw new IllegalStateException("boom");
+            }
+            return null;
+        }).when(secondSubscriber).onEvents(anyList());
+
+        int delivered = outboxDispatcher.dispatchPending();
+
+        assertEquals(1, delivered);
+        verify(outboxService).markDelivered(List.of(1L));
+        verify(outboxService).markFailed(eq(bad), contains("boom"));
+        assertEquals(1.0, meterRegistry.counter("smartshop.outbox.failures").count());
+    }
+
+    // Test: Without async dispatch, a published event is delivered right away and marked on the entity
+    @Test
+    void testOnPublished_SyncDeliversImmediately() {
+        OutboxEvent event = event(1L, 10L);
+
+        outboxDispatcher.onPublished(event);
+
+        verify(firstSubscriber).onEvents(List.of(event));
+        verify(secondSubscriber).onEvents(List.of(event));
+        assertNotNull(event.getDeliveredAt());
+        verify(outboxService, never()).claimBatch(anyInt());
+    }
+
+    // Test: Replay resets the events, then delivers them
+    @Test
+    void testReplay_ResetsAndDispatches() {
+        LocalDateTime since = LocalDateTime.of(2026, 1, 1, 0, 0);
+        when(outboxService.replay(since, OutboxEventType.PAYMENT_RECORDED)).thenReturn(1);
+        when(outboxService.claimBatch(2)).thenReturn(List.of(event(1L, 10L)), List.of());
+
+        assertEquals(1, outboxDispatcher.replay(since, OutboxEventType.PAYMENT_RECORDED));
+        verify(outboxService).markDelivered(List.of(1L));
+    }
+
+    private OutboxEvent event(Long id, Long orderId) {
+        return OutboxEvent.builder()
+                .id(id)
+                .orderId(orderId)
+                .eventType(OutboxEventType.PAYMENT_RECORDED)
+                .payload("{}")
+                .createdAt(LocalDateTime.now())
+                .availableAt(LocalDateTime.now())
+                .attempts(1)
+                .build();
+    }
+}
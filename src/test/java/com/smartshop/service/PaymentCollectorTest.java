@@ -0,0 +1,61 @@
+package com.smartshop.service;
+
+import com.smartshop.service.impl.PaymentCollectorImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PaymentCollectorTest {
+
+    @Mock
+    private PaymentCollectionService paymentCollectionService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private PaymentCollectorImpl paymentCollector;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        paymentCollector = new PaymentCollectorImpl(paymentCollectionService, meterRegistry, 100);
+    }
+
+    // Test: Chunks are collected until one comes back short
+    @Test
+    void testCollectDuePayments_CollectsUntilShortChunk() {
+        when(paymentCollectionService.collectDueChunk(LocalDate.now(), 100)).thenReturn(100, 100, 42);
+
+        int collected = paymentCollector.collectDuePayments();
+
+        assertEquals(242, collected);
+        verify(paymentCollectionService, times(3)).collectDueChunk(any(), eq(100));
+        assertEquals(242.0, meterRegistry.counter("smartshop.collection.payments").count());
+        assertEquals(1, meterRegistry.timer("smartshop.collection.run").count());
+    }
+
+    // Test: Nothing due costs a single chunk query
+    @Test
+    void testCollectDuePayments_NothingDue() {
+        when(paymentCollectionService.collectDueChunk(any(), eq(100))).thenReturn(0);
+
+        assertEquals(0, paymentCollector.collectDuePayments());
+        verify(paymentCollectionService, times(1)).collectDueChunk(any(), eq(100));
+    }
+
+    // Test: A failing scheduled run is logged and does not propagate
+    @Test
+    void testScheduledCollection_FailureIsContained() {
+        when(paymentCollectionService.collectDueChunk(any(), eq(100))).thenThrow(new IllegalStateException("db down"));
+
+        assertDoesNotThrow(() -> paymentCollector.scheduledCollection());
+    }
+}
@@ -0,0 +1,207 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.PaymentDTO;
+import com.smartshop.dto.PaymentImportResult;
+import com.smartshop.enums.PaymentMethod;
+import com.smartshop.enums.PaymentStatus;
+import com.smartshop.service.impl.PaymentImportServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PaymentImportServiceTest {
+
+    private static final String HEADER = "payment_date,reference,amount,method,bank_name,due_date\r\n";
+
+    @Mock
+    private PaymentService paymentService;
+
+    @InjectMocks
+    private PaymentImportServiceImpl paymentImportService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(paymentImportService, "chunkSize", 2);
+        ReflectionTestUtils.setField(paymentImportService, "maxLineLength", 100);
+    }
+
+    // Test: Rows are parsed, matched to orders by reference and imported in chunks
+    @Test
+    void testImportStatement_ProcessesInChunks() {
+        String statement = HEADER
+                + "2026-01-05,VIR ORD-10 ACME,100.00,TRANSFER,,\r\n"
+                + "2026-01-06,CHQ 77 ORD-11,50.00,check,CIH,2026-02-06\r\n"
+                + "2026-01-07,VIR ORD-12,20.00,TRANSFER,,";
+
+        when(paymentService.createPayments(anyList())).thenAnswer(invocation -> succeeded(invocation.getArgument(0)));
+
+        List<PaymentImportResult> results = new ArrayList<>();
+        paymentImportService.importStatement(channel(statement), results::add);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PaymentDTO>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(paymentService, times(2)).createPayments(chunks.capture());
+
+        PaymentDTO transfer = chunks.getAllValues().get(0).get(0);
+        assertEquals(10L, transfer.getOrderId());
+        assertEquals(PaymentStatus.COLLECTED, transfer.getStatus());
+        assertEquals(LocalDate.of(2026, 1, 5), transfer.getCollectionDate());
+
+        PaymentDTO check = chunks.getAllValues().get(0).get(1);
+        assertEquals(11L, check.getOrderId());
+        assertEquals(PaymentMethod.CHECK, check.getPaymentMethod());
+        assertEquals(PaymentStatus.PENDING, check.getStatus());
+        assertEquals(LocalDate.of(2026, 2, 6), check.getDueDate());
+        assertNull(check.getCollectionDate());
+
+        assertEquals(3, results.size());
+        assertEquals(2, results.get(0).getLine());
+        assertEquals(4, results.get(2).getLine());
+        assertTrue(results.get(2).getSuccess());
+    }
+
+    // Test: Unparseable rows are reported in place without reaching the payment service
+    @Test
+    void testImportStatement_InvalidRowsReportedInOrder() {
+        String statement = HEADER
+                + "2026-01-05,VIR ORD-10,abc,TRANSFER,,\n"
+                + "2026-01-05,VIR ORD-11,10.00,TRANSFER,,\n"
+                + "2026-01-05,NO ORDER HERE,10.00,TRANSFER,,\n";
+
+        when(paymentService.createPayments(anyList())).thenAnswer(invocation -> succeeded(invocation.getArgument(0)));
+
+        List<PaymentImportResult> results = new ArrayList<>();
+        paymentImportService.importStatement(channel(statement), results::add);
+
+        assertEquals(3, results.size());
+        assertFalse(results.get(0).getSuccess());
+        assertEquals(2, results.get(0).getLine());
+        assertTrue(results.get(1).getSuccess());
+        assertEquals(11L, results.get(1).getOrderId());
+        assertFalse(results.get(2).getSuccess());
+        assertTrue(results.get(2).getError().contains("No order number"));
+        verify(paymentService, times(1)).createPayments(argThat(chunk -> chunk.size() == 1));
+    }
+
+    // Test: A line over the maximum length fails on its own, without ending the import
+    @Test
+    void testImportStatement_OverlongLineReported() {
+        String statement = HEADER
+                + "2026-01-05,VIR ORD-10,100.00,TRANSFER,,\r\n"
+                + "2026-01-05,VIR ORD-11 " + "X".repeat(200_000) + ",100.00,TRANSFER,,\r\n"
+                + "2026-01-05,VIR ORD-12,100.00,TRANSFER,,\r\n";
+
+        when(paymentService.createPayments(anyList())).thenAnswer(invocation -> succeeded(invocation.getArgument(0)));
+
+        List<PaymentImportResult> results = new ArrayList<>();
+        paymentImportService.importStatement(channel(statement), results::add);
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).getSuccess());
+        assertFalse(results.get(1).getSuccess());
+        assertEquals(3, results.get(1).getLine());
+        assertEquals("Invalid row: Line is longer than 100 characters", results.get(1).getError());
+        assertTrue(results.get(2).getSuccess());
+        assertEquals(12L, results.get(2).getOrderId());
+        assertEquals(4, results.get(2).getLine());
+    }
+
+    // Test: A failing chunk falls back to one transaction per row
+    @Test
+    void testImportStatement_FailedChunkRetriedOneByOne() {
+        String statement = HEADER
+                + "2026-01-05,VIR ORD-10,100.00,TRANSFER,,\n"
+                + "2026-01-05,VIR ORD-11,100.00,TRANSFER,,\n";
+
+        when(paymentService.createPayments(argThat(chunk -> chunk != null && chunk.size() == 2)))
+                .thenThrow(new IllegalArgumentException("Insufficient stock"));
+        when(paymentService.createPayments(argThat(chunk -> chunk != null && chunk.size() == 1
+                && chunk.get(0).getOrderId() == 10L)))
+                .thenAnswer(invocation -> succeeded(invocation.getArgument(0)));
+        when(paymentService.createPayments(argThat(chunk -> chunk != null && chunk.size() == 1
+                && chunk.get(0).getOrderId() == 11L)))
+                .thenThrow(new IllegalArgumentException("Insufficient stock for product: Laptop"));
+
+        List<PaymentImportResult> results = new ArrayList<>();
+        paymentImportService.importStatement(channel(statement), results::add);
+
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).getSuccess());
+        assertFalse(results.get(1).getSuccess());
+        assertEquals(11L, results.get(1).getOrderId());
+        assertEquals("Insufficient stock for product: Laptop", results.get(1).getError());
+    }
+
+    // Test: A header without the required columns is reported and nothing is imported
+    @Test
+    void testImportStatement_MissingColumn() {
+        List<PaymentImportResult> results = new ArrayList<>();
+        paymentImportService.importStatement(channel("payment_date,amount\n2026-01-05,10.00\n"), results::add);
+
+        assertEquals(1, results.size());
+        assertEquals(1, results.get(0).getLine());
+        assertEquals("Statement header is missing column: reference", results.get(0).getError());
+        verifyNoInteractions(paymentService);
+    }
+
+    // Test: Rows read before the input broke are imported, then the failure position is reported
+    @Test
+    void testImportStatement_UnreadableInput() {
+        InputStream readable = new ByteArrayInputStream(
+                (HEADER + "2026-01-05,VIR ORD-10,100.00,TRANSFER,,\n").getBytes(StandardCharsets.UTF_8));
+        InputStream broken = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+
+        when(paymentService.createPayments(anyList())).thenAnswer(invocation -> succeeded(invocation.getArgument(0)));
+
+        List<PaymentImportResult> results = new ArrayList<>();
+        paymentImportService.importStatement(Channels.newChannel(new SequenceInputStream(readable, broken)), results::add);
+
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).getSuccess());
+        assertFalse(results.get(1).getSuccess());
+        assertEquals(3, results.get(1).getLine());
+    }
+
+    private ReadableByteChannel channel(String statement) {
+        return Channels.newChannel(new ByteArrayInputStream(statement.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private List<PaymentImportResult> succeeded(List<PaymentDTO> payments) {
+        List<PaymentImportResult> results = new ArrayList<>();
+        for (PaymentDTO payment : payments) {
+            results.add(PaymentImportResult.builder()
+                    .success(true)
+                    .orderId(payment.getOrderId())
+                    .reference(payment.getReference())
+                    .paymentId(payment.getOrderId() * 100)
+                    .build());
+        }
+        return results;
+    }
+}
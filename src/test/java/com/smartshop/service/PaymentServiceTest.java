@@ -1,12 +1,18 @@
 package com.smartshop.service;
 
+import com.smartshop.dto.CursorPage;
 import com.smartshop.dto.PaymentDTO;
+import com.smartshop.dto.PaymentImportResult;
+import com.smartshop.dto.PaymentListItem;
+import com.smartshop.dto.PaymentSearchCriteria;
 import com.smartshop.entity.*;
 import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.OutboxEventType;
 import com.smartshop.enums.PaymentMethod;
 import com.smartshop.enums.PaymentStatus;
 import com.smartshop.enums.UserRole;
 import com.smartshop.exception.ResourceNotFoundException;
+import com.smartshop.exception.UnauthorizedException;
 import com.smartshop.mapper.PaymentMapper;
 import com.smartshop.repository.*;
 import com.smartshop.service.impl.PaymentServiceImpl;
@@ -16,6 +22,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -23,6 +31,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -47,11 +56,20 @@ public class PaymentServiceTest {
     private CouponRepository couponRepository;
 
     @Mock
-    private LoyaltyTierService loyaltyTierService;
+    private UserRepository userRepository;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private LoyaltyUpgradeScheduler loyaltyUpgradeScheduler;
 
     @Mock
     private PaymentMapper paymentMapper;
 
+    @Mock
+    private ClientStatisticsCache clientStatisticsCache;
+
     @InjectMocks
     private PaymentServiceImpl paymentService;
 
@@ -99,18 +117,47 @@ public class PaymentServiceTest {
     void testCreatePayment_Success() {
         when(paymentMapper.toEntity(paymentDTO)).thenReturn(payment);
         when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(paymentRepository.findByOrderId(1L)).thenReturn(new ArrayList<>());
         when(paymentRepository.save(any(Payment.class))).thenReturn(payment);
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
+        when(orderRepository.applyPayment(eq(1L), any(BigDecimal.class))).thenReturn(1);
+        when(orderRepository.findPaymentCountById(1L)).thenReturn(1);
         when(orderItemRepository.findByOrderId(1L)).thenReturn(new ArrayList<>());
-        when(orderRepository.findByStatus(OrderStatus.PENDING)).thenReturn(new ArrayList<>());
         when(paymentMapper.toDTO(payment)).thenReturn(paymentDTO);
 
         PaymentDTO result = paymentService.createPayment(paymentDTO);
 
         assertNotNull(result);
         assertEquals(1L, result.getOrderId());
+        assertEquals(1, payment.getPaymentNumber());
         verify(paymentRepository).save(any(Payment.class));
+        verify(paymentRepository, never()).findByOrderId(any());
+        verify(userRepository).addSpending(1L, new BigDecimal("100.00"));
+        verify(clientStatisticsCache).invalidate(1L);
+    }
+
+    // Test: Remaining amount changed concurrently so the atomic update matches no row
+    @Test
+    void testCreatePayment_RemainingAmountChangedConcurrently() {
+        order.setPaymentCount(1);
+
+        when(paymentMapper.toEntity(paymentDTO)).thenReturn(payment);
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.applyPayment(eq(1L), any(BigDecimal.class))).thenReturn(0);
+
+        assertThrows(IllegalArgumentException.class, () -> paymentService.createPayment(paymentDTO));
+        verify(paymentRepository, never()).save(any(Payment.class));
+    }
+
+    // Test: Two first payments raced; the one that did not get number 1 is rolled back
+    @Test
+    void testCreatePayment_ConcurrentFirstPayment() {
+        when(paymentMapper.toEntity(paymentDTO)).thenReturn(payment);
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderItemRepository.findByOrderId(1L)).thenReturn(new ArrayList<>());
+        when(orderRepository.applyPayment(eq(1L), any(BigDecimal.class))).thenReturn(1);
+        when(orderRepository.findPaymentCountById(1L)).thenReturn(2);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> paymentService.createPayment(paymentDTO));
+        verify(paymentRepository, never()).save(any(Payment.class));
     }
 
     // Test: Order not found
@@ -172,6 +219,30 @@ public class PaymentServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> paymentService.getPaymentById(1L));
     }
 
+    // Test: Get payment by ID - owner check done by the same query
+    @Test
+    void testGetPaymentById_AsOwner() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{payment, 1L});
+        when(paymentRepository.findWithOwnerById(1L)).thenReturn(rows);
+        when(paymentMapper.toDTO(payment)).thenReturn(paymentDTO);
+
+        PaymentDTO result = paymentService.getPaymentById(1L, 1L);
+
+        assertEquals(1L, result.getId());
+        verify(paymentRepository, never()).findById(any());
+    }
+
+    // Test: Get payment by ID - order owned by another user
+    @Test
+    void testGetPaymentById_NotOwner() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{payment, 1L});
+        when(paymentRepository.findWithOwnerById(1L)).thenReturn(rows);
+
+        assertThrows(UnauthorizedException.class, () -> paymentService.getPaymentById(1L, 2L));
+    }
+
     // Test: Get payments by order ID
     @Test
     void testGetPaymentsByOrderId_Success() {
@@ -186,37 +257,102 @@ public class PaymentServiceTest {
         assertEquals(1, result.size());
     }
 
-    // Test: Get all payments
+    // Test: Get payments - last page has no cursor and no count unless requested
     @Test
-    void testGetAllPayments_Success() {
-        List<Payment> payments = List.of(payment);
+    void testGetPayments_LastPage() {
+        when(paymentRepository.findListItems(any(Specification.class), eq(21))).thenReturn(List.of(listItem(1L)));
+
+        CursorPage<PaymentListItem> result = paymentService.getPayments(
+                PaymentSearchCriteria.builder().method(PaymentMethod.CHECK).build(), null, 20, false);
+
+        assertEquals(1, result.getItems().size());
+        assertFalse(result.isHasMore());
+        assertNull(result.getNextCursor());
+        assertNull(result.getTotalCount());
+        verify(paymentRepository, never()).count(any(Specification.class));
+        verify(paymentRepository, never()).findAll();
+    }
 
-        when(paymentRepository.findAll()).thenReturn(payments);
-        when(paymentMapper.toDTOList(payments)).thenReturn(List.of(paymentDTO));
+    // Test: Get payments - extra row yields a cursor that can be fed back
+    @Test
+    void testGetPayments_HasMoreWithCursor() {
+        when(paymentRepository.findListItems(any(Specification.class), eq(2)))
+                .thenReturn(List.of(listItem(2L), listItem(1L)));
+        when(paymentRepository.count(any(Specification.class))).thenReturn(2L);
 
-        List<PaymentDTO> result = paymentService.getAllPayments();
+        CursorPage<PaymentListItem> result = paymentService.getPayments(new PaymentSearchCriteria(), null, 1, true);
 
-        assertNotNull(result);
-        assertEquals(1, result.size());
+        assertTrue(result.isHasMore());
+        assertEquals(1, result.getItems().size());
+        assertNotNull(result.getNextCursor());
+        assertEquals(2L, result.getTotalCount());
+
+        when(paymentRepository.findListItems(any(Specification.class), eq(2))).thenReturn(List.of(listItem(1L)));
+
+        CursorPage<PaymentListItem> next = paymentService.getPayments(new PaymentSearchCriteria(), result.getNextCursor(), 1, false);
+
+        assertFalse(next.isHasMore());
+    }
+
+    // Test: Get payments - invalid cursor and page size are rejected
+    @Test
+    void testGetPayments_InvalidArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentService.getPayments(new PaymentSearchCriteria(), "not-a-cursor", 20, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentService.getPayments(new PaymentSearchCriteria(), null, 0, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentService.getPayments(new PaymentSearchCriteria(), null, 1000, false));
     }
 
     // Test: Update payment
     @Test
     void testUpdatePayment_Success() {
-        when(paymentRepository.findById(1L)).thenReturn(Optional.of(payment));
+        when(paymentRepository.lockById(1L)).thenReturn(Optional.of(payment));
         when(paymentRepository.save(any(Payment.class))).thenReturn(payment);
+        when(orderRepository.findUserIdById(1L)).thenReturn(Optional.of(1L));
         when(paymentMapper.toDTO(payment)).thenReturn(paymentDTO);
 
         PaymentDTO result = paymentService.updatePayment(1L, paymentDTO);
 
         assertNotNull(result);
         verify(paymentRepository).save(any(Payment.class));
+        // Same amount, same order: the user's spending is left alone
+        verify(userRepository, never()).addSpending(anyLong(), any(BigDecimal.class));
+    }
+
+    // Test: Update payment amount adjusts the user's spending by the difference
+    @Test
+    void testUpdatePayment_AmountChangedAdjustsSpending() {
+        when(paymentRepository.lockById(1L)).thenReturn(Optional.of(payment));
+        doAnswer(invocation -> {
+            payment.setAmount(new BigDecimal("80.00"));
+            return null;
+        }).when(paymentMapper).updateEntityFromDTO(paymentDTO, payment);
+        when(paymentRepository.save(any(Payment.class))).thenReturn(payment);
+        when(orderRepository.findUserIdById(1L)).thenReturn(Optional.of(1L));
+
+        paymentService.updatePayment(1L, paymentDTO);
+
+        verify(userRepository).addSpending(1L, new BigDecimal("-20.00"));
+        verify(clientStatisticsCache).invalidate(1L);
+    }
+
+    // Test: Update payment cannot move the payment to another order
+    @Test
+    void testUpdatePayment_OtherOrderRejected() {
+        when(paymentRepository.lockById(1L)).thenReturn(Optional.of(payment));
+        paymentDTO.setOrderId(2L);
+
+        assertThrows(IllegalArgumentException.class, () -> paymentService.updatePayment(1L, paymentDTO));
+        verify(paymentRepository, never()).save(any(Payment.class));
+        verify(userRepository, never()).addSpending(anyLong(), any(BigDecimal.class));
     }
 
     // Test: Update payment not found
     @Test
     void testUpdatePayment_NotFound() {
-        when(paymentRepository.findById(1L)).thenReturn(Optional.empty());
+        when(paymentRepository.lockById(1L)).thenReturn(Optional.empty());
 
         assertThrows(ResourceNotFoundException.class, () -> paymentService.updatePayment(1L, paymentDTO));
     }
@@ -224,17 +360,20 @@ public class PaymentServiceTest {
     // Test: Delete payment
     @Test
     void testDeletePayment_Success() {
-        when(paymentRepository.findById(1L)).thenReturn(Optional.of(payment));
+        when(paymentRepository.lockById(1L)).thenReturn(Optional.of(payment));
+        when(orderRepository.findUserIdById(1L)).thenReturn(Optional.of(1L));
 
         paymentService.deletePayment(1L);
 
         verify(paymentRepository).delete(payment);
+        verify(userRepository).addSpending(1L, new BigDecimal("-100.00"));
+        verify(clientStatisticsCache).invalidate(1L);
     }
 
     // Test: Delete payment not found
     @Test
     void testDeletePayment_NotFound() {
-        when(paymentRepository.findById(1L)).thenReturn(Optional.empty());
+        when(paymentRepository.lockById(1L)).thenReturn(Optional.empty());
 
         assertThrows(ResourceNotFoundException.class, () -> paymentService.deletePayment(1L));
     }
@@ -257,11 +396,10 @@ public class PaymentServiceTest {
 
         when(paymentMapper.toEntity(any())).thenReturn(cashPayment);
         when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(paymentRepository.findByOrderId(1L)).thenReturn(new ArrayList<>());
         when(paymentRepository.save(any(Payment.class))).thenReturn(cashPayment);
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
+        when(orderRepository.applyPayment(eq(1L), any(BigDecimal.class))).thenReturn(1);
+        when(orderRepository.findPaymentCountById(1L)).thenReturn(1);
         when(orderItemRepository.findByOrderId(1L)).thenReturn(new ArrayList<>());
-        when(orderRepository.findByStatus(OrderStatus.PENDING)).thenReturn(new ArrayList<>());
         when(paymentMapper.toDTO(cashPayment)).thenReturn(PaymentDTO.builder()
                 .id(1L)
                 .orderId(1L)
@@ -320,19 +458,64 @@ public class PaymentServiceTest {
 
         when(paymentMapper.toEntity(firstPaymentDTO)).thenReturn(firstPayment);
         when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(paymentRepository.findByOrderId(1L)).thenReturn(new ArrayList<>()); // First payment
         when(paymentRepository.save(any(Payment.class))).thenReturn(firstPayment);
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
+        when(orderRepository.applyPayment(eq(1L), any(BigDecimal.class))).thenReturn(1);
+        when(orderRepository.findPaymentCountById(1L)).thenReturn(1);
+        when(orderItemRepository.findByOrderId(1L)).thenReturn(List.of(item1, item2));
+        when(productRepository.decrementStock(1L, 3)).thenReturn(1);
+        when(productRepository.decrementStock(2L, 5)).thenReturn(1);
+        when(paymentMapper.toDTO(firstPayment)).thenReturn(firstPaymentDTO);
+
+        paymentService.createPayment(firstPaymentDTO);
+
+        // Verify stock was deducted with conditional updates, without loading the products
+        verify(productRepository).decrementStock(1L, 3);
+        verify(productRepository).decrementStock(2L, 5);
+        verify(productRepository, never()).findById(any());
+        verify(productRepository, never()).save(any(Product.class));
+    }
+
+    // Test: deductStockForOrder() - Lines for the same product are deducted in one update
+    @Test
+    void testCreatePayment_FirstPayment_MergesLinesPerProduct() {
+        OrderItem item1 = OrderItem.builder()
+                .orderId(1L)
+                .productId(1L)
+                .quantity(3)
+                .build();
+
+        OrderItem item2 = OrderItem.builder()
+                .orderId(1L)
+                .productId(1L)
+                .quantity(4)
+                .build();
+
+        Payment firstPayment = Payment.builder()
+                .id(1L)
+                .orderId(1L)
+                .amount(new BigDecimal("50.00"))
+                .paymentMethod(PaymentMethod.TRANSFER)
+                .status(PaymentStatus.PENDING)
+                .build();
+
+        PaymentDTO firstPaymentDTO = PaymentDTO.builder()
+                .orderId(1L)
+                .amount(new BigDecimal("50.00"))
+                .paymentMethod(PaymentMethod.TRANSFER)
+                .build();
+
+        when(paymentMapper.toEntity(firstPaymentDTO)).thenReturn(firstPayment);
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(paymentRepository.save(any(Payment.class))).thenReturn(firstPayment);
+        when(orderRepository.applyPayment(eq(1L), any(BigDecimal.class))).thenReturn(1);
+        when(orderRepository.findPaymentCountById(1L)).thenReturn(1);
         when(orderItemRepository.findByOrderId(1L)).thenReturn(List.of(item1, item2));
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product1));
-        when(productRepository.findById(2L)).thenReturn(Optional.of(product2));
-        when(orderRepository.findByStatus(OrderStatus.PENDING)).thenReturn(new ArrayList<>());
+        when(productRepository.decrementStock(1L, 7)).thenReturn(1);
         when(paymentMapper.toDTO(firstPayment)).thenReturn(firstPaymentDTO);
 
         paymentService.createPayment(firstPaymentDTO);
 
-        // Verify stock was deducted
-        verify(productRepository, times(2)).save(any(Product.class));
+        verify(productRepository, times(1)).decrementStock(anyLong(), anyInt());
     }
 
     // Test: deductStockForOrder() - Insufficient stock throws exception
@@ -367,13 +550,14 @@ public class PaymentServiceTest {
 
         when(paymentMapper.toEntity(firstPaymentDTO)).thenReturn(firstPayment);
         when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(paymentRepository.findByOrderId(1L)).thenReturn(new ArrayList<>()); // First payment
-        when(paymentRepository.save(any(Payment.class))).thenReturn(firstPayment);
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
         when(orderItemRepository.findByOrderId(1L)).thenReturn(List.of(item));
+        when(productRepository.decrementStock(1L, 5)).thenReturn(0); // No row matched the stock condition
         when(productRepository.findById(1L)).thenReturn(Optional.of(lowStockProduct));
 
-        assertThrows(IllegalArgumentException.class, () -> paymentService.createPayment(firstPaymentDTO));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> paymentService.createPayment(firstPaymentDTO));
+        assertTrue(exception.getMessage().contains("Available: 2, Required: 5"));
+        verify(paymentRepository, never()).save(any(Payment.class));
     }
 
     // Test: markCouponAsUsed() - Coupon marked on first payment
@@ -403,12 +587,11 @@ public class PaymentServiceTest {
 
         when(paymentMapper.toEntity(firstPaymentDTO)).thenReturn(firstPayment);
         when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(paymentRepository.findByOrderId(1L)).thenReturn(new ArrayList<>()); // First payment
         when(paymentRepository.save(any(Payment.class))).thenReturn(firstPayment);
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
+        when(orderRepository.applyPayment(eq(1L), any(BigDecimal.class))).thenReturn(1);
+        when(orderRepository.findPaymentCountById(1L)).thenReturn(1);
         when(orderItemRepository.findByOrderId(1L)).thenReturn(new ArrayList<>());
         when(couponRepository.findById(1L)).thenReturn(Optional.of(coupon));
-        when(orderRepository.findByStatus(OrderStatus.PENDING)).thenReturn(new ArrayList<>());
         when(paymentMapper.toDTO(firstPayment)).thenReturn(firstPaymentDTO);
 
         paymentService.createPayment(firstPaymentDTO);
@@ -438,164 +621,28 @@ public class PaymentServiceTest {
 
         when(paymentMapper.toEntity(firstPaymentDTO)).thenReturn(firstPayment);
         when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(paymentRepository.findByOrderId(1L)).thenReturn(new ArrayList<>()); // First payment
         when(paymentRepository.save(any(Payment.class))).thenReturn(firstPayment);
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
+        when(orderRepository.applyPayment(eq(1L), any(BigDecimal.class))).thenReturn(1);
+        when(orderRepository.findPaymentCountById(1L)).thenReturn(1);
         when(orderItemRepository.findByOrderId(1L)).thenReturn(new ArrayList<>());
         when(couponRepository.findById(999L)).thenReturn(Optional.empty());
 
         assertThrows(ResourceNotFoundException.class, () -> paymentService.createPayment(firstPaymentDTO));
     }
 
-    // Test: checkAndRejectPendingOrders() - Rejects orders with insufficient stock
-    @Test
-    void testCreatePayment_FirstPayment_RejectsPendingOrdersWithInsufficientStock() {
-        Product product = Product.builder()
-                .id(1L)
-                .name("Limited Stock Product")
-                .stock(5)
-                .deleted(false)
-                .build();
-
-        // Current order items (will reduce product stock from 5 to 2)
-        OrderItem item1 = OrderItem.builder()
-                .orderId(1L)
-                .productId(1L)
-                .quantity(3)
-                .build();
-
-        // Pending order that will need 4 units (insufficient after current order pays)
-        Order pendingOrder = Order.builder()
-                .id(2L)
-                .userId(1L)
-                .status(OrderStatus.PENDING)
-                .build();
-
-        OrderItem pendingItem = OrderItem.builder()
-                .orderId(2L)
-                .productId(1L)
-                .quantity(4) // More than remaining stock (2)
-                .build();
-
-        Payment firstPayment = Payment.builder()
-                .id(1L)
-                .orderId(1L)
-                .amount(new BigDecimal("50.00"))
-                .paymentMethod(PaymentMethod.TRANSFER)
-                .status(PaymentStatus.PENDING)
-                .build();
-
-        PaymentDTO firstPaymentDTO = PaymentDTO.builder()
-                .orderId(1L)
-                .amount(new BigDecimal("50.00"))
-                .paymentMethod(PaymentMethod.TRANSFER)
-                .build();
-
-        when(paymentMapper.toEntity(firstPaymentDTO)).thenReturn(firstPayment);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(paymentRepository.findByOrderId(1L)).thenReturn(new ArrayList<>()); // First payment
-        when(paymentRepository.save(any(Payment.class))).thenReturn(firstPayment);
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
-        when(orderItemRepository.findByOrderId(1L)).thenReturn(List.of(item1));
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
-        when(orderRepository.findByStatus(OrderStatus.PENDING)).thenReturn(List.of(pendingOrder));
-        when(paymentRepository.findByOrderId(2L)).thenReturn(new ArrayList<>()); // No payment for pending order
-        when(orderItemRepository.findByOrderId(2L)).thenReturn(List.of(pendingItem));
-        when(paymentMapper.toDTO(firstPayment)).thenReturn(firstPaymentDTO);
-
-        paymentService.createPayment(firstPaymentDTO);
-
-        // Verify pending order was rejected
-        verify(orderRepository).save(argThat(o -> o.getId().equals(2L) && o.getStatus() == OrderStatus.REJECTED));
-    }
-
-    // Test: checkAndRejectPendingOrders() - Does not reject orders with sufficient stock
+    // Test: First payment hands the deducted products to the pending-order worker
     @Test
-    void testCreatePayment_FirstPayment_DoesNotRejectOrdersWithSufficientStock() {
-        Product product = Product.builder()
-                .id(1L)
-                .name("Adequate Stock Product")
-                .stock(20)
-                .deleted(false)
-                .build();
-
+    void testCreatePayment_FirstPayment_RejectsPendingOrdersForDeductedProducts() {
         OrderItem item1 = OrderItem.builder()
                 .orderId(1L)
                 .productId(1L)
                 .quantity(3)
                 .build();
 
-        Order pendingOrder = Order.builder()
-                .id(2L)
-                .userId(1L)
-                .status(OrderStatus.PENDING)
-                .build();
-
-        OrderItem pendingItem = OrderItem.builder()
-                .orderId(2L)
-                .productId(1L)
-                .quantity(5) // Sufficient stock remains (20 - 3 = 17)
-                .build();
-
-        Payment firstPayment = Payment.builder()
-                .id(1L)
-                .orderId(1L)
-                .amount(new BigDecimal("50.00"))
-                .paymentMethod(PaymentMethod.TRANSFER)
-                .status(PaymentStatus.PENDING)
-                .build();
-
-        PaymentDTO firstPaymentDTO = PaymentDTO.builder()
-                .orderId(1L)
-                .amount(new BigDecimal("50.00"))
-                .paymentMethod(PaymentMethod.TRANSFER)
-                .build();
-
-        when(paymentMapper.toEntity(firstPaymentDTO)).thenReturn(firstPayment);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(paymentRepository.findByOrderId(1L)).thenReturn(new ArrayList<>()); // First payment
-        when(paymentRepository.save(any(Payment.class))).thenReturn(firstPayment);
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
-        when(orderItemRepository.findByOrderId(1L)).thenReturn(List.of(item1));
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
-        when(orderRepository.findByStatus(OrderStatus.PENDING)).thenReturn(List.of(pendingOrder));
-        when(paymentRepository.findByOrderId(2L)).thenReturn(new ArrayList<>()); // No payment for pending order
-        when(orderItemRepository.findByOrderId(2L)).thenReturn(List.of(pendingItem));
-        when(paymentMapper.toDTO(firstPayment)).thenReturn(firstPaymentDTO);
-
-        paymentService.createPayment(firstPaymentDTO);
-
-        // Verify pending order was NOT rejected (only the current order is saved)
-        verify(orderRepository, times(1)).save(any(Order.class)); // Only 1 save: current order remaining amount
-    }
-
-    // Test: checkAndRejectPendingOrders() - Skips orders with existing payments
-    @Test
-    void testCreatePayment_FirstPayment_SkipsPendingOrdersWithPayments() {
-        Product product = Product.builder()
-                .id(1L)
-                .name("Test Product")
-                .stock(5)
-                .deleted(false)
-                .build();
-
-        OrderItem item1 = OrderItem.builder()
+        OrderItem item2 = OrderItem.builder()
                 .orderId(1L)
-                .productId(1L)
-                .quantity(3)
-                .build();
-
-        Order pendingOrder = Order.builder()
-                .id(2L)
-                .userId(1L)
-                .status(OrderStatus.PENDING)
-                .build();
-
-        // Payment already exists for pending order (so it should be skipped)
-        Payment existingPayment = Payment.builder()
-                .id(2L)
-                .orderId(2L)
-                .amount(new BigDecimal("30.00"))
+                .productId(2L)
+                .quantity(1)
                 .build();
 
         Payment firstPayment = Payment.builder()
@@ -614,29 +661,24 @@ public class PaymentServiceTest {
 
         when(paymentMapper.toEntity(firstPaymentDTO)).thenReturn(firstPayment);
         when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(paymentRepository.findByOrderId(1L)).thenReturn(new ArrayList<>()); // First payment for order 1
         when(paymentRepository.save(any(Payment.class))).thenReturn(firstPayment);
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
-        when(orderItemRepository.findByOrderId(1L)).thenReturn(List.of(item1));
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
-        when(orderRepository.findByStatus(OrderStatus.PENDING)).thenReturn(List.of(pendingOrder));
-        when(paymentRepository.findByOrderId(2L)).thenReturn(List.of(existingPayment)); // Has payment, should skip
+        when(orderRepository.applyPayment(eq(1L), any(BigDecimal.class))).thenReturn(1);
+        when(orderRepository.findPaymentCountById(1L)).thenReturn(1);
+        when(orderItemRepository.findByOrderId(1L)).thenReturn(List.of(item1, item2));
+        when(productRepository.decrementStock(anyLong(), anyInt())).thenReturn(1);
         when(paymentMapper.toDTO(firstPayment)).thenReturn(firstPaymentDTO);
 
         paymentService.createPayment(firstPaymentDTO);
 
-        // Verify pending order was NOT rejected (has existing payment, so skipped)
-        verify(orderRepository, times(1)).save(any(Order.class)); // Only current order, no rejection save
+        verify(outboxService).publish(eq(OutboxEventType.PAYMENT_RECORDED), eq(1L), argThat(payload ->
+                payload.get("deductedProductIds").equals(Set.of(1L, 2L)) && payload.get("firstPayment").equals(true)));
+        verify(orderRepository, never()).findByStatus(any());
     }
 
     // Test: Second payment does not trigger helper methods
     @Test
     void testCreatePayment_SecondPayment_DoesNotTriggerHelperMethods() {
-        Payment existingPayment = Payment.builder()
-                .id(1L)
-                .orderId(1L)
-                .amount(new BigDecimal("60.00"))
-                .build();
+        order.setPaymentCount(1); // One installment already recorded
 
         Payment secondPayment = Payment.builder()
                 .id(2L)
@@ -655,16 +697,19 @@ public class PaymentServiceTest {
 
         when(paymentMapper.toEntity(secondPaymentDTO)).thenReturn(secondPayment);
         when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(paymentRepository.findByOrderId(1L)).thenReturn(List.of(existingPayment)); // Not first payment
         when(paymentRepository.save(any(Payment.class))).thenReturn(secondPayment);
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
+        when(orderRepository.applyPayment(1L, new BigDecimal("50.00"))).thenReturn(1);
+        when(orderRepository.findPaymentCountById(1L)).thenReturn(2);
         when(paymentMapper.toDTO(secondPayment)).thenReturn(secondPaymentDTO);
 
         paymentService.createPayment(secondPaymentDTO);
 
-        // Verify helper methods were not called (only 1 orderRepository save for remaining amount)
+        // Verify helper methods were not called and the payment got the next number
+        assertEquals(2, secondPayment.getPaymentNumber());
         verify(orderItemRepository, never()).findByOrderId(1L);
         verify(couponRepository, never()).findById(any());
+        verify(outboxService).publish(eq(OutboxEventType.PAYMENT_RECORDED), eq(1L), argThat(payload ->
+                payload.get("deductedProductIds").equals(Set.of()) && payload.get("firstPayment").equals(false)));
     }
 
     // Test: deductStockForOrder - Product not found (lambda exception coverage)
@@ -692,9 +737,6 @@ public class PaymentServiceTest {
 
         when(paymentMapper.toEntity(firstPaymentDTO)).thenReturn(firstPayment);
         when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(paymentRepository.findByOrderId(1L)).thenReturn(new ArrayList<>()); // First payment
-        when(paymentRepository.save(any(Payment.class))).thenReturn(firstPayment);
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
         when(orderItemRepository.findByOrderId(1L)).thenReturn(List.of(item));
         when(productRepository.findById(999L)).thenReturn(Optional.empty()); // Product not found
 
@@ -712,13 +754,6 @@ public class PaymentServiceTest {
                 .quantity(1)
                 .build();
 
-        Product product = Product.builder()
-                .id(1L)
-                .name("Test")
-                .stock(5)
-                .deleted(false)
-                .build();
-
         Payment firstPayment = Payment.builder()
                 .id(1L)
                 .orderId(1L)
@@ -735,12 +770,11 @@ public class PaymentServiceTest {
 
         when(paymentMapper.toEntity(firstPaymentDTO)).thenReturn(firstPayment);
         when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(paymentRepository.findByOrderId(1L)).thenReturn(new ArrayList<>()); // First payment
         when(paymentRepository.save(any(Payment.class))).thenReturn(firstPayment);
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
+        when(orderRepository.applyPayment(eq(1L), any(BigDecimal.class))).thenReturn(1);
+        when(orderRepository.findPaymentCountById(1L)).thenReturn(1);
         when(orderItemRepository.findByOrderId(1L)).thenReturn(List.of(item));
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
-        when(orderRepository.findByStatus(OrderStatus.PENDING)).thenReturn(new ArrayList<>());
+        when(productRepository.decrementStock(eq(1L), anyInt())).thenReturn(1);
         when(paymentMapper.toDTO(firstPayment)).thenReturn(firstPaymentDTO);
 
         PaymentDTO result = paymentService.createPayment(firstPaymentDTO);
@@ -749,4 +783,79 @@ public class PaymentServiceTest {
         // Verify couponRepository was never called since order has no coupon
         verify(couponRepository, never()).findById(any());
     }
+
+    // Test: createPayments() - A chunk tracks the remaining amount and first payment of each order itself
+    @Test
+    void testCreatePayments_ChunkForSameOrder() {
+        List<PaymentDTO> chunk = List.of(
+                importedPayment(1L, "REF-A", "60.00"),
+                importedPayment(1L, "REF-B", "50.00"),
+                importedPayment(1L, "REF-C", "20.00"),
+                importedPayment(2L, "REF-D", "10.00"));
+
+        when(orderRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(order));
+        when(paymentRepository.findReferencesByOrderIds(anyCollection(), anyCollection())).thenReturn(List.of());
+        when(paymentMapper.toEntity(any(PaymentDTO.class))).thenAnswer(invocation -> {
+            PaymentDTO dto = invocation.getArgument(0);
+            return Payment.builder().orderId(dto.getOrderId()).amount(dto.getAmount())
+                    .paymentMethod(dto.getPaymentMethod()).reference(dto.getReference()).build();
+        });
+        when(orderItemRepository.findByOrderId(1L)).thenReturn(new ArrayList<>());
+        when(orderRepository.applyPayment(eq(1L), any(BigDecimal.class))).thenReturn(1);
+        when(orderRepository.findPaymentCountById(1L)).thenReturn(1, 2);
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<PaymentImportResult> results = paymentService.createPayments(chunk);
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).getSuccess());
+        assertEquals(1, results.get(0).getPaymentNumber());
+        assertTrue(results.get(1).getSuccess());
+        assertEquals(2, results.get(1).getPaymentNumber());
+        // Only 10.00 is left after the first two payments
+        assertFalse(results.get(2).getSuccess());
+        assertFalse(results.get(3).getSuccess());
+        assertEquals("Order not found with id: 2", results.get(3).getError());
+
+        // Stock is deducted once, for the order's first payment only
+        verify(orderItemRepository, times(1)).findByOrderId(1L);
+        verify(paymentRepository, times(2)).save(any(Payment.class));
+        // Both payments reach the user's spending in a single update
+        verify(userRepository, times(1)).addSpending(1L, new BigDecimal("110.00"));
+        verify(loyaltyUpgradeScheduler, times(1)).requestUpgrade(1L);
+    }
+
+    // Test: createPayments() - A reference already recorded on the order is refused
+    @Test
+    void testCreatePayments_DuplicateReference() {
+        order.setPaymentCount(1);
+        List<PaymentDTO> chunk = List.of(importedPayment(1L, "REF-A", "60.00"));
+
+        when(orderRepository.findAllById(Set.of(1L))).thenReturn(List.of(order));
+        when(paymentRepository.findReferencesByOrderIds(anyCollection(), anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "REF-A"}));
+
+        List<PaymentImportResult> results = paymentService.createPayments(chunk);
+
+        assertFalse(results.get(0).getSuccess());
+        assertEquals("Payment REF-A is already recorded for order 1", results.get(0).getError());
+        verify(orderRepository, never()).applyPayment(any(), any());
+        verify(paymentRepository, never()).save(any(Payment.class));
+    }
+
+    private PaymentDTO importedPayment(Long orderId, String reference, String amount) {
+        return PaymentDTO.builder()
+                .orderId(orderId)
+                .amount(new BigDecimal(amount))
+                .paymentMethod(PaymentMethod.TRANSFER)
+                .paymentDate(LocalDate.now())
+                .reference(reference)
+                .status(PaymentStatus.COLLECTED)
+                .build();
+    }
+
+    private PaymentListItem listItem(Long id) {
+        return new PaymentListItem(id, 1L, id.intValue(), new BigDecimal("10.00"), PaymentMethod.CHECK,
+                PaymentStatus.PENDING, LocalDate.now(), null, null, "REF-" + id, null);
+    }
 }
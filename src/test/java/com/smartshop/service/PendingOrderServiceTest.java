@@ -0,0 +1,130 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.PendingDemand;
+import com.smartshop.entity.Order;
+import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.OutboxEventType;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.service.impl.PendingOrderServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PendingOrderServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OrderEventPublisher orderEventPublisher;
+
+    @InjectMocks
+    private PendingOrderServiceImpl pendingOrderService;
+
+    // Test: Orders are rejected for products whose stock no longer covers pending demand
+    @Test
+    void testRejectUnfulfillableOrders_RejectsOrdersOfShortProducts() {
+        Order first = pendingOrder(5L);
+        Order second = pendingOrder(6L);
+        when(orderRepository.findPendingDemand(List.of(1L, 2L), OrderStatus.PENDING)).thenReturn(List.of(
+                new PendingDemand(1L, 2, 4L),   // 4 units wanted, 2 left
+                new PendingDemand(2L, 10, 3L)));  // enough stock
+        when(orderRepository.findUnfulfillableOrderIds(List.of(1L), OrderStatus.PENDING)).thenReturn(List.of(5L, 6L));
+        when(orderRepository.lockUnpaidByIds(List.of(5L, 6L), OrderStatus.PENDING)).thenReturn(List.of(first, second));
+        when(orderRepository.updateUnpaidStatus(List.of(5L, 6L), OrderStatus.PENDING, OrderStatus.REJECTED))
+                .thenReturn(2);
+
+        int rejected = pendingOrderService.rejectUnfulfillableOrders(List.of(1L, 2L));
+
+        assertEquals(2, rejected);
+        verify(orderEventPublisher).publish(OutboxEventType.ORDER_REJECTED, first);
+        verify(orderEventPublisher).publish(OutboxEventType.ORDER_REJECTED, second);
+        assertEquals(OrderStatus.REJECTED, first.getStatus());
+    }
+
+    // Test: Orders paid between selection and locking are neither rejected nor published
+    @Test
+    void testRejectUnfulfillableOrders_SkipsOrdersPaidMeanwhile() {
+        Order unpaid = pendingOrder(6L);
+        when(orderRepository.findPendingDemand(List.of(1L), OrderStatus.PENDING))
+                .thenReturn(List.of(new PendingDemand(1L, 2, 4L)));
+        when(orderRepository.findUnfulfillableOrderIds(List.of(1L), OrderStatus.PENDING)).thenReturn(List.of(5L, 6L));
+        when(orderRepository.lockUnpaidByIds(List.of(5L, 6L), OrderStatus.PENDING)).thenReturn(List.of(unpaid));
+        when(orderRepository.updateUnpaidStatus(List.of(6L), OrderStatus.PENDING, OrderStatus.REJECTED))
+                .thenReturn(1);
+
+        int rejected = pendingOrderService.rejectUnfulfillableOrders(List.of(1L));
+
+        assertEquals(1, rejected);
+        verify(orderEventPublisher).publish(OutboxEventType.ORDER_REJECTED, unpaid);
+        verifyNoMoreInteractions(orderEventPublisher);
+    }
+
+    // Test: Nothing is updated when every selected order was paid meanwhile
+    @Test
+    void testRejectUnfulfillableOrders_AllPaidMeanwhile() {
+        when(orderRepository.findPendingDemand(List.of(1L), OrderStatus.PENDING))
+                .thenReturn(List.of(new PendingDemand(1L, 2, 4L)));
+        when(orderRepository.findUnfulfillableOrderIds(List.of(1L), OrderStatus.PENDING)).thenReturn(List.of(5L));
+        when(orderRepository.lockUnpaidByIds(List.of(5L), OrderStatus.PENDING)).thenReturn(List.of());
+
+        assertEquals(0, pendingOrderService.rejectUnfulfillableOrders(List.of(1L)));
+        verify(orderRepository, never()).updateUnpaidStatus(any(), any(), any());
+        verifyNoInteractions(orderEventPublisher);
+    }
+
+    // Test: Nothing is queried or updated when stock covers every pending order
+    @Test
+    void testRejectUnfulfillableOrders_StockCoversDemand() {
+        when(orderRepository.findPendingDemand(List.of(1L), OrderStatus.PENDING))
+                .thenReturn(List.of(new PendingDemand(1L, 5, 5L)));
+
+        int rejected = pendingOrderService.rejectUnfulfillableOrders(List.of(1L));
+
+        assertEquals(0, rejected);
+        verify(orderRepository, never()).findUnfulfillableOrderIds(any(), any());
+        verify(orderRepository, never()).updateUnpaidStatus(any(), any(), any());
+    }
+
+    // Test: Products without pending orders are skipped
+    @Test
+    void testRejectUnfulfillableOrders_NoPendingOrders() {
+        when(orderRepository.findPendingDemand(List.of(1L), OrderStatus.PENDING)).thenReturn(new ArrayList<>());
+
+        assertEquals(0, pendingOrderService.rejectUnfulfillableOrders(List.of(1L)));
+        verify(orderRepository, never()).updateUnpaidStatus(any(), any(), any());
+    }
+
+    // Test: Large product sets are checked in bounded batches
+    @Test
+    void testRejectUnfulfillableOrders_BatchesProductIds() {
+        List<Long> productIds = LongStream.rangeClosed(1, 1200).boxed().toList();
+        when(orderRepository.findPendingDemand(anyCollection(), eq(OrderStatus.PENDING))).thenReturn(new ArrayList<>());
+
+        pendingOrderService.rejectUnfulfillableOrders(productIds);
+
+        verify(orderRepository, times(3)).findPendingDemand(anyCollection(), eq(OrderStatus.PENDING));
+    }
+
+    private Order pendingOrder(Long id) {
+        return Order.builder()
+                .id(id)
+                .userId(9L)
+                .status(OrderStatus.PENDING)
+                .totalTTC(new BigDecimal("120.00"))
+                .remainingAmount(new BigDecimal("120.00"))
+                .build();
+    }
+}
@@ -0,0 +1,121 @@
+package com.smartshop.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartshop.dto.ReceivablesCriteria;
+import com.smartshop.dto.ReceivablesRow;
+import com.smartshop.enums.CustomerTier;
+import com.smartshop.enums.ReceivablesGrouping;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.service.impl.ReceivablesReportServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReceivablesReportServiceTest {
+
+    private static final LocalDate AS_OF = LocalDate.of(2026, 6, 30);
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Test: Aging cutoffs are computed from the as-of date and each row becomes one NDJSON line
+    @Test
+    void testExportReceivables_WritesOneLinePerClient() {
+        ReceivablesReportServiceImpl service = new ReceivablesReportServiceImpl(orderRepository, objectMapper, 30, 100);
+        when(orderRepository.streamReceivablesByClient(anyCollection(), any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> Stream.of(clientRow(1L), clientRow(2L)));
+
+        String report = export(service, criteria(ReceivablesGrouping.CLIENT));
+
+        String[] lines = report.trim().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"clientId\":1"));
+        assertTrue(lines[0].contains("\"total\":60"));
+        verify(orderRepository).streamReceivablesByClient(anyCollection(),
+                eq(LocalDateTime.of(1970, 1, 1, 0, 0)),
+                eq(LocalDateTime.of(2026, 7, 1, 0, 0)),
+                eq(LocalDateTime.of(2026, 5, 31, 0, 0)),
+                eq(LocalDateTime.of(2026, 5, 1, 0, 0)),
+                eq(LocalDateTime.of(2026, 4, 1, 0, 0)));
+    }
+
+    // Test: The same report requested again within the TTL is served without querying
+    @Test
+    void testExportReceivables_CachedWithinTtl() {
+        ReceivablesReportServiceImpl service = new ReceivablesReportServiceImpl(orderRepository, objectMapper, 30, 100);
+        when(orderRepository.findReceivablesByTier(anyCollection(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of(new ReceivablesRow(CustomerTier.GOLD, 3L, BigDecimal.TEN, null, null, null)));
+
+        String first = export(service, criteria(ReceivablesGrouping.TIER));
+        String second = export(service, criteria(ReceivablesGrouping.TIER));
+
+        assertEquals(first, second);
+        verify(orderRepository, times(1)).findReceivablesByTier(anyCollection(), any(), any(), any(), any(), any());
+    }
+
+    // Test: Reports over the row limit and reports with caching disabled are always recomputed
+    @Test
+    void testExportReceivables_NotCachedWhenTooLargeOrDisabled() {
+        ReceivablesReportServiceImpl small = new ReceivablesReportServiceImpl(orderRepository, objectMapper, 30, 1);
+        ReceivablesReportServiceImpl disabled = new ReceivablesReportServiceImpl(orderRepository, objectMapper, 0, 100);
+        when(orderRepository.streamReceivablesByClient(anyCollection(), any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> Stream.of(clientRow(1L), clientRow(2L)));
+
+        export(small, criteria(ReceivablesGrouping.CLIENT));
+        export(small, criteria(ReceivablesGrouping.CLIENT));
+        export(disabled, criteria(ReceivablesGrouping.CLIENT));
+        export(disabled, criteria(ReceivablesGrouping.CLIENT));
+
+        verify(orderRepository, times(4)).streamReceivablesByClient(anyCollection(), any(), any(), any(), any(), any());
+    }
+
+    // Test: A start date after the as-of date is rejected before anything is written
+    @Test
+    void testExportReceivables_FromAfterAsOf() {
+        ReceivablesReportServiceImpl service = new ReceivablesReportServiceImpl(orderRepository, objectMapper, 30, 100);
+        ReceivablesCriteria criteria = ReceivablesCriteria.builder()
+                .grouping(ReceivablesGrouping.TOTAL)
+                .asOf(AS_OF)
+                .fromDate(AS_OF.plusDays(1))
+                .build();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThrows(IllegalArgumentException.class, () -> service.exportReceivables(criteria, out));
+        assertEquals(0, out.size());
+        verifyNoInteractions(orderRepository);
+    }
+
+    private ReceivablesCriteria criteria(ReceivablesGrouping grouping) {
+        return ReceivablesCriteria.builder()
+                .grouping(grouping)
+                .asOf(AS_OF)
+                .build();
+    }
+
+    private String export(ReceivablesReportServiceImpl service, ReceivablesCriteria criteria) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportReceivables(criteria, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private ReceivablesRow clientRow(Long clientId) {
+        return new ReceivablesRow(clientId, "Client " + clientId, CustomerTier.BASIC, 2L,
+                BigDecimal.TEN, new BigDecimal("20"), null, new BigDecimal("30"));
+    }
+}
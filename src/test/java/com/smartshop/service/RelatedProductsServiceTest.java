@@ -0,0 +1,186 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.RelatedProduct;
+import com.smartshop.entity.Product;
+import com.smartshop.exception.ResourceNotFoundException;
+import com.smartshop.repository.OrderItemRepository;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.repository.ProductRepository;
+import com.smartshop.service.impl.RelatedProductsServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RelatedProductsServiceTest {
+
+    private static final long PRINTER = 1L;
+    private static final long TONER = 2L;
+    private static final long PAPER = 3L;
+    private static final long CABLE = 4L;
+
+    @Mock
+    private OrderItemRepository orderItemRepository;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private RelatedProductsServiceImpl relatedProductsService;
+
+    @BeforeEach
+    void setUp() {
+        relatedProductsService = new RelatedProductsServiceImpl(orderItemRepository, orderRepository, productRepository,
+                new SimpleMeterRegistry(), true, 2, 3, 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(relatedProductsService, "shutdown");
+    }
+
+    // Test: The rebuild reads id ranges in parallel and counts each order's distinct products once
+    @Test
+    void testRebuild_CountsOrdersFromEveryChunk() {
+        when(orderRepository.findMaxId()).thenReturn(5L);
+        when(orderItemRepository.findProductIdsByOrderIdRange(1L, 3L)).thenReturn(List.of(
+                row(1L, PRINTER), row(1L, TONER), row(1L, TONER),
+                row(2L, PRINTER), row(2L, TONER), row(2L, PAPER)));
+        when(orderItemRepository.findProductIdsByOrderIdRange(3L, 5L)).thenReturn(List.of(
+                row(3L, PRINTER), row(3L, PAPER),
+                row(4L, PAPER), row(4L, CABLE)));
+        when(orderItemRepository.findProductIdsByOrderIdRange(5L, 6L)).thenReturn(List.of(
+                row(5L, PRINTER), row(5L, TONER)));
+        stubProducts();
+
+        assertEquals(5, relatedProductsService.rebuild());
+
+        List<RelatedProduct> related = relatedProductsService.getRelatedProducts(PRINTER, 10);
+        assertEquals(List.of(TONER, PAPER), related.stream().map(RelatedProduct::getProductId).toList());
+        assertEquals(3L, related.get(0).getOrdersTogether());
+        assertEquals(new BigDecimal("0.7500"), related.get(0).getConfidence());
+        assertEquals("Toner", related.get(0).getName());
+        assertEquals(2L, related.get(1).getOrdersTogether());
+    }
+
+    // Test: An order is only counted once its transaction commits
+    @Test
+    void testRecordOrder_CountedAfterCommit() {
+        stubProducts();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            relatedProductsService.recordOrder(10L, List.of(PRINTER, CABLE));
+            assertTrue(relatedProductsService.getRelatedProducts(PRINTER, 10).isEmpty());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        List<RelatedProduct> related = relatedProductsService.getRelatedProducts(PRINTER, 10);
+        assertEquals(1, related.size());
+        assertEquals(CABLE, related.get(0).getProductId());
+        assertEquals(new BigDecimal("1.0000"), related.get(0).getConfidence());
+    }
+
+    // Test: Deleted products are skipped and the limit is applied to the remaining ones
+    @Test
+    void testGetRelatedProducts_SkipsDeletedProducts() {
+        stubProducts(true);
+        relatedProductsService.recordOrder(10L, List.of(PRINTER, TONER, PAPER, CABLE));
+        relatedProductsService.recordOrder(11L, List.of(PRINTER, TONER, PAPER));
+        relatedProductsService.recordOrder(12L, List.of(PRINTER, TONER));
+
+        List<RelatedProduct> related = relatedProductsService.getRelatedProducts(PRINTER, 2);
+
+        // Toner was deleted
+        assertEquals(List.of(PAPER, CABLE), related.stream().map(RelatedProduct::getProductId).toList());
+    }
+
+    // Test: Unknown products and limits outside 1..max-limit are rejected
+    @Test
+    void testGetRelatedProducts_InvalidRequests() {
+        when(productRepository.findByIdAndDeletedFalse(99L)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> relatedProductsService.getRelatedProducts(99L, 10));
+        assertThrows(IllegalArgumentException.class, () -> relatedProductsService.getRelatedProducts(PRINTER, 0));
+        assertThrows(IllegalArgumentException.class, () -> relatedProductsService.getRelatedProducts(PRINTER, 21));
+    }
+
+    // Test: Orders recorded while a rebuild runs are kept unless the rebuild read them, whatever their id
+    @Test
+    void testRebuild_KeepsOrdersRecordedMeanwhile() {
+        when(orderRepository.findMaxId()).thenAnswer(invocation -> {
+            // Order 3 commits as the last id is read, and ends up past it
+            relatedProductsService.recordOrder(3L, List.of(PRINTER, CABLE));
+            return 2L;
+        });
+        when(orderItemRepository.findProductIdsByOrderIdRange(1L, 3L)).thenAnswer(invocation -> {
+            // Order 2 is already in the rows read; order 1 got its id earlier but commits after the read
+            relatedProductsService.recordOrder(2L, List.of(PRINTER, TONER));
+            relatedProductsService.recordOrder(1L, List.of(PRINTER, PAPER));
+            List<Object[]> rows = new ArrayList<>();
+            rows.add(row(2L, PRINTER));
+            rows.add(row(2L, TONER));
+            return rows;
+        });
+        stubProducts();
+
+        assertEquals(3, relatedProductsService.rebuild());
+
+        // Order 2 counted once, from the rows; orders 1 and 3 carried over
+        List<RelatedProduct> related = relatedProductsService.getRelatedProducts(PRINTER, 10);
+        assertEquals(List.of(TONER, PAPER, CABLE), related.stream().map(RelatedProduct::getProductId).toList());
+        assertEquals(1L, related.get(0).getOrdersTogether());
+        assertEquals(new BigDecimal("0.3333"), related.get(0).getConfidence());
+    }
+
+    private void stubProducts() {
+        stubProducts(false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubProducts(boolean tonerDeleted) {
+        Product printer = product(PRINTER, "Printer", false);
+        lenient().when(productRepository.findByIdAndDeletedFalse(PRINTER)).thenReturn(Optional.of(printer));
+        lenient().when(productRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<Product> products = new ArrayList<>();
+            for (Long id : (Collection<Long>) invocation.getArgument(0)) {
+                products.add(id == TONER ? product(TONER, "Toner", tonerDeleted) : product(id, "Product " + id, false));
+            }
+            return products;
+        });
+    }
+
+    private Product product(long id, String name, boolean deleted) {
+        return Product.builder()
+                .id(id)
+                .name(name)
+                .unitPrice(new BigDecimal("10.00"))
+                .deleted(deleted)
+                .build();
+    }
+
+    private Object[] row(Long orderId, Long productId) {
+        return new Object[]{orderId, productId};
+    }
+}
@@ -0,0 +1,90 @@
+package com.smartshop.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.enums.OutboxEventType;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.service.impl.SalesRollupSubscriber;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SalesRollupSubscriberTest {
+
+    @Mock
+    private SalesRollupJob salesRollupJob;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    private SalesRollupSubscriber subscriber;
+
+    @BeforeEach
+    void setUp() {
+        subscriber = new SalesRollupSubscriber(salesRollupJob, orderRepository, new ObjectMapper());
+    }
+
+    // Test: Order events refresh the days the orders were placed, each day once per batch
+    @Test
+    void testOnEvents_OrderEventsRefreshOrderDays() {
+        when(orderRepository.findOrderDatesByIds(Set.of(1L, 2L))).thenReturn(List.of(
+                LocalDateTime.of(2026, 6, 1, 9, 0),
+                LocalDateTime.of(2026, 6, 1, 18, 0)));
+
+        subscriber.onEvents(List.of(
+                event(OutboxEventType.ORDER_CREATED, 1L, "{}"),
+                event(OutboxEventType.ORDER_CONFIRMED, 1L, "{}"),
+                event(OutboxEventType.ORDER_CANCELED, 2L, "{}")));
+
+        verify(salesRollupJob).refresh(Set.of(LocalDate.of(2026, 6, 1)));
+    }
+
+    // Test: An updated payment refreshes both its old and its new payment day
+    @Test
+    void testOnEvents_PaymentUpdateRefreshesBothDays() {
+        subscriber.onEvents(List.of(event(OutboxEventType.PAYMENT_UPDATED, 1L,
+                "{\"paymentDate\":\"2026-06-03\",\"previousPaymentDate\":\"2026-06-02\"}")));
+
+        verify(salesRollupJob).refresh(Set.of(LocalDate.of(2026, 6, 2), LocalDate.of(2026, 6, 3)));
+        verifyNoInteractions(orderRepository);
+    }
+
+    // Test: Payment events published without a payment day fall back to the day of the event
+    @Test
+    void testOnEvents_PaymentWithoutDateUsesEventDay() {
+        subscriber.onEvents(List.of(event(OutboxEventType.PAYMENT_DELETED, 1L, "{\"paymentId\":5}")));
+
+        verify(salesRollupJob).refresh(Set.of(LocalDate.of(2026, 6, 10)));
+    }
+
+    // Test: Collecting a payment changes no rollup
+    @Test
+    void testOnEvents_CollectionIgnored() {
+        subscriber.onEvents(List.of(event(OutboxEventType.PAYMENT_COLLECTED, 1L,
+                "{\"paymentDate\":\"2026-06-03\"}")));
+
+        verify(salesRollupJob).refresh(argThat(days -> days.isEmpty()));
+        verifyNoInteractions(orderRepository);
+    }
+
+    private OutboxEvent event(OutboxEventType type, Long orderId, String payload) {
+        return OutboxEvent.builder()
+                .id(orderId)
+                .eventType(type)
+                .orderId(orderId)
+                .payload(payload)
+                .createdAt(LocalDateTime.of(2026, 6, 10, 12, 0))
+                .build();
+    }
+}
@@ -0,0 +1,182 @@
+package com.smartshop.service;
+
+import com.smartshop.dto.TopProduct;
+import com.smartshop.entity.Product;
+import com.smartshop.enums.OrderStatus;
+import com.smartshop.enums.RankingMetric;
+import com.smartshop.enums.RankingWindow;
+import com.smartshop.repository.OrderItemRepository;
+import com.smartshop.repository.OrderRepository;
+import com.smartshop.repository.ProductRepository;
+import com.smartshop.service.impl.TopProductsServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TopProductsServiceTest {
+
+    private static final long LAPTOP = 1L;
+    private static final long BOOK = 2L;
+    private static final long PEN = 3L;
+
+    @Mock
+    private OrderItemRepository orderItemRepository;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private TopProductsServiceImpl topProductsService;
+
+    @BeforeEach
+    void setUp() {
+        topProductsService = new TopProductsServiceImpl(orderItemRepository, orderRepository, productRepository,
+                new SimpleMeterRegistry(), true, 2, 50);
+    }
+
+    // Test: Booked orders are ranked by quantity or revenue, net of their share of the discount
+    @Test
+    void testRefreshOrders_RanksByQuantityAndRevenue() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(line(10L, now, OrderStatus.PENDING, LAPTOP, 1, "900.00", "100.00"));
+        rows.add(line(10L, now, OrderStatus.PENDING, BOOK, 2, "100.00", null));
+        rows.add(line(11L, now, OrderStatus.CONFIRMED, BOOK, 3, "150.00", null));
+        when(orderItemRepository.findProductSalesByOrderIds(Set.of(10L, 11L))).thenReturn(rows);
+        // Names come from the catalog, not from the order lines
+        when(productRepository.findAllById(anyIterable())).thenReturn(List.of(
+                Product.builder().id(BOOK).name("Book (2nd edition)").build(),
+                Product.builder().id(LAPTOP).name("Laptop").build()));
+
+        topProductsService.refreshOrders(Set.of(10L, 11L));
+
+        List<TopProduct> byQuantity = topProductsService.getTopProducts(RankingWindow.LAST_24H, RankingMetric.QUANTITY, 10);
+        assertEquals(2, byQuantity.size());
+        assertEquals(BOOK, byQuantity.get(0).getProductId());
+        assertEquals(1, byQuantity.get(0).getRank());
+        assertEquals("Book (2nd edition)", byQuantity.get(0).getProductName());
+        assertEquals(5L, byQuantity.get(0).getQuantity());
+        assertEquals(new BigDecimal("250.00"), byQuantity.get(0).getRevenue());
+
+        List<TopProduct> byRevenue = topProductsService.getTopProducts(RankingWindow.LAST_24H, RankingMetric.REVENUE, 1);
+        assertEquals(1, byRevenue.size());
+        assertEquals(LAPTOP, byRevenue.get(0).getProductId());
+        assertEquals(new BigDecimal("800.00"), byRevenue.get(0).getRevenue());
+    }
+
+    // Test: Delivering the same event twice counts the order once
+    @Test
+    void testRefreshOrders_ReplayIsIdempotent() {
+        when(orderItemRepository.findProductSalesByOrderIds(Set.of(10L))).thenReturn(List.<Object[]>of(
+                line(10L, LocalDateTime.now(), OrderStatus.PENDING, PEN, 4, "8.00", null)));
+
+        topProductsService.refreshOrders(Set.of(10L));
+        topProductsService.refreshOrders(Set.of(10L));
+
+        assertEquals(4L, topProductsService.getTopProducts(RankingWindow.LAST_24H, RankingMetric.QUANTITY, 10)
+                .get(0).getQuantity());
+    }
+
+    // Test: A canceled or deleted order is taken back out of the rankings
+    @Test
+    void testRefreshOrders_CanceledAndDeletedOrdersRemoved() {
+        LocalDateTime now = LocalDateTime.now();
+        when(orderItemRepository.findProductSalesByOrderIds(Set.of(10L, 11L)))
+                .thenReturn(List.of(
+                        line(10L, now, OrderStatus.PENDING, PEN, 4, "8.00", null),
+                        line(11L, now, OrderStatus.PENDING, BOOK, 1, "50.00", null)))
+                .thenReturn(List.<Object[]>of(
+                        line(10L, now, OrderStatus.CANCELED, PEN, 4, "8.00", null)));
+
+        topProductsService.refreshOrders(Set.of(10L, 11L));
+        topProductsService.refreshOrders(Set.of(10L, 11L));
+
+        assertTrue(topProductsService.getTopProducts(RankingWindow.LAST_30D, RankingMetric.QUANTITY, 10).isEmpty());
+    }
+
+    // Test: Each window only holds the orders placed within it; older orders are not counted at all
+    @Test
+    void testRefreshOrders_OrdersCountInTheirWindowsOnly() {
+        LocalDateTime now = LocalDateTime.now();
+        when(orderItemRepository.findProductSalesByOrderIds(Set.of(10L, 11L, 12L))).thenReturn(List.of(
+                line(10L, now.minusDays(2), OrderStatus.CONFIRMED, LAPTOP, 1, "800.00", null),
+                line(11L, now.minusDays(20), OrderStatus.CONFIRMED, BOOK, 1, "50.00", null),
+                line(12L, now.minusDays(31), OrderStatus.CONFIRMED, PEN, 1, "2.00", null)));
+
+        topProductsService.refreshOrders(Set.of(10L, 11L, 12L));
+
+        assertTrue(topProductsService.getTopProducts(RankingWindow.LAST_24H, RankingMetric.QUANTITY, 10).isEmpty());
+        assertEquals(List.of(LAPTOP), productIds(RankingWindow.LAST_7D));
+        assertEquals(List.of(LAPTOP, BOOK), productIds(RankingWindow.LAST_30D));
+    }
+
+    // Test: The rebuild pages through booked order ids and replaces the counters
+    @Test
+    void testRebuild_LoadsOrdersPageByPage() {
+        LocalDateTime now = LocalDateTime.now();
+        when(orderRepository.findBookedIdsSince(any(), eq(0L), any())).thenReturn(List.of(10L, 11L));
+        when(orderRepository.findBookedIdsSince(any(), eq(11L), any())).thenReturn(List.of(12L));
+        when(orderRepository.findBookedIdsSince(any(), eq(12L), any())).thenReturn(List.of());
+        when(orderItemRepository.findProductSalesByOrderIds(List.of(10L, 11L))).thenReturn(List.of(
+                line(10L, now, OrderStatus.PENDING, BOOK, 1, "50.00", null),
+                line(11L, now, OrderStatus.CONFIRMED, BOOK, 1, "50.00", null)));
+        when(orderItemRepository.findProductSalesByOrderIds(List.of(12L))).thenReturn(List.<Object[]>of(
+                line(12L, now, OrderStatus.CONFIRMED, PEN, 1, "2.00", null)));
+
+        assertEquals(3, topProductsService.rebuild());
+
+        assertEquals(List.of(BOOK, PEN), productIds(RankingWindow.LAST_24H));
+    }
+
+    // Test: Limits outside 1..max-limit are rejected
+    @Test
+    void testGetTopProducts_InvalidLimit() {
+        assertThrows(IllegalArgumentException.class,
+                () -> topProductsService.getTopProducts(RankingWindow.LAST_24H, RankingMetric.QUANTITY, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> topProductsService.getTopProducts(RankingWindow.LAST_24H, RankingMetric.QUANTITY, 51));
+    }
+
+    // Test: Ties are broken by product id, and only the requested number of products come back
+    @Test
+    void testGetTopProducts_TiesAndLimit() {
+        List<Object[]> rows = new ArrayList<>();
+        for (long productId = 100; productId > 0; productId--) {
+            rows.add(line(10L, LocalDateTime.now(), OrderStatus.PENDING, productId, 1, "1.00", null));
+        }
+        when(orderItemRepository.findProductSalesByOrderIds(Set.of(10L))).thenReturn(rows);
+
+        topProductsService.refreshOrders(Set.of(10L));
+
+        List<TopProduct> top = topProductsService.getTopProducts(RankingWindow.LAST_24H, RankingMetric.QUANTITY, 3);
+        assertEquals(List.of(1L, 2L, 3L), top.stream().map(TopProduct::getProductId).toList());
+    }
+
+    private List<Long> productIds(RankingWindow window) {
+        return topProductsService.getTopProducts(window, RankingMetric.REVENUE, 10).stream()
+                .map(TopProduct::getProductId)
+                .toList();
+    }
+
+    private Object[] line(Long orderId, LocalDateTime orderDate, OrderStatus status, Long productId,
+                          int quantity, String lineTotal, String discount) {
+        return new Object[]{orderId, orderDate, status, productId, quantity, new BigDecimal(lineTotal),
+                discount != null ? new BigDecimal(discount) : BigDecimal.ZERO};
+    }
+}
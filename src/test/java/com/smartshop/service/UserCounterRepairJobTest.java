@@ -0,0 +1,62 @@
+package com.smartshop.service;
+
+import com.smartshop.service.impl.UserCounterRepairJobImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserCounterRepairJobTest {
+
+    @Mock
+    private UserCounterService userCounterService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserCounterRepairJobImpl repairJob;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        repairJob = new UserCounterRepairJobImpl(userCounterService, meterRegistry, 100);
+    }
+
+    // Test: Every id range up to the highest user id is repaired in its own chunk
+    @Test
+    void testRepairAll_CoversEveryIdRange() {
+        when(userCounterService.findMaxUserId()).thenReturn(250L);
+        when(userCounterService.repairChunk(1L, 101L)).thenReturn(2);
+        when(userCounterService.repairChunk(101L, 201L)).thenReturn(0);
+        when(userCounterService.repairChunk(201L, 301L)).thenReturn(1);
+
+        int repaired = repairJob.repairAll();
+
+        assertEquals(3, repaired);
+        verify(userCounterService, times(3)).repairChunk(anyLong(), anyLong());
+        assertEquals(3.0, meterRegistry.counter("smartshop.users.counters.repaired").count());
+        assertEquals(1, meterRegistry.timer("smartshop.users.counters.repair.run").count());
+    }
+
+    // Test: No users means no chunk is run
+    @Test
+    void testRepairAll_NoUsers() {
+        when(userCounterService.findMaxUserId()).thenReturn(null);
+
+        assertEquals(0, repairJob.repairAll());
+        verify(userCounterService, never()).repairChunk(anyLong(), anyLong());
+    }
+
+    // Test: A failing scheduled run is logged and does not propagate
+    @Test
+    void testScheduledRepair_FailureIsContained() {
+        when(userCounterService.findMaxUserId()).thenThrow(new IllegalStateException("db down"));
+
+        assertDoesNotThrow(() -> repairJob.scheduledRepair());
+    }
+}